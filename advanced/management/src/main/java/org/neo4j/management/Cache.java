@@ -50,6 +50,12 @@ public interface Cache
     @Description( "The number of times a cache query did not return a result" )
     long getMissCount();
 
+    @Description( "The fraction of cache queries which returned a result" )
+    double getHitRatio();
+
+    @Description( "The number of entities evicted from this cache" )
+    long getEvictionCount();
+
     @Description( value = "Clears the Neo4j caches", impact = MBeanOperationInfo.ACTION )
     void clear();
 }
@@ -49,6 +49,19 @@ public interface HighAvailability
     @Description( "Information about all instances in this cluster" )
     ClusterMemberInfo[] getInstancesInCluster();
 
+    @Description( "(If this is the master) How far behind the master each slave is" )
+    String[] getSlaveLag();
+
+    @Description( "(As a slave) The number of lock requests made to the master" )
+    long getMasterLockRequests();
+
+    @Description( "(As a slave) The time in milliseconds spent waiting for lock requests to the master" )
+    long getMasterLockWaitMillis();
+
+    @Description( "(As a slave) The number of locks that didn't need a request to the master, "
+                  + "since the transaction already held them there" )
+    long getHeldLocksReused();
+
     @Description( "(If this is a slave) Update the database on this "
                   + "instance with the latest transactions from the master" )
     String update();
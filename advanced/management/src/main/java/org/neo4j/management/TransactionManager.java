@@ -45,4 +45,22 @@ public interface TransactionManager
 
     @Description( "The id of the latest committed transaction" )
     long getLastCommittedTxId();
+
+    @Description( "The number of times the logical log has been forced for committing transactions" )
+    long getNumberOfLogicalLogForces();
+
+    @Description( "The average number of transactions made durable by a single force of the logical log" )
+    double getAverageLogicalLogForceBatchSize();
+
+    @Description( "The largest number of transactions made durable by a single force of the logical log" )
+    int getMaxLogicalLogForceBatchSize();
+
+    @Description( "The average time, in microseconds, a force of the logical log has taken" )
+    long getAverageLogicalLogForceTime();
+
+    @Description( "The average number of transactions made durable by a single force of the transaction log" )
+    double getAverageTxLogForceBatchSize();
+
+    @Description( "The average time, in microseconds, a force of the transaction log has taken" )
+    long getAverageTxLogForceTime();
 }
@@ -33,13 +33,21 @@ public final class WindowPoolInfo implements Serializable
     private final int hitCount;
     private final int missCount;
     private final int oomCount;
+    private final int evictionCount;
+
+    public WindowPoolInfo( String name, long memAvail, long memUsed,
+            int windowCount, int windowSize, int hitCount, int missCount,
+            int oomCount )
+    {
+        this( name, memAvail, memUsed, windowCount, windowSize, hitCount, missCount, oomCount, 0 );
+    }
 
     @ConstructorProperties( { "windowPoolName", "availableMemory",
             "usedMemory", "numberOfWindows", "windowSize", "windowHitCount",
-            "windowMissCount", "numberOfOutOfMemory" } )
+            "windowMissCount", "numberOfOutOfMemory", "windowEvictionCount" } )
     public WindowPoolInfo( String name, long memAvail, long memUsed,
             int windowCount, int windowSize, int hitCount, int missCount,
-            int oomCount )
+            int oomCount, int evictionCount )
     {
         this.name = name;
         this.memAvail = memAvail;
@@ -49,6 +57,7 @@ public final class WindowPoolInfo implements Serializable
         this.hitCount = hitCount;
         this.missCount = missCount;
         this.oomCount = oomCount;
+        this.evictionCount = evictionCount;
     }
 
     public String getWindowPoolName()
@@ -90,4 +99,9 @@ public final class WindowPoolInfo implements Serializable
     {
         return oomCount;
     }
+
+    public int getWindowEvictionCount()
+    {
+        return evictionCount;
+    }
 }
@@ -96,5 +96,19 @@ public class CacheBean extends ManagementBeanProvider
         {
             return cache.missCount();
         }
+
+        @Override
+        public double getHitRatio()
+        {
+            long hits = cache.hitCount();
+            long total = hits + cache.missCount();
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public long getEvictionCount()
+        {
+            return cache.evictionCount();
+        }
     }
 }
@@ -88,7 +88,7 @@ public final class MemoryMappingBean extends ManagementBeanProvider
         {
             return new WindowPoolInfo( stats.getName(), stats.getMemAvail(), stats.getMemUsed(),
                     stats.getWindowCount(), stats.getWindowSize(), stats.getHitCount(),
-                    stats.getMissCount(), stats.getOomCount() );
+                    stats.getMissCount(), stats.getOomCount(), stats.getEvictionCount() );
         }
     }
 }
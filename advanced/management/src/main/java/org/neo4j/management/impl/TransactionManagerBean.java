@@ -19,6 +19,8 @@
  */
 package org.neo4j.management.impl;
 
+import java.util.concurrent.TimeUnit;
+
 import javax.management.NotCompliantMBeanException;
 
 import org.neo4j.helpers.Service;
@@ -28,6 +30,7 @@ import org.neo4j.jmx.impl.Neo4jMBean;
 import org.neo4j.kernel.impl.nioneo.xa.NeoStoreXaDataSource;
 import org.neo4j.kernel.impl.transaction.TxManager;
 import org.neo4j.kernel.impl.transaction.XaDataSourceManager;
+import org.neo4j.kernel.impl.transaction.xaframework.GroupCommit;
 import org.neo4j.management.TransactionManager;
 
 @Service.Implementation(ManagementBeanProvider.class)
@@ -94,5 +97,51 @@ public final class TransactionManagerBean extends ManagementBeanProvider
                 return neoStoreDataSource.getNeoStore().getLastCommittedTx();
             }
         }
+
+        public long getNumberOfLogicalLogForces()
+        {
+            GroupCommit groupCommit = logicalLogGroupCommit();
+            return groupCommit == null ? 0 : groupCommit.getForceCount();
+        }
+
+        public double getAverageLogicalLogForceBatchSize()
+        {
+            GroupCommit groupCommit = logicalLogGroupCommit();
+            return groupCommit == null ? 0 : groupCommit.getAverageBatchSize();
+        }
+
+        public int getMaxLogicalLogForceBatchSize()
+        {
+            GroupCommit groupCommit = logicalLogGroupCommit();
+            return groupCommit == null ? 0 : groupCommit.getMaxBatchSize();
+        }
+
+        public long getAverageLogicalLogForceTime()
+        {
+            GroupCommit groupCommit = logicalLogGroupCommit();
+            return groupCommit == null ? 0 : groupCommit.getAverageForceTime( TimeUnit.MICROSECONDS );
+        }
+
+        public double getAverageTxLogForceBatchSize()
+        {
+            GroupCommit groupCommit = txManager.getTxLogGroupCommit();
+            return groupCommit == null ? 0 : groupCommit.getAverageBatchSize();
+        }
+
+        public long getAverageTxLogForceTime()
+        {
+            GroupCommit groupCommit = txManager.getTxLogGroupCommit();
+            return groupCommit == null ? 0 : groupCommit.getAverageForceTime( TimeUnit.MICROSECONDS );
+        }
+
+        private GroupCommit logicalLogGroupCommit()
+        {
+            NeoStoreXaDataSource neoStoreDataSource = xadsm.getNeoStoreDataSource();
+            if ( neoStoreDataSource == null )
+            {
+                return null;
+            }
+            return neoStoreDataSource.getXaContainer().getLogicalLog().getGroupCommit();
+        }
     }
 }
@@ -119,4 +119,14 @@ public class ExecutionResult implements Iterable<Map<String,Object>>
     {
         return inner.javaIterator();
     }
+
+    /**
+     * Releases the resources held by this result, such as its transaction, without reading the remaining rows.
+     * Call this when giving up on a result before reaching its end. It does nothing once the result has been read
+     * to the end.
+     */
+    public void close()
+    {
+        inner.close();
+    }
 }
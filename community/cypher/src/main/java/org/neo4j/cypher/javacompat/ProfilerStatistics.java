@@ -38,4 +38,26 @@ public interface ProfilerStatistics
      * @return number of database hits (potential disk accesses) caused by executing the associated execution step
      */
     long getDbHits();
+
+    /**
+     * @return milliseconds spent in the associated execution step itself, not counting the steps it reads from
+     */
+    double getTimeMillis();
+
+    /**
+     * @return bytes allocated by the associated execution step itself, or -1 if the JVM can't tell
+     */
+    long getAllocatedBytes();
+
+    /**
+     * @return node and relationship cache lookups that found what they were looking for while the associated
+     *         execution step was running
+     */
+    long getCacheHits();
+
+    /**
+     * @return node and relationship cache lookups that had to go to the store while the associated execution step
+     *         was running
+     */
+    long getCacheMisses();
 }
@@ -22,7 +22,7 @@ package org.neo4j.cypher
 import internal.commands._
 import internal.executionplan.ExecutionPlanImpl
 import internal.helpers.TimeSource
-import internal.LRUCache
+import internal.{QueryCacheStatistics, LiteralParameterizer, LRUCache}
 import scala.collection.JavaConverters._
 import java.lang.Error
 import java.util.{Map => JavaMap}
@@ -39,23 +39,24 @@ class ExecutionEngine(graph: GraphDatabaseService, logger: StringLogger = String
 
   require(graph != null, "Can't work with a null graph database")
 
-  val parser = createCorrectParser()
-
-  private def createCorrectParser() = if (graph.isInstanceOf[InternalAbstractGraphDatabase]) {
+  private val parserVersion = if (graph.isInstanceOf[InternalAbstractGraphDatabase]) {
     val database = graph.asInstanceOf[InternalAbstractGraphDatabase]
     database.getConfig.get(GraphDatabaseSettings.cypher_parser_version) match {
-      case v:String => new CypherParser(v)
-      case _ => new CypherParser()
+      case v:String => v
+      case _ => "1.9"
     }
   } else {
-    new CypherParser()
+    "1.9"
   }
 
+  val parser = new CypherParser(parserVersion)
+
   @throws(classOf[SyntaxException])
   def profile(query: String, params: Map[String, Any]): ExecutionResult = {
     logger.debug(query)
     val start = createTime
-    prepare(query).profile(params, start)
+    val (plan, literals) = prepareParameterized(query)
+    plan.profile(params ++ literals, start)
   }
 
   @throws(classOf[SyntaxException])
@@ -72,7 +73,8 @@ class ExecutionEngine(graph: GraphDatabaseService, logger: StringLogger = String
   def execute(query: String, params: Map[String, Any]): ExecutionResult = {
     logger.debug(query)
     val start = createTime
-    prepare(query).execute(params,start)
+    val (plan, literals) = prepareParameterized(query)
+    plan.execute(params ++ literals, start)
   }
 
   @throws(classOf[SyntaxException])
@@ -80,10 +82,34 @@ class ExecutionEngine(graph: GraphDatabaseService, logger: StringLogger = String
 
   @throws(classOf[SyntaxException])
   def prepare(query: String): ExecutionPlan =
-    executionPlanCache.getOrElseUpdate(query, new ExecutionPlanImpl(parser.parse(query), graph))
+    executionPlanCache.getOrElseUpdate(query, statistics.planning(new ExecutionPlanImpl(parser.parse(query), graph)))
 
   def isPrepared(query : String) : Boolean =
-    executionPlanCache.containsKey(query)
+    executionPlanCache.containsKey(query) || (autoParameterize(query) match {
+      case Some((parameterized, _)) => executionPlanCache.containsKey(parameterized)
+      case None                     => false
+    })
+
+  /*
+  Queries that only differ in their literals share a plan. Should the rewritten query not parse, for whatever
+  reason, we fall back to the query as it was given, so that any syntax error is reported against that one.
+  We remember that, so the query isn't rewritten and parsed in vain every time it comes back.
+  */
+  private def prepareParameterized(query: String): (ExecutionPlan, Map[String, Any]) =
+    (if (unparameterizable.containsKey(query)) None else autoParameterize(query)) match {
+      case Some((parameterized, literals)) =>
+        try {
+          (prepare(parameterized), literals)
+        } catch {
+          case _: SyntaxException =>
+            unparameterizable.put(query, ())
+            (prepare(query), Map.empty)
+        }
+      case None => (prepare(query), Map.empty)
+    }
+
+  private def autoParameterize(query: String) =
+    if (parserVersion == "1.9") LiteralParameterizer(query) else None
 
   @throws(classOf[SyntaxException])
   @deprecated(message = "You should not parse queries manually any more. Use the execute(String) instead")
@@ -107,7 +133,11 @@ class ExecutionEngine(graph: GraphDatabaseService, logger: StringLogger = String
     }
   }
 
-  private val executionPlanCache = new LRUCache[String, ExecutionPlan]( getQueryCacheSize() ) {}
+  private val statistics = QueryCacheStatistics.of(graph)
+
+  private val executionPlanCache = new LRUCache[String, ExecutionPlan](getQueryCacheSize(), statistics)
+
+  private val unparameterizable = new LRUCache[String, Unit](getQueryCacheSize())
 
   private def getQueryCacheSize() : Int = if (graph.isInstanceOf[InternalAbstractGraphDatabase]) {
     val database = graph.asInstanceOf[InternalAbstractGraphDatabase]
@@ -32,6 +32,12 @@ trait ExecutionResult extends Iterator[Map[String, Any]] {
   def dumpToString(): String
   def queryStatistics(): QueryStatistics
   def executionPlanDescription(): PlanDescription
+
+  /**
+   * Releases what the query holds on to, its transaction among others, without reading the rest of the rows. Does
+   * nothing once the result has been read to the end.
+   */
+  def close()
 }
 
 
@@ -21,7 +21,7 @@ package org.neo4j.cypher
 
 import internal.helpers.CollectionSupport
 import internal.pipes.QueryState
-import internal.StringExtras
+import internal.{ClosingIterator, StringExtras}
 import internal.commands.expressions.StringHelper
 import scala.collection.JavaConverters._
 import java.io.{StringWriter, PrintWriter}
@@ -138,6 +138,13 @@ class PipeExecutionResult(result: Iterator[Map[String, Any]],
 
   def next(): ImmutableMap[String, Any] = result.next().toMap
 
+  def close() {
+    result match {
+      case closing: ClosingIterator[_] => closing.close()
+      case _                           =>
+    }
+  }
+
   def queryStatistics = QueryStatistics.empty
 }
 
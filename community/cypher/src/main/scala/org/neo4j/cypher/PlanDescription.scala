@@ -155,6 +155,14 @@ class PlanDescription(val pipe: Pipe,
 
     def getDbHits = getNamedLongStat("_db_hits")
 
+    def getTimeMillis = argsMap.v.get("_time_ms").map(_.asJava.asInstanceOf[Double]).getOrElse(0.0)
+
+    def getAllocatedBytes = argsMap.v.get("_allocated_bytes").map(_.asJava.asInstanceOf[Long]).getOrElse(-1L)
+
+    def getCacheHits = getNamedLongStat("_cache_hits")
+
+    def getCacheMisses = getNamedLongStat("_cache_misses")
+
     private def getNamedLongStat(name: String) =
      argsMap.v.get(name).getOrElse(throw new ProfilerStatisticsNotReadyException()).asJava.asInstanceOf[Long]
   }
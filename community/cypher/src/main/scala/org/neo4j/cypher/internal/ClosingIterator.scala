@@ -26,7 +26,7 @@ import org.neo4j.cypher.NodeStillHasRelationshipsException
 
 /**
  * An iterator that decorates an inner iterator, and calls close() on the QueryContext once
- * the inner iterator is empty.
+ * the inner iterator is empty, when whoever reads it gives up early, or when the query fails.
  */
 class ClosingIterator[T](inner: Iterator[T], queryContext: QueryContext, tx: Transaction) extends Iterator[T] {
   private var closed: Boolean = false
@@ -48,14 +48,17 @@ class ClosingIterator[T](inner: Iterator[T], queryContext: QueryContext, tx: Tra
     result
   }
 
-  private def close() {
+  /**
+   * Closes the query context and finishes the transaction, whether or not all the rows have been read.
+   */
+  def close() {
     translateException {
       if (!closed) {
         closed = true
         queryContext.close()
+        tx.success()
+        tx.finish()
       }
-      tx.success()
-      tx.finish()
     }
   }
 
@@ -86,8 +89,13 @@ class ClosingIterator[T](inner: Iterator[T], queryContext: QueryContext, tx: Tra
     f
   } catch {
     case t: Throwable if !closed =>
-      tx.failure()
-      tx.finish()
+      closed = true
+      try {
+        queryContext.close()
+      } finally {
+        tx.failure()
+        tx.finish()
+      }
       throw t
   }
 }
\ No newline at end of file
@@ -57,6 +57,21 @@ case class ExecutionContext(m: MutableMap[String, Any] = MutableMaps.empty,
     this
   }
 
+  /**
+   * Reads key from the slot the plan gave it, or by name if this row isn't laid out by that plan
+   */
+  def getAt(key: String, slot: Int): Any = m match {
+    case slotted: SlottedMap if slotted.slots.isSlotOf(slot, key) => slotted.getSlotOrElse(slot, default(key))
+    case _                                                         => apply(key)
+  }
+
+  def setAt(key: String, slot: Int, value: Any) {
+    m match {
+      case slotted: SlottedMap if slotted.slots.isSlotOf(slot, key) => slotted.setSlot(slot, value)
+      case _                                                         => m += key -> value
+    }
+  }
+
   override def toMap[T, U](implicit ev: (String, Any) <:< (T, U)): immutable.Map[T, U] = m.toMap(ev)
 
   def newWith(newEntries: Seq[(String, Any)]) =
@@ -66,10 +81,10 @@ case class ExecutionContext(m: MutableMap[String, Any] = MutableMaps.empty,
     createWithNewMap(MutableMaps.create(this.m) ++= newEntries)
 
   def newFrom(newEntries: Seq[(String, Any)]) =
-    createWithNewMap(MutableMaps.create(newEntries: _*))
+    createWithNewMap(MutableMaps.emptyLike(this.m) ++= newEntries)
 
   def newFrom(newEntries: scala.collection.Map[String, Any]) =
-    createWithNewMap(MutableMaps.create(newEntries))
+    createWithNewMap(MutableMaps.emptyLike(this.m) ++= newEntries)
 
   def newWith(newEntry: (String, Any)) =
     createWithNewMap(MutableMaps.create(this.m) += newEntry)
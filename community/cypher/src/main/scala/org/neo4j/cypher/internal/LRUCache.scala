@@ -19,31 +19,89 @@
  */
 package org.neo4j.cypher.internal
 
-import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap
+import com.googlecode.concurrentlinkedhashmap.{EvictionListener, ConcurrentLinkedHashMap}
+import java.util.concurrent.atomic.AtomicLong
 
-class LRUCache[K, V](cacheSize: Int) {
+/**
+ * Hit, miss and eviction counts, which can be shared by several caches.
+ */
+class CacheCounters {
+  private[internal] def hit() {
+    counters.hit()
+  }
+
+  private[internal] def miss() {
+    counters.miss()
+  }
+
+  private[internal] def evicted() {
+    counters.evicted()
+  }
+
+  def hits: Long = counters.hits
+
+  def misses: Long = counters.misses
 
+  def evictions: Long = counters.evictions
+}
+
+class LRUCache[K, V](cacheSize: Int, counters: CacheCounters = new CacheCounters) {
+
+  /*
+  The value is only ever computed through the lazy val, which is synchronized on the LazyValue instance. Concurrent
+  misses on the same key all end up waiting on the one LazyValue that made it into the map, so f is evaluated once.
+  */
   class LazyValue(f: => V) {
     lazy val value = f
   }
 
   val inner = new ConcurrentLinkedHashMap.Builder[K, LazyValue]
     .maximumWeightedCapacity(cacheSize)
+    .listener(new EvictionListener[K, LazyValue] {
+      def onEviction(key: K, value: LazyValue) {
+        counters.evicted()
+      }
+    })
     .build()
 
   def getOrElseUpdate(key: K, f: => V): V = {
-    val oldValue = inner.putIfAbsent(key, new LazyValue(f))
-    if (oldValue == null) {
-      f
+    val existing = inner.get(key)
+    if (existing != null) {
+      counters.hit()
+      existing.value
     } else {
-      oldValue.value
+      val newValue = new LazyValue(f)
+      val oldValue = inner.putIfAbsent(key, newValue)
+      val winner = if (oldValue == null) {
+        counters.miss()
+        newValue
+      } else {
+        counters.hit()
+        oldValue
+      }
+
+      try {
+        winner.value
+      } catch {
+        case t: Throwable =>
+          // Don't keep a value around that can only rethrow; the next caller gets to try again
+          inner.remove(key, winner)
+          throw t
+      }
     }
   }
 
-  def get(key: K): Option[V] = Option(inner.get(key).value)
+  def get(key: K): Option[V] = Option(inner.get(key)).map(_.value)
 
   def put(key: K, value: V) = inner.put(key, new LazyValue(value))
 
   def containsKey(key: K) = inner.containsKey(key)
-}
 
+  def size: Int = inner.size()
+
+  def hits: Long = counters.hits
+
+  def misses: Long = counters.misses
+
+  def evictions: Long = counters.evictions
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal
+
+import collection.mutable
+
+/**
+ * Rewrites the literals of a query that could just as well have been given as parameters into auto-parameters,
+ * so that queries only differing in those literals share one execution plan.
+ *
+ * Only literals whose value can not end up in a column name or change the shape of the plan are touched:
+ * entity ids and index values in START, literals in WHERE outside of patterns and collections, and the
+ * SKIP/LIMIT counts. Strings with escape sequences are left alone, so the extracted values are exactly the
+ * ones the parser would have produced.
+ */
+object LiteralParameterizer {
+  val PREFIX = "  AUTO"
+
+  /**
+   * START lookups of a single id get a parameter of their own kind, so the planner can tell them apart from
+   * lookups of several ids even though it never sees the values.
+   */
+  val SINGLE_ID = PREFIX + "ID"
+
+  def isSingleId(parameterName: String) =
+    parameterName.startsWith(SINGLE_ID) && parameterName.drop(SINGLE_ID.length).forall(Character.isDigit)
+
+  private val clauses = Set("start", "match", "where", "with", "return", "order", "skip", "limit",
+    "create", "relate", "set", "delete", "foreach")
+
+  private val entityIds = """^\(\s*(\d+(?:\s*,\s*\d+)*)\s*\)""".r
+  private val versionPrefix = """(?si)^\s*cypher\s.*""".r
+
+  /**
+   * @return the rewritten query and the values of the parameters it introduced, or None if there was
+   *         nothing to rewrite
+   */
+  def apply(query: String): Option[(String, Map[String, Any])] = query match {
+    case versionPrefix() => None
+    case _               => new Rewriter(query).rewrite()
+  }
+
+  private class Rewriter(query: String) {
+    val out = new StringBuilder(query.length)
+    val params = mutable.Map[String, Any]()
+    var clause = ""
+    var parens = 0
+    var brackets = 0
+    var curlies = 0
+    var i = 0
+
+    def rewrite(): Option[(String, Map[String, Any])] = {
+      while (i < query.length) {
+        val c = query.charAt(i)
+        if (c == '`') {
+          copyUntil(query.indexOf('`', i + 1))
+        } else if (c == '"' || c == '\'') {
+          if (!string(c)) return None
+        } else if (c == '/' && clause == "where" && out.toString().trim.endsWith("=~")) {
+          copyUntil(query.indexOf('/', i + 1))
+        } else if (Character.isLetter(c) || c == '_') {
+          word()
+        } else if (Character.isDigit(c)) {
+          number()
+        } else {
+          c match {
+            case '(' => parens += 1
+            case ')' => parens -= 1
+            case '[' => brackets += 1
+            case ']' => brackets -= 1
+            case '{' => curlies += 1
+            case '}' => curlies -= 1
+            case _   =>
+          }
+          out.append(c)
+          i += 1
+        }
+      }
+
+      if (params.isEmpty) None else Some((out.result(), params.toMap))
+    }
+
+    private def copyUntil(end: Int) {
+      val stop = if (end < 0) query.length else end + 1
+      out.append(query.substring(i, stop))
+      i = stop
+    }
+
+    private def parameter(value: Any, kind: String) {
+      val name = PREFIX + kind + params.size
+      params(name) = value
+      out.append("{`").append(name).append("`}")
+    }
+
+    private def topLevel = brackets == 0 && curlies == 0
+
+    private def string(quote: Char): Boolean = {
+      var end = i + 1
+      var escaped = false
+      while (end < query.length && query.charAt(end) != quote) {
+        if (query.charAt(end) == '\\') {
+          escaped = true
+          end += 1
+        }
+        end += 1
+      }
+
+      if (end >= query.length)
+        return false // Unterminated; let the parser explain what is wrong
+
+      if (!escaped && topLevel && (clause == "where" || clause == "start"))
+        parameter(query.substring(i + 1, end), "STRING")
+      else
+        out.append(query.substring(i, end + 1))
+      i = end + 1
+      true
+    }
+
+    private def word() {
+      var end = i
+      while (end < query.length && (Character.isLetterOrDigit(query.charAt(end)) || query.charAt(end) == '_'))
+        end += 1
+      val w = query.substring(i, end)
+      out.append(w)
+      i = end
+
+      val lower = w.toLowerCase
+      if (parens == 0 && topLevel && clauses.contains(lower))
+        clause = lower
+      else if (clause == "start" && (lower == "node" || lower == "rel" || lower == "relationship"))
+        ids()
+    }
+
+    private def ids() {
+      entityIds.findPrefixMatchOf(query.substring(i)) match {
+        case Some(m) =>
+          out.append("(")
+          val ids = m.group(1).split(",").map(_.trim.toLong).toList
+          parameter(ids, if (ids.size == 1) "ID" else "IDS")
+          out.append(")")
+          i += m.end
+        case None    =>
+      }
+    }
+
+    private def number() {
+      var end = i
+      while (end < query.length && Character.isDigit(query.charAt(end)))
+        end += 1
+      if (end + 1 < query.length && query.charAt(end) == '.' && Character.isDigit(query.charAt(end + 1))) {
+        end += 1
+        while (end < query.length && Character.isDigit(query.charAt(end)))
+          end += 1
+      }
+
+      val text = query.substring(i, end)
+      val before = if (i > 0) query.charAt(i - 1) else ' '
+      val after = if (end < query.length) query.charAt(end) else ' '
+      val standsAlone = before != '-' && before != '.' && !Character.isLetterOrDigit(after) && after != '_' && after != '.'
+
+      if (standsAlone && topLevel && clause == "where")
+        parameter(if (text.contains(".")) text.toDouble else text.toLong, "NUMBER")
+      else if (standsAlone && topLevel && (clause == "skip" || clause == "limit") && text.length < 10)
+        parameter(text.toInt, "INT")
+      else
+        out.append(text)
+      i = end
+    }
+  }
+}
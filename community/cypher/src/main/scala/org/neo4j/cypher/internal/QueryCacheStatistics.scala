@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal
+
+import java.util.concurrent.atomic.{AtomicLongArray, AtomicLong}
+import java.lang.management.ManagementFactory
+import javax.management.{StandardMBean, ObjectName}
+import java.util.Hashtable
+import org.neo4j.kernel.GraphDatabaseAPI
+import org.neo4j.graphdb.GraphDatabaseService
+import org.neo4j.graphdb.event.{ErrorState, KernelEventHandler}
+import org.neo4j.graphdb.event.KernelEventHandler.ExecutionOrder
+import collection.mutable
+
+/**
+ * Management interface for the Cypher execution plan cache of a database.
+ */
+trait QueryCacheMBean {
+  def getHits: Long
+
+  def getMisses: Long
+
+  def getEvictions: Long
+
+  def getTotalPlanningTimeMillis: Long
+
+  /**
+   * Upper bounds, in milliseconds, of the buckets of the planning time histogram. The last bucket has no bound.
+   */
+  def getPlanningTimeBucketsMillis: Array[Long]
+
+  def getPlanningTimeHistogram: Array[Long]
+}
+
+/**
+ * Plan cache statistics, shared by all the execution engines of one database. The hits, misses and evictions are
+ * counted by the plan caches themselves, which are all handed these counters.
+ */
+class QueryCacheStatistics extends CacheCounters with QueryCacheMBean {
+  private val planningNanos = new AtomicLong()
+  private val histogram = new AtomicLongArray(QueryCacheStatistics.BUCKETS.length + 1)
+
+  def planning[T](f: => T): T = {
+    val start = System.nanoTime()
+    val result = f
+    val elapsed = System.nanoTime() - start
+    planningNanos.addAndGet(elapsed)
+    histogram.incrementAndGet(QueryCacheStatistics.bucketOf(elapsed / 1000000))
+    result
+  }
+
+  def getHits = hits
+
+  def getMisses = misses
+
+  def getEvictions = evictions
+
+  def getTotalPlanningTimeMillis = planningNanos.get() / 1000000
+
+  def getPlanningTimeBucketsMillis = QueryCacheStatistics.BUCKETS.clone()
+
+  def getPlanningTimeHistogram = (0 until histogram.length()).map(i => histogram.get(i)).toArray
+}
+
+object QueryCacheStatistics {
+  val BUCKETS = Array[Long](1, 10, 100, 1000)
+  val BEAN_NAME = "Cypher Query Cache"
+
+  private val statistics = mutable.Map[GraphDatabaseService, QueryCacheStatistics]()
+
+  def bucketOf(millis: Long): Int = {
+    val bucket = BUCKETS.indexWhere(millis < _)
+    if (bucket == -1) BUCKETS.length else bucket
+  }
+
+  /**
+   * Returns the statistics of the given database, registering them as an MBean the first time they are asked for.
+   * The MBean goes away when the database shuts down.
+   */
+  def of(graph: GraphDatabaseService): QueryCacheStatistics = graph match {
+    case db: GraphDatabaseAPI => statistics.synchronized {
+      statistics.getOrElseUpdate(db, register(db, new QueryCacheStatistics))
+    }
+    case _                    => new QueryCacheStatistics
+  }
+
+  private def register(db: GraphDatabaseAPI, stats: QueryCacheStatistics): QueryCacheStatistics = {
+    val properties = new Hashtable[String, String]()
+    properties.put("instance", "kernel#" + db.getKernelData.instanceId())
+    properties.put("name", BEAN_NAME)
+    val name = new ObjectName("org.neo4j", properties)
+    val server = ManagementFactory.getPlatformMBeanServer
+
+    try {
+      server.registerMBean(new StandardMBean(stats, classOf[QueryCacheMBean]), name)
+    } catch {
+      case e: Exception => // Monitoring is best effort, planning still works without the bean
+    }
+
+    db.registerKernelEventHandler(new KernelEventHandler {
+      def beforeShutdown() {
+        statistics.synchronized {
+          statistics.remove(db)
+        }
+        try {
+          server.unregisterMBean(name)
+        } catch {
+          case e: Exception =>
+        }
+      }
+
+      def getResource: AnyRef = null
+
+      def kernelPanic(error: ErrorState) {}
+
+      def orderComparedTo(other: KernelEventHandler) = ExecutionOrder.DOESNT_MATTER
+    })
+    stats
+  }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal
+
+import commands.expressions.{Expression, Identifier}
+import pipes.{PipeWithSource, Pipe}
+import collection.mutable.{Map => MutableMap, LinkedHashMap}
+import collection.Iterator
+
+object Slots {
+  val empty = new Slots(Seq.empty)
+
+  /**
+   * For pipes built without a SlotAllocator, they read and write their identifiers by name
+   */
+  val unresolved: String => Int = _ => -1
+
+  /**
+   * Gives every identifier known by any of the pipes in the plan a slot of its own
+   */
+  def of(pipe: Pipe): Slots = {
+    def identifiers(p: Pipe): Seq[String] = p match {
+      case p: PipeWithSource => identifiers(p.source) ++ p.symbols.keys
+      case p                 => p.symbols.keys
+    }
+
+    new Slots(identifiers(pipe).distinct)
+  }
+
+  /**
+   * Keeps the slots handed out while the plan was built, and gives the rest of the identifiers known by the pipes
+   * the slots after those
+   */
+  def of(pipe: Pipe, allocated: SlotAllocator): Slots = new Slots((allocated.identifiers ++ of(pipe).identifiers).distinct)
+}
+
+/**
+ * Hands out slots while a plan is being built, so that expressions and pipes get integer offsets into the rows
+ * instead of looking their identifiers up by name for every row.
+ */
+class SlotAllocator {
+  private val allocated = LinkedHashMap[String, Int]()
+
+  def slotOf(identifier: String): Int = allocated.getOrElseUpdate(identifier, allocated.size)
+
+  /**
+   * Rewrites every identifier read by an expression to read its slot
+   */
+  val resolve: Expression => Expression = {
+    case Identifier(name) => Identifier(name, slotOf(name))
+    case e                => e
+  }
+
+  def identifiers: Seq[String] = allocated.keys.toList
+}
+
+/**
+ * The layout of the rows of an execution plan. Identifiers are resolved to array slots once, when the plan is built,
+ * so that copying a row between pipes is an array copy instead of a rehash of every identifier.
+ */
+class Slots(val identifiers: Seq[String]) {
+  private val index: Map[String, Int] = identifiers.zipWithIndex.toMap
+  private val names: Array[String] = identifiers.toArray
+
+  def size: Int = identifiers.size
+
+  def slotOf(key: String): Int = index.getOrElse(key, -1)
+
+  /**
+   * Checks an offset resolved when the plan was built against this layout, rows made by other means are read by name
+   */
+  def isSlotOf(slot: Int, key: String): Boolean = slot >= 0 && slot < names.length && names(slot) == key
+
+  def newMap: SlottedMap = new SlottedMap(this, SlottedMap.emptyValues(size), null)
+
+  override def toString = identifiers.mkString("Slots(", ", ", ")")
+}
+
+object SlottedMap {
+  private[internal] object Unset
+
+  private[internal] def emptyValues(size: Int): Array[Any] = {
+    val values = new Array[Any](size)
+    java.util.Arrays.fill(values.asInstanceOf[Array[AnyRef]], Unset)
+    values
+  }
+}
+
+/**
+ * A row laid out by Slots. Identifiers the plan didn't know about when it was built, such as the ones introduced by
+ * a few pipes for their own use, end up in an overflow map.
+ */
+final class SlottedMap(val slots: Slots, values: Array[Any], private var overflow: MutableMap[String, Any])
+  extends MutableMap[String, Any] {
+
+  import SlottedMap.Unset
+
+  def get(key: String): Option[Any] = {
+    val slot = slots.slotOf(key)
+    if (slot >= 0)
+      getSlot(slot)
+    else if (overflow == null)
+      None
+    else
+      overflow.get(key)
+  }
+
+  def getSlot(slot: Int): Option[Any] = {
+    val value = values(slot)
+    if (value.asInstanceOf[AnyRef] eq Unset) None else Some(value)
+  }
+
+  def getSlotOrElse(slot: Int, default: => Any): Any = {
+    val value = values(slot)
+    if (value.asInstanceOf[AnyRef] eq Unset) default else value
+  }
+
+  def setSlot(slot: Int, value: Any) {
+    values(slot) = value
+  }
+
+  def iterator: Iterator[(String, Any)] = {
+    val inSlots = values.iterator.zipWithIndex.collect {
+      case (value, slot) if !(value.asInstanceOf[AnyRef] eq Unset) => slots.identifiers(slot) -> value
+    }
+
+    if (overflow == null) inSlots else inSlots ++ overflow.iterator
+  }
+
+  override def size = {
+    var count = 0
+    var slot = 0
+    while (slot < values.length) {
+      if (!(values(slot).asInstanceOf[AnyRef] eq Unset)) count += 1
+      slot += 1
+    }
+    if (overflow == null) count else count + overflow.size
+  }
+
+  def +=(kv: (String, Any)) = {
+    val slot = slots.slotOf(kv._1)
+    if (slot >= 0) {
+      values(slot) = kv._2
+    } else {
+      if (overflow == null) overflow = new collection.mutable.OpenHashMap[String, Any]()
+      overflow += kv
+    }
+    this
+  }
+
+  def -=(key: String) = {
+    val slot = slots.slotOf(key)
+    if (slot >= 0)
+      values(slot) = Unset
+    else if (overflow != null)
+      overflow -= key
+    this
+  }
+
+  override def empty = slots.newMap
+
+  override def clone(): SlottedMap =
+    new SlottedMap(slots, values.clone(), if (overflow == null) null else overflow.clone())
+}
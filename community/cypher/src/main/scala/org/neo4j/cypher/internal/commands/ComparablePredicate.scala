@@ -28,10 +28,9 @@ import org.neo4j.cypher.internal.pipes.QueryState
 abstract sealed class ComparablePredicate(left: Expression, right: Expression) extends Predicate with Comparer {
   def compare(comparisonResult: Int): Boolean
 
-  def isMatch(m: ExecutionContext)(implicit state: QueryState): Boolean = {
-    val l: Any = left(m)
-    val r: Any = right(m)
+  def isMatch(m: ExecutionContext)(implicit state: QueryState): Boolean = matches(left(m), right(m))
 
+  def matches(l: Any, r: Any): Boolean = {
     val comparisonResult: Int = compare(l, r)
 
     compare(comparisonResult)
@@ -54,14 +53,11 @@ abstract sealed class ComparablePredicate(left: Expression, right: Expression) e
 
 case class Equals(a: Expression, b: Expression) extends Predicate with Comparer {
 
-  def isMatch(m: ExecutionContext)(implicit state: QueryState): Boolean = {
-    val a1 = a(m)
-    val b1 = b(m)
+  def isMatch(m: ExecutionContext)(implicit state: QueryState): Boolean = matches(a(m), b(m))
 
-    (a1, b1) match {
-      case (IsCollection(l), IsCollection(r)) => l == r
-      case _                              => a1 == b1
-    }
+  def matches(a1: Any, b1: Any): Boolean = (a1, b1) match {
+    case (IsCollection(l), IsCollection(r)) => l == r
+    case _                              => a1 == b1
   }
 
   def atoms = Seq(this)
@@ -26,10 +26,9 @@ import org.neo4j.cypher.internal.ExecutionContext
 import org.neo4j.cypher.internal.pipes.QueryState
 
 case class Add(a: Expression, b: Expression) extends Expression with TypeSafeMathSupport {
-  def apply(ctx: ExecutionContext)(implicit state: QueryState) = {
-    val aVal = a(ctx)
-    val bVal = b(ctx)
+  def apply(ctx: ExecutionContext)(implicit state: QueryState) = add(a(ctx), b(ctx))
 
+  def add(aVal: Any, bVal: Any): Any = {
     (aVal, bVal) match {
       case (null, _)                          => null
       case (_, null)                          => null
@@ -75,14 +75,11 @@ abstract class Arithmetics(left: Expression, right: Expression)
     throw new CypherTypeException("Don't know how to " + this + " `" + bVal + "` with `" + aVal + "`")
   }
 
-  def apply(ctx: ExecutionContext)(implicit state: QueryState) = {
-    val aVal = left(ctx)
-    val bVal = right(ctx)
+  def apply(ctx: ExecutionContext)(implicit state: QueryState) = calculate(left(ctx), right(ctx))
 
-    (aVal, bVal) match {
-      case (x: Number, y: Number) => calc(x, y)
-      case _ => throwTypeError(bVal, aVal)
-    }
+  def calculate(aVal: Any, bVal: Any): Any = (aVal, bVal) match {
+    case (x: Number, y: Number) => calc(x, y)
+    case _ => throwTypeError(bVal, aVal)
   }
 
   def calc(a: Number, b: Number): Any
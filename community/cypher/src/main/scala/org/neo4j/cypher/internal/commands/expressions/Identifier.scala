@@ -22,18 +22,39 @@ package org.neo4j.cypher.internal.commands.expressions
 import org.neo4j.graphdb.NotFoundException
 import org.neo4j.cypher.internal.symbols._
 import org.neo4j.helpers.ThisShouldNotHappenError
-import org.neo4j.cypher.internal.ExecutionContext
+import org.neo4j.cypher.internal.{SlottedMap, ExecutionContext}
 import org.neo4j.cypher.internal.pipes.QueryState
 
 object Identifier {
+  def apply(entityName: String): Identifier = new Identifier(entityName, -1)
+
+  def apply(entityName: String, slot: Int): Identifier = new Identifier(entityName, slot)
+
+  def unapply(identifier: Identifier): Option[String] = Some(identifier.entityName)
+
   def isNamed(x: String) = !notNamed(x)
 
   def notNamed(x: String) = x.startsWith("  UNNAMED")
 }
 
-case class Identifier(entityName: String) extends Expression with Typed {
-  def apply(ctx: ExecutionContext)(implicit state: QueryState): Any =
-    ctx.getOrElse(entityName, throw new NotFoundException("Unknown identifier `%s`.".format(entityName)))
+/**
+ * The slot is resolved by the SlotAllocator when the plan is built. It takes no part in equality, so that
+ * identifiers match the same whether they have been resolved or not.
+ */
+class Identifier(val entityName: String, val slot: Int) extends Expression with Typed {
+  def apply(ctx: ExecutionContext)(implicit state: QueryState): Any = ctx.m match {
+    case slotted: SlottedMap if slotted.slots.isSlotOf(slot, entityName) => slotted.getSlotOrElse(slot, notFound)
+    case _                                                                => ctx.getOrElse(entityName, notFound)
+  }
+
+  private def notFound = throw new NotFoundException("Unknown identifier `%s`.".format(entityName))
+
+  override def equals(other: Any) = other match {
+    case that: Identifier => entityName == that.entityName
+    case _                => false
+  }
+
+  override def hashCode() = entityName.hashCode
 
   override def toString(): String = entityName
 
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.executionplan
+
+import org.neo4j.cypher.internal.commands._
+import org.neo4j.cypher.internal.commands.expressions.{ParameterExpression, Literal}
+import org.neo4j.cypher.internal.LiteralParameterizer
+import org.neo4j.cypher.internal.pipes.matching.{EndPoint, VariableLengthStepTrail, SingleStepTrail, Trail}
+import org.neo4j.graphdb.{Direction, GraphDatabaseService}
+import org.neo4j.kernel.GraphDatabaseAPI
+import org.neo4j.kernel.impl.nioneo.store.StoreStatistics
+
+/**
+ * Estimates how many rows start items and traversals produce, using the statistics the store keeps. Without
+ * statistics every start item counts as one row and every step as one relationship, which makes all the
+ * alternatives look alike.
+ */
+class Cardinality(statistics: Option[StoreStatistics], typeId: String => Option[Int]) {
+  def hasStatistics = statistics.nonEmpty
+
+  def startRows(item: StartItem): Double = (item, statistics) match {
+    case (NodeById(_, Literal(ids: Seq[_])), _)                           => ids.size
+    case (RelationshipById(_, Literal(ids: Seq[_])), _)                   => ids.size
+    case (NodeById(_, ParameterExpression(name)), _)                      => idParameterRows(name)
+    case (RelationshipById(_, ParameterExpression(name)), _)              => idParameterRows(name)
+    case (NodeByIndex(_, idx, Literal(key), _), Some(s))                  => indexHits(s, idx, key.toString, 10)
+    case (RelationshipByIndex(_, idx, Literal(key), _), Some(s))          => indexHits(s, idx, key.toString, 10)
+    case (NodeByIndexQuery(_, idx, _), Some(s))                           => indexHits(s, idx, Cardinality.QUERY, 100)
+    case (RelationshipByIndexQuery(_, idx, _), Some(s))                   => indexHits(s, idx, Cardinality.QUERY, 100)
+    case (AllNodes(_), Some(s))                                           => s.getNodeCount
+    case (AllRelationships(_), Some(s))                                   => s.getRelationshipCount
+    case _                                                                => 1
+  }
+
+  /**
+   * The number of relationships of any of the given types, in the given direction, that a node is expected to have.
+   */
+  def fanOut(types: Seq[String], dir: Direction): Double = statistics match {
+    case None                      => 1
+    case Some(s) if types.isEmpty  => s.getAverageDegree(dir)
+    case Some(s)                   => types.map(t => typeId(t).map(s.getAverageDegree(_, dir)).getOrElse(0.0)).sum
+  }
+
+  /**
+   * The number of paths matching the trail, starting from the rows of the given start item.
+   */
+  def trailRows(trail: Trail, start: Option[StartItem]): Double =
+    trail.asSeq.foldLeft(start.map(startRows).getOrElse(1.0)) {
+      case (rows, step: SingleStepTrail)         => rows * fanOut(step.typ, step.dir)
+      case (rows, step: VariableLengthStepTrail) => rows * varLengthFanOut(fanOut(step.typ, step.dir), step.min, step.max)
+      case (rows, _: EndPoint)                   => rows
+    }
+
+  private def varLengthFanOut(fanOut: Double, min: Int, max: Option[Int]): Double =
+    (min to max.getOrElse(min + 2)).map(hops => math.pow(fanOut, hops)).sum.min(Cardinality.MAX_ROWS)
+
+  /*
+  Plans are shared by all the values a parameter takes, so we can't look at the value. Literal ids have been
+  turned into parameters that say whether they were a single id, anything else is assumed to be several.
+  */
+  private def idParameterRows(name: String): Double =
+    if (LiteralParameterizer.isSingleId(name)) 1 else Cardinality.ID_PARAMETER_ROWS
+
+  private def indexHits(s: StoreStatistics, idx: String, key: String, default: Double): Double = {
+    val hits = s.getIndexHits(idx, key)
+    if (hits < 0) default else hits
+  }
+}
+
+object Cardinality {
+  /**
+   * The key index statistics are kept under for lookups by query rather than by key and value.
+   */
+  val QUERY = "*"
+
+  val MAX_ROWS = 1e12
+
+  /**
+   * The number of ids a parameter given to a START lookup is expected to hold.
+   */
+  val ID_PARAMETER_ROWS = 10
+
+  val unknown = new Cardinality(None, _ => None)
+
+  def apply(graph: GraphDatabaseService): Cardinality = statistics(graph) match {
+    case Some(s) =>
+      val types = graph.asInstanceOf[GraphDatabaseAPI].getNodeManager.getRelationshipTypeHolder
+      new Cardinality(Some(s), name => Option(types.getIdFor(name)).map(_.intValue()))
+    case None    => unknown
+  }
+
+  def statistics(graph: GraphDatabaseService): Option[StoreStatistics] = graph match {
+    case db: GraphDatabaseAPI if db.getXaDataSourceManager != null =>
+      Option(db.getXaDataSourceManager.getNeoStoreDataSource).map(_.getNeoStore.getStatistics)
+    case _                                                         => None
+  }
+
+  /**
+   * Passes the number of elements of the iterator to f once it has been exhausted.
+   */
+  def counting[T](inner: Iterator[T])(f: Long => Unit): Iterator[T] = new Iterator[T] {
+    private var count = 0L
+    private var reported = false
+
+    def hasNext = {
+      val result = inner.hasNext
+      if (!result && !reported) {
+        reported = true
+        f(count)
+      }
+      result
+    }
+
+    def next() = {
+      count += 1
+      inner.next()
+    }
+  }
+}
@@ -28,14 +28,16 @@ import internal.pipes.Pipe
 import internal.pipes.PipeDecorator
 import internal.pipes.QueryState
 import internal.profiler.Profiler
-import internal.{ExecutionContext, ClosingIterator}
+import internal.{SlotAllocator, Slots, ExecutionContext, ClosingIterator}
 import internal.commands._
 import internal.mutation.{CreateNode, CreateRelationship}
 import internal.spi.gdsimpl.GDSBackedQueryContext
 import internal.symbols.{NodeType, RelationshipType, SymbolTable}
-import org.neo4j.kernel.InternalAbstractGraphDatabase
+import org.neo4j.kernel.{GraphDatabaseAPI, InternalAbstractGraphDatabase}
 import org.neo4j.graphdb.GraphDatabaseService
+import org.neo4j.graphdb.factory.GraphDatabaseSettings
 import scala.Some
+import collection.JavaConverters._
 
 class ExecutionPlanImpl(inputQuery: Query, graph: GraphDatabaseService) extends ExecutionPlan with PatternGraphBuilder {
   val executionPlan: (Boolean, Map[String, Any], Time) => ExecutionResult = prepareExecutionPlan()
@@ -46,9 +48,33 @@ class ExecutionPlanImpl(inputQuery: Query, graph: GraphDatabaseService) extends
 
   lazy val lockManager = graph.asInstanceOf[InternalAbstractGraphDatabase].getLockManager
 
+  lazy val spillThreshold: Int = graph match {
+    case db: InternalAbstractGraphDatabase => db.getConfig.get(GraphDatabaseSettings.cypher_spill_threshold)
+    case _                                 => Int.MaxValue
+  }
+
+  lazy val compileExpressions: Boolean = graph match {
+    case db: InternalAbstractGraphDatabase => db.getConfig.get(GraphDatabaseSettings.cypher_compile_expressions)
+    case _                                 => false
+  }
+
+  lazy val cacheLookups: () => (Long, Long) = graph match {
+    case db: GraphDatabaseAPI =>
+      val caches = db.getNodeManager.caches().asScala
+      () => (caches.map(_.hitCount()).sum, caches.map(_.missCount()).sum)
+    case _                    => Profiler.NO_CACHES
+  }
+
+  lazy val parallelism: Int = graph match {
+    case db: InternalAbstractGraphDatabase => db.getConfig.get(GraphDatabaseSettings.cypher_parallelism)
+    case _                                 => 1
+  }
+
   private def prepareExecutionPlan(): (Boolean, Map[String, Any], Time) => ExecutionResult = {
     var continue = true
-    var planInProgress = ExecutionPlanInProgress(PartiallySolvedQuery(inputQuery), new ParameterPipe(), containsTransaction = false)
+    val slotAllocator = new SlotAllocator
+    val query = resolveSlots(PartiallySolvedQuery(inputQuery), slotAllocator)
+    var planInProgress = ExecutionPlanInProgress(query, new ParameterPipe(), containsTransaction = false, slots = slotAllocator)
     checkFirstQueryPattern(planInProgress)
 
     while (continue) {
@@ -79,14 +105,18 @@ class ExecutionPlanImpl(inputQuery: Query, graph: GraphDatabaseService) extends
     val columns = getQueryResultColumns(inputQuery, planInProgress.pipe.symbols)
 
     val pipe = planInProgress.pipe
+    val slots = Slots.of(pipe, slotAllocator)
 
     if (planInProgress.containsTransaction) {
-      getEagerReadWriteQuery(pipe, columns)
+      getEagerReadWriteQuery(pipe, columns, slots)
     } else {
-      getLazyReadonlyQuery(planInProgress.pipe, columns)
+      getLazyReadonlyQuery(pipe, columns, slots)
     }
   }
 
+  private def resolveSlots(query: PartiallySolvedQuery, slots: SlotAllocator): PartiallySolvedQuery =
+    query.rewrite(slots.resolve).copy(tail = query.tail.map(resolveSlots(_, slots)))
+
   private def checkFirstQueryPattern(planInProgress: ExecutionPlanInProgress) {
     val startPoints = getStartPointsFromPlan(planInProgress.query)
     validatePattern(startPoints, planInProgress.query.patterns.map(_.token))
@@ -131,16 +161,16 @@ class ExecutionPlanImpl(inputQuery: Query, graph: GraphDatabaseService) extends
     columns
   }
 
-  private def getLazyReadonlyQuery(pipe: Pipe, columns: List[String]): (Boolean, Map[String, Any], Time) => ExecutionResult =
+  private def getLazyReadonlyQuery(pipe: Pipe, columns: List[String], slots: Slots): (Boolean, Map[String, Any], Time) => ExecutionResult =
     (profile: Boolean, params: Map[String, Any], time: Time) => {
-      val (state, results, planDescriptor) = prepareStateAndResult(params, pipe, profile, time)
+      val (state, results, planDescriptor) = prepareStateAndResult(params, pipe, profile, time, slots)
 
       new PipeExecutionResult(results, columns, state, planDescriptor)
   }
 
-  private def getEagerReadWriteQuery(pipe: Pipe, columns: List[String]): (Boolean, Map[String, Any], Time) => ExecutionResult = {
+  private def getEagerReadWriteQuery(pipe: Pipe, columns: List[String], slots: Slots): (Boolean, Map[String, Any], Time) => ExecutionResult = {
     val func = (profile: Boolean, params: Map[String, Any], time: Time) => {
-      val (state, results, planDescriptor) = prepareStateAndResult(params, pipe, profile, time)
+      val (state, results, planDescriptor) = prepareStateAndResult(params, pipe, profile, time, slots)
 
       new EagerPipeExecutionResult(results, columns, state, graph, planDescriptor)
     }
@@ -148,15 +178,21 @@ class ExecutionPlanImpl(inputQuery: Query, graph: GraphDatabaseService) extends
     func
   }
 
-  private def prepareStateAndResult(params: Map[String, Any], pipe: Pipe, profile: Boolean, time: Time): (QueryState, Iterator[ExecutionContext], () => PlanDescription) = {
-    val tx = graph.beginTx()
+  private def prepareStateAndResult(params: Map[String, Any], pipe: Pipe, profile: Boolean, time: Time, slots: Slots): (QueryState, Iterator[ExecutionContext], () => PlanDescription) = {
+    // Other threads can't see what an enclosing transaction has changed, so such queries stay on this thread
+    val parallel = parallelism > 1 && (graph match {
+      case db: GraphDatabaseAPI => db.getTxManager.getTransaction == null
+      case _                    => false
+    })
 
+    val tx = graph.beginTx()
 
     try {
       val gdsContext = new GDSBackedQueryContext(graph)
 
-      val decorator: PipeDecorator = if (profile) new Profiler() else NullDecorator
-      val state = new QueryState(graph, gdsContext, params, decorator, None, time=time)
+      val decorator: PipeDecorator = if (profile) new Profiler(cacheLookups) else NullDecorator
+      val state = new QueryState(graph, gdsContext, params, decorator, None, time = time, slots = slots,
+        spillThreshold = spillThreshold, parallel = parallel)
       val results = pipe.createResults(state)
       val closingIterator = new ClosingIterator[ExecutionContext](results, state.query, tx)
       val descriptor = () => decorator.decorate(pipe.executionPlanDescription, closingIterator.isEmpty)
@@ -196,9 +232,9 @@ The Neo4j Team""")
     new NodeByIdBuilder(graph),
     new IndexQueryBuilder(graph),
     new GraphGlobalStartBuilder(graph),
-    new FilterBuilder,
+    new FilterBuilder(compileExpressions),
     new NamedPathBuilder,
-    new ExtractBuilder,
+    new ExtractBuilder(compileExpressions),
     new MatchBuilder,
     new SortBuilder,
     new ColumnFilterBuilder,
@@ -210,6 +246,8 @@ The Neo4j Team""")
     new UpdateActionBuilder(graph),
     new EmptyResultBuilder,
     new TraversalMatcherBuilder(graph),
+    new NodeHashJoinBuilder(graph),
+    new ParallelBuilder(graph, parallelism),
     new TopPipeBuilder,
     new DistinctBuilder
   )
@@ -0,0 +1,236 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.executionplan
+
+import org.neo4j.cypher.internal.commands._
+import expressions._
+import org.neo4j.cypher.internal.ExecutionContext
+import org.neo4j.cypher.internal.pipes.QueryState
+import org.neo4j.cypher.internal.symbols.{CypherType, SymbolTable}
+import org.neo4j.cypher.internal.helpers.IsMap
+import org.neo4j.cypher.EntityNotFoundException
+import org.neo4j.graphdb.{PropertyContainer, Relationship, Node}
+import org.neo4j.helpers.ThisShouldNotHappenError
+
+/**
+ * Compiles expression and predicate trees into trees of closures, each specialised for the node it was made from.
+ * The closures skip most of the per row pattern matching of the interpreter, read properties of nodes and
+ * relationships without wrapping them in maps, and add and compare integral and floating point numbers as
+ * primitives. Parts of a tree the compiler doesn't know about are left to the interpreter.
+ */
+object ExpressionCompiler {
+
+  abstract class Code {
+    def apply(ctx: ExecutionContext, state: QueryState): Any
+  }
+
+  abstract class Test {
+    def apply(ctx: ExecutionContext, state: QueryState): Boolean
+  }
+
+  def compile(predicate: Predicate): Predicate = predicate match {
+    case p: CompiledPredicate => p
+    case p                    => CompiledPredicate(p, test(p))
+  }
+
+  def compile(expression: Expression): Expression = expression match {
+    case e: CompiledExpression => e
+    case p: Predicate          => compile(p)
+    case e                     => CompiledExpression(e, code(e))
+  }
+
+  private def code(expression: Expression): Code = expression match {
+    case Literal(v) => new Code {
+      def apply(ctx: ExecutionContext, state: QueryState) = v
+    }
+
+    case Property(mapExpr, key) =>
+      val map = code(mapExpr)
+      new Code {
+        def apply(ctx: ExecutionContext, state: QueryState) = map(ctx, state) match {
+          case null            => null
+          case n: Node         => existing(state.query.nodeOps.getProperty(n, key), key, n)
+          case r: Relationship => existing(state.query.relationshipOps.getProperty(r, key), key, r)
+          case IsMap(mapFunc)  => mapFunc(state.query).apply(key)
+          case _               => throw new ThisShouldNotHappenError("Andres", "Need something with properties")
+        }
+      }
+
+    case add@Add(a, b) =>
+      val left = code(a)
+      val right = code(b)
+      new Code {
+        def apply(ctx: ExecutionContext, state: QueryState) = {
+          val x = left(ctx, state)
+          val y = right(ctx, state)
+          if (x.isInstanceOf[java.lang.Long] && y.isInstanceOf[java.lang.Long])
+            x.asInstanceOf[Long] + y.asInstanceOf[Long]
+          else if (x.isInstanceOf[java.lang.Integer] && y.isInstanceOf[java.lang.Integer])
+            x.asInstanceOf[Int] + y.asInstanceOf[Int]
+          else if (x.isInstanceOf[java.lang.Double] && y.isInstanceOf[java.lang.Double])
+            x.asInstanceOf[Double] + y.asInstanceOf[Double]
+          else
+            add.add(x, y)
+        }
+      }
+
+    case arithmetics: Arithmetics =>
+      val Seq(left, right) = arithmetics.children.map(child => code(child.asInstanceOf[Expression]))
+      new Code {
+        def apply(ctx: ExecutionContext, state: QueryState) = arithmetics.calculate(left(ctx, state), right(ctx, state))
+      }
+
+    case p: Predicate =>
+      val t = test(p)
+      new Code {
+        def apply(ctx: ExecutionContext, state: QueryState) = t(ctx, state)
+      }
+
+    case e => new Code {
+      def apply(ctx: ExecutionContext, state: QueryState) = e(ctx)(state)
+    }
+  }
+
+  private def test(predicate: Predicate): Test = predicate match {
+    case And(a, b) =>
+      val left = test(a)
+      val right = test(b)
+      new Test {
+        def apply(ctx: ExecutionContext, state: QueryState) = left(ctx, state) && right(ctx, state)
+      }
+
+    case Or(a, b) =>
+      val left = test(a)
+      val right = test(b)
+      new Test {
+        def apply(ctx: ExecutionContext, state: QueryState) = left(ctx, state) || right(ctx, state)
+      }
+
+    case Not(a) =>
+      val inner = test(a)
+      new Test {
+        def apply(ctx: ExecutionContext, state: QueryState) = !inner(ctx, state)
+      }
+
+    case equals@Equals(a, b) =>
+      val left = code(a)
+      val right = code(b)
+      new Test {
+        def apply(ctx: ExecutionContext, state: QueryState) = {
+          val x = left(ctx, state)
+          val y = right(ctx, state)
+          // Numbers and strings are never collections, so a plain comparison is all it takes
+          if (x.isInstanceOf[Number] || x.isInstanceOf[String])
+            x == y
+          else
+            equals.matches(x, y)
+        }
+      }
+
+    case comparison: ComparablePredicate =>
+      val Seq(a, b) = comparison.children.map(_.asInstanceOf[Expression])
+      val left = code(a)
+      b match {
+        case Literal(limit: Number) if isIntegral(limit) =>
+          val limitValue = limit.longValue()
+          new Test {
+            def apply(ctx: ExecutionContext, state: QueryState) = {
+              val x = left(ctx, state)
+              if (isIntegral(x))
+                comparison.compare(compareLongs(x.asInstanceOf[Number].longValue(), limitValue))
+              else
+                comparison.matches(x, limit)
+            }
+          }
+
+        case _ =>
+          val right = code(b)
+          new Test {
+            def apply(ctx: ExecutionContext, state: QueryState) = {
+              val x = left(ctx, state)
+              val y = right(ctx, state)
+              if (isIntegral(x) && isIntegral(y))
+                comparison.compare(compareLongs(x.asInstanceOf[Number].longValue(), y.asInstanceOf[Number].longValue()))
+              else if (x.isInstanceOf[java.lang.Double] && y.isInstanceOf[java.lang.Double])
+                comparison.compare(java.lang.Double.compare(x.asInstanceOf[Double], y.asInstanceOf[Double]))
+              else
+                comparison.matches(x, y)
+            }
+          }
+      }
+
+    case p => new Test {
+      def apply(ctx: ExecutionContext, state: QueryState) = p.isMatch(ctx)(state)
+    }
+  }
+
+  private def existing(value: Any, key: String, entity: PropertyContainer): Any =
+    if (value == null)
+      throw new EntityNotFoundException("The property '%s' does not exist on %s".format(key, entity))
+    else
+      value
+
+  private def isIntegral(x: Any) = x.isInstanceOf[java.lang.Long] || x.isInstanceOf[java.lang.Integer] ||
+    x.isInstanceOf[java.lang.Short] || x.isInstanceOf[java.lang.Byte]
+
+  private def compareLongs(x: Long, y: Long): Int = if (x < y) -1 else if (x == y) 0 else 1
+}
+
+/**
+ * An expression evaluated by compiled code. Everything but evaluation is left to the original expression.
+ */
+case class CompiledExpression(original: Expression, code: ExpressionCompiler.Code) extends Expression {
+  def apply(ctx: ExecutionContext)(implicit state: QueryState) = code(ctx, state)
+
+  def rewrite(f: (Expression) => Expression) = original.rewrite(f)
+
+  def children = original.children
+
+  def calculateType(symbols: SymbolTable) = original.getType(symbols)
+
+  override def evaluateType(expectedType: CypherType, symbols: SymbolTable) = original.evaluateType(expectedType, symbols)
+
+  def symbolTableDependencies = original.symbolTableDependencies
+
+  override def toString() = original.toString()
+}
+
+/**
+ * A predicate evaluated by compiled code. Everything but evaluation is left to the original predicate.
+ */
+case class CompiledPredicate(original: Predicate, test: ExpressionCompiler.Test) extends Predicate {
+  def isMatch(m: ExecutionContext)(implicit state: QueryState) = test(m, state)
+
+  def atoms = original.atoms
+
+  def rewrite(f: (Expression) => Expression) = original.rewrite(f)
+
+  def containsIsNull = original.containsIsNull
+
+  def children = original.children
+
+  def assertInnerTypes(symbols: SymbolTable) {
+    original.assertInnerTypes(symbols)
+  }
+
+  def symbolTableDependencies = original.symbolTableDependencies
+
+  override def toString() = original.toString()
+}
@@ -27,6 +27,7 @@ import org.neo4j.helpers.ThisShouldNotHappenError
 import org.neo4j.cypher.internal.pipes.Pipe
 import org.neo4j.cypher.internal.mutation.UpdateAction
 import org.neo4j.cypher.internal.symbols.SymbolTable
+import org.neo4j.cypher.internal.SlotAllocator
 
 
 object PartiallySolvedQuery {
@@ -178,4 +179,5 @@ case class PartiallySolvedQuery(returns: Seq[QueryToken[ReturnColumn]],
 
 }
 
-case class ExecutionPlanInProgress(query: PartiallySolvedQuery, pipe: Pipe, containsTransaction: Boolean=false)
\ No newline at end of file
+case class ExecutionPlanInProgress(query: PartiallySolvedQuery, pipe: Pipe, containsTransaction: Boolean=false,
+                                   slots: SlotAllocator = new SlotAllocator)
\ No newline at end of file
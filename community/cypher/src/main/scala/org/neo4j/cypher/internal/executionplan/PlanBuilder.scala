@@ -37,9 +37,11 @@ trait PlanBuilder {
 // Lower priority wins
 object PlanBuilder extends Enumeration {
   val CachedExpressions = -100
+  val HashJoin = -12
   val TraversalMatcher = -11
   val Filter = -10
   val NamedPath = -9
+  val Parallel = -2
   val Mutation = -1
   val NodeById = -1
   val RelationshipById = -1
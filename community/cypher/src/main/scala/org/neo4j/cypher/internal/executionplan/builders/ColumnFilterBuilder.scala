@@ -57,7 +57,7 @@ class ColumnFilterBuilder extends PlanBuilder {
     }.toMap
 
     val extractedStep = ExtractBuilder.extractIfNecessary(plan, expressionsToExtract)
-    val filterPipe = new ColumnFilterPipe(extractedStep.pipe, returnItems)
+    val filterPipe = new ColumnFilterPipe(extractedStep.pipe, returnItems, plan.slots.slotOf)
 
     val after: SymbolTable = filterPipe.symbols
     val before: SymbolTable = inPipe.symbols
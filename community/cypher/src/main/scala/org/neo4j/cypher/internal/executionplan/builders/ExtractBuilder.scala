@@ -20,16 +20,16 @@
 package org.neo4j.cypher.internal.executionplan.builders
 
 import org.neo4j.cypher.internal.pipes.ExtractPipe
-import org.neo4j.cypher.internal.executionplan.{ExecutionPlanInProgress, PlanBuilder}
+import org.neo4j.cypher.internal.executionplan.{ExpressionCompiler, ExecutionPlanInProgress, PlanBuilder}
 import org.neo4j.cypher.internal.commands.expressions.{Identifier, CachedExpression, Expression}
 
-class ExtractBuilder extends PlanBuilder {
+class ExtractBuilder(compileExpressions: Boolean = false) extends PlanBuilder {
   def apply(plan: ExecutionPlanInProgress) = {
 
     val expressions: Map[String, Expression] =
       plan.query.returns.flatMap(_.token.expressions(plan.pipe.symbols)).toMap
 
-    ExtractBuilder.extractIfNecessary(plan, expressions)
+    ExtractBuilder.extractIfNecessary(plan, expressions, compileExpressions)
   }
 
   def canWorkWith(plan: ExecutionPlanInProgress) = {
@@ -41,7 +41,8 @@ class ExtractBuilder extends PlanBuilder {
 }
 
 object ExtractBuilder {
-  def extractIfNecessary(plan: ExecutionPlanInProgress, expressionsToExtract: Map[String, Expression]): ExecutionPlanInProgress = {
+  def extractIfNecessary(plan: ExecutionPlanInProgress, expressionsToExtract: Map[String, Expression],
+                         compileExpressions: Boolean = false): ExecutionPlanInProgress = {
 
     val expressions = expressionsToExtract.filter {
       case (k, CachedExpression(_, _))      => false
@@ -61,7 +62,13 @@ object ExtractBuilder {
       }
       ))
 
-      val resultPipe = new ExtractPipe(pipe, expressions)
+      val pipeExpressions =
+        if (compileExpressions)
+          expressions.map { case (name, expression) => name -> ExpressionCompiler.compile(expression) }
+        else
+          expressions
+
+      val resultPipe = new ExtractPipe(pipe, pipeExpressions, plan.slots.slotOf)
       val resultQuery = newPsq.copy(extracted = true)
       plan.copy(pipe = resultPipe, query = resultQuery)
     } else {
@@ -41,17 +41,17 @@ package org.neo4j.cypher.internal.executionplan.builders
 
 import org.neo4j.cypher.internal.commands.Predicate
 import org.neo4j.cypher.internal.pipes.{FilterPipe, Pipe}
-import org.neo4j.cypher.internal.executionplan.{ExecutionPlanInProgress, PlanBuilder}
+import org.neo4j.cypher.internal.executionplan.{ExpressionCompiler, ExecutionPlanInProgress, PlanBuilder}
 import org.neo4j.cypher.{CypherException, CypherTypeException, SyntaxException}
 
-class FilterBuilder extends PlanBuilder {
+class FilterBuilder(compileExpressions: Boolean = false) extends PlanBuilder {
   def apply(plan: ExecutionPlanInProgress) = {
     val q = plan.query
     val p = plan.pipe
 
     val item = q.where.filter(pred => yesOrNo(pred, p))
     val pred: Predicate = item.map(_.token).reduce(_ ++ _)
-    val newPipe = new FilterPipe(p, pred)
+    val newPipe = new FilterPipe(p, if (compileExpressions) ExpressionCompiler.compile(pred) else pred)
     val newQuery = q.where.filterNot(item.contains) ++ item.map(_.solve)
 
     plan.copy(
@@ -24,9 +24,11 @@ import org.neo4j.cypher.internal.pipes.{RelationshipStartPipe, NodeStartPipe, Pi
 import org.neo4j.graphdb.GraphDatabaseService
 import collection.JavaConverters._
 import org.neo4j.tooling.GlobalGraphOperations
-import org.neo4j.cypher.internal.executionplan.{ExecutionPlanInProgress, PartiallySolvedQuery, PlanBuilder}
+import org.neo4j.cypher.internal.executionplan.{Cardinality, ExecutionPlanInProgress, PartiallySolvedQuery, PlanBuilder}
 
 class GraphGlobalStartBuilder(graph: GraphDatabaseService) extends PlanBuilder {
+  private lazy val cardinality = Cardinality(graph)
+
   def apply(plan: ExecutionPlanInProgress) = {
     val q = plan.query
     val p = plan.pipe
@@ -45,10 +47,16 @@ class GraphGlobalStartBuilder(graph: GraphDatabaseService) extends PlanBuilder {
     case _ => false
   }
 
-  private def createStartPipe(lastPipe: Pipe, item: StartItem): Pipe =
+  private def createStartPipe(lastPipe: Pipe, item: StartItem): Pipe = {
+    val estimate = if (cardinality.hasStatistics)
+      Some((lastPipe.estimatedRows.getOrElse(1L) * cardinality.startRows(item)).toLong)
+    else
+      None
+
     item match {
-    case AllNodes(identifierName) => new NodeStartPipe(lastPipe, identifierName, (ctx,state) => state.query.nodeOps.all)
-    case AllRelationships(identifierName) => new RelationshipStartPipe(lastPipe, identifierName, (ctx, state) => state.query.relationshipOps.all)
+      case AllNodes(identifierName) => new NodeStartPipe(lastPipe, identifierName, (ctx,state) => state.query.nodeOps.all, estimate)
+      case AllRelationships(identifierName) => new RelationshipStartPipe(lastPipe, identifierName, (ctx, state) => state.query.relationshipOps.all, estimate)
+    }
   }
 
   def canWorkWith(plan: ExecutionPlanInProgress) = plan.query.start.exists(filter)
@@ -23,16 +23,20 @@ import org.neo4j.cypher.internal.commands._
 import org.neo4j.cypher.internal.pipes.{RelationshipStartPipe, NodeStartPipe, Pipe, EntityProducer}
 import org.neo4j.graphdb.{Relationship, Node, GraphDatabaseService}
 import org.neo4j.cypher.MissingIndexException
-import org.neo4j.cypher.internal.executionplan.{ExecutionPlanInProgress, PlanBuilder}
+import org.neo4j.kernel.impl.nioneo.store.StoreStatistics
+import org.neo4j.cypher.internal.executionplan.{Cardinality, ExecutionPlanInProgress, PlanBuilder}
 
 class IndexQueryBuilder(graph: GraphDatabaseService) extends PlanBuilder {
+  private lazy val cardinality = Cardinality(graph)
+
   def apply(plan: ExecutionPlanInProgress) = {
     val q = plan.query
     val p = plan.pipe
 
-    val item = q.start.filter(filter).head
+    // Every start pipe runs once per row of the one before it, so the most selective lookup goes first
+    val item = q.start.filter(filter).minBy(item => cardinality.startRows(item.token))
 
-    val newPipe = createStartPipe(p, item.token)
+    val newPipe = createStartPipe(p, item.token, estimate(p, item.token))
 
     plan.copy(pipe = newPipe, query = q.copy(start = q.start.filterNot(_ == item) :+ item.solve))
   }
@@ -47,18 +51,24 @@ class IndexQueryBuilder(graph: GraphDatabaseService) extends PlanBuilder {
     case _                                           => false
   }
 
-  private def createStartPipe(lastPipe: Pipe, item: StartItem): Pipe = item match {
+  private def estimate(lastPipe: Pipe, item: StartItem): Option[Long] =
+    if (cardinality.hasStatistics)
+      Some((lastPipe.estimatedRows.getOrElse(1L) * cardinality.startRows(item)).toLong)
+    else
+      None
+
+  private def createStartPipe(lastPipe: Pipe, item: StartItem, estimate: Option[Long]): Pipe = item match {
     case NodeByIndex(varName, idxName, key, value) =>
-      new NodeStartPipe(lastPipe, varName, IndexQueryBuilder.getNodeGetter(item, graph))
+      new NodeStartPipe(lastPipe, varName, IndexQueryBuilder.getNodeGetter(item, graph), estimate)
 
     case RelationshipByIndex(varName, idxName, key, value) =>
-      new RelationshipStartPipe(lastPipe, varName, IndexQueryBuilder.getRelationshipGetter(item, graph))
+      new RelationshipStartPipe(lastPipe, varName, IndexQueryBuilder.getRelationshipGetter(item, graph), estimate)
 
     case NodeByIndexQuery(varName, idxName, query) =>
-      new NodeStartPipe(lastPipe, varName, IndexQueryBuilder.getNodeGetter(item, graph))
+      new NodeStartPipe(lastPipe, varName, IndexQueryBuilder.getNodeGetter(item, graph), estimate)
 
     case RelationshipByIndexQuery(varName, idxName, query) =>
-      new RelationshipStartPipe(lastPipe, varName, IndexQueryBuilder.getRelationshipGetter(item, graph))
+      new RelationshipStartPipe(lastPipe, varName, IndexQueryBuilder.getRelationshipGetter(item, graph), estimate)
   }
 
   def priority: Int = PlanBuilder.IndexQuery
@@ -70,17 +80,19 @@ object IndexQueryBuilder {
 
       case NodeByIndex(varName, idxName, key, value) =>
         checkNodeIndex(idxName, graph)
+        val statistics = Cardinality.statistics(graph)
         (m, state) => {
           val keyVal = key(m)(state).toString
           val valueVal = value(m)(state)
-          state.query.nodeOps.indexGet(idxName,keyVal, valueVal)
+          recordHits(statistics, idxName, keyVal, state.query.nodeOps.indexGet(idxName,keyVal, valueVal))
         }
 
       case NodeByIndexQuery(varName, idxName, query) =>
         checkNodeIndex(idxName, graph)
+        val statistics = Cardinality.statistics(graph)
         (m, state) => {
           val queryText = query(m)(state)
-          state.query.nodeOps.indexQuery(idxName, queryText)
+          recordHits(statistics, idxName, Cardinality.QUERY, state.query.nodeOps.indexQuery(idxName, queryText))
         }
 
       case NodeById(varName, ids) =>
@@ -93,20 +105,28 @@ object IndexQueryBuilder {
 
       case RelationshipByIndex(varName, idxName, key, value) =>
         checkRelIndex(idxName, graph)
+        val statistics = Cardinality.statistics(graph)
         (m, state) => {
           val keyVal = key(m)(state).toString
           val valueVal = value(m)(state)
-          state.query.relationshipOps.indexGet(idxName, keyVal, valueVal)
+          recordHits(statistics, idxName, keyVal, state.query.relationshipOps.indexGet(idxName, keyVal, valueVal))
         }
 
       case RelationshipByIndexQuery(varName, idxName, query) =>
         checkRelIndex(idxName, graph)
+        val statistics = Cardinality.statistics(graph)
         (m, state) => {
           val queryText = query(m)(state)
-          state.query.relationshipOps.indexQuery(idxName, queryText)
+          recordHits(statistics, idxName, Cardinality.QUERY, state.query.relationshipOps.indexQuery(idxName, queryText))
         }
     }
 
+  private def recordHits[T](statistics: Option[StoreStatistics], idxName: String, key: String, hits: Iterator[T]): Iterator[T] =
+    statistics match {
+      case Some(s) => Cardinality.counting(hits)(count => s.indexQueried(idxName, key, count))
+      case None    => hits
+    }
+
   private def checkNodeIndex(idxName: String, graph: GraphDatabaseService) {
     if (!graph.index.existsForNodes(idxName)) throw new MissingIndexException(idxName)
   }
@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.executionplan.builders
+
+import org.neo4j.cypher.internal.executionplan.{Cardinality, ExecutionPlanInProgress, PlanBuilder}
+import org.neo4j.cypher.internal.commands._
+import org.neo4j.cypher.internal.pipes.{NodeHashJoinPipe, TraversalMatchPipe, ParameterPipe}
+import org.neo4j.cypher.internal.pipes.matching.MonoDirectionalTraversalMatcher
+import org.neo4j.cypher.InternalException
+import org.neo4j.graphdb.GraphDatabaseService
+import collection.mutable
+
+/*
+Solves a pattern that is a chain of relationships between two start points by matching each half of the chain
+from its own start point and joining the halves on the node in the middle, instead of matching the whole chain
+once for every combination of start nodes. Only used when both start points are expected to produce several
+nodes; for single nodes the traversal matcher does as well.
+*/
+class NodeHashJoinBuilder(graph: GraphDatabaseService) extends PlanBuilder {
+  private lazy val cardinality = Cardinality(graph)
+
+  private case class Side(start: QueryToken[StartItem], trail: LongestTrail, rows: Double) {
+    def rels = trail.longestTrail.patterns.collect { case r: RelatedTo => r.relName }
+  }
+
+  private case class Join(left: Side, right: Side, node: String)
+
+  def apply(plan: ExecutionPlanInProgress): ExecutionPlanInProgress = findJoin(plan) match {
+    case None       => throw new InternalException("This plan should not have been accepted")
+    case Some(join) =>
+      val pipe = new NodeHashJoinPipe(plan.pipe, sidePipe(join.left), sidePipe(join.right), join.node,
+        join.left.rels, join.right.rels)
+
+      val trails = Seq(join.left.trail.longestTrail, join.right.trail.longestTrail)
+      val solvedPatterns = trails.flatMap(_.patterns)
+      val solvedPredicates = trails.flatMap(_.predicates)
+      val solvedStart = Seq(join.left.start, join.right.start)
+      val q = plan.query
+
+      val newQ = q.copy(
+        patterns = q.patterns.filterNot(p => solvedPatterns.contains(p.token)) ++ solvedPatterns.map(Solved(_)),
+        start = q.start.filterNot(solvedStart.contains) ++ solvedStart.map(_.solve),
+        where = q.where.map(pred => if (solvedPredicates.contains(pred.token)) pred.solve else pred)
+      )
+
+      plan.copy(pipe = pipe, query = newQ)
+  }
+
+  def canWorkWith(plan: ExecutionPlanInProgress) = findJoin(plan).nonEmpty
+
+  def priority = PlanBuilder.HashJoin
+
+  private def sidePipe(side: Side) = {
+    val matcher = new MonoDirectionalTraversalMatcher(side.trail.step, IndexQueryBuilder.getNodeGetter(side.start.token, graph))
+    val estimate = if (cardinality.hasStatistics) Some(side.rows.toLong) else None
+    new TraversalMatchPipe(new ParameterPipe(), matcher, side.trail.longestTrail, estimate)
+  }
+
+  private def findJoin(plan: ExecutionPlanInProgress): Option[Join] = {
+    if (!plan.pipe.isInstanceOf[ParameterPipe])
+      return None
+
+    val q = plan.query
+    val patterns = q.patterns.filter(_.unsolved).map(_.token)
+    val rels = patterns.collect { case r: RelatedTo if !r.optional && r.left != r.right => r }
+    if (rels.size < 2 || rels.size != patterns.size)
+      return None
+
+    val unsolvedStart = q.start.filter(_.unsolved)
+    val boundNames = unsolvedStart.map(_.token.identifierName)
+    val startPoints = unsolvedStart.filter {
+      t => isNodeLookup(t.token) && cardinality.startRows(t.token) > 1
+    }
+
+    val preds = q.where.filter(_.unsolved).map(_.token).filterNot(_.exists(_.isInstanceOf[PathExpression]))
+
+    val joins = for (a <- startPoints.view;
+                     b <- startPoints.view if a != b;
+                     links <- chain(a.token.identifierName, b.token.identifierName, rels)
+                     if !links.init.exists(link => boundNames.contains(link._2));
+                     join <- split(a, b, links, preds))
+    yield join
+
+    joins.headOption
+  }
+
+  private def isNodeLookup(item: StartItem) = item match {
+    case _: NodeById | _: NodeByIndex | _: NodeByIndexQuery => true
+    case _                                                  => false
+  }
+
+  /*
+  The relationships in the order they are walked from one end to the other, each with the node it leads to, if
+  they form a single chain without branches.
+  */
+  private def chain(from: String, to: String, rels: Seq[RelatedTo]): Option[Seq[(RelatedTo, String)]] = {
+    val links = mutable.ArrayBuffer[(RelatedTo, String)]()
+    var current = from
+    var left = rels
+
+    while (left.nonEmpty) {
+      val touching = left.filter(r => r.left == current || r.right == current)
+      if (touching.size != 1)
+        return None
+
+      val rel = touching.head
+      current = if (rel.left == current) rel.right else rel.left
+      links += ((rel, current))
+      left = left.filterNot(_ == rel)
+    }
+
+    if (current == to) Some(links) else None
+  }
+
+  private def split(a: QueryToken[StartItem], b: QueryToken[StartItem], links: Seq[(RelatedTo, String)],
+                    preds: Seq[Predicate]): Option[Join] = {
+    val half = links.size / 2
+    val node = links(half - 1)._2
+
+    def side(start: QueryToken[StartItem], rels: Seq[RelatedTo]): Option[Side] =
+      TrailBuilder.findLongestTrail(rels, Seq(start.token.identifierName), preds) match {
+        case Some(trail@LongestTrail(_, None, t)) if t.end == node && t.patterns.size == rels.size =>
+          Some(Side(start, trail, cardinality.trailRows(t, Some(start.token))))
+        case _ => None
+      }
+
+    for (fromA <- side(a, links.take(half).map(_._1));
+         fromB <- side(b, links.drop(half).map(_._1)))
+    yield
+      // The right side is the one held in memory, so make it the smaller one
+      if (fromB.rows <= fromA.rows) Join(fromA, fromB, node) else Join(fromB, fromA, node)
+  }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.executionplan.builders
+
+import org.neo4j.cypher.internal.executionplan.{PartiallySolvedQuery, ExecutionPlanInProgress, PlanBuilder}
+import org.neo4j.cypher.internal.pipes._
+import org.neo4j.cypher.internal.commands.ReadOnlyStartItem
+import org.neo4j.graphdb.GraphDatabaseService
+import org.neo4j.kernel.GraphDatabaseAPI
+
+/**
+ * Once a read-only query has matched, filtered and projected the rows of its start point, and before they are
+ * sorted, sliced or aggregated, this builder hands the pipes doing that per-row work over to a ParallelPipe.
+ */
+class ParallelBuilder(graph: GraphDatabaseService, threads: Int) extends PlanBuilder {
+  def apply(plan: ExecutionPlanInProgress) = {
+    val pool = ParallelPipe.poolOf(graph.asInstanceOf[GraphDatabaseAPI], threads)
+    val start = ParallelBuilder.startOf(plan.pipe).get
+
+    plan.copy(pipe = new ParallelPipe(plan.pipe, start, pool, threads))
+  }
+
+  def canWorkWith(plan: ExecutionPlanInProgress) = {
+    val q = plan.query
+
+    threads > 1 &&
+    graph.isInstanceOf[GraphDatabaseAPI] &&
+    !plan.containsTransaction &&
+    ParallelBuilder.readOnly(q) &&
+    q.readyToAggregate &&
+    (q.extracted || q.aggregateQuery.unsolved) &&
+    ParallelBuilder.startOf(plan.pipe).exists(worthIt)
+  }
+
+  private def worthIt(start: Pipe) = start.estimatedRows.forall(_ > ParallelPipe.BATCH_SIZE)
+
+  def priority = PlanBuilder.Parallel
+}
+
+object ParallelBuilder {
+  /**
+   * Finds the start pipe below a chain of pipes that only do per-row work, as long as there is such work to do.
+   */
+  def startOf(pipe: Pipe): Option[Pipe] = pipe match {
+    case p: StartPipe[_] => None
+    case p               => rowByRow(p)
+  }
+
+  private def rowByRow(pipe: Pipe): Option[Pipe] = pipe match {
+    case p: StartPipe[_] if p.source.isInstanceOf[ParameterPipe] => Some(p)
+    case p: MatchPipe                                            => rowByRow(p.source)
+    case p: FilterPipe                                           => rowByRow(p.source)
+    case p: ExtractPipe                                          => rowByRow(p.source)
+    case p: NamedPathPipe                                        => rowByRow(p.source)
+    case _                                                       => None
+  }
+
+  def readOnly(q: PartiallySolvedQuery): Boolean =
+    q.updates.isEmpty &&
+    q.start.forall(_.token.isInstanceOf[ReadOnlyStartItem]) &&
+    q.tail.forall(readOnly)
+}
@@ -31,15 +31,25 @@ import org.neo4j.cypher.internal.pipes.matching.SingleStepTrail
 import annotation.tailrec
 
 object TrailBuilder {
-  def findLongestTrail(patterns: Seq[Pattern], boundPoints: Seq[String], predicates: Seq[Predicate] = Nil) =
-    new TrailBuilder(patterns, boundPoints, predicates).findLongestTrail()
+  /**
+   * @param rows the estimated number of rows a trail produces, used to choose between trails of the same length
+   */
+  def findLongestTrail(patterns: Seq[Pattern], boundPoints: Seq[String], predicates: Seq[Predicate] = Nil,
+                       rows: Trail => Double = _ => 0) =
+    new TrailBuilder(patterns, boundPoints, predicates, rows).findLongestTrail()
+
+  /**
+   * Estimates are rough, so a trail has to look at least this much cheaper to be preferred over another one
+   */
+  val SIGNIFICANT_DIFFERENCE = 2.0
 }
 
 final case class LongestTrail(start: String, end: Option[String], longestTrail: Trail) {
   lazy val step = longestTrail.toSteps(0).get
 }
 
-final class TrailBuilder(patterns: Seq[Pattern], boundPoints: Seq[String], predicates: Seq[Predicate]) {
+final class TrailBuilder(patterns: Seq[Pattern], boundPoints: Seq[String], predicates: Seq[Predicate],
+                         rows: Trail => Double) {
   @tailrec
   private def internalFindLongestPath(doneSeq: Seq[(Trail, Seq[Pattern])]): Seq[(Trail, Seq[Pattern])] = {
 
@@ -141,7 +151,7 @@ final class TrailBuilder(patterns: Seq[Pattern], boundPoints: Seq[String], predi
       case ((t1, _), (t2, _)) => t1.size < t2.size || t1.start > t2.start //Sort first by length, and then by start point
     }
 
-    val (longestPath, _) = almost.last
+    val (longestPath, _) = cheapestOfTheLongest(almost.map(_._1))
 
     val start = longestPath.start
     val end = if (boundPoints.contains(longestPath.end)) Some(longestPath.end) else None
@@ -149,6 +159,20 @@ final class TrailBuilder(patterns: Seq[Pattern], boundPoints: Seq[String], predi
   }
 
 
+  /*
+  Among the trails as long as the longest one, which are typically the same trail walked from either end, take the
+  one expected to produce the fewest rows. Unless one is clearly cheaper, the order above decides.
+  */
+  private def cheapestOfTheLongest(sorted: Seq[Trail]): (Trail, Double) = {
+    val longest = sorted.last
+    val candidates = sorted.filter(_.size == longest.size).map(t => (t, rows(t)))
+
+    candidates.foldRight((longest, rows(longest))) {
+      case ((t, cost), (best, bestCost)) if cost * TrailBuilder.SIGNIFICANT_DIFFERENCE < bestCost => (t, cost)
+      case (_, best)                                                                             => best
+    }
+  }
+
   private def findCompatiblePaths(incomingPaths: Seq[(Trail, Seq[Pattern])]): Seq[(Trail, Seq[Pattern])] = {
     val pathsWithoutBoundPointsInMiddle = incomingPaths.filterNot {
       case (trail, _) => hasBoundPointsInMiddleOfPath(trail)
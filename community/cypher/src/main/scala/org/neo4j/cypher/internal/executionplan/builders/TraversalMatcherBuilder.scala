@@ -25,12 +25,14 @@ import org.neo4j.helpers.ThisShouldNotHappenError
 import org.neo4j.graphdb
 import graphdb.{Node, GraphDatabaseService}
 import org.neo4j.cypher.internal.pipes.{ParameterPipe, TraversalMatchPipe, EntityProducer}
-import org.neo4j.cypher.internal.pipes.matching.{Trail, TraversalMatcher, MonoDirectionalTraversalMatcher, BidirectionalTraversalMatcher}
-import org.neo4j.cypher.internal.executionplan.ExecutionPlanInProgress
+import org.neo4j.cypher.internal.pipes.matching._
+import org.neo4j.cypher.internal.executionplan.{Cardinality, ExecutionPlanInProgress}
 import org.neo4j.cypher.internal.commands.NodeByIndex
 import org.neo4j.cypher.internal.commands.NodeByIndexQuery
 
 class TraversalMatcherBuilder(graph: GraphDatabaseService) extends PlanBuilder {
+  private lazy val cardinality = Cardinality(graph)
+
   def apply(plan: ExecutionPlanInProgress): ExecutionPlanInProgress = extractExpanderStepsFromQuery(plan) match {
     case None              => throw new ThisShouldNotHappenError("Andres", "This plan should not have been accepted")
     case Some(longestPath) =>
@@ -51,7 +53,8 @@ class TraversalMatcherBuilder(graph: GraphDatabaseService) extends PlanBuilder {
         where = newWhereClause
       )
 
-      val pipe = new TraversalMatchPipe(plan.pipe, matcher, longestTrail)
+      val estimate = if (cardinality.hasStatistics) Some(estimatedRows(plan, longestTrail).toLong) else None
+      val pipe = new TraversalMatchPipe(plan.pipe, matcher, longestTrail, estimate)
 
       plan.copy(pipe = pipe, query = newQ)
   }
@@ -78,14 +81,22 @@ class TraversalMatcherBuilder(graph: GraphDatabaseService) extends PlanBuilder {
                            startNodeFn:EntityProducer[Node],
                            startToken:QueryToken[StartItem],
                            unsolvedItems: Seq[QueryToken[StartItem]] ): (TraversalMatcher,Seq[QueryToken[StartItem]]) = {
-    val (matcher, tokens) = if (end.isEmpty) {
-      val matcher = new MonoDirectionalTraversalMatcher(longestPath.step, startNodeFn)
-      (matcher, Seq(startToken))
-    } else {
-      val (endToken, endNodeFn) = identifier2nodeFn(graph, end.get, unsolvedItems)
-      val step = longestPath.step
-      val matcher = new BidirectionalTraversalMatcher(step, startNodeFn, endNodeFn)
-      (matcher, Seq(startToken, endToken))
+    val (matcher, tokens) = (longestPath.step, end) match {
+      case (step: VarLengthStep, None) if step.next.isEmpty =>
+        (new VarLengthTraversalMatcher(step, startNodeFn, None), Seq(startToken))
+
+      case (step: VarLengthStep, Some(endName)) if step.next.isEmpty && step.max.nonEmpty =>
+        val (endToken, endNodeFn) = identifier2nodeFn(graph, endName, unsolvedItems)
+        (new VarLengthTraversalMatcher(step, startNodeFn, Some(endNodeFn)), Seq(startToken, endToken))
+
+      case (step, None) =>
+        val matcher = new MonoDirectionalTraversalMatcher(step, startNodeFn)
+        (matcher, Seq(startToken))
+
+      case (step, Some(endName)) =>
+        val (endToken, endNodeFn) = identifier2nodeFn(graph, endName, unsolvedItems)
+        val matcher = new BidirectionalTraversalMatcher(step, startNodeFn, endNodeFn)
+        (matcher, Seq(startToken, endToken))
     }
     (matcher,tokens)
   }
@@ -121,9 +132,12 @@ class TraversalMatcherBuilder(graph: GraphDatabaseService) extends PlanBuilder {
       case pred => pred.exists( exp => exp.isInstanceOf[PathExpression] )
     }
 
-    TrailBuilder.findLongestTrail(pattern, startPoints, preds)
+    TrailBuilder.findLongestTrail(pattern, startPoints, preds, estimatedRows(plan, _))
   }
 
+  private def estimatedRows(plan: ExecutionPlanInProgress, trail: Trail): Double =
+    cardinality.trailRows(trail, plan.query.start.filter(_.unsolved).map(_.token).find(_.identifierName == trail.start))
+
   def priority = PlanBuilder.TraversalMatcher
 }
 
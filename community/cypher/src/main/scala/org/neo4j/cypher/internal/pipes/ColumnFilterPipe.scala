@@ -25,9 +25,9 @@ import org.neo4j.cypher.internal.commands.expressions.Identifier.isNamed
 import org.neo4j.cypher.internal.commands.expressions.CachedExpression
 import org.neo4j.cypher.internal.commands.ReturnItem
 import org.neo4j.cypher.internal.data.SimpleVal
-import org.neo4j.cypher.internal.ExecutionContext
+import org.neo4j.cypher.internal.{Slots, ExecutionContext}
 
-class ColumnFilterPipe(source: Pipe, val returnItems: Seq[ReturnItem])
+class ColumnFilterPipe(source: Pipe, val returnItems: Seq[ReturnItem], slotOf: String => Int = Slots.unresolved)
   extends PipeWithSource(source) {
   val returnItemNames: Seq[String] = returnItems.map(_.name)
   val symbols = SymbolTable(identifiers2.toMap)
@@ -35,17 +35,26 @@ class ColumnFilterPipe(source: Pipe, val returnItems: Seq[ReturnItem])
   private lazy val identifiers2: Seq[(String, CypherType)] = returnItems.
     map( ri => ri.name->ri.expression.getType(source.symbols))
 
+  // The name and slot to read each column from, and the name and slot to write it to
+  private val columns: Seq[(String, Int, String, Int)] = {
+    def column(from: String, to: String) = (from, slotOf(from), to, slotOf(to))
+
+    returnItems.map {
+      case ReturnItem(Identifier(oldName), newName, _) if isNamed(newName) => column(oldName, newName)
+      case ReturnItem(CachedExpression(oldName, _), newName, _)            => column(oldName, newName)
+      case ReturnItem(_, name, _)                                          => column(name, name)
+    }
+  }
+
   protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState) = {
     input.map(ctx => {
-      val newMap = MutableMaps.create(ctx.size)
+      val newCtx = ctx.newFrom(Seq.empty)
 
-      returnItems.foreach {
-        case ReturnItem(Identifier(oldName), newName, _) if isNamed(newName) => newMap.put(newName, ctx(oldName))
-        case ReturnItem(CachedExpression(oldName, _), newName, _)            => newMap.put(newName, ctx(oldName))
-        case ReturnItem(_, name, _)                                          => newMap.put(name, ctx(name))
+      columns.foreach {
+        case (from, fromSlot, to, toSlot) => newCtx.setAt(to, toSlot, ctx.getAt(from, fromSlot))
       }
 
-      ctx.newFrom( newMap )
+      newCtx
     })
   }
 
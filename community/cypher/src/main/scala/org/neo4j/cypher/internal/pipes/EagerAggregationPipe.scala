@@ -47,8 +47,6 @@ class EagerAggregationPipe(source: Pipe, val keyExpressions: Map[String, Express
   }
 
   protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState) = {
-    // This is the temporary storage used while the aggregation is going on
-    val result = MutableMap[NiceHasher, (ExecutionContext, Seq[AggregationFunction])]()
     val keyNames: Seq[String] = keyExpressions.map(_._1).toSeq
     val aggregationNames: Seq[String] = aggregations.map(_._1).toSeq
 
@@ -73,19 +71,54 @@ class EagerAggregationPipe(source: Pipe, val keyExpressions: Map[String, Express
       Iterator.single(ExecutionContext(newMap))
     }
 
-    input.foreach(ctx => {
-      val groupValues: NiceHasher = new NiceHasher(keyNames.map(ctx))
-      val aggregateFunctions: Seq[AggregationFunction] = aggregations.map(_._2.createAggregationFunction).toSeq
-      val (_, functions) = result.getOrElseUpdate(groupValues, (ctx, aggregateFunctions))
-      functions.foreach(func => func(ctx)(state))
-    })
+    type Group = (ExecutionContext, Seq[AggregationFunction])
+
+    // Groups are aggregated in memory up to the spill threshold of the query. Rows of groups seen after that are
+    // partitioned on their key to temporary files, and each partition is aggregated on its own afterwards. A row
+    // that can't be spilled starts its group in memory regardless, and rows of that group read back from the
+    // partitions are aggregated into it. That's why the groups of a level are returned after those of its partitions.
+    def aggregate(input: Iterator[ExecutionContext], depth: Int,
+                  outer: NiceHasher => Option[Group]): (Iterator[ExecutionContext], Boolean) = {
+      // This is the temporary storage used while the aggregation is going on
+      val result = MutableMap[NiceHasher, Group]()
+      var partitions: Array[SpillFile] = null
+
+      def find(key: NiceHasher): Option[Group] = result.get(key) orElse outer(key)
+
+      input.foreach(ctx => {
+        val groupValues: NiceHasher = new NiceHasher(keyNames.map(ctx))
+        find(groupValues) match {
+          case Some((_, functions)) =>
+            functions.foreach(func => func(ctx)(state))
+
+          case None if result.size < state.spillThreshold || depth >= EagerAggregationPipe.MAX_SPILL_DEPTH ||
+                       !SpillFile.canSpill(ctx) =>
+            val aggregateFunctions: Seq[AggregationFunction] = aggregations.map(_._2.createAggregationFunction).toSeq
+            result.put(groupValues, (ctx, aggregateFunctions))
+            aggregateFunctions.foreach(func => func(ctx)(state))
+
+          case None =>
+            if (partitions == null) partitions = Array.fill(EagerAggregationPipe.PARTITIONS)(new SpillFile(state))
+            partitions(EagerAggregationPipe.partition(groupValues, depth)).write(ctx)
+        }
+      })
+
+      def inMemory = result.iterator.map {
+        case (key, (ctx, aggregator)) => createResults(key, aggregator, ctx)
+      }
+
+      if (partitions == null)
+        (inMemory, result.isEmpty)
+      else
+        (partitions.iterator.flatMap(partition => aggregate(partition.read(), depth + 1, find)._1) ++ inMemory, false)
+    }
+
+    val (results, empty) = aggregate(input, 0, _ => None)
 
-    if (result.isEmpty && keyNames.isEmpty) {
+    if (empty && keyNames.isEmpty) {
       createEmptyResult(state.params)
     } else {
-      result.map {
-        case (key, (ctx, aggregator)) => createResults(key, aggregator, ctx)
-      }.toIterator
+      results
     }
   }
 
@@ -99,4 +132,12 @@ class EagerAggregationPipe(source: Pipe, val keyExpressions: Map[String, Express
     keyExpressions.foreach(_._2.throwIfSymbolsMissing(symbols))
     aggregations.foreach(_._2.throwIfSymbolsMissing(symbols))
   }
-}
\ No newline at end of file
+}
+
+object EagerAggregationPipe {
+  val PARTITIONS = 16
+  val MAX_SPILL_DEPTH = 4
+
+  // Each level of spilling partitions on different bits of the hash, so that a partition can be split again
+  def partition(key: NiceHasher, depth: Int): Int = ((key.hashCode * 0x9E3779B9) >>> (depth * 4)) & (PARTITIONS - 1)
+}
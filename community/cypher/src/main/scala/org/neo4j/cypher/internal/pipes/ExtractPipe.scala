@@ -22,16 +22,17 @@ package org.neo4j.cypher.internal.pipes
 import org.neo4j.cypher.internal.symbols._
 import org.neo4j.cypher.internal.commands.expressions.Expression
 import org.neo4j.cypher.internal.data.SimpleVal
-import org.neo4j.cypher.internal.ExecutionContext
+import org.neo4j.cypher.internal.{Slots, ExecutionContext}
 
 object ExtractPipe {
-  def apply(source: Pipe, expressions: Map[String, Expression]): ExtractPipe = source match {
-    case p: ExtractPipe => new ExtractPipe(p.source, p.expressions ++ expressions)
-    case _              => new ExtractPipe(source, expressions)
+  def apply(source: Pipe, expressions: Map[String, Expression], slotOf: String => Int = Slots.unresolved): ExtractPipe = source match {
+    case p: ExtractPipe => new ExtractPipe(p.source, p.expressions ++ expressions, slotOf)
+    case _              => new ExtractPipe(source, expressions, slotOf)
   }
 }
 
-class ExtractPipe(source: Pipe, val expressions: Map[String, Expression]) extends PipeWithSource(source) {
+class ExtractPipe(source: Pipe, val expressions: Map[String, Expression], slotOf: String => Int = Slots.unresolved)
+  extends PipeWithSource(source) {
   val symbols: SymbolTable = {
     val newIdentifiers = expressions.map {
       case (name, expression) => name -> expression.getType(source.symbols)
@@ -40,11 +41,15 @@ class ExtractPipe(source: Pipe, val expressions: Map[String, Expression]) extend
     source.symbols.add(newIdentifiers)
   }
 
+  private val extractions: Seq[(String, Int, Expression)] = expressions.toSeq.map {
+    case (name, expression) => (name, slotOf(name), expression)
+  }
+
   protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState) = input.map(
     subgraph => {
-      expressions.foreach {
-        case (name, expression) =>
-        subgraph += name -> expression(subgraph)(state)
+      extractions.foreach {
+        case (name, slot, expression) =>
+        subgraph.setAt(name, slot, expression(subgraph)(state))
     }
     subgraph
   })
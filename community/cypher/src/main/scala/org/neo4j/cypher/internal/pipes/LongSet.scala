@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+/**
+ * An open addressing set of entity ids. Ids are never negative, so -1 marks a free slot, and removal shifts the
+ * following entries back instead of leaving tombstones, which keeps lookups short while paths are grown and shrunk.
+ */
+class LongSet {
+  private var keys = Array.fill(16)(-1L)
+  private var count = 0
+
+  def size = count
+
+  def isEmpty = count == 0
+
+  def contains(key: Long) = keys(slotOf(key, keys)) == key
+
+  /**
+   * @return true if the key was not already in the set
+   */
+  def add(key: Long): Boolean = {
+    val slot = slotOf(key, keys)
+    if (keys(slot) == key) {
+      false
+    } else {
+      keys(slot) = key
+      count += 1
+      if (count * 2 >= keys.length)
+        rehash()
+      true
+    }
+  }
+
+  /**
+   * @return true if the key was in the set
+   */
+  def remove(key: Long): Boolean = {
+    val mask = keys.length - 1
+    var slot = slotOf(key, keys)
+    if (keys(slot) != key) {
+      false
+    } else {
+      var next = (slot + 1) & mask
+      while (keys(next) != -1) {
+        val home = LongSet.hash(keys(next), mask)
+        // Move the entry back if its home slot does not lie cyclically within (slot, next]
+        val movable = if (slot <= next) home <= slot || home > next else home <= slot && home > next
+        if (movable) {
+          keys(slot) = keys(next)
+          slot = next
+        }
+        next = (next + 1) & mask
+      }
+      keys(slot) = -1
+      count -= 1
+      true
+    }
+  }
+
+  private def slotOf(key: Long, keys: Array[Long]): Int = {
+    val mask = keys.length - 1
+    var slot = LongSet.hash(key, mask)
+    while (keys(slot) != -1 && keys(slot) != key)
+      slot = (slot + 1) & mask
+    slot
+  }
+
+  private def rehash() {
+    val newKeys = Array.fill(keys.length * 2)(-1L)
+    keys.foreach(key => if (key != -1) newKeys(slotOf(key, newKeys)) = key)
+    keys = newKeys
+  }
+}
+
+object LongSet {
+  private[pipes] def hash(key: Long, mask: Int): Int = (java.lang.Long.rotateLeft(key * 0x9E3779B97F4A7C15L, 32) & mask).toInt
+}
+
+/**
+ * Maps entity ids to non-negative ints, using open addressing. Entries can not be removed.
+ */
+class LongIntMap {
+  private var keys = Array.fill(16)(-1L)
+  private var values = new Array[Int](16)
+  private var count = 0
+
+  def size = count
+
+  /**
+   * @return the value for the key, or -1 if there is none
+   */
+  def get(key: Long): Int = {
+    val slot = slotOf(key, keys)
+    if (keys(slot) == key) values(slot) else -1
+  }
+
+  /**
+   * @return true if the key was not already mapped, in which case it now maps to the value
+   */
+  def putIfAbsent(key: Long, value: Int): Boolean = {
+    val slot = slotOf(key, keys)
+    if (keys(slot) == key) {
+      false
+    } else {
+      keys(slot) = key
+      values(slot) = value
+      count += 1
+      if (count * 2 >= keys.length)
+        rehash()
+      true
+    }
+  }
+
+  private def slotOf(key: Long, keys: Array[Long]): Int = {
+    val mask = keys.length - 1
+    var slot = LongSet.hash(key, mask)
+    while (keys(slot) != -1 && keys(slot) != key)
+      slot = (slot + 1) & mask
+    slot
+  }
+
+  private def rehash() {
+    val newKeys = Array.fill(keys.length * 2)(-1L)
+    val newValues = new Array[Int](keys.length * 2)
+    for (i <- 0 until keys.length if keys(i) != -1) {
+      val slot = slotOf(keys(i), newKeys)
+      newKeys(slot) = keys(i)
+      newValues(slot) = values(i)
+    }
+    keys = newKeys
+    values = newValues
+  }
+}
@@ -19,16 +19,28 @@
  */
 package org.neo4j.cypher.internal.pipes
 
+import org.neo4j.cypher.internal.SlottedMap
+
 object MutableMaps {
 
   def create(size: Int) : collection.mutable.Map[String, Any] = new collection.mutable.OpenHashMap[String, Any](if (size < 16) 16 else size)
 
   def empty : collection.mutable.Map[String, Any] = create(16)
 
-  def create(input: scala.collection.Map[String, Any]) : collection.mutable.Map[String, Any] = {
-    val m = create(input.size)
-    input.foreach( (kv) => m.put(kv._1,kv._2))
-    m
+  def create(input: scala.collection.Map[String, Any]) : collection.mutable.Map[String, Any] = input match {
+    case slotted: SlottedMap => slotted.clone()
+    case _                   =>
+      val m = create(input.size)
+      input.foreach( (kv) => m.put(kv._1,kv._2))
+      m
+  }
+
+  /**
+   * Creates an empty map laid out like the template, so rows keep their slots through pipes that replace them
+   */
+  def emptyLike(template: scala.collection.Map[String, Any]) : collection.mutable.Map[String, Any] = template match {
+    case slotted: SlottedMap => slotted.slots.newMap
+    case _                   => empty
   }
 
   def create(input: (String, Any)*) : collection.mutable.Map[String, Any] = {
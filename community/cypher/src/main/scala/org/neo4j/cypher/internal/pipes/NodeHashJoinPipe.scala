@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import org.neo4j.cypher.internal.symbols.SymbolTable
+import org.neo4j.cypher.internal.ExecutionContext
+import org.neo4j.cypher.internal.data.SimpleVal
+import org.neo4j.graphdb.{Relationship, Node}
+import org.neo4j.cypher.PlanDescription
+
+/**
+ * Joins the rows of two pipes that each match part of a pattern from their own start point, on the node the two
+ * parts have in common. The right side is read into a hash table keyed on the id of that node, and the left side is
+ * streamed through it, so the cost is the sum of the two sides rather than their product.
+ *
+ * A relationship can only be matched once in a pattern, so combinations where both sides matched the same
+ * relationship are left out.
+ */
+class NodeHashJoinPipe(source: Pipe, left: Pipe, right: Pipe, joinNode: String,
+                       leftRels: Seq[String], rightRels: Seq[String],
+                       override val estimatedRows: Option[Long] = None) extends PipeWithSource(source) {
+
+  protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState) =
+    input.flatMap {
+      ctx =>
+        val table = new LongHashTable[ExecutionContext]
+        right.createResults(state).foreach(row => table.add(nodeId(row), row))
+
+        // Always created, so that the left side is there for the profiler even when nothing comes out of it
+        val leftRows = left.createResults(state)
+
+        if (table.isEmpty)
+          Iterator.empty
+        else
+          leftRows.flatMap {
+            l =>
+              table.get(nodeId(l)).
+                filter(r => distinctRelationships(l, r)).
+                map(r => ctx.newWith(l.m).newWith(r.m))
+          }
+    }
+
+  private def nodeId(row: ExecutionContext): Long = row(joinNode).asInstanceOf[Node].getId
+
+  private def distinctRelationships(l: ExecutionContext, r: ExecutionContext) =
+    leftRels.forall(a => rightRels.forall(b => relId(l, a) != relId(r, b)))
+
+  private def relId(row: ExecutionContext, name: String) = row(name).asInstanceOf[Relationship].getId
+
+  val symbols = source.symbols.add(left.symbols.identifiers).add(right.symbols.identifiers)
+
+  def executionPlanDescription = new PlanDescription(this, "NodeHashJoin",
+    Seq(source.executionPlanDescription, left.executionPlanDescription, right.executionPlanDescription),
+    Seq("on" -> SimpleVal.fromStr(joinNode)))
+
+  def throwIfSymbolsMissing(symbols: SymbolTable) {}
+}
+
+/**
+ * A multimap from primitive longs, with open addressing for the keys and the values of each key chained through
+ * an int array.
+ */
+class LongHashTable[T] {
+  private var keys = new Array[Long](16)
+  private var heads = Array.fill(16)(-1)
+  private var used = 0
+
+  private var values = new Array[AnyRef](16)
+  private var next = new Array[Int](16)
+  private var count = 0
+
+  def isEmpty = count == 0
+
+  def size = count
+
+  def add(key: Long, value: T) {
+    if (used * 2 >= keys.length)
+      rehash()
+
+    if (count == values.length) {
+      values = java.util.Arrays.copyOf(values, count * 2)
+      next = java.util.Arrays.copyOf(next, count * 2)
+    }
+
+    val slot = slotOf(key, keys, heads)
+    if (heads(slot) == -1) {
+      keys(slot) = key
+      used += 1
+    }
+    values(count) = value.asInstanceOf[AnyRef]
+    next(count) = heads(slot)
+    heads(slot) = count
+    count += 1
+  }
+
+  /**
+   * @return the values added for the key, most recently added first
+   */
+  def get(key: Long): Iterator[T] = {
+    var entry = heads(slotOf(key, keys, heads))
+    new Iterator[T] {
+      def hasNext = entry != -1
+
+      def next() = {
+        val value = values(entry).asInstanceOf[T]
+        entry = LongHashTable.this.next(entry)
+        value
+      }
+    }
+  }
+
+  private def slotOf(key: Long, keys: Array[Long], heads: Array[Int]): Int = {
+    val mask = keys.length - 1
+    var slot = (java.lang.Long.rotateLeft(key * 0x9E3779B97F4A7C15L, 32) & mask).toInt
+    while (heads(slot) != -1 && keys(slot) != key)
+      slot = (slot + 1) & mask
+    slot
+  }
+
+  private def rehash() {
+    val newKeys = new Array[Long](keys.length * 2)
+    val newHeads = Array.fill(keys.length * 2)(-1)
+    for (i <- 0 until keys.length if heads(i) != -1) {
+      val slot = slotOf(keys(i), newKeys, newHeads)
+      newKeys(slot) = keys(i)
+      newHeads(slot) = heads(i)
+    }
+    keys = newKeys
+    heads = newHeads
+  }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import org.neo4j.cypher.internal.symbols.SymbolTable
+import org.neo4j.cypher.internal.ExecutionContext
+import org.neo4j.cypher.internal.data.SimpleVal
+import org.neo4j.graphdb.GraphDatabaseService
+import org.neo4j.graphdb.event.{ErrorState, KernelEventHandler}
+import org.neo4j.graphdb.event.KernelEventHandler.ExecutionOrder
+import org.neo4j.kernel.GraphDatabaseAPI
+import java.util.concurrent.{ExecutionException, Future, Callable, ExecutorService}
+import scala.concurrent.forkjoin.ForkJoinPool
+import collection.mutable
+
+/**
+ * The rows of a start pipe that one worker of a ParallelPipe is responsible for.
+ */
+case class Partition(start: Pipe, rows: Seq[ExecutionContext])
+
+/**
+ * Runs the pipes between a start pipe and this one on a pool of threads. The rows of the start pipe are read on
+ * the calling thread and cut into batches, and every batch is pushed through the source pipes by a worker of
+ * its own. Results come back in batch order, so the pipes on top see the same rows in the same order as when the
+ * query runs on a single thread, and sorting, slicing and aggregation stay where they were.
+ *
+ * Only read-only queries run in parallel, and only when the query state allows it. Profiled queries and queries
+ * executed inside a transaction that might hold changes the workers can't see run on the calling thread.
+ */
+class ParallelPipe(val source: Pipe, start: Pipe, pool: ExecutorService, threads: Int,
+                   batchSize: Int = ParallelPipe.BATCH_SIZE) extends Pipe {
+
+  override def createResults(state: QueryState): Iterator[ExecutionContext] =
+    if (state.parallel && state.decorator == NullDecorator)
+      internalCreateResults(state)
+    else
+      source.createResults(state)
+
+  protected def internalCreateResults(state: QueryState): Iterator[ExecutionContext] = {
+    val batches = start.createResults(state).grouped(batchSize)
+
+    if (!batches.hasNext)
+      Iterator.empty
+    else {
+      val first = batches.next()
+
+      // A single batch is not worth handing over to another thread
+      if (!batches.hasNext)
+        source.createResults(partitioned(state, first))
+      else
+        new BatchMerger(Iterator(first) ++ batches, state)
+    }
+  }
+
+  private def partitioned(state: QueryState, rows: Seq[ExecutionContext]) =
+    state.copy(partition = Some(Partition(start, rows)))
+
+  /**
+   * Keeps a bounded number of batches in flight, and hands out their results in the order the batches were read.
+   */
+  private class BatchMerger(batches: Iterator[Seq[ExecutionContext]], state: QueryState) extends Iterator[ExecutionContext] {
+    private val inFlight = new mutable.Queue[Future[Vector[ExecutionContext]]]
+    private var current: Iterator[ExecutionContext] = Iterator.empty
+
+    def hasNext: Boolean = {
+      while (!current.hasNext && (inFlight.nonEmpty || batches.hasNext)) {
+        submit()
+        current = await(inFlight.dequeue()).iterator
+      }
+      current.hasNext
+    }
+
+    def next(): ExecutionContext = if (hasNext) current.next() else Iterator.empty.next()
+
+    private def submit() {
+      while (inFlight.size < threads * 2 && batches.hasNext) {
+        val rows = batches.next()
+        inFlight.enqueue(pool.submit(new Callable[Vector[ExecutionContext]] {
+          def call() = source.createResults(partitioned(state, rows)).toVector
+        }))
+      }
+    }
+
+    private def await(batch: Future[Vector[ExecutionContext]]): Vector[ExecutionContext] = try {
+      batch.get()
+    } catch {
+      case e: ExecutionException => throw e.getCause
+    }
+  }
+
+  def symbols: SymbolTable = source.symbols
+
+  override def estimatedRows = source.estimatedRows
+
+  def executionPlanDescription =
+    source.executionPlanDescription.andThen(this, "Parallel", "threads" -> SimpleVal.fromStr(threads),
+      "batchSize" -> SimpleVal.fromStr(batchSize))
+}
+
+object ParallelPipe {
+  val BATCH_SIZE = 1000
+
+  private val pools = mutable.Map[GraphDatabaseService, ExecutorService]()
+
+  /**
+   * Returns the worker pool of the given database, creating it the first time it is asked for. The pool is shut
+   * down together with the database.
+   */
+  def poolOf(db: GraphDatabaseAPI, threads: Int): ExecutorService = pools.synchronized {
+    pools.getOrElseUpdate(db, createPool(db, threads))
+  }
+
+  private def createPool(db: GraphDatabaseAPI, threads: Int): ExecutorService = {
+    val pool = new ForkJoinPool(threads)
+
+    db.registerKernelEventHandler(new KernelEventHandler {
+      def beforeShutdown() {
+        pools.synchronized {
+          pools.remove(db)
+        }
+        pool.shutdown()
+      }
+
+      def getResource: AnyRef = null
+
+      def kernelPanic(error: ErrorState) {}
+
+      def orderComparedTo(other: KernelEventHandler) = ExecutionOrder.DOESNT_MATTER
+    })
+    pool
+  }
+}
@@ -42,6 +42,11 @@ trait Pipe {
   def symbols: SymbolTable
 
   def executionPlanDescription: PlanDescription
+
+  /**
+   * The number of rows the planner expected this pipe to produce, if it had any idea.
+   */
+  def estimatedRows: Option[Long] = None
 }
 
 object NullPipe extends Pipe {
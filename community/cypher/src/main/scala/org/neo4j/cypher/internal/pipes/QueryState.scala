@@ -26,6 +26,7 @@ import java.util.concurrent.atomic.AtomicInteger
 import org.neo4j.cypher.ParameterNotFoundException
 import org.neo4j.cypher.internal.spi.gdsimpl.GDSBackedQueryContext
 import org.neo4j.cypher.internal.helpers.Time
+import org.neo4j.cypher.internal.Slots
 
 
 object QueryState {
@@ -42,7 +43,11 @@ case class QueryState(db: GraphDatabaseService,
                       params: Map[String, Any],
                       decorator: PipeDecorator,
                       var transaction: Option[Transaction] = None,
-                      time: Time = new Time) {
+                      time: Time = new Time,
+                      slots: Slots = Slots.empty,
+                      spillThreshold: Int = Int.MaxValue,
+                      parallel: Boolean = false,
+                      partition: Option[Partition] = None) {
   def readTimeStamp(): Long = time.getTime
 
   val createdNodes = new Counter
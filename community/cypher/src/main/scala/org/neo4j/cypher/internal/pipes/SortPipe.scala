@@ -23,15 +23,65 @@ import scala.math.signum
 import org.neo4j.cypher.internal.commands.SortItem
 import java.lang.String
 import org.neo4j.cypher.internal.{ExecutionContext, Comparer}
-import collection.mutable.Map
+import collection.mutable.{ArrayBuffer, ListBuffer, Map}
 import org.neo4j.cypher.internal.symbols.SymbolTable
 
+/*
+ * SortPipe sorts in memory as long as the input fits within the spill threshold of the query. Past that, it writes
+ * sorted runs to temporary files and merges them when the input has been consumed. Input holding values that can't be
+ * spilled is sorted in memory.
+ */
 class SortPipe(source: Pipe, sortDescription: List[SortItem]) extends PipeWithSource(source) with ExecutionContextComparer {
   def symbols = source.symbols
 
-  protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState) =
-    input.toList.
-      sortWith((a, b) => compareBy(a, b, sortDescription)).iterator
+  protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState) = {
+    val buffer = new ArrayBuffer[ExecutionContext]()
+    val runs = new ListBuffer[SpillFile]()
+    // Once a run holds a value that can't be spilled, the rest of the input is sorted in memory
+    var spill = true
+
+    input.foreach(ctx => {
+      buffer += ctx
+      if (spill && buffer.size >= state.spillThreshold) {
+        spill = buffer.forall(SpillFile.canSpill)
+        if (spill) {
+          val run = new SpillFile(state)
+          sort(buffer).foreach(run.write)
+          runs += run
+          buffer.clear()
+        }
+      }
+    })
+
+    if (runs.isEmpty)
+      sort(buffer).iterator
+    else
+      merge(runs.map(_.read()) :+ sort(buffer).iterator)
+  }
+
+  private def sort(rows: Seq[ExecutionContext]) = rows.sortWith((a, b) => compareBy(a, b, sortDescription))
+
+  private def merge(runs: Seq[Iterator[ExecutionContext]]): Iterator[ExecutionContext] = {
+    val heads = new java.util.PriorityQueue[BufferedIterator[ExecutionContext]](runs.size,
+      new java.util.Comparator[BufferedIterator[ExecutionContext]] {
+        def compare(a: BufferedIterator[ExecutionContext], b: BufferedIterator[ExecutionContext]) =
+          if (compareBy(a.head, b.head, sortDescription)) -1
+          else if (compareBy(b.head, a.head, sortDescription)) 1
+          else 0
+      })
+    runs.map(_.buffered).filter(_.hasNext).foreach(heads.add)
+
+    new Iterator[ExecutionContext] {
+      def hasNext = !heads.isEmpty
+
+      def next() = {
+        val run = heads.poll()
+        val ctx = run.next()
+        if (run.hasNext) heads.add(run)
+        ctx
+      }
+    }
+  }
 
   def throwIfSymbolsMissing(symbols: SymbolTable) {
     sortDescription.foreach {
@@ -0,0 +1,325 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import java.io._
+import org.neo4j.graphdb.{PropertyContainer, Relationship, Node}
+import org.neo4j.cypher.{PathImpl, InternalException}
+import org.neo4j.cypher.internal.ExecutionContext
+import collection.{immutable, mutable}
+import collection.mutable.{ArrayBuffer, Map => MutableMap}
+
+/**
+ * Temporary storage for rows that don't fit in memory. Rows are written in a compact binary format: every identifier
+ * is written once per file and referred to by number after that, nodes and relationships are written as their ids.
+ * Only rows accepted by SpillFile.canSpill can be written, other values wouldn't be read back as the same type.
+ * The file is deleted once it has been read back, or when the query is closed if that happens first.
+ */
+class SpillFile(state: QueryState) {
+  private[pipes] val file = File.createTempFile("cypher-spill", ".tmp")
+  private val out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), SpillFile.BUFFER_SIZE))
+  private var in: DataInputStream = null
+  state.query.onClose(() => delete())
+  private val names = MutableMap[String, Int]()
+  private var template: ExecutionContext = null
+  private var rows = 0L
+
+  def write(ctx: ExecutionContext) {
+    if (template == null) template = ctx
+
+    SpillFile.writeVarInt(ctx.size, out)
+    ctx.foreach {
+      case (name, value) =>
+        writeName(name)
+        SpillFile.writeValue(value, out)
+    }
+    rows += 1
+  }
+
+  def size: Long = rows
+
+  /**
+   * Reads the rows back in the order they were written. Can only be done once.
+   */
+  def read(): Iterator[ExecutionContext] = {
+    if (rows == 0) {
+      delete()
+      return Iterator.empty
+    }
+    out.close()
+    in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), SpillFile.BUFFER_SIZE))
+    val readNames = new ArrayBuffer[String]()
+
+    new Iterator[ExecutionContext] {
+      private var left = rows
+
+      def hasNext = left > 0
+
+      def next() = {
+        if (!hasNext) throw new NoSuchElementException
+        left -= 1
+
+        val entries = (0 until SpillFile.readVarInt(in)).map(_ => {
+          val index = SpillFile.readVarInt(in)
+          if (index == readNames.size) readNames += in.readUTF()
+          readNames(index) -> SpillFile.readValue(in, state)
+        })
+        if (left == 0) delete()
+        template.newFrom(entries)
+      }
+    }
+  }
+
+  /**
+   * Closes and deletes the file, whether or not it has been read back.
+   */
+  def delete() {
+    out.close()
+    if (in != null) in.close()
+    file.delete()
+  }
+
+  private def writeName(name: String) {
+    names.get(name) match {
+      case Some(index) => SpillFile.writeVarInt(index, out)
+      case None        =>
+        val index = names.size
+        names.put(name, index)
+        SpillFile.writeVarInt(index, out)
+        out.writeUTF(name)
+    }
+  }
+}
+
+object SpillFile {
+  private val BUFFER_SIZE = 64 * 1024
+
+  private val NULL: Byte = 0
+  private val NODE: Byte = 1
+  private val RELATIONSHIP: Byte = 2
+  private val PATH: Byte = 3
+  private val BOOLEAN: Byte = 4
+  private val BYTE: Byte = 5
+  private val SHORT: Byte = 6
+  private val INT: Byte = 7
+  private val LONG: Byte = 8
+  private val FLOAT: Byte = 9
+  private val DOUBLE: Byte = 10
+  private val CHAR: Byte = 11
+  private val STRING: Byte = 12
+  private val ARRAY: Byte = 13
+  private val MAP: Byte = 14
+  private val LIST: Byte = 15
+  private val VECTOR: Byte = 16
+  private val ARRAY_BUFFER: Byte = 17
+  private val LIST_BUFFER: Byte = 18
+
+  /**
+   * Whether every value of the row comes back from a spill file as an equal value of the same type. Rows that don't
+   * are kept in memory.
+   */
+  def canSpill(ctx: ExecutionContext): Boolean = ctx.forall {
+    case (_, value) => canSpillValue(value)
+  }
+
+  private def canSpillValue(value: Any): Boolean = value match {
+    case null | _: Node | _: Relationship | _: PathImpl => true
+    case _: Boolean | _: Byte | _: Short | _: Int | _: Long | _: Float | _: Double | _: Char | _: String => true
+    case x: Array[_]               => arrayComponent(x) != NULL
+    case x: immutable.Map[_, _]    => x.forall {
+      case (k, v) => k.isInstanceOf[String] && canSpillValue(v)
+    }
+    case x: List[_]                => x.forall(canSpillValue)
+    case x: Vector[_]              => x.forall(canSpillValue)
+    case x: mutable.ArrayBuffer[_] => x.forall(canSpillValue)
+    case x: mutable.ListBuffer[_]  => x.forall(canSpillValue)
+    case _                         => false
+  }
+
+  /**
+   * Writes a value so that it is read back as the same type. Only values of rows accepted by canSpill can be written.
+   */
+  def writeValue(value: Any, out: DataOutput) {
+    value match {
+      case null                      => out.writeByte(NULL)
+      case x: Node                   => out.writeByte(NODE); writeVarLong(x.getId, out)
+      case x: Relationship           => out.writeByte(RELATIONSHIP); writeVarLong(x.getId, out)
+      case x: PathImpl               =>
+        out.writeByte(PATH)
+        writeVarInt(x.pathEntities.size, out)
+        x.pathEntities.foreach(writeValue(_, out))
+      case x: Boolean                => out.writeByte(BOOLEAN); out.writeBoolean(x)
+      case x: Byte                   => out.writeByte(BYTE); out.writeByte(x)
+      case x: Short                  => out.writeByte(SHORT); out.writeShort(x)
+      case x: Int                    => out.writeByte(INT); out.writeInt(x)
+      case x: Long                   => out.writeByte(LONG); out.writeLong(x)
+      case x: Float                  => out.writeByte(FLOAT); out.writeFloat(x)
+      case x: Double                 => out.writeByte(DOUBLE); out.writeDouble(x)
+      case x: Char                   => out.writeByte(CHAR); out.writeChar(x)
+      case x: String                 => out.writeByte(STRING); writeString(x, out)
+      case x: Array[_]               => writeArray(x, out)
+      case x: immutable.Map[_, _]    =>
+        out.writeByte(MAP)
+        writeVarInt(x.size, out)
+        x.foreach {
+          case (k: String, v) =>
+            writeString(k, out)
+            writeValue(v, out)
+          case (k, _)         => cannotSpill(k)
+        }
+      case x: List[_]                => writeElements(LIST, x, out)
+      case x: Vector[_]              => writeElements(VECTOR, x, out)
+      case x: mutable.ArrayBuffer[_] => writeElements(ARRAY_BUFFER, x, out)
+      case x: mutable.ListBuffer[_]  => writeElements(LIST_BUFFER, x, out)
+      case x                         => cannotSpill(x)
+    }
+  }
+
+  def readValue(in: DataInput, state: QueryState): Any = in.readByte() match {
+    case NULL         => null
+    case NODE         => state.query.nodeOps.getById(readVarLong(in))
+    case RELATIONSHIP => state.query.relationshipOps.getById(readVarLong(in))
+    case PATH         => PathImpl((0 until readVarInt(in)).map(_ => readValue(in, state).asInstanceOf[PropertyContainer]): _*)
+    case BOOLEAN      => in.readBoolean()
+    case BYTE         => in.readByte()
+    case SHORT        => in.readShort()
+    case INT          => in.readInt()
+    case LONG         => in.readLong()
+    case FLOAT        => in.readFloat()
+    case DOUBLE       => in.readDouble()
+    case CHAR         => in.readChar()
+    case STRING       => readString(in)
+    case ARRAY        => readArray(in)
+    case MAP          => (0 until readVarInt(in)).map(_ => readString(in) -> readValue(in, state)).toMap
+    case LIST         => readElements(List.newBuilder[Any], in, state)
+    case VECTOR       => readElements(Vector.newBuilder[Any], in, state)
+    case ARRAY_BUFFER => readElements(mutable.ArrayBuffer.newBuilder[Any], in, state)
+    case LIST_BUFFER  => readElements(mutable.ListBuffer.newBuilder[Any], in, state)
+    case x            => throw new InternalException("Unknown value type " + x + " in spilled rows")
+  }
+
+  private def cannotSpill(x: Any): Nothing =
+    throw new InternalException("Unable to spill a value of type " + x.getClass.getName + " to disk")
+
+  private def writeElements(kind: Byte, elements: Traversable[_], out: DataOutput) {
+    out.writeByte(kind)
+    writeVarInt(elements.size, out)
+    elements.foreach(writeValue(_, out))
+  }
+
+  private def readElements[C](builder: mutable.Builder[Any, C], in: DataInput, state: QueryState): C = {
+    val size = readVarInt(in)
+    builder.sizeHint(size)
+    (0 until size).foreach(_ => builder += readValue(in, state))
+    builder.result()
+  }
+
+  // Arrays are property values, so only arrays of primitives and strings are spilled. NULL means any other array
+  private def arrayComponent(array: Array[_]): Byte = array match {
+    case _: Array[Boolean] => BOOLEAN
+    case _: Array[Byte]    => BYTE
+    case _: Array[Short]   => SHORT
+    case _: Array[Int]     => INT
+    case _: Array[Long]    => LONG
+    case _: Array[Float]   => FLOAT
+    case _: Array[Double]  => DOUBLE
+    case _: Array[Char]    => CHAR
+    case x: Array[String] if !x.contains(null) => STRING
+    case _                 => NULL
+  }
+
+  private def writeArray(array: Array[_], out: DataOutput) {
+    val component = arrayComponent(array)
+    if (component == NULL) cannotSpill(array)
+    out.writeByte(ARRAY)
+    out.writeByte(component)
+    writeVarInt(array.length, out)
+    array match {
+      case x: Array[Boolean] => x.foreach(out.writeBoolean(_))
+      case x: Array[Byte]    => out.write(x)
+      case x: Array[Short]   => x.foreach(out.writeShort(_))
+      case x: Array[Int]     => x.foreach(out.writeInt(_))
+      case x: Array[Long]    => x.foreach(out.writeLong(_))
+      case x: Array[Float]   => x.foreach(out.writeFloat(_))
+      case x: Array[Double]  => x.foreach(out.writeDouble(_))
+      case x: Array[Char]    => x.foreach(out.writeChar(_))
+      case x: Array[String]  => x.foreach(writeString(_, out))
+    }
+  }
+
+  private def readArray(in: DataInput): Any = {
+    val component = in.readByte()
+    val length = readVarInt(in)
+    component match {
+      case BOOLEAN => Array.fill(length)(in.readBoolean())
+      case BYTE    =>
+        val bytes = new Array[Byte](length)
+        in.readFully(bytes)
+        bytes
+      case SHORT   => Array.fill(length)(in.readShort())
+      case INT     => Array.fill(length)(in.readInt())
+      case LONG    => Array.fill(length)(in.readLong())
+      case FLOAT   => Array.fill(length)(in.readFloat())
+      case DOUBLE  => Array.fill(length)(in.readDouble())
+      case CHAR    => Array.fill(length)(in.readChar())
+      case STRING  => Array.fill(length)(readString(in))
+      case x       => throw new InternalException("Unknown array type " + x + " in spilled rows")
+    }
+  }
+
+  private def writeString(value: String, out: DataOutput) {
+    val bytes = value.getBytes("UTF-8")
+    writeVarInt(bytes.length, out)
+    out.write(bytes)
+  }
+
+  private def readString(in: DataInput): String = {
+    val bytes = new Array[Byte](readVarInt(in))
+    in.readFully(bytes)
+    new String(bytes, "UTF-8")
+  }
+
+  def writeVarInt(value: Int, out: DataOutput) {
+    writeVarLong(value & 0xFFFFFFFFL, out)
+  }
+
+  def readVarInt(in: DataInput): Int = readVarLong(in).toInt
+
+  def writeVarLong(value: Long, out: DataOutput) {
+    var v = value
+    while ((v & ~0x7FL) != 0) {
+      out.writeByte(((v & 0x7F) | 0x80).toInt)
+      v >>>= 7
+    }
+    out.writeByte(v.toInt)
+  }
+
+  def readVarLong(in: DataInput): Long = {
+    var result = 0L
+    var shift = 0
+    var b = 0
+    do {
+      b = in.readByte()
+      result |= (b & 0x7FL) << shift
+      shift += 7
+    } while ((b & 0x80) != 0)
+    result
+  }
+}
@@ -31,6 +31,12 @@ abstract class StartPipe[T <: PropertyContainer](source: Pipe, name: String, cre
 
   val symbols = source.symbols.add(name, identifierType)
 
+  // When a ParallelPipe hands this pipe's rows out in batches, the batch is all a worker should see
+  override def createResults(state: QueryState): Iterator[ExecutionContext] = state.partition match {
+    case Some(p) if p.start eq this => p.rows.iterator
+    case _                          => super.createResults(state)
+  }
+
   protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState) = {
     input.flatMap(ctx => {
       val source = createSource(ctx, state)
@@ -47,14 +53,16 @@ abstract class StartPipe[T <: PropertyContainer](source: Pipe, name: String, cre
   def throwIfSymbolsMissing(symbols: SymbolTable) {}
 }
 
-class NodeStartPipe(source: Pipe, name: String, createSource: (ExecutionContext, QueryState) => Iterator[Node])
+class NodeStartPipe(source: Pipe, name: String, createSource: (ExecutionContext, QueryState) => Iterator[Node],
+                    override val estimatedRows: Option[Long] = None)
   extends StartPipe[Node](source, name, createSource) {
   def identifierType = NodeType()
 
   def visibleName = "Nodes"
 }
 
-class RelationshipStartPipe(source: Pipe, name: String, createSource: (ExecutionContext, QueryState) => Iterator[Relationship])
+class RelationshipStartPipe(source: Pipe, name: String, createSource: (ExecutionContext, QueryState) => Iterator[Relationship],
+                            override val estimatedRows: Option[Long] = None)
   extends StartPipe[Relationship](source, name, createSource) {
   def identifierType = RelationshipType()
 
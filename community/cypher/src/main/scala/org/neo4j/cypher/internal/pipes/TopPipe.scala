@@ -21,23 +21,18 @@ package org.neo4j.cypher.internal.pipes
 
 import org.neo4j.cypher.internal.commands.SortItem
 import org.neo4j.cypher.internal.symbols.{NumberType, SymbolTable}
-import collection.mutable.ListBuffer
 import org.neo4j.cypher.internal.commands.expressions.Expression
 import org.neo4j.cypher.internal.ExecutionContext
 import org.neo4j.cypher.internal.data.SimpleVal
 
 /*
  * TopPipe is used when a query does a ORDER BY ... LIMIT query. Instead of ordering the whole result set and then
- * returning the matching top results, we only keep the top results in heap, which allows us to release memory earlier
+ * returning the matching top results, we only keep the top results in a bounded heap, which allows us to release
+ * memory earlier. It never needs to spill to disk.
  */
 class TopPipe(source: Pipe, sortDescription: List[SortItem], countExpression: Expression) extends PipeWithSource(source) with ExecutionContextComparer {
   protected def internalCreateResults(input:Iterator[ExecutionContext], state: QueryState): Iterator[ExecutionContext] = {
     implicit val s = state
-    var result = new ListBuffer[ExecutionContext]()
-    var last: Option[ExecutionContext] = None
-    val largerThanLast = (ctx: ExecutionContext) => last.forall(s => compareBy(s, ctx, sortDescription))
-    var size = 0
-    var sorted = false
 
     if (input.isEmpty)
       Iterator.empty
@@ -45,34 +40,32 @@ class TopPipe(source: Pipe, sortDescription: List[SortItem], countExpression: Ex
       val first = input.next()
       val count = countExpression(first).asInstanceOf[Number].intValue()
 
-      val iter = new HeadAndTail(first, input)
-      iter.foreach {
-        case ctx =>
+      if (count <= 0)
+        Iterator.empty
+      else {
+        // The last row in sort order is at the head of the heap, ready to be replaced by a row sorting before it.
+        // The heap grows as rows come in, a huge LIMIT over few rows shouldn't allocate room for LIMIT rows up front
+        val top = new java.util.PriorityQueue[ExecutionContext](math.min(count, TopPipe.InitialCapacity), new java.util.Comparator[ExecutionContext] {
+          def compare(a: ExecutionContext, b: ExecutionContext) =
+            if (compareBy(a, b, sortDescription)) 1
+            else if (compareBy(b, a, sortDescription)) -1
+            else 0
+        })
 
-          if (size < count) {
-            result += ctx
-            size += 1
+        val iter = new HeadAndTail(first, input)
+        iter.foreach {
+          case ctx if top.size < count                           => top.add(ctx)
+          case ctx if compareBy(ctx, top.peek, sortDescription) =>
+            top.poll()
+            top.add(ctx)
+          case _                                                 =>
+        }
 
-            if (largerThanLast(ctx)) {
-              last = Some(ctx)
-            }
-          } else
-            if (!largerThanLast(ctx)) {
-              result -= last.get
-              result += ctx
-              result = result.sortWith((a, b) => compareBy(a, b, sortDescription))
-              sorted = true
-              last = Some(result.last)
-            }
+        val result = new Array[ExecutionContext](top.size)
+        top.toArray(result)
+        result.sortWith((a, b) => compareBy(a, b, sortDescription)).iterator
       }
     }
-
-    if (!sorted) {
-      result = result.sortWith((a, b) => compareBy(a, b, sortDescription))
-    }
-
-
-    result.toIterator
   }
 
   def executionPlanDescription =
@@ -87,4 +80,8 @@ class TopPipe(source: Pipe, sortDescription: List[SortItem], countExpression: Ex
     sortDescription.foreach(_.expression.throwIfSymbolsMissing(symbols))
     countExpression.evaluateType(NumberType(), symbols)
   }
-}
\ No newline at end of file
+}
+
+object TopPipe {
+  val InitialCapacity = 1024
+}
@@ -29,7 +29,8 @@ import java.util
 import org.neo4j.graphdb.PropertyContainer
 import collection.mutable
 
-class TraversalMatchPipe(source: Pipe, matcher: TraversalMatcher, trail: Trail) extends PipeWithSource(source) {
+class TraversalMatchPipe(source: Pipe, matcher: TraversalMatcher, trail: Trail,
+                         override val estimatedRows: Option[Long] = None) extends PipeWithSource(source) {
 
   protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState) = {
     input.flatMap {
@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes.matching
+
+import org.neo4j.graphdb.{PropertyContainer, Relationship, Path, Node}
+import org.neo4j.cypher.internal.pipes.{LongIntMap, LongSet, QueryState, EntityProducer}
+import org.neo4j.cypher.internal.ExecutionContext
+import org.neo4j.cypher.PathImpl
+import collection.mutable.ArrayBuffer
+
+/*
+Matches a trail made up of a single variable length relationship, without going through the traversal framework.
+
+Paths are expanded depth first from each start node, and produced lazily, so a LIMIT further up stops the expansion.
+The relationships of the path being expanded are kept in a LongSet, which makes the relationship uniqueness check
+a constant time lookup instead of a walk back along the path.
+
+When the end nodes are bound as well, we meet in the middle: the end side is expanded breadth first for the second
+half of the allowed length, recording how far each node it reaches is from the nearest end node. The start side
+then only follows relationships from which an end node can still be reached within what is left of the allowed
+length. Every matching path is still produced, since each path is a row of its own. Without a maximum length the
+end side would have to be expanded all the way before the first row, so that is only done for bounded lengths.
+ */
+class VarLengthTraversalMatcher(step: VarLengthStep,
+                                start: EntityProducer[Node],
+                                end: Option[EntityProducer[Node]]) extends TraversalMatcher {
+
+  require(end.isEmpty || step.max.nonEmpty, "Only variable length relationships with a maximum length can be matched from both ends")
+
+  def findMatchingPaths(state: QueryState, context: ExecutionContext): Iterator[Path] = {
+    lazy val goal = end.map(producer => new Goal(producer(context, state).toList, step.max.get, state))
+
+    start(context, state).flatMap(node => new PathIterator(node, goal, state))
+  }
+
+  /*
+  The end side of the match. Distances are only known for nodes within `radius` steps of an end node; nodes
+  further away than that can only be ruled out once the start side has come close enough.
+   */
+  private class Goal(ends: Seq[Node], max: Int, state: QueryState) {
+    val radius = max - max / 2
+    val endIds = new LongSet
+    val distances = new LongIntMap
+
+    ends.foreach(node => if (endIds.add(node.getId)) distances.putIfAbsent(node.getId, 0))
+
+    private var frontier: Seq[Node] = ends.distinct
+    private var depth = 0
+    private val reversed = step.direction.reverse()
+
+    while (frontier.nonEmpty && depth < radius) {
+      depth += 1
+      val reached = new ArrayBuffer[Node]
+      frontier.foreach(node => state.query.getRelationshipsFor(node, reversed, step.typ).foreach(rel => {
+        val other = rel.getOtherNode(node)
+        if (distances.putIfAbsent(other.getId, depth))
+          reached += other
+      }))
+      frontier = reached
+    }
+
+    def isEnd(node: Node) = endIds.contains(node.getId)
+
+    def canReach(node: Node, length: Int): Boolean = {
+      val distance = distances.get(node.getId)
+      if (distance == -1) max - length > radius else length + distance <= max
+    }
+  }
+
+  private class PathIterator(startNode: Node, goal: => Option[Goal], state: QueryState) extends Iterator[Path] {
+    private val nodes = ArrayBuffer(startNode)
+    private val rels = new ArrayBuffer[Relationship]
+    private val relIds = new LongSet
+    private val expansions = new ArrayBuffer[Iterator[Relationship]]
+    private var nextPath: Path = null
+
+    if (step.max != Some(0))
+      expansions += expand(startNode)
+
+    if (step.min == 0 && isEnd(startNode))
+      nextPath = PathImpl(startNode)
+
+    def hasNext = {
+      if (nextPath == null)
+        nextPath = computeNext()
+      nextPath != null
+    }
+
+    def next() = {
+      if (!hasNext)
+        Iterator.empty.next()
+      val path = nextPath
+      nextPath = null
+      path
+    }
+
+    private def computeNext(): Path = {
+      while (expansions.nonEmpty) {
+        val expansion = expansions.last
+        if (!expansion.hasNext) {
+          expansions.remove(expansions.size - 1)
+          if (rels.nonEmpty) {
+            relIds.remove(rels.remove(rels.size - 1).getId)
+            nodes.remove(nodes.size - 1)
+          }
+        } else {
+          val rel = expansion.next()
+          val length = rels.size + 1
+          if (!relIds.contains(rel.getId)) {
+            val other = rel.getOtherNode(nodes.last)
+            if (goal.forall(_.canReach(other, length))) {
+              rels += rel
+              nodes += other
+              relIds.add(rel.getId)
+              expansions += (if (step.max.forall(length < _)) expand(other) else Iterator.empty)
+
+              if (length >= step.min && isEnd(other))
+                return toPath
+            }
+          }
+        }
+      }
+      null
+    }
+
+    private def isEnd(node: Node) = goal.forall(_.isEnd(node))
+
+    private def expand(node: Node) = state.query.getRelationshipsFor(node, step.direction, step.typ).iterator
+
+    private def toPath: Path = {
+      val entities = new Array[PropertyContainer](nodes.size + rels.size)
+      for (i <- 0 until rels.size) {
+        entities(i * 2) = nodes(i)
+        entities(i * 2 + 1) = rels(i)
+      }
+      entities(entities.length - 1) = nodes.last
+      PathImpl(entities: _*)
+    }
+  }
+}
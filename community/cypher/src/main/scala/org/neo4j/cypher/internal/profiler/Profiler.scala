@@ -25,16 +25,29 @@ import org.neo4j.cypher.internal.spi.{DelegatingOperations, Operations, QueryCon
 import collection.mutable
 import org.neo4j.cypher.{ProfilerStatisticsNotReadyException, PlanDescription}
 import org.neo4j.graphdb.{PropertyContainer, Direction, Relationship, Node}
-import org.neo4j.cypher.internal.data.PrimVal
+import org.neo4j.cypher.internal.data.{SimpleVal, PrimVal}
+import java.lang.management.ManagementFactory
 
-class Profiler extends PipeDecorator {
+/**
+ * Collects, for every pipe of a profiled query, the rows it produced, the database accesses it made and the time,
+ * memory allocation and cache lookups spent in it.
+ *
+ * The last three are charged to whichever pipe is running at the moment: creating a pipe's results and pulling a
+ * row out of it marks the pipe as running until it returns, and a source pipe pulled in the meantime takes over
+ * until it returns in turn. What a pipe reports is therefore its own cost, not including its sources. Cache lookups
+ * are the hit and miss counts of the node and relationship caches, as given by cacheLookups. Those caches are shared
+ * by the whole database, so other queries running at the same time show up in them too.
+ */
+class Profiler(cacheLookups: () => (Long, Long) = Profiler.NO_CACHES) extends PipeDecorator {
 
   val contextStats: mutable.Map[Pipe, ProfilingQueryContext] = mutable.Map.empty
   val iterStats: mutable.Map[Pipe, ProfilingIterator] = mutable.Map.empty
-
+  val meter = new Meter(cacheLookups)
 
   def decorate(pipe: Pipe, iter: Iterator[ExecutionContext]): Iterator[ExecutionContext] = {
-    val resultIter = new ProfilingIterator(iter)
+    meter.leave(pipe)
+
+    val resultIter = new ProfilingIterator(iter, pipe, meter)
 
     assert(!iterStats.contains(pipe), "Can't profile the same iterator twice")
 
@@ -52,6 +65,9 @@ class Profiler extends PipeDecorator {
     }
 
     contextStats(pipe) = decoratedContext
+
+    // Whatever the pipe does to set up its results is its own cost
+    meter.enter(pipe)
     state.copy(query = decoratedContext)
   }
 
@@ -62,7 +78,13 @@ class Profiler extends PipeDecorator {
       if ( ! isProfileReady )
         throw new ProfilerStatisticsNotReadyException()
 
-      val newArgs = p.args :+ "_rows" -> PrimVal(iteratorStats.count)
+      val rows = p.args :+ "_rows" -> PrimVal(iteratorStats.count)
+      val estimated = p.pipe.estimatedRows match {
+        case Some(estimate) => rows :+ "_estimated_rows" -> PrimVal(estimate)
+        case None           => rows
+      }
+
+      val newArgs = estimated ++ meter.costOf(p.pipe)
 
       contextStats.get(p.pipe) match {
         case Some(stats) => newArgs :+ "_db_hits" -> PrimVal(stats.count)
@@ -72,6 +94,86 @@ class Profiler extends PipeDecorator {
   }
 }
 
+object Profiler {
+  val NO_CACHES = () => (0L, 0L)
+}
+
+/**
+ * Charges elapsed time, allocated bytes and cache lookups to the pipe on top of a stack of running pipes.
+ */
+class Meter(cacheLookups: () => (Long, Long)) {
+  private val running = mutable.Stack[Pipe]()
+  private val costs = mutable.Map[Pipe, Cost]()
+  private var last = sample()
+
+  def enter(pipe: Pipe) {
+    charge()
+    running.push(pipe)
+  }
+
+  def leave(pipe: Pipe) {
+    charge()
+    if (running.nonEmpty && (running.top eq pipe))
+      running.pop()
+  }
+
+  def measure[T](pipe: Pipe)(f: => T): T = {
+    enter(pipe)
+    try {
+      f
+    } finally {
+      leave(pipe)
+    }
+  }
+
+  def costOf(pipe: Pipe): Seq[(String, SimpleVal)] = {
+    val cost = costs.getOrElse(pipe, Cost(0, 0, 0, 0))
+    val time: (String, SimpleVal) = "_time_ms" -> PrimVal(cost.nanos / 1000000.0)
+    val lookups: Seq[(String, SimpleVal)] = Seq("_cache_hits" -> PrimVal(cost.hits), "_cache_misses" -> PrimVal(cost.misses))
+
+    if (Meter.allocations.isDefined)
+      Seq(time, "_allocated_bytes" -> PrimVal(cost.bytes)) ++ lookups
+    else
+      time +: lookups
+  }
+
+  private def charge() {
+    val now = sample()
+    if (running.nonEmpty) {
+      val pipe = running.top
+      costs(pipe) = costs.getOrElse(pipe, Cost(0, 0, 0, 0)) + (now - last)
+    }
+    last = now
+  }
+
+  private def sample() = {
+    val (hits, misses) = cacheLookups()
+    val bytes = Meter.allocations.map(_.getThreadAllocatedBytes(Thread.currentThread().getId)).getOrElse(0L)
+    Cost(System.nanoTime(), bytes, hits, misses)
+  }
+}
+
+object Meter {
+  /**
+   * Per thread allocation counting is a HotSpot extension, so it is only used when the JVM has it.
+   */
+  val allocations: Option[com.sun.management.ThreadMXBean] = try {
+    ManagementFactory.getThreadMXBean match {
+      case bean: com.sun.management.ThreadMXBean
+        if bean.isThreadAllocatedMemorySupported && bean.isThreadAllocatedMemoryEnabled => Some(bean)
+      case _                                                                             => None
+    }
+  } catch {
+    case e: LinkageError => None
+  }
+}
+
+case class Cost(nanos: Long, bytes: Long, hits: Long, misses: Long) {
+  def +(other: Cost) = Cost(nanos + other.nanos, bytes + other.bytes, hits + other.hits, misses + other.misses)
+
+  def -(other: Cost) = Cost(nanos - other.nanos, bytes - other.bytes, hits - other.hits, misses - other.misses)
+}
+
 trait Counter {
   private var _count = 0L
 
@@ -159,11 +261,14 @@ class ProfilingQueryContext(val inner: QueryContext, val p: Pipe) extends Delega
   override def relationshipOps: Operations[Relationship] = new ProfilerOperations(inner.relationshipOps)
 }
 
-class ProfilingIterator(inner: Iterator[ExecutionContext]) extends Iterator[ExecutionContext] with Counter {
+class ProfilingIterator(inner: Iterator[ExecutionContext], pipe: Pipe, meter: Meter)
+  extends Iterator[ExecutionContext] with Counter {
 
-  def hasNext: Boolean = inner.hasNext
+  def hasNext: Boolean = meter.measure(pipe) {
+    inner.hasNext
+  }
 
-  def next(): ExecutionContext = {
+  def next(): ExecutionContext = meter.measure(pipe) {
     increment()
     inner.next()
   }
@@ -24,6 +24,10 @@ import org.neo4j.graphdb.{PropertyContainer, Direction, Node}
 
 class DelegatingQueryContext(inner: QueryContext) extends QueryContext {
 
+  def onClose(action: () => Unit) {
+    inner.onClose(action)
+  }
+
   def close() {
     inner.close()
   }
@@ -33,6 +33,11 @@ trait QueryContext {
 
   def getRelationshipsFor(node: Node, dir: Direction, types: Seq[String]): Iterable[Relationship]
 
+  /**
+   * Registers an action that releases something the query holds on to, run when the query is closed.
+   */
+  def onClose(action: () => Unit)
+
   def close()
 }
 
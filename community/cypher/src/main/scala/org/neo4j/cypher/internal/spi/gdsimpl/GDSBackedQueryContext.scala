@@ -26,10 +26,30 @@ import collection.JavaConverters._
 import java.lang.{Iterable=>JIterable}
 import org.neo4j.tooling.GlobalGraphOperations
 import org.neo4j.cypher.EntityNotFoundException
+import org.neo4j.helpers.collection.ClosableIterator
+import java.util.concurrent.ConcurrentLinkedQueue
 
 class GDSBackedQueryContext(graph: GraphDatabaseService) extends QueryContext {
 
-  def close() {}
+  // Parts of a query running in parallel share this context
+  private val closeActions = new ConcurrentLinkedQueue[() => Unit]()
+
+  def onClose(action: () => Unit) {
+    closeActions.add(action)
+  }
+
+  def close() {
+    Iterator.continually(closeActions.poll()).takeWhile(_ != null).foreach(_())
+  }
+
+  // Store scans stop reading ahead when closed, which matters when a query is abandoned before they're done
+  private def scan[T](iterator: java.util.Iterator[T]): Iterator[T] = {
+    iterator match {
+      case closable: ClosableIterator[_] => onClose(() => closable.close())
+      case _ =>
+    }
+    iterator.asScala
+  }
 
   def createNode(): Node = graph.createNode
 
@@ -87,7 +107,7 @@ class GDSBackedQueryContext(graph: GraphDatabaseService) extends QueryContext {
         graph.index.forNodes(name).query(name, query).iterator().asScala
 
       def all: Iterator[Node] =
-        GlobalGraphOperations.at(graph).getAllNodes.iterator().asScala
+        scan(GlobalGraphOperations.at(graph).getAllNodes.iterator())
     }
   }
 
@@ -131,7 +151,7 @@ class GDSBackedQueryContext(graph: GraphDatabaseService) extends QueryContext {
         graph.index.forRelationships(name).query(query).iterator().asScala
 
       def all: Iterator[Relationship] =
-        GlobalGraphOperations.at(graph).getAllRelationships.iterator().asScala
+        scan(GlobalGraphOperations.at(graph).getAllRelationships.iterator())
     }
   }
 }
\ No newline at end of file
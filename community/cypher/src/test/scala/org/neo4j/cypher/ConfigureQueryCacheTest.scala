@@ -25,6 +25,7 @@ import org.neo4j.kernel.InternalAbstractGraphDatabase
 import org.junit.Assert._
 import java.util
 import org.neo4j.graphdb.factory.GraphDatabaseSettings
+import org.neo4j.cypher.internal.QueryCacheStatistics
 
 
 class ConfigureQueryCacheTest extends GraphDatabaseTestBase with Assertions
@@ -51,4 +52,44 @@ class ConfigureQueryCacheTest extends GraphDatabaseTestBase with Assertions
     assertFalse("Should not have cached first query", engine.isPrepared("START n=node(1) RETURN n"))
   }
 
-}
\ No newline at end of file
+  @Test
+  def shouldShareThePlanOfQueriesOnlyDifferingInLiterals()
+  {
+    // Given
+    val andres = createNode("name" -> "Andres", "age" -> 36)
+    createNode("name" -> "Peter", "age" -> 34)
+    val engine = new ExecutionEngine(graph)
+    val statistics = QueryCacheStatistics.of(graph)
+
+    // When
+    val first = engine.execute("START n=node(%d) WHERE n.name = 'Andres' AND n.age > 35 RETURN n".format(andres.getId)).toList
+    val second = engine.execute("START n=node(%d) WHERE n.name = 'Andres' AND n.age > 36 RETURN n".format(andres.getId)).toList
+    val third = engine.execute("START n=node(1,2) WHERE n.name = 'Peter' RETURN n.name LIMIT 5").toList
+    val fourth = engine.execute("START n=node(1,2) WHERE n.name = 'Andres' RETURN n.name LIMIT 1").toList
+
+    // Then
+    assert(first === List(Map("n" -> andres)))
+    assert(second === List())
+    assert(third === List(Map("n.name" -> "Peter")))
+    assert(fourth === List(Map("n.name" -> "Andres")))
+    assertTrue("Should have cached the parameterized query", engine.isPrepared("START n=node(7) WHERE n.name = 'Emil' AND n.age > 1 RETURN n"))
+    assert(statistics.getMisses === 2)
+    assert(statistics.getHits === 2)
+  }
+
+  @Test
+  def shouldOnlyTryTheParameterizedVersionOfAQueryOnce()
+  {
+    // Given
+    val engine = new ExecutionEngine(graph)
+    val statistics = QueryCacheStatistics.of(graph)
+    val query = "START n=node(1) WHERE n.age > 35 RETURN"
+
+    // When
+    intercept[SyntaxException](engine.execute(query))
+    intercept[SyntaxException](engine.execute(query))
+
+    // Then
+    assert(statistics.getMisses === 3, "the parameterized query should only have been parsed the first time")
+  }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher
+
+import org.junit.{After, Before, Test}
+import org.scalatest.Assertions
+import org.neo4j.test.ImpermanentGraphDatabase
+import org.neo4j.graphdb.{DynamicRelationshipType, Node}
+import org.neo4j.graphdb.factory.GraphDatabaseSettings
+import collection.JavaConverters._
+
+class ParallelExecutionTest extends Assertions {
+  val nodeCount = 5000
+  var graph: ImpermanentGraphDatabase = null
+  var engine: ExecutionEngine = null
+
+  @Before def init() {
+    graph = new ImpermanentGraphDatabase(Map(GraphDatabaseSettings.cypher_parallelism.name() -> "4").asJava)
+    engine = new ExecutionEngine(graph)
+
+    val tx = graph.beginTx()
+    try {
+      var previous: Node = graph.getReferenceNode
+      (1 to nodeCount).foreach(i => {
+        val n = graph.createNode()
+        n.setProperty("i", i)
+        previous.createRelationshipTo(n, DynamicRelationshipType.withName("NEXT"))
+        previous = n
+      })
+      tx.success()
+    } finally {
+      tx.finish()
+    }
+  }
+
+  @After def cleanUp() {
+    graph.shutdown()
+  }
+
+  @Test def should_return_the_same_rows_in_the_same_order() {
+    val result = engine.execute("start n=node(*) where n.i % 3 = 0 return n.i")
+
+    assert(result.executionPlanDescription().toString.contains("Parallel"))
+    assert(result.columnAs[Int]("n.i").toList === (1 to nodeCount).filter(_ % 3 == 0).toList)
+  }
+
+  @Test def should_match_patterns_in_parallel() {
+    val result = engine.execute("start n=node(*) match n-[:NEXT]->m where m.i % 2 = 0 return n, m")
+
+    assert(result.toList.size === nodeCount / 2)
+  }
+
+  @Test def should_aggregate_the_rows_of_all_workers() {
+    val result = engine.execute("start n=node(*) where has(n.i) return count(*), sum(n.i)").toList
+    val row = result.head.mapValues(_.asInstanceOf[Number].longValue())
+
+    assert(result.size === 1)
+    assert(row === Map("count(*)" -> nodeCount.toLong, "sum(n.i)" -> (1 to nodeCount).map(_.toLong).sum))
+  }
+
+  @Test def should_sort_and_limit_the_rows_of_all_workers() {
+    val result = engine.execute("start n=node(*) where has(n.i) return n.i order by n.i desc limit 3")
+
+    assert(result.columnAs[Int]("n.i").toList === List(nodeCount, nodeCount - 1, nodeCount - 2))
+  }
+
+  @Test def should_see_changes_of_the_enclosing_transaction() {
+    val tx = graph.beginTx()
+    try {
+      graph.createNode().setProperty("i", nodeCount + 1)
+
+      val result = engine.execute("start n=node(*) where n.i > " + nodeCount + " return n.i")
+
+      assert(result.columnAs[Int]("n.i").toList === List(nodeCount + 1))
+    } finally {
+      tx.finish()
+    }
+  }
+}
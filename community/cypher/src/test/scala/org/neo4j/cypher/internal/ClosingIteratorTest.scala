@@ -118,4 +118,42 @@ class ClosingIteratorTest extends Assertions {
     //Then
     verify(tx).failure()
   }
-}
\ No newline at end of file
+
+  @Test
+  def exception_should_close_querycontext() {
+    //Given
+    val queryContext = mock(classOf[QueryContext])
+    val tx = mock(classOf[Transaction])
+
+    val wrapee = mock(classOf[Iterator[Int]])
+    when(wrapee.hasNext).thenThrow(new RuntimeException)
+
+    val iterator = new ClosingIterator(wrapee, queryContext, tx)
+
+    //When
+    intercept[RuntimeException](iterator.hasNext)
+
+    //Then
+    verify(queryContext).close()
+    verify(tx).finish()
+  }
+
+  @Test
+  def closing_early_should_finish_the_transaction_once() {
+    //Given
+    val queryContext = mock(classOf[QueryContext])
+    val tx = mock(classOf[Transaction])
+    val wrapee = Iterator(1, 2, 3)
+    val iterator = new ClosingIterator(wrapee, queryContext, tx)
+
+    //When
+    iterator.next()
+    iterator.close()
+    iterator.close()
+
+    //Then
+    verify(queryContext).close()
+    verify(tx).success()
+    verify(tx).finish()
+  }
+}
@@ -22,6 +22,8 @@ package org.neo4j.cypher.internal
 import org.scalatest.Assertions
 import org.junit.Test
 import org.junit.Assert._
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{TimeUnit, Executors, CountDownLatch}
 
 class LRUCacheTest extends Assertions {
   @Test def shouldStoreSingleValue() {
@@ -62,4 +64,59 @@ class LRUCacheTest extends Assertions {
     assertFalse(cache.containsKey("2"));
   }
 
-}
\ No newline at end of file
+  @Test def shouldOnlyEvaluateTheValueOnceOnAMiss() {
+    val cache = new LRUCache[String, String](5)
+    val evaluations = new AtomicInteger()
+
+    assert(cache.getOrElseUpdate("hello", { evaluations.incrementAndGet(); "world" }) === "world")
+    assert(cache.getOrElseUpdate("hello", { evaluations.incrementAndGet(); "world" }) === "world")
+
+    assert(evaluations.get() === 1)
+    assert(cache.misses === 1)
+    assert(cache.hits === 1)
+  }
+
+  @Test def concurrentMissesShouldOnlyEvaluateTheValueOnce() {
+    val cache = new LRUCache[String, String](5)
+    val evaluations = new AtomicInteger()
+    val threads = 8
+    val start = new CountDownLatch(1)
+    val executor = Executors.newFixedThreadPool(threads)
+
+    val futures = (1 to threads).map(_ => executor.submit(new java.util.concurrent.Callable[String] {
+      def call() = {
+        start.await()
+        cache.getOrElseUpdate("hello", {
+          evaluations.incrementAndGet()
+          Thread.sleep(50)
+          "world"
+        })
+      }
+    }))
+    start.countDown()
+
+    futures.foreach(f => assert(f.get(10, TimeUnit.SECONDS) === "world"))
+    executor.shutdown()
+    assert(evaluations.get() === 1)
+  }
+
+  @Test def shouldNotCacheFailures() {
+    val cache = new LRUCache[String, String](5)
+
+    intercept[IllegalStateException](cache.getOrElseUpdate("hello", throw new IllegalStateException()))
+
+    assertFalse(cache.containsKey("hello"))
+    assert(cache.getOrElseUpdate("hello", "world") === "world")
+  }
+
+  @Test def shouldCountEvictions() {
+    val cache = new LRUCache[String, String](5)
+    fillWithOneToFive(cache)
+
+    cache.put("6", "6")
+    cache.put("7", "7")
+
+    assert(cache.evictions === 2)
+    assert(cache.get("1") === None)
+  }
+}
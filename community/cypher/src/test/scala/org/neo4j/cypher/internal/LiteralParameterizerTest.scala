@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal
+
+import org.scalatest.Assertions
+import org.junit.Test
+
+class LiteralParameterizerTest extends Assertions {
+  @Test def shouldExtractLiteralsInWhere() {
+    assert(LiteralParameterizer("START n=node(*) WHERE n.name = 'Andres' AND n.age > 36 RETURN n") === Some(
+      ("START n=node(*) WHERE n.name = {`  AUTOSTRING0`} AND n.age > {`  AUTONUMBER1`} RETURN n",
+        Map("  AUTOSTRING0" -> "Andres", "  AUTONUMBER1" -> 36L))))
+  }
+
+  @Test def shouldExtractIdsAndIndexValuesInStart() {
+    assert(LiteralParameterizer("START a=node(1, 2), b=node:people(name=\"x\"), r=rel(3) RETURN a") === Some(
+      ("START a=node({`  AUTOIDS0`}), b=node:people(name={`  AUTOSTRING1`}), r=rel({`  AUTOID2`}) RETURN a",
+        Map("  AUTOIDS0" -> List(1L, 2L), "  AUTOSTRING1" -> "x", "  AUTOID2" -> List(3L)))))
+  }
+
+  @Test def shouldExtractSkipAndLimit() {
+    assert(LiteralParameterizer("START n=node(*) RETURN n SKIP 5 LIMIT 10") === Some(
+      ("START n=node(*) RETURN n SKIP {`  AUTOINT0`} LIMIT {`  AUTOINT1`}",
+        Map("  AUTOINT0" -> 5, "  AUTOINT1" -> 10))))
+  }
+
+  @Test def shouldLeaveLiteralsThatEndUpInColumnsAlone() {
+    assert(LiteralParameterizer("START n=node(*) RETURN n.age + 1, 'foo'") === None)
+  }
+
+  @Test def shouldLeavePatternsCollectionsAndIdentifiersAlone() {
+    assert(LiteralParameterizer("START n=node(*) WHERE n-[:KNOWS*1..3]->() AND n.x IN [1, 2] AND `a 1`.x = n2.y RETURN n") === None)
+  }
+
+  @Test def shouldLeaveStringsWithEscapesAndRegularExpressionsAlone() {
+    assert(LiteralParameterizer("START n=node(*) WHERE n.name = 'it\\'s' AND n.name =~ /a'1/ RETURN n") === None)
+  }
+
+  @Test def shouldLeaveNegativeAndExponentNumbersAlone() {
+    assert(LiteralParameterizer("START n=node(*) WHERE n.x = -1 OR n.y = 1e5 RETURN n") === None)
+  }
+
+  @Test def shouldLeaveQueriesWithAVersionAlone() {
+    assert(LiteralParameterizer("CYPHER 1.8 START n=node(1) RETURN n") === None)
+  }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal
+
+import commands.expressions.Identifier
+import pipes.QueryState
+import org.scalatest.Assertions
+import org.junit.Test
+import org.neo4j.graphdb.NotFoundException
+
+class SlotsTest extends Assertions {
+  val slots = new Slots(Seq("a", "b", "c"))
+
+  @Test def shouldStoreKnownIdentifiersInSlots() {
+    val m = slots.newMap += ("a" -> 1) += ("c" -> null)
+
+    assert(m.getSlot(0) === Some(1))
+    assert(m.getSlot(1) === None)
+    assert(m.getSlot(2) === Some(null))
+    assert(m.size === 2)
+    assert(m.toMap === Map("a" -> 1, "c" -> null))
+  }
+
+  @Test def shouldKeepUnknownIdentifiersInTheOverflow() {
+    val m = slots.newMap += ("a" -> 1) += ("x" -> 2)
+
+    assert(m.get("x") === Some(2))
+    assert(m.size === 2)
+    assert(m.toMap === Map("a" -> 1, "x" -> 2))
+
+    m -= "x"
+    m -= "a"
+    assert(m.isEmpty)
+  }
+
+  @Test def newWithShouldCopyTheRowAndKeepTheLayout() {
+    val ctx = ExecutionContext(slots.newMap += ("a" -> 1))
+
+    val newCtx = ctx.newWith("b" -> 2)
+
+    assert(newCtx.m.isInstanceOf[SlottedMap])
+    assert(newCtx.toMap === Map("a" -> 1, "b" -> 2))
+    assert(ctx.toMap === Map("a" -> 1))
+  }
+
+  @Test def newFromShouldKeepTheLayout() {
+    val ctx = ExecutionContext(slots.newMap += ("a" -> 1))
+
+    val newCtx = ctx.newFrom(Seq("c" -> 3))
+
+    assert(newCtx.m.asInstanceOf[SlottedMap].slots === slots)
+    assert(newCtx.toMap === Map("c" -> 3))
+  }
+
+  @Test def identifierShouldReadItsSlot() {
+    implicit val state = QueryState.empty
+    val other = new Slots(Seq("c", "b"))
+
+    assert(Identifier("b")(ExecutionContext(slots.newMap += ("b" -> 1))) === 1)
+    assert(Identifier("b")(ExecutionContext(other.newMap += ("b" -> 2))) === 2)
+    assert(Identifier("b")(ExecutionContext.from("b" -> 3)) === 3)
+    intercept[NotFoundException](Identifier("b")(ExecutionContext(slots.newMap)))
+  }
+
+  @Test def allocatorShouldResolveIdentifiersToSlots() {
+    val allocator = new SlotAllocator
+
+    assert(allocator.slotOf("x") === 0)
+    val resolved = allocator.resolve(Identifier("y")).asInstanceOf[Identifier]
+
+    assert(resolved.slot === 1)
+    assert(resolved === Identifier("y"))
+    assert(allocator.slotOf("x") === 0)
+    assert(allocator.identifiers === Seq("x", "y"))
+  }
+
+  @Test def identifierShouldReadTheSlotItWasResolvedTo() {
+    implicit val state = QueryState.empty
+
+    assert(Identifier("b", 1)(ExecutionContext(slots.newMap += ("b" -> 1))) === 1)
+    // Resolved against another layout, so it has to find its slot by name
+    assert(Identifier("b", 0)(ExecutionContext(slots.newMap += ("a" -> 0) += ("b" -> 1))) === 1)
+    assert(Identifier("b", 1)(ExecutionContext.from("b" -> 3)) === 3)
+  }
+
+  @Test def shouldReadAndWriteRowsBySlot() {
+    val ctx = ExecutionContext(slots.newMap)
+
+    ctx.setAt("c", 2, 3)
+    ctx.setAt("x", 0, 4)
+
+    assert(ctx.getAt("c", 2) === 3)
+    assert(ctx.getAt("x", 0) === 4)
+    assert(ctx.toMap === Map("c" -> 3, "x" -> 4))
+    intercept[NoSuchElementException](ctx.getAt("a", 0))
+  }
+}
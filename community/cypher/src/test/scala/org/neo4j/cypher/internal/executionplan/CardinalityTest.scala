@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.executionplan
+
+import org.junit.Test
+import org.scalatest.Assertions
+import org.neo4j.cypher.GraphDatabaseTestBase
+import org.neo4j.cypher.internal.commands.{True, RelatedTo, AllNodes, NodeById}
+import org.neo4j.cypher.internal.commands.expressions.ParameterExpression
+import org.neo4j.cypher.internal.LiteralParameterizer
+import org.neo4j.cypher.internal.pipes.matching.{EndPoint, SingleStepTrail}
+import org.neo4j.graphdb.Direction
+
+class CardinalityTest extends GraphDatabaseTestBase with Assertions {
+  @Test def should_estimate_fan_out_per_type_and_direction() {
+    val city = createNode()
+    (1 to 20).foreach(_ => relate(createNode(), city, "LIVES_IN"))
+
+    val cardinality = Cardinality(graph)
+
+    assert(math.abs(cardinality.fanOut(Seq("LIVES_IN"), Direction.OUTGOING) - 1.0) < 0.1)
+    assert(cardinality.fanOut(Seq("LIVES_IN"), Direction.INCOMING) > 10)
+    assert(cardinality.fanOut(Seq("UNKNOWN"), Direction.OUTGOING) === 0.0)
+  }
+
+  @Test def should_estimate_trail_rows_from_the_start_item() {
+    val city = createNode()
+    (1 to 20).foreach(_ => relate(createNode(), city, "LIVES_IN"))
+    val cardinality = Cardinality(graph)
+
+    val pattern = RelatedTo("a", "b", "r", Seq("LIVES_IN"), Direction.OUTGOING, optional = false, predicate = True())
+    val outwards = SingleStepTrail(EndPoint("b"), Direction.OUTGOING, "r", Seq("LIVES_IN"), "a", True(), True(), pattern, Seq())
+    val inwards = SingleStepTrail(EndPoint("a"), Direction.INCOMING, "r", Seq("LIVES_IN"), "b", True(), True(), pattern, Seq())
+
+    assert(math.abs(cardinality.trailRows(outwards, Some(NodeById("a", 1, 2))) - 2.0) < 0.2)
+    assert(cardinality.trailRows(inwards, Some(NodeById("b", city.getId))) > 10)
+    assert(cardinality.startRows(AllNodes("n")) >= 21)
+  }
+
+  @Test def without_statistics_everything_looks_alike() {
+    val cardinality = Cardinality.unknown
+
+    assert(cardinality.fanOut(Seq("LIVES_IN"), Direction.INCOMING) === 1.0)
+    assert(cardinality.startRows(AllNodes("n")) === 1.0)
+  }
+
+  @Test def id_parameters_are_expected_to_hold_several_ids_unless_they_were_a_single_literal() {
+    val cardinality = Cardinality.unknown
+
+    assert(cardinality.startRows(NodeById("n", ParameterExpression("ids"))) > 1)
+    assert(cardinality.startRows(NodeById("n", ParameterExpression(LiteralParameterizer.PREFIX + "IDS0"))) > 1)
+    assert(cardinality.startRows(NodeById("n", ParameterExpression(LiteralParameterizer.SINGLE_ID + "0"))) === 1.0)
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.executionplan
+
+import org.junit.Test
+import org.junit.Assert._
+import org.neo4j.cypher.internal.commands._
+import expressions._
+import org.neo4j.cypher.internal.ExecutionContext
+import org.neo4j.cypher.internal.pipes.QueryState
+import org.neo4j.cypher.{EntityNotFoundException, GraphDatabaseTestBase}
+import org.neo4j.cypher.internal.symbols.{NumberType, NodeType, SymbolTable}
+
+class ExpressionCompilerTest extends GraphDatabaseTestBase {
+  val values: Seq[Any] = Seq(1, 2L, -3L, 2.5, 2.0f, 7.toShort, 7.toByte, "a", "b", null)
+
+  @Test def compiledComparisonsShouldAgreeWithTheInterpreter() {
+    implicit val state = QueryState.empty
+
+    for (x <- values; y <- values) {
+      val ctx = ExecutionContext.from("x" -> x, "y" -> y)
+
+      Seq[Predicate](
+        LessThan(Identifier("x"), Identifier("y")),
+        GreaterThan(Identifier("x"), Identifier("y")),
+        LessThanOrEqual(Identifier("x"), Literal(2)),
+        GreaterThanOrEqual(Identifier("x"), Literal(2L)),
+        Equals(Identifier("x"), Identifier("y")),
+        Not(Or(Equals(Identifier("x"), Literal(1)), And(True(), Equals(Identifier("y"), Literal("a")))))
+      ).foreach(p => assertSame(p, ctx, interpreted = tryIt(p.isMatch(ctx)), compiled = tryIt(ExpressionCompiler.compile(p).isMatch(ctx))))
+    }
+  }
+
+  @Test def compiledArithmeticsShouldAgreeWithTheInterpreter() {
+    implicit val state = QueryState.empty
+
+    for (x <- values; y <- values) {
+      val ctx = ExecutionContext.from("x" -> x, "y" -> y)
+
+      Seq[Expression](
+        Add(Identifier("x"), Identifier("y")),
+        Subtract(Identifier("x"), Identifier("y")),
+        Multiply(Add(Identifier("x"), Literal(1)), Identifier("y"))
+      ).foreach(e => assertSame(e, ctx, interpreted = tryIt(e(ctx)), compiled = tryIt(ExpressionCompiler.compile(e)(ctx))))
+    }
+  }
+
+  @Test def compiledPropertiesShouldAgreeWithTheInterpreter() {
+    val a = createNode("age" -> 30)
+    val b = createNode()
+    val r = relate(a, b, "KNOWS", Map[String, Any]("since" -> 1999L))
+    implicit val state = QueryState(graph)
+
+    val age = ExpressionCompiler.compile(Property(Identifier("n"), "age"))
+    assertEquals(30, age(ExecutionContext.from("n" -> a)))
+    assertEquals(null, age(ExecutionContext.from("n" -> null)))
+    intercept[EntityNotFoundException](age(ExecutionContext.from("n" -> b)))
+
+    val since = ExpressionCompiler.compile(GreaterThan(Property(Identifier("r"), "since"), Literal(1990)))
+    assertEquals(true, since(ExecutionContext.from("r" -> r)))
+    assertEquals(1, ExpressionCompiler.compile(Property(Identifier("m"), "x"))(ExecutionContext.from("m" -> Map("x" -> 1))))
+  }
+
+  @Test def compiledExpressionsShouldLookLikeTheOriginal() {
+    val original = And(GreaterThan(Property(Identifier("n"), "age"), Literal(18)), Equals(Identifier("n"), Literal(null)))
+    val compiled = ExpressionCompiler.compile(original)
+
+    assertEquals(original.toString, compiled.toString)
+    assertEquals(original.atoms, compiled.atoms)
+    assertEquals(original.symbolTableDependencies, compiled.symbolTableDependencies)
+    assertEquals(NumberType(), ExpressionCompiler.compile(Add(Literal(1), Literal(2))).getType(SymbolTable()))
+    assertTrue(compiled.containsIsNull)
+    compiled.throwIfSymbolsMissing(SymbolTable(Map("n" -> NodeType())))
+  }
+
+  private def tryIt(f: => Any): Either[Class[_], Any] = try {
+    Right(f)
+  } catch {
+    case e: Exception => Left(e.getClass)
+  }
+
+  private def assertSame(e: Expression, ctx: ExecutionContext, interpreted: Either[Class[_], Any], compiled: Either[Class[_], Any]) {
+    assertEquals("%s with %s".format(e, ctx.toMap), interpreted, compiled)
+    (interpreted, compiled) match {
+      case (Right(x), Right(y)) if x != null => assertEquals("%s with %s".format(e, ctx.toMap), x.getClass, y.getClass)
+      case _                                =>
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.executionplan.builders
+
+import org.junit.{Before, Test}
+import org.junit.Assert._
+import org.scalatest.Assertions
+import org.neo4j.cypher.{ExecutionEngine, GraphDatabaseTestBase}
+import org.neo4j.cypher.internal.executionplan.PartiallySolvedQuery
+import org.neo4j.cypher.internal.pipes.{NodeHashJoinPipe, ParameterPipe}
+import org.neo4j.cypher.internal.parser.v1_9.CypherParserImpl
+
+class NodeHashJoinBuilderTest extends GraphDatabaseTestBase with Assertions with BuilderTest {
+  var builder: NodeHashJoinBuilder = null
+
+  @Before def init() {
+    builder = new NodeHashJoinBuilder(graph)
+  }
+
+  @Test def should_accept_a_chain_between_two_index_lookups() {
+    val q = query("START a=node:people(group = 'a'), b=node:people(group = 'b') MATCH a-[:KNOWS]->x<-[:KNOWS]-b RETURN x")
+
+    assertTrue("This query should be accepted", builder.canWorkWith(plan(new ParameterPipe(), q)))
+  }
+
+  @Test def should_not_accept_single_nodes() {
+    val q = query("START a=node(1), b=node(2) MATCH a-[:KNOWS]->x<-[:KNOWS]-b RETURN x")
+
+    assertFalse("This query should not be accepted", builder.canWorkWith(plan(new ParameterPipe(), q)))
+  }
+
+  @Test def should_not_accept_a_single_relationship() {
+    val q = query("START a=node:people(group = 'a'), b=node:people(group = 'b') MATCH a-[:KNOWS]->b RETURN b")
+
+    assertFalse("This query should not be accepted", builder.canWorkWith(plan(new ParameterPipe(), q)))
+  }
+
+  @Test def should_not_accept_branching_patterns() {
+    val q = query("START a=node:people(group = 'a'), b=node:people(group = 'b') MATCH a-->x<--b, x-->y RETURN x")
+
+    assertFalse("This query should not be accepted", builder.canWorkWith(plan(new ParameterPipe(), q)))
+  }
+
+  @Test def should_solve_the_start_points_and_the_pattern() {
+    indexNode(createNode(), "people", "group", "a")
+    val q = query("START a=node:people(group = 'a'), b=node:people(group = 'b') MATCH a-[:KNOWS]->x<-[:KNOWS]-b RETURN x")
+
+    val newPlan = builder.apply(plan(new ParameterPipe(), q))
+
+    assert(newPlan.pipe.isInstanceOf[NodeHashJoinPipe])
+    assert(!newPlan.query.start.exists(_.unsolved), "Should have solved all start items")
+    assert(!newPlan.query.patterns.exists(_.unsolved), "Should have solved all patterns")
+  }
+
+  @Test def should_find_common_neighbours() {
+    val Seq(a1, a2, b1, b2) = Seq("a1", "a2", "b1", "b2").map(createNode(_))
+    Seq(a1, a2).foreach(indexNode(_, "people", "group", "a"))
+    Seq(b1, b2).foreach(indexNode(_, "people", "group", "b"))
+    val Seq(x, y, z) = Seq("x", "y", "z").map(createNode(_))
+    relate(a1, x, "KNOWS")
+    relate(a2, x, "KNOWS")
+    relate(a2, y, "KNOWS")
+    relate(b1, x, "KNOWS")
+    relate(b2, y, "KNOWS")
+    relate(b2, z, "KNOWS")
+
+    val result = new ExecutionEngine(graph).execute(
+      "START a=node:people(group = 'a'), b=node:people(group = 'b') MATCH a-[:KNOWS]->n<-[:KNOWS]-b RETURN a, n, b")
+
+    assert(result.executionPlanDescription().toString.contains("NodeHashJoin"))
+    assert(result.toSet === Set(
+      Map("a" -> a1, "n" -> x, "b" -> b1),
+      Map("a" -> a2, "n" -> x, "b" -> b1),
+      Map("a" -> a2, "n" -> y, "b" -> b2)))
+  }
+
+  @Test def should_join_inline_id_lists_after_they_have_become_parameters() {
+    val Seq(a1, a2, b1, b2) = Seq("a1", "a2", "b1", "b2").map(createNode(_))
+    val Seq(x, y) = Seq("x", "y").map(createNode(_))
+    relate(a1, x, "KNOWS")
+    relate(a2, y, "KNOWS")
+    relate(b1, x, "KNOWS")
+    relate(b2, y, "KNOWS")
+    val engine = new ExecutionEngine(graph)
+
+    val several = engine.execute("START a=node(%d, %d), b=node(%d, %d) MATCH a-[:KNOWS]->n<-[:KNOWS]-b RETURN a, n, b".format(
+      a1.getId, a2.getId, b1.getId, b2.getId))
+    val single = engine.execute("START a=node(%d), b=node(%d) MATCH a-[:KNOWS]->n<-[:KNOWS]-b RETURN a, n, b".format(
+      a1.getId, b1.getId))
+
+    assert(several.executionPlanDescription().toString.contains("NodeHashJoin"))
+    assert(several.toSet === Set(
+      Map("a" -> a1, "n" -> x, "b" -> b1),
+      Map("a" -> a2, "n" -> y, "b" -> b2)))
+    assertFalse(single.executionPlanDescription().toString.contains("NodeHashJoin"))
+    assert(single.toList === List(Map("a" -> a1, "n" -> x, "b" -> b1)))
+  }
+
+  val parser = new CypherParserImpl
+
+  private def query(text: String): PartiallySolvedQuery = PartiallySolvedQuery(parser.parse(text))
+}
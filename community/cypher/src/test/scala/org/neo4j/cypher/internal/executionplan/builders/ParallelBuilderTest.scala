@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.executionplan.builders
+
+import org.junit.{Before, Test}
+import org.junit.Assert._
+import org.neo4j.cypher.GraphDatabaseTestBase
+import org.neo4j.cypher.internal.executionplan.PartiallySolvedQuery
+import org.neo4j.cypher.internal.pipes._
+import org.neo4j.cypher.internal.parser.v1_9.CypherParserImpl
+import org.neo4j.cypher.internal.commands.True
+
+class ParallelBuilderTest extends GraphDatabaseTestBase with BuilderTest {
+  var builder: ParallelBuilder = null
+
+  @Before def init() {
+    builder = new ParallelBuilder(graph, 4)
+  }
+
+  @Test def should_accept_filtered_start_points_once_extracted() {
+    val q = solvedUpTo(query("START n=node(*) WHERE n.x = 1 RETURN n")).copy(extracted = true)
+
+    assertTrue("This query should be accepted", builder.canWorkWith(plan(filteredNodes(), q)))
+  }
+
+  @Test def should_accept_filtered_start_points_before_aggregating() {
+    val q = solvedUpTo(query("START n=node(*) WHERE n.x = 1 RETURN count(*)"))
+
+    assertTrue("This query should be accepted", builder.canWorkWith(plan(filteredNodes(), q)))
+  }
+
+  @Test def should_not_accept_before_extracting() {
+    val q = solvedUpTo(query("START n=node(*) WHERE n.x = 1 RETURN n"))
+
+    assertFalse("This query should not be accepted", builder.canWorkWith(plan(filteredNodes(), q)))
+  }
+
+  @Test def should_not_accept_a_bare_start_pipe() {
+    val q = solvedUpTo(query("START n=node(*) RETURN n")).copy(extracted = true)
+
+    assertFalse("This query should not be accepted", builder.canWorkWith(plan(allNodes(), q)))
+  }
+
+  @Test def should_not_accept_updating_queries() {
+    val q = solvedUpTo(query("START n=node(*) WHERE n.x = 1 SET n.y = 2 RETURN n")).copy(extracted = true)
+
+    assertFalse("This query should not be accepted", builder.canWorkWith(plan(filteredNodes(), q)))
+  }
+
+  @Test def should_not_accept_a_single_thread() {
+    val q = solvedUpTo(query("START n=node(*) WHERE n.x = 1 RETURN n")).copy(extracted = true)
+
+    assertFalse("This query should not be accepted", new ParallelBuilder(graph, 1).canWorkWith(plan(filteredNodes(), q)))
+  }
+
+  @Test def should_not_parallelize_twice() {
+    val q = solvedUpTo(query("START n=node(*) WHERE n.x = 1 RETURN n")).copy(extracted = true)
+
+    val newPlan = builder.apply(plan(filteredNodes(), q))
+
+    assert(newPlan.pipe.isInstanceOf[ParallelPipe])
+    assertFalse("This query should not be accepted", builder.canWorkWith(newPlan))
+  }
+
+  private def allNodes() = new NodeStartPipe(new ParameterPipe(), "n", (ctx, state) => Iterator.empty)
+
+  private def filteredNodes() = new FilterPipe(allNodes(), True())
+
+  private def solvedUpTo(q: PartiallySolvedQuery) =
+    q.copy(start = q.start.map(_.solve), where = q.where.map(_.solve), updates = q.updates.map(_.solve))
+
+  val parser = new CypherParserImpl
+
+  private def query(text: String): PartiallySolvedQuery = PartiallySolvedQuery(parser.parse(text))
+}
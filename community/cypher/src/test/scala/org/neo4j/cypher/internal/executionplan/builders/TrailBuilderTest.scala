@@ -333,4 +333,18 @@ class TrailBuilderTest extends GraphDatabaseTestBase with Assertions with Builde
 
     assert(result === expected)
   }
-}
\ No newline at end of file
+
+  @Test def starts_from_the_end_expected_to_produce_fewer_rows() {
+    val trail = SingleStepTrail(EndPoint("a"), Direction.INCOMING, "pr1", Seq("A"), "b", True(), True(), AtoB, Seq())
+    val rows = (t: Trail) => if (t.start == "b") 1.0 else 100.0
+
+    assert(TrailBuilder.findLongestTrail(Seq(AtoB), Seq("a", "b"), Nil, rows) === Some(LongestTrail("b", Some("a"), trail)))
+  }
+
+  @Test def keeps_the_default_start_when_the_estimates_are_close() {
+    val trail = SingleStepTrail(EndPoint("b"), Direction.OUTGOING, "pr1", Seq("A"), "a", True(), True(), AtoB, Seq())
+    val rows = (t: Trail) => if (t.start == "b") 9.0 else 10.0
+
+    assert(TrailBuilder.findLongestTrail(Seq(AtoB), Seq("a", "b"), Nil, rows) === Some(LongestTrail("a", Some("b"), trail)))
+  }
+}
@@ -90,6 +90,15 @@ class TraversalMatcherBuilderTest extends GraphDatabaseTestBase with Assertions
     assert(!newPlan.query.start.exists(_.unsolved), "Should have solved all start items")
   }
 
+  @Test def should_match_unbounded_variable_length_paths_between_bound_nodes_from_both_ends() {
+    val q = query("START a=node(1), b=node(2) MATCH a-[:KNOWS*]->b RETURN b")
+
+    val newPlan = builder.apply(plan(new ParameterPipe(), q))
+
+    assert(!newPlan.query.start.exists(_.unsolved), "Should have solved all start items")
+    assert(!newPlan.query.patterns.exists(_.unsolved), "Should have solved the pattern")
+  }
+
   def assertQueryHasNotSolvedPathExpressions(newPlan: ExecutionPlanInProgress) {
     newPlan.query.where.foreach {
       case Solved(pred) if pred.exists(_.isInstanceOf[PathExpression]) => fail("Didn't expect the predicate to be solved")
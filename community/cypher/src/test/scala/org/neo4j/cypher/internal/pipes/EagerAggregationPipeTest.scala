@@ -28,7 +28,7 @@ import expressions._
 import org.scalatest.junit.JUnitSuite
 import org.neo4j.cypher.SyntaxException
 import org.neo4j.cypher.internal.symbols._
-import collection.mutable.{Map => MutableMap}
+import collection.mutable.{ArrayBuffer, Map => MutableMap}
 import java.lang.{Iterable => JIterable}
 
 class EagerAggregationPipeTest extends JUnitSuite {
@@ -106,6 +106,51 @@ class EagerAggregationPipeTest extends JUnitSuite {
     assertEquals(List(Map("count(name)" -> 3)), aggregationPipe.createResults(QueryState()).toList)
   }
 
+  @Test def shouldAggregateGroupsPastTheSpillThreshold() {
+    val source = new FakePipe((1 to 1000).map(i => Map("name" -> ("n" + (i % 100)), "age" -> i)), createSymbolTableFor("name"))
+
+    val returnItems = createReturnItemsFor("name")
+    val grouping = Map("count(*)" -> CountStar(), "sum(age)" -> Sum(Identifier("age")))
+    val aggregationPipe = new EagerAggregationPipe(source, returnItems, grouping)
+
+    val results = aggregationPipe.createResults(QueryState().copy(spillThreshold = 3)).map(_.m.toMap).toList
+
+    assertEquals(100, results.size)
+    results.foreach(result => {
+      val group = result("name").asInstanceOf[String].substring(1).toInt
+      val ages = (1 to 1000).filter(_ % 100 == group)
+      assertEquals(Map("name" -> ("n" + group), "count(*)" -> 10, "sum(age)" -> ages.sum), result)
+    })
+  }
+
+  @Test def shouldAggregateCollectionsAndMapsTheSameWhetherSpilledOrNot() {
+    def source = new FakePipe((1 to 300).map(i => Map("key" -> List("k" + (i % 30)), "value" -> (i % 4 match {
+      case 0 => Map("i" -> i, "s" -> Vector("a", "b"))
+      case 1 => List(i, "x")
+      case 2 => ArrayBuffer[Any](i.toLong, 1.5)
+      case 3 => // Can't be spilled, starts its group in memory even past the spill threshold
+        val list = new java.util.ArrayList[Any]()
+        list.add(i)
+        list
+    }))), createSymbolTableFor("key"))
+
+    val returnItems = createReturnItemsFor("key")
+    val grouping = Map("count(*)" -> CountStar(), "collect(value)" -> Collect(Identifier("value")))
+
+    def aggregated(spillThreshold: Int) = new EagerAggregationPipe(source, returnItems, grouping)
+      .createResults(QueryState().copy(spillThreshold = spillThreshold))
+      .map(ctx => (ctx("key"), ctx("key").getClass) -> (ctx("count(*)"), withTypes(ctx("collect(value)"))))
+      .toList
+
+    val inMemory = aggregated(Int.MaxValue)
+    val spilled = aggregated(2)
+
+    assertEquals(30, spilled.size)
+    assertEquals(inMemory.toMap, spilled.toMap)
+  }
+
+  private def withTypes(collected: Any) = collected.asInstanceOf[Seq[Any]].map(v => v -> v.getClass).toSet
+
   private def createSymbolTableFor(name: String) = name -> NodeType()
 
   private def getResults(p: Pipe): JIterable[Map[String, Any]] = p.createResults(QueryState()).map(_.m.toMap).toIterable.asJava
@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import org.junit.Test
+import org.scalatest.Assertions
+
+class LongHashTableTest extends Assertions {
+  @Test def should_keep_all_values_of_a_key() {
+    val table = new LongHashTable[String]
+    table.add(42, "a")
+    table.add(42, "b")
+    table.add(7, "c")
+
+    assert(table.get(42).toSet === Set("a", "b"))
+    assert(table.get(7).toList === List("c"))
+    assert(table.get(8).toList === List())
+    assert(table.size === 3)
+  }
+
+  @Test def should_grow_past_its_initial_capacity() {
+    val table = new LongHashTable[Long]
+    (0L until 10000L).foreach(i => table.add(i * 31, i))
+
+    (0L until 10000L).foreach(i => assert(table.get(i * 31).toList === List(i)))
+    assert(table.get(-1).isEmpty)
+  }
+}
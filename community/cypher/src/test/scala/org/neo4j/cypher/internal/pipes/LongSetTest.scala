@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import org.junit.Test
+import org.scalatest.Assertions
+import util.Random
+
+class LongSetTest extends Assertions {
+  @Test def should_add_and_remove_ids() {
+    val set = new LongSet
+    assert(set.add(42))
+    assert(!set.add(42))
+    assert(set.add(7))
+
+    assert(set.contains(42))
+    assert(set.remove(42))
+    assert(!set.remove(42))
+    assert(!set.contains(42))
+    assert(set.contains(7))
+    assert(set.size === 1)
+  }
+
+  @Test def should_agree_with_a_set_after_random_adds_and_removes() {
+    val random = new Random(42)
+    val set = new LongSet
+    val expected = collection.mutable.Set[Long]()
+
+    (0 until 100000).foreach(_ => {
+      val id = random.nextInt(500).toLong
+      if (random.nextBoolean())
+        assert(set.add(id) === expected.add(id))
+      else
+        assert(set.remove(id) === expected.remove(id))
+    })
+
+    (0L until 500L).foreach(id => assert(set.contains(id) === expected.contains(id)))
+    assert(set.size === expected.size)
+  }
+
+  @Test def should_keep_the_first_value_of_a_key() {
+    val map = new LongIntMap
+    (0L until 10000L).foreach(i => assert(map.putIfAbsent(i * 31, i.toInt)))
+    assert(!map.putIfAbsent(31, 5))
+
+    (0L until 10000L).foreach(i => assert(map.get(i * 31) === i))
+    assert(map.get(1) === -1)
+  }
+}
@@ -89,4 +89,14 @@ class SortPipeTest extends JUnitSuite {
       MutableMap("y" -> 2),
       MutableMap("y" -> null)), sortPipe.createResults(QueryState()).toList)
   }
+
+  @Test def sortingPastTheSpillThresholdMergesSortedRuns() {
+    val list: Seq[MutableMap[String, Any]] = (1 to 100).map(i => MutableMap[String, Any]("x" -> (i * 37) % 101, "y" -> ("row" + i)))
+    val source = new FakePipe(list, "x" -> NumberType(), "y" -> StringType())
+    val sortPipe = new SortPipe(source, List(SortItem(Identifier("x"), false)))
+
+    val result = sortPipe.createResults(QueryState().copy(spillThreshold = 7)).toList
+
+    assertEquals(list.sortBy(m => -m("x").asInstanceOf[Int]), result.map(_.m))
+  }
 }
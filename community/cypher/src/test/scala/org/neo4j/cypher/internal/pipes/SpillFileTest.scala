@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes
+
+import org.junit.Test
+import org.junit.Assert._
+import org.neo4j.cypher.internal.ExecutionContext
+import org.neo4j.cypher.{PathImpl, GraphDatabaseTestBase}
+import collection.mutable.{ArrayBuffer, ListBuffer, Map => MutableMap}
+
+class SpillFileTest extends GraphDatabaseTestBase {
+  @Test def shouldReadBackWhatWasWritten() {
+    val a = createNode()
+    val b = createNode()
+    val r = relate(a, b)
+    val state = QueryState(graph)
+
+    val rows = Seq(
+      ExecutionContext.from("n" -> a, "r" -> r, "p" -> PathImpl(a, r, b)),
+      ExecutionContext.from("n" -> null, "s" -> ("long" * 30000), "x" -> 1.5, "y" -> 42L, "z" -> 'c'),
+      ExecutionContext.from("list" -> List(1, "two", a), "map" -> Map("k" -> true)))
+
+    val file = new SpillFile(state)
+    rows.foreach(file.write)
+    val readBack = file.read().toList
+
+    assertEquals(rows.map(_.toMap), readBack.map(_.toMap))
+    assertFalse(file.file.exists())
+  }
+
+  @Test def shouldReadBackArrays() {
+    val file = new SpillFile(QueryState(graph))
+    file.write(ExecutionContext.from("ints" -> Array(1, 2, 3), "strings" -> Array("a", "b")))
+
+    val row = file.read().next()
+
+    assertArrayEquals(Array(1, 2, 3), row("ints").asInstanceOf[Array[Int]])
+    assertArrayEquals(Array[AnyRef]("a", "b"), row("strings").asInstanceOf[Array[AnyRef]])
+    assertEquals(classOf[Array[String]], row("strings").getClass)
+    assertFalse(file.file.exists())
+  }
+
+  @Test def shouldReadBackCollectionsAndMapsAsTheSameType() {
+    val values = Seq(
+      List(1, List("a")),
+      Vector(1L, Vector(2.5)),
+      ArrayBuffer[Any]('c', ListBuffer[Any](true)),
+      Map("k" -> Vector(1), "l" -> Map("m" -> ArrayBuffer(1.5f))))
+
+    val file = new SpillFile(QueryState(graph))
+    values.foreach(value => file.write(ExecutionContext.from("v" -> value)))
+    val readBack = file.read().map(_("v")).toList
+
+    assertEquals(values, readBack)
+    assertEquals(values.map(classes), readBack.map(classes))
+  }
+
+  @Test def shouldOnlySpillRowsThatAreReadBackAsTheSameType() {
+    assertTrue(SpillFile.canSpill(ExecutionContext.from("v" -> List(Map("k" -> Array(1L))), "s" -> Array("a"))))
+
+    assertFalse(SpillFile.canSpill(ExecutionContext.from("v" -> MutableMap("k" -> 1))))
+    assertFalse(SpillFile.canSpill(ExecutionContext.from("v" -> Map(1 -> "one"))))
+    assertFalse(SpillFile.canSpill(ExecutionContext.from("v" -> List(new java.util.ArrayList[Any]()))))
+    assertFalse(SpillFile.canSpill(ExecutionContext.from("v" -> Array[Any](1, "two"))))
+    assertFalse(SpillFile.canSpill(ExecutionContext.from("v" -> Array[String]("a", null))))
+    assertFalse(SpillFile.canSpill(ExecutionContext.from("v" -> Set(1))))
+  }
+
+  private def classes(value: Any): Any = value match {
+    case x: collection.Map[_, _] => x.getClass -> x.map { case (k, v) => k -> classes(v) }
+    case x: Traversable[_]       => x.getClass -> x.map(classes).toList
+    case x                       => x.getClass
+  }
+
+  @Test def shouldDeleteFileNotReadBackWhenQueryIsClosed() {
+    val state = QueryState(graph)
+    val unread = new SpillFile(state)
+    unread.write(ExecutionContext.from("x" -> 1))
+    val partlyRead = new SpillFile(state)
+    partlyRead.write(ExecutionContext.from("x" -> 1))
+    partlyRead.write(ExecutionContext.from("x" -> 2))
+    partlyRead.read().next()
+
+    state.query.close()
+
+    assertFalse(unread.file.exists())
+    assertFalse(partlyRead.file.exists())
+  }
+}
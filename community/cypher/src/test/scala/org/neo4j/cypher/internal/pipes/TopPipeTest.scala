@@ -54,6 +54,14 @@ class TopPipeTest extends Assertions {
     assert(result === List(0, 1, 2, 3, 4))
   }
 
+  @Test def hugeLimitOverFewRowsReturnsAll() {
+    val input = createFakePipeWith(5)
+    val pipe = new TopPipe(input, List(SortItem(Identifier("a"), ascending = true)), Literal(Int.MaxValue))
+    val result = pipe.createResults(QueryState()).map(ctx => ctx("a")).toList
+
+    assert(result === List(0, 1, 2, 3, 4))
+  }
+
   @Test def emptyInputIsNotAProblem() {
     val input = new FakePipe(Iterator.empty, "a" -> IntegerType())
 
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.pipes.matching
+
+import org.junit.Test
+import org.neo4j.cypher.GraphDatabaseTestBase
+import org.neo4j.graphdb.{Node, Path}
+import org.neo4j.cypher.internal.pipes.{NullDecorator, QueryState}
+import org.neo4j.graphdb.Direction.{OUTGOING, BOTH}
+import org.neo4j.cypher.internal.commands.True
+import org.neo4j.cypher.internal.spi.gdsimpl.GDSBackedQueryContext
+import org.neo4j.cypher.internal.ExecutionContext
+import collection.JavaConverters._
+
+class VarLengthTraversalMatcherTest extends GraphDatabaseTestBase {
+
+  private def step(min: Int, max: Option[Int], direction: org.neo4j.graphdb.Direction = OUTGOING) =
+    VarLengthStep(0, Seq("KNOWS"), direction, min, max, None, True(), True())
+
+  private def produce(x: Node*) = (_: ExecutionContext, _: QueryState) => x.iterator
+
+  private def paths(matcher: TraversalMatcher): Seq[Path] = {
+    val queryState = new QueryState(graph, new GDSBackedQueryContext(graph), Map.empty, NullDecorator)
+    matcher.findMatchingPaths(queryState, ExecutionContext()).toList
+  }
+
+  private def nodes(path: Path) = path.nodes().asScala.toList
+
+  @Test def should_find_all_paths_within_the_length_from_the_start() {
+    // a -> b -> c -> d
+    val a = createNode("a")
+    val b = createNode("b")
+    val c = createNode("c")
+    val d = createNode("d")
+    relate(a, b, "KNOWS")
+    relate(b, c, "KNOWS")
+    relate(c, d, "KNOWS")
+
+    val result = paths(new VarLengthTraversalMatcher(step(2, Some(3)), produce(a), None))
+
+    assert(result.map(nodes).toSet === Set(List(a, b, c), List(a, b, c, d)))
+  }
+
+  @Test def should_include_the_start_node_for_zero_length() {
+    val a = createNode("a")
+    val b = createNode("b")
+    relate(a, b, "KNOWS")
+
+    val result = paths(new VarLengthTraversalMatcher(step(0, Some(1)), produce(a), None))
+
+    assert(result.map(nodes).toSet === Set(List(a), List(a, b)))
+  }
+
+  @Test def should_not_use_a_relationship_twice_in_a_path() {
+    // a - b - c - a, traversed in both directions
+    val a = createNode("a")
+    val b = createNode("b")
+    val c = createNode("c")
+    relate(a, b, "KNOWS")
+    relate(b, c, "KNOWS")
+    relate(c, a, "KNOWS")
+
+    val result = paths(new VarLengthTraversalMatcher(step(1, None, BOTH), produce(a), None))
+
+    // Two directions around the triangle, each stopping after one, two or three relationships
+    assert(result.size === 6)
+    assert(result.forall(p => p.relationships().asScala.toSet.size == p.length()))
+  }
+
+  @Test def should_find_every_path_between_bound_nodes() {
+    /*
+     * (a)->(b1)->(c)->(d)
+     *   \->(b2)-/   \->(x)
+     */
+    val a = createNode("a")
+    val b1 = createNode("b1")
+    val b2 = createNode("b2")
+    val c = createNode("c")
+    val d = createNode("d")
+    val x = createNode("x")
+    relate(a, b1, "KNOWS")
+    relate(a, b2, "KNOWS")
+    relate(b1, c, "KNOWS")
+    relate(b2, c, "KNOWS")
+    relate(c, d, "KNOWS")
+    relate(c, x, "KNOWS")
+
+    val result = paths(new VarLengthTraversalMatcher(step(1, Some(4)), produce(a), Some(produce(d))))
+
+    assert(result.map(nodes).toSet === Set(List(a, b1, c, d), List(a, b2, c, d)))
+    assert(result.forall(_.endNode() == d))
+  }
+
+  @Test def should_not_find_paths_longer_than_max_between_bound_nodes() {
+    val a = createNode("a")
+    val b = createNode("b")
+    val c = createNode("c")
+    val d = createNode("d")
+    relate(a, b, "KNOWS")
+    relate(b, c, "KNOWS")
+    relate(c, d, "KNOWS")
+
+    assert(paths(new VarLengthTraversalMatcher(step(1, Some(2)), produce(a), Some(produce(d)))) === List())
+    assert(paths(new VarLengthTraversalMatcher(step(1, Some(3)), produce(a), Some(produce(d)))).size === 1)
+  }
+
+  @Test def should_produce_paths_lazily() {
+    val a = createNode("a")
+    (0 until 100).foreach(_ => relate(a, createNode(), "KNOWS"))
+
+    val queryState = new QueryState(graph, new GDSBackedQueryContext(graph), Map.empty, NullDecorator)
+    val result = new VarLengthTraversalMatcher(step(1, Some(1)), produce(a), None).
+      findMatchingPaths(queryState, ExecutionContext())
+
+    (1 to 3).foreach(_ => result.next())
+    assert(result.hasNext)
+  }
+}
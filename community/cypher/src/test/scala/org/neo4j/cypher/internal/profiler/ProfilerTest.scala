@@ -68,6 +68,47 @@ class ProfilerTest extends Assertions with MockitoSugar {
     assertRecorded(decoratedResult, "baz", rows = 1, dbAccess = 2)
   }
 
+  @Test
+  def should_charge_time_to_the_pipe_that_spends_it() {
+    //GIVEN
+    val slow = new ProfilerPipe(NullPipe, "slow", rows = 1, dbAccess = 0, work = () => Thread.sleep(50))
+    val fast = new ProfilerPipe(slow, "fast", rows = 1, dbAccess = 0)
+    val profiler = new Profiler
+    val queryState = QueryState(null, mock[QueryContext], Map.empty, profiler, None)
+
+    //WHEN
+    materialize(fast.createResults(queryState))
+    val decoratedResult = profiler.decorate(fast.executionPlanDescription, true)
+
+    //THEN
+    assert(recorded[Double](decoratedResult, "slow", "_time_ms") >= 50.0)
+    assert(recorded[Double](decoratedResult, "fast", "_time_ms") < 50.0)
+  }
+
+  @Test
+  def should_charge_cache_lookups_to_the_pipe_that_makes_them() {
+    //GIVEN
+    var hits = 0L
+    var misses = 0L
+    val first = new ProfilerPipe(NullPipe, "first", rows = 1, dbAccess = 0, work = () => hits += 3)
+    val second = new ProfilerPipe(first, "second", rows = 1, dbAccess = 0, work = () => { hits += 1; misses += 2 })
+    val profiler = new Profiler(() => (hits, misses))
+    val queryState = QueryState(null, mock[QueryContext], Map.empty, profiler, None)
+
+    //WHEN
+    materialize(second.createResults(queryState))
+    val decoratedResult = profiler.decorate(second.executionPlanDescription, true)
+
+    //THEN
+    assert(recorded[Long](decoratedResult, "first", "_cache_hits") === 3)
+    assert(recorded[Long](decoratedResult, "first", "_cache_misses") === 0)
+    assert(recorded[Long](decoratedResult, "second", "_cache_hits") === 1)
+    assert(recorded[Long](decoratedResult, "second", "_cache_misses") === 2)
+  }
+
+  private def recorded[T](result: PlanDescription, name: String, key: String): T =
+    result.find(name).get.args.toMap.apply(key).v.asInstanceOf[T]
+
   private def assertRecorded(result: PlanDescription, name: String, rows: Int, dbAccess: Int) {
     val pipeArgs = result.find(name).get.args.toMap
     val recordedHits = pipeArgs("_db_hits")
@@ -82,12 +123,14 @@ class ProfilerTest extends Assertions with MockitoSugar {
   }
 }
 
-class ProfilerPipe(source: Pipe, name: String, rows: Int, dbAccess: Int) extends PipeWithSource(source) {
+class ProfilerPipe(source: Pipe, name: String, rows: Int, dbAccess: Int, work: () => Unit = () => ())
+  extends PipeWithSource(source) {
   def executionPlanDescription: PlanDescription = source.executionPlanDescription.andThen(this, name)
 
   protected def internalCreateResults(input:Iterator[ExecutionContext], state: QueryState): Iterator[ExecutionContext] = {
     input.size
     (0 until dbAccess).foreach(x => state.query.createNode())
+    work()
     (0 until rows).map(x => ExecutionContext.empty).toIterator
   }
 
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.performance
+
+import org.neo4j.cypher.ExecutionEngine
+import org.scalatest.Assertions
+import org.junit.{Ignore, Test}
+import org.neo4j.graphdb.{DynamicRelationshipType, GraphDatabaseService}
+import org.neo4j.graphdb.factory.{GraphDatabaseSettings, GraphDatabaseFactory}
+import org.neo4j.kernel.impl.util.FileUtils
+import java.io.File
+
+/*
+ * Runs filter and match heavy queries over millions of nodes with an increasing number of threads. Run it by hand
+ * on a machine with many cores, it takes a while to create the database.
+ */
+@Ignore
+class ParallelQueriesBenchmark extends Assertions {
+  val storeDir = "target/parallel-queries-db"
+  val nodeCount = 2000000
+
+  val queries = Seq(
+    "start n=node(*) where n.age > 30 and n.age <= 60 return count(*)",
+    "start n=node(*) where n.age + n.score > 100 or n.name = 'n42' return count(*)",
+    "start n=node(*) where not(n.score < 10) and (n.age = 42 or n.age = 43 or n.age = 44) return count(*)",
+    "start n=node(*) match n-->m where m.age > n.age return count(*)",
+    "start n=node(*) where n.age > 30 return n.name, n.age * 2 + n.score order by n.name limit 10")
+
+  @Test
+  def compareThreadCounts() {
+    createDatabase()
+
+    Seq(1, 2, 4, 8, 16).foreach(threads => {
+      val db = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder(storeDir).
+        setConfig(GraphDatabaseSettings.cypher_parallelism, threads.toString).
+        newGraphDatabase()
+      try {
+        val engine = new ExecutionEngine(db)
+        queries.foreach(query => {
+          engine.execute(query).toList // warm up caches and the JIT
+          val t0 = System.nanoTime
+          val rounds = 5
+          (1 to rounds).foreach(_ => engine.execute(query).toList)
+          val elapsed = (System.nanoTime - t0) / 1000000.0 / rounds
+          println("%2d threads %8.1f ms  %s".format(threads, elapsed, query))
+        })
+      } finally {
+        db.shutdown()
+      }
+    })
+  }
+
+  private def createDatabase() {
+    FileUtils.deleteRecursively(new File(storeDir))
+    val db: GraphDatabaseService = new GraphDatabaseFactory().newEmbeddedDatabase(storeDir)
+    try {
+      (0 until nodeCount).grouped(50000).foreach(batch => {
+        val tx = db.beginTx()
+        batch.foreach(i => {
+          val n = db.createNode()
+          n.setProperty("name", "n" + i)
+          n.setProperty("age", i % 100)
+          n.setProperty("score", (i * 31L) % 97)
+          if (i > 0)
+            n.createRelationshipTo(db.getNodeById(n.getId - 1), DynamicRelationshipType.withName("NEXT"))
+        })
+        tx.success()
+        tx.finish()
+      })
+    } finally {
+      db.shutdown()
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.performance
+
+import org.neo4j.cypher.ExecutionEngine
+import org.neo4j.cypher.internal.{SlotAllocator, Slots, ExecutionContext}
+import org.neo4j.cypher.internal.commands.expressions.{Expression, Identifier}
+import org.neo4j.cypher.internal.pipes.{MutableMaps, QueryState}
+import org.neo4j.test.ImpermanentGraphDatabase
+import org.scalatest.Assertions
+import org.junit.{Ignore, Test}
+import java.lang.management.ManagementFactory
+
+/*
+ * Measures the bytes allocated per row, by whole queries and by the row operations the pipes do all the time: copying
+ * a row with one more identifier and reading identifiers from it. Rows laid out in slots are compared with rows
+ * hashing their identifiers. Run it by hand, it needs a HotSpot JVM to count allocations.
+ */
+@Ignore
+class SlottedRowsAllocationBenchmark extends Assertions {
+  val threads = ManagementFactory.getThreadMXBean.asInstanceOf[com.sun.management.ThreadMXBean]
+  val rounds = 1000000
+
+  val identifiers = Seq("a", "b", "c", "d", "e", "f", "g", "h")
+
+  val queries = Seq(
+    "start n=node(*) return n",
+    "start n=node(*) with n, n.age as age, n.score as score where age > 10 return n, age + score as sum",
+    "start n=node(*) return n.age, n.score, n.age * 2 + n.score order by n.score")
+
+  @Test
+  def rowOperations() {
+    implicit val state = QueryState.empty
+    val allocator = new SlotAllocator
+    val reads: Array[Expression] = identifiers.map(name => allocator.resolve(Identifier(name))).toArray
+    val slots = new Slots(allocator.identifiers :+ "x")
+
+    Seq("hashed" -> MutableMaps.empty, "slotted" -> slots.newMap).foreach {
+      case (layout, m) =>
+        val row = ExecutionContext(m)
+        identifiers.foreach(name => row += name -> name)
+
+        measure(layout + " newWith", rounds, 1) {
+          row.newWith("x" -> 1)
+        }
+        measure(layout + " read", rounds, 1) {
+          var i = 0
+          while (i < reads.length) {
+            reads(i)(row)
+            i += 1
+          }
+        }
+    }
+  }
+
+  @Test
+  def wholeQueries() {
+    val db = new ImpermanentGraphDatabase()
+    try {
+      val rows = 100000
+      val tx = db.beginTx()
+      (0 until rows).foreach(i => {
+        val n = db.createNode()
+        n.setProperty("age", i % 100)
+        n.setProperty("score", (i * 31L) % 97)
+      })
+      tx.success()
+      tx.finish()
+
+      val engine = new ExecutionEngine(db)
+      queries.foreach(query => measure(query, 5, rows) {
+        engine.execute(query).toList
+      })
+    } finally {
+      db.shutdown()
+    }
+  }
+
+  private def measure(name: String, repeat: Int, rowsPerRepeat: Int)(f: => Any) {
+    var i = 0
+    while (i < repeat) { // warm up the JIT first, so that escape analysis has kicked in
+      f
+      i += 1
+    }
+    val thread = Thread.currentThread.getId
+    val before = threads.getThreadAllocatedBytes(thread)
+    i = 0
+    while (i < repeat) {
+      f
+      i += 1
+    }
+    val bytes = threads.getThreadAllocatedBytes(thread) - before
+    println("%8.1f bytes/row  %s".format(bytes.toDouble / repeat / rowsPerRepeat, name))
+  }
+}
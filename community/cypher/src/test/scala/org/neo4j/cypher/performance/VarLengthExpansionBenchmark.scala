@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.performance
+
+import org.neo4j.cypher.ExecutionEngine
+import org.scalatest.Assertions
+import org.junit.{Ignore, Test}
+import org.neo4j.graphdb.{Node, DynamicRelationshipType, GraphDatabaseService}
+import org.neo4j.graphdb.factory.GraphDatabaseFactory
+import org.neo4j.kernel.impl.util.FileUtils
+import java.io.File
+import util.Random
+import collection.mutable.ArrayBuffer
+
+/*
+ * Runs friend-of-friend style variable length queries over a graph where the number of relationships per node
+ * follows a power law, built by preferential attachment. Run it by hand, it takes a while to create the database.
+ */
+@Ignore
+class VarLengthExpansionBenchmark extends Assertions {
+  val storeDir = "target/var-length-db"
+  val nodeCount = 200000
+  val relsPerNode = 5
+
+  val queries = Seq(
+    "start a=node(%d) match a-[:KNOWS*1..3]->b return count(*)",
+    "start a=node(%d) match a-[:KNOWS*1..4]->b return b limit 100",
+    "start a=node(%d), b=node(%d) match p=a-[:KNOWS*1..5]->b return count(p)",
+    "start a=node(%d), b=node(%d) match p=a-[:KNOWS*1..6]->b return p limit 1")
+
+  @Test
+  def runQueries() {
+    createDatabase()
+
+    val db = new GraphDatabaseFactory().newEmbeddedDatabase(storeDir)
+    try {
+      val engine = new ExecutionEngine(db)
+      val random = new Random(42)
+      queries.foreach(query => {
+        def pick() = query.format(random.nextInt(nodeCount) + 1, random.nextInt(nodeCount) + 1)
+        engine.execute(pick()).toList // warm up caches and the JIT
+        val rounds = 10
+        val t0 = System.nanoTime
+        (1 to rounds).foreach(_ => engine.execute(pick()).toList)
+        val elapsed = (System.nanoTime - t0) / 1000000.0 / rounds
+        println("%8.1f ms  %s".format(elapsed, query))
+      })
+    } finally {
+      db.shutdown()
+    }
+  }
+
+  private def createDatabase() {
+    FileUtils.deleteRecursively(new File(storeDir))
+    val db: GraphDatabaseService = new GraphDatabaseFactory().newEmbeddedDatabase(storeDir)
+    val random = new Random(42)
+    val KNOWS = DynamicRelationshipType.withName("KNOWS")
+    try {
+      // Every relationship end point is remembered, so picking a random entry picks nodes by their degree
+      val endPoints = new ArrayBuffer[Node]
+      (0 until nodeCount).grouped(10000).foreach(batch => {
+        val tx = db.beginTx()
+        batch.foreach(i => {
+          val n = db.createNode()
+          if (endPoints.isEmpty) {
+            endPoints += n
+          } else {
+            (0 until relsPerNode).foreach(_ => {
+              val other = endPoints(random.nextInt(endPoints.size))
+              if (random.nextBoolean())
+                n.createRelationshipTo(other, KNOWS)
+              else
+                other.createRelationshipTo(n, KNOWS)
+              endPoints += other
+              endPoints += n
+            })
+          }
+        })
+        tx.success()
+        tx.finish()
+      })
+    } finally {
+      db.shutdown()
+    }
+  }
+}
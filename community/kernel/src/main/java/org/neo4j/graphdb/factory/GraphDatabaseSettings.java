@@ -22,6 +22,7 @@ package org.neo4j.graphdb.factory;
 import static org.neo4j.helpers.Settings.ANY;
 import static org.neo4j.helpers.Settings.BOOLEAN;
 import static org.neo4j.helpers.Settings.BYTES;
+import static org.neo4j.helpers.Settings.DURATION;
 import static org.neo4j.helpers.Settings.DURATION_FORMAT;
 import static org.neo4j.helpers.Settings.FALSE;
 import static org.neo4j.helpers.Settings.FLOAT;
@@ -108,6 +109,18 @@ public abstract class GraphDatabaseSettings
     @Description("Used to set the number of Cypher query execution plans that are cached.")
     public static GraphDatabaseSetting<Integer> query_cache_size = new IntegerSetting( setting("query_cache_size", INTEGER, "100", min( 0 ) ));
 
+    @Description("The number of rows a single Cypher ORDER BY or aggregation keeps in memory. Past that, sorted runs " +
+            "and groups are spilled to temporary files and merged back.")
+    public static GraphDatabaseSetting<Integer> cypher_spill_threshold = new IntegerSetting( setting("cypher_spill_threshold", INTEGER, "1000000", min( 1 ) ));
+
+    @Description("Whether Cypher compiles the predicates and expressions of its queries instead of interpreting them " +
+            "for every row.")
+    public static final BooleanSetting cypher_compile_expressions = new BooleanSetting( setting("cypher_compile_expressions", BOOLEAN, FALSE) );
+
+    @Description("The number of threads a read-only Cypher query may use to match, filter and project the rows of " +
+            "its start point. With 1, every query runs on the thread that executes it.")
+    public static GraphDatabaseSetting<Integer> cypher_parallelism = new IntegerSetting( setting("cypher_parallelism", INTEGER, "1", min( 1 ) ));
+
     // Store files
     @Description("The directory where the database files are located.")
     public static final GraphDatabaseSetting.DirectorySetting store_dir = new GraphDatabaseSetting.DirectorySetting(setting("store_dir", PATH, NO_DEFAULT ));
@@ -181,6 +194,17 @@ public abstract class GraphDatabaseSettings
             "but will limit the ability to reuse the space of deleted entities.")
     public static final BooleanSetting rebuild_idgenerators_fast = new BooleanSetting( setting("rebuild_idgenerators_fast",BOOLEAN, TRUE ));
 
+    @Description("Let concurrently committing transactions share the force of the logical log and the transaction " +
+            "log. One committer forces the log on behalf of all transactions that have written their commit record " +
+            "so far, which greatly reduces the number of disk forces under many concurrent small transactions. " +
+            "Transactions are applied to the store, in commit order, only after their commit record has been " +
+            "forced to disk.")
+    public static final BooleanSetting group_commit = new BooleanSetting( setting("group_commit", BOOLEAN, FALSE ));
+
+    @Description("The longest time a group commit leader waits for more transactions to join its batch before " +
+            "forcing the log. The leader only waits if the previous batch had more than one transaction.")
+    public static final GraphDatabaseSetting.TimeSpanSetting group_commit_max_wait = new GraphDatabaseSetting.TimeSpanSetting( setting("group_commit_max_wait", DURATION, "1ms" ));
+
     // NeoStore memory settings
     @Description("Tell Neo4j to use memory mapped buffers for accessing the native storage layer.")
     public static final UseMemoryMappedBuffers use_memory_mapped_buffers = new UseMemoryMappedBuffers(setting( "use_memory_mapped_buffers", BOOLEAN, NO_DEFAULT ));
@@ -201,6 +225,11 @@ public abstract class GraphDatabaseSettings
     @Description("The number of records to be loaded between regular logging of memory mapping statistics.")
     public static final GraphDatabaseSetting<Integer> log_mapped_memory_stats_interval = new IntegerSetting(setting("log_mapped_memory_stats_interval", INTEGER, "1000000"));
 
+    @Description("The window pool implementation used for accessing the record stores.")
+    public static final WindowPoolTypeSetting window_pool_type = new WindowPoolTypeSetting( setting( "window_pool_type",
+            options( WindowPoolTypeSetting.brick, WindowPoolTypeSetting.striped, WindowPoolTypeSetting.page_cache,
+                    WindowPoolTypeSetting.scan_resistant ), WindowPoolTypeSetting.brick ) );
+
     @Description("The size to allocate for memory mapping the node store.")
     public static final GraphDatabaseSetting<Long> nodestore_mapped_memory_size =
             new NumberOfBytesSetting( setting("neostore.nodestore.db.mapped_memory", BYTES, "20M" ));
@@ -389,6 +418,16 @@ public abstract class GraphDatabaseSettings
                 "This is the default cache setting.")
         public static final String gcr = "gcr";
 
+        @Description("Keeps most cached nodes and relationships serialized outside of the JVM heap, to cache \n" +
+                "big graphs without a big heap. Only a configurable number of entities are kept on heap, \n" +
+                "the others are deserialized when used.")
+        public static final String offheap = "offheap";
+
+        @Description("Gets assigned a configurable amount of space in the JVM heap, like the GC resistant cache, \n" +
+                "but only lets a new entity evict cached ones when it has been used more often than them \n" +
+                "recently. Keeps frequently used entities cached through big traversals and scans.")
+        public static final String tinylfu = "tinylfu";
+
         public static String[] availableCaches()
         {
             List<String> available = new ArrayList<String>();
@@ -420,6 +459,35 @@ public abstract class GraphDatabaseSettings
         }
     }
 
+    public static class WindowPoolTypeSetting
+            extends OptionsSetting
+    {
+        @Description("Maps the most frequently used regions of each store, re-sorting them periodically. " +
+                "This is the default window pool.")
+        public static final String brick = "brick";
+
+        @Description("Keeps a page table of fixed size mapped pages per store, with striped page locks and " +
+                "background eviction so that re-mapping never blocks readers. \n" +
+                "Requires memory mapped buffers, falls back to 'brick' when they are turned off.")
+        public static final String striped = "striped";
+
+        @Description("Shares one off-heap page cache, sized by all_stores_total_mapped_memory_size, between all " +
+                "stores instead of giving each store its own mapped memory, so that memory goes to whichever " +
+                "stores the workload uses the most. Writes are written through to the store files.")
+        public static final String page_cache = "page_cache";
+
+        @Description("Maps fixed size pages of all stores within all_stores_total_mapped_memory_size and picks " +
+                "pages to unmap using the CART replacement policy, so that pages read once by a full store scan " +
+                "don't push out the pages that are used over and over again. \n" +
+                "Requires memory mapped buffers, falls back to 'brick' when they are turned off.")
+        public static final String scan_resistant = "scan_resistant";
+
+        public WindowPoolTypeSetting( Setting<String> setting )
+        {
+            super( setting );
+        }
+    }
+
     public static class UseMemoryMappedBuffers
             extends BooleanSetting
     {
@@ -380,7 +380,9 @@ public abstract class InternalAbstractGraphDatabase
             if ( GraphDatabaseSettings.tx_manager_impl.getDefaultValue().equals( serviceName ) )
             {
                 txManager = new TxManager( this.storeDir, xaDataSourceManager, kernelPanicEventGenerator,
-                        logging.getLogger( TxManager.class ), fileSystem, stateFactory );
+                        logging.getLogger( TxManager.class ), fileSystem, stateFactory,
+                        config.get( GraphDatabaseSettings.group_commit ),
+                        config.get( GraphDatabaseSettings.group_commit_max_wait ) );
             }
             else
             {
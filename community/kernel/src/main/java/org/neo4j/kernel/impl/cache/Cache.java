@@ -88,6 +88,14 @@ public interface Cache<E extends EntityWithSize>
 
     public long missCount();
 
+    /**
+     * Returns the number of elements this cache has evicted to stay within
+     * its limits, or which have been cleared by the garbage collector.
+     *
+     * @return number of evicted elements
+     */
+    public long evictionCount();
+
     public void updateSize( E entity, int newSize );
     
     public void printStatistics();
@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Turns the cached state of an entity into bytes and back, for caches
+ * which keep their entities outside of the Java heap.
+ *
+ * @see OffHeapCache
+ */
+public interface EntitySerializer<E extends EntityWithSize>
+{
+    /**
+     * Writes the state of {@code entity} to {@code out}.
+     *
+     * @return {@code false} if the entity has state which this serializer
+     * can't write, in which case it shouldn't be cached.
+     */
+    boolean write( E entity, DataOutput out ) throws IOException;
+
+    /**
+     * @return a new instance of the entity with id {@code id}, with the state
+     * previously written by {@link #write(EntityWithSize, DataOutput)}.
+     */
+    E read( long id, DataInput in ) throws IOException;
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+/**
+ * Approximates how often ids have been seen recently, using a count-min sketch
+ * of 4-bit counters. Each id maps to four counters in a table of longs, sixteen
+ * counters to a long, and its frequency is the smallest of them. All counters
+ * are halved once the sketch has seen ten times its capacity, so that the
+ * frequencies favor recent history.
+ *
+ * Not thread safe, the caller synchronizes.
+ */
+class FrequencySketch
+{
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    static final int MAX_FREQUENCY = 15;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch( int capacity )
+    {
+        int length = 1;
+        while ( length < capacity && length < (1 << 30) )
+        {
+            length <<= 1;
+        }
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = (int) Math.min( 10L * length, Integer.MAX_VALUE );
+    }
+
+    int frequency( long id )
+    {
+        int hash = spread( id );
+        int start = (hash & 3) << 2;
+        int frequency = MAX_FREQUENCY;
+        for ( int i = 0; i < 4; i++ )
+        {
+            int index = indexOf( hash, i );
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min( frequency, count );
+        }
+        return frequency;
+    }
+
+    void increment( long id )
+    {
+        int hash = spread( id );
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for ( int i = 0; i < 4; i++ )
+        {
+            added |= incrementAt( indexOf( hash, i ), start + i );
+        }
+        if ( added && ++additions >= sampleSize )
+        {
+            reset();
+        }
+    }
+
+    private boolean incrementAt( int index, int counter )
+    {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ( (table[index] & mask) != mask )
+        {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private void reset()
+    {
+        int odd = 0;
+        for ( int i = 0; i < table.length; i++ )
+        {
+            odd += Long.bitCount( table[i] & ONE_MASK );
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions = (additions - (odd >>> 2)) >>> 1;
+    }
+
+    private int indexOf( int hash, int i )
+    {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    private static int spread( long id )
+    {
+        int h = (int) (id ^ (id >>> 32));
+        h = ((h >>> 16) ^ h) * 0x45d9f3b;
+        h = ((h >>> 16) ^ h) * 0x45d9f3b;
+        return (h >>> 16) ^ h;
+    }
+}
@@ -23,12 +23,13 @@ import org.neo4j.helpers.Counter;
 
 final class HitCounter
 {
-    private final Counter hits, miss;
+    private final Counter hits, miss, evictions;
 
     public HitCounter( )
     {
         this.hits = new Counter();
         this.miss = new Counter();
+        this.evictions = new Counter();
     }
 
     public <T> T count( T item )
@@ -46,4 +47,24 @@ final class HitCounter
     {
         return miss.count();
     }
+
+    public void countEviction()
+    {
+        evictions.inc();
+    }
+
+    public long getEvictionCount()
+    {
+        return evictions.count();
+    }
+
+    /**
+     * @return the fraction of lookups which were hits, or 0 if there hasn't been any.
+     */
+    public double getHitRatio()
+    {
+        long hits = getHitsCount();
+        long total = hits + getMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
 }
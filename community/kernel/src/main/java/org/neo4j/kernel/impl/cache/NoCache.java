@@ -65,6 +65,12 @@ public class NoCache<E extends EntityWithSize> implements Cache<E>
         return misses;
     }
 
+    @Override
+    public long evictionCount()
+    {
+        return 0;
+    }
+
     public long size()
     {
         return 0;
@@ -0,0 +1,613 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.neo4j.kernel.impl.util.StringLogger;
+
+/**
+ * A cache which keeps most of its entities serialized outside of the Java heap,
+ * so that a big cache doesn't mean a big heap and long GC pauses.
+ * <p>
+ * Entities in use live in a small on-heap clock cache. Entities evicted from
+ * it get written by an {@link EntitySerializer} into direct {@link ByteBuffer} slabs and
+ * a get which isn't found on heap recreates the entity from its serialized state. Slabs
+ * are filled one after the other and when they're all full the oldest one is emptied
+ * and reused, evicting whatever entities were still in it.
+ * <p>
+ * Entities are mutable, so the instance on heap is the only one which may be changed.
+ * A change to an instance which has been evicted, signaled by
+ * {@link #updateSize(EntityWithSize, int)}, drops the entity since the serialized
+ * state may be older than that change. It gets loaded from the store again.
+ */
+public class OffHeapCache<E extends EntityWithSize> implements Cache<E>
+{
+    private static final int ENTRY_HEADER_SIZE = 8/*id*/ + 4/*length*/;
+
+    private final String name;
+    private final EntitySerializer<E> serializer;
+    private final StringLogger logger;
+    private final int hotMaxSize;
+    private final ConcurrentMap<Long,HotEntry<E>> hot = new ConcurrentHashMap<Long,HotEntry<E>>();
+    private final Queue<HotEntry<E>> clock = new ConcurrentLinkedQueue<HotEntry<E>>();
+    private final AtomicInteger hotSize = new AtomicInteger();
+    private final AtomicInteger clockSize = new AtomicInteger();
+    private final HitCounter counter = new HitCounter();
+
+    // Bumped on every removal, so that a get racing with it won't bring back what was removed
+    private final AtomicLong removals = new AtomicLong();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int slabSize;
+    private final ByteBuffer[] slabs;
+    private final int[] slabFill;
+    private final SlabIndex index = new SlabIndex();
+    private int currentSlab = -1;
+
+    private final AtomicLong offHeapHits = new AtomicLong();
+    private long stored, unserializable;
+
+    public OffHeapCache( String name, EntitySerializer<E> serializer, long maxSize, int slabSize, int hotSize,
+            StringLogger logger )
+    {
+        if ( slabSize <= ENTRY_HEADER_SIZE || maxSize < slabSize )
+        {
+            throw new IllegalArgumentException( "Invalid slab size " + slabSize + " for max size " + maxSize );
+        }
+        if ( hotSize <= 0 )
+        {
+            throw new IllegalArgumentException( hotSize + " is not > 0" );
+        }
+        this.name = name;
+        this.serializer = serializer;
+        this.logger = logger;
+        this.slabSize = slabSize;
+        int numberOfSlabs = (int) Math.min( Integer.MAX_VALUE, maxSize / slabSize );
+        this.slabs = new ByteBuffer[numberOfSlabs];
+        this.slabFill = new int[numberOfSlabs];
+        this.hotMaxSize = hotSize;
+    }
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public void put( E value )
+    {
+        // Loaded or created outside of this cache, so it's dirty in the sense that it hasn't been stored
+        putHot( new HotEntry<E>( value, true ) );
+    }
+
+    @Override
+    public void putAll( Collection<E> values )
+    {
+        for ( E value : values )
+        {
+            put( value );
+        }
+    }
+
+    @Override
+    public E get( long key )
+    {
+        HotEntry<E> entry = getHot( key );
+        if ( entry != null )
+        {
+            return counter.count( entry.entity );
+        }
+
+        long removalsBefore = removals.get();
+        E entity = read( key );
+        if ( entity != null )
+        {
+            offHeapHits.incrementAndGet();
+            putHot( new HotEntry<E>( entity, false ) );
+            if ( removals.get() != removalsBefore )
+            {
+                // It might have been removed after we read it
+                removeHot( key );
+            }
+        }
+        return counter.count( entity );
+    }
+
+    @Override
+    public E remove( long key )
+    {
+        removals.incrementAndGet();
+        HotEntry<E> entry = removeHot( key );
+        E removed = entry != null ? entry.entity : read( key );
+        removeOffHeap( key );
+        return removed;
+    }
+
+    private void removeOffHeap( long key )
+    {
+        lock.writeLock().lock();
+        try
+        {
+            index.remove( key );
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void updateSize( E entity, int newSize )
+    {
+        HotEntry<E> entry = hot.get( entity.getId() );
+        if ( entry != null && entry.entity == entity )
+        {
+            entry.dirty = true;
+        }
+        else
+        {
+            remove( entity.getId() );
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        removals.incrementAndGet();
+        for ( Long key : hot.keySet() )
+        {
+            removeHot( key );
+        }
+        lock.writeLock().lock();
+        try
+        {
+            index.clear();
+            for ( int i = 0; i < slabFill.length; i++ )
+            {
+                slabFill[i] = 0;
+            }
+            currentSlab = -1;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of entities in this cache, on and off heap. Entities
+     * which are in both are counted twice.
+     */
+    @Override
+    public long size()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return hotSize.get() + index.size();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long hitCount()
+    {
+        return counter.getHitsCount();
+    }
+
+    @Override
+    public long missCount()
+    {
+        return counter.getMissCount();
+    }
+
+    @Override
+    public long evictionCount()
+    {
+        return counter.getEvictionCount();
+    }
+
+    public long getOffHeapHitCount()
+    {
+        return offHeapHits.get();
+    }
+
+    @Override
+    public void printStatistics()
+    {
+        logger.logMessage( toString(), true );
+    }
+
+    @Override
+    public String toString()
+    {
+        lock.readLock().lock();
+        try
+        {
+            long used = 0;
+            int allocated = 0;
+            for ( int i = 0; i < slabs.length; i++ )
+            {
+                used += slabFill[i];
+                allocated += slabs[i] != null ? 1 : 0;
+            }
+            return name + " hot:" + hotSize.get() + " off heap:" + index.size() + " used:" + used + "b in " +
+                    allocated + "/" + slabs.length + " slabs of " + slabSize + "b hits:" + hitCount() +
+                    " (off heap " + offHeapHits.get() + ") misses:" + missCount() + " stored:" + stored +
+                    " evicted:" + evictionCount() + " unserializable:" + unserializable;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    private HotEntry<E> getHot( long key )
+    {
+        HotEntry<E> entry = hot.get( key );
+        if ( entry != null )
+        {
+            entry.referenced = true;
+        }
+        return entry;
+    }
+
+    private void putHot( HotEntry<E> entry )
+    {
+        HotEntry<E> replaced = hot.put( entry.id, entry );
+        if ( replaced != null )
+        {
+            replaced.removed = true;
+        }
+        else
+        {
+            hotSize.incrementAndGet();
+        }
+        clock.offer( entry );
+        clockSize.incrementAndGet();
+        evictHot();
+    }
+
+    private HotEntry<E> removeHot( long key )
+    {
+        HotEntry<E> entry = hot.remove( key );
+        if ( entry != null )
+        {
+            entry.removed = true;
+            hotSize.decrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Evicts entities from the heap, second chance style, until there are no more than
+     * {@link #hotMaxSize}. Also drops removed entries from the clock so that they don't pile up.
+     */
+    private void evictHot()
+    {
+        while ( hotSize.get() > hotMaxSize || clockSize.get() > hotMaxSize * 2 )
+        {
+            HotEntry<E> entry = clock.poll();
+            if ( entry == null )
+            {
+                return;
+            }
+            clockSize.decrementAndGet();
+            if ( entry.removed )
+            {
+                continue;
+            }
+            if ( hotSize.get() <= hotMaxSize || entry.referenced )
+            {
+                if ( hotSize.get() > hotMaxSize )
+                {
+                    entry.referenced = false;
+                }
+                clock.offer( entry );
+                clockSize.incrementAndGet();
+                continue;
+            }
+            // Stored while still on heap so that a get can't find the older serialized state in between
+            if ( entry.dirty )
+            {
+                entry.dirty = false;
+                store( entry );
+            }
+            if ( hot.remove( entry.id, entry ) )
+            {
+                entry.removed = true;
+                hotSize.decrementAndGet();
+            }
+            if ( entry.removed && entry.dirty )
+            {
+                // Changed while being stored, or replaced
+                removeOffHeap( entry.id );
+            }
+        }
+    }
+
+    private void store( HotEntry<E> entry )
+    {
+        long id = entry.id;
+        byte[] bytes = serialize( entry.entity );
+        lock.writeLock().lock();
+        try
+        {
+            if ( entry.removed )
+            {
+                // Removed from this cache while we were serializing it
+                return;
+            }
+            if ( bytes == null || ENTRY_HEADER_SIZE + bytes.length > slabSize )
+            {
+                unserializable++;
+                index.remove( id );
+                return;
+            }
+            if ( currentSlab == -1 || slabFill[currentSlab] + ENTRY_HEADER_SIZE + bytes.length > slabSize )
+            {
+                nextSlab();
+            }
+            int offset = slabFill[currentSlab];
+            ByteBuffer slab = slabs[currentSlab].duplicate();
+            slab.position( offset );
+            slab.putLong( id );
+            slab.putInt( bytes.length );
+            slab.put( bytes );
+            slabFill[currentSlab] = slab.position();
+            index.put( id, pointer( currentSlab, offset ) );
+            stored++;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private byte[] serialize( E entity )
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( 64 );
+        try
+        {
+            return serializer.write( entity, new DataOutputStream( bytes ) ) ? bytes.toByteArray() : null;
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "Unexpected failure writing to memory", e );
+        }
+    }
+
+    /**
+     * Moves on to the next slab, emptying it if it's been used before. Called with the write lock held.
+     */
+    private void nextSlab()
+    {
+        currentSlab = (currentSlab + 1) % slabs.length;
+        ByteBuffer slab = slabs[currentSlab];
+        if ( slab == null )
+        {
+            slabs[currentSlab] = ByteBuffer.allocateDirect( slabSize );
+            return;
+        }
+        for ( int offset = 0; offset < slabFill[currentSlab]; )
+        {
+            long id = slab.getLong( offset );
+            // Entities stored again since then point to a newer slab
+            if ( index.get( id ) == pointer( currentSlab, offset ) )
+            {
+                index.remove( id );
+                counter.countEviction();
+            }
+            offset += ENTRY_HEADER_SIZE + slab.getInt( offset + 8 );
+        }
+        slabFill[currentSlab] = 0;
+    }
+
+    private E read( long id )
+    {
+        byte[] bytes;
+        lock.readLock().lock();
+        try
+        {
+            long pointer = index.get( id );
+            if ( pointer == -1 )
+            {
+                return null;
+            }
+            ByteBuffer slab = slabs[(int) (pointer >>> 32)].duplicate();
+            int offset = (int) pointer;
+            bytes = new byte[slab.getInt( offset + 8 )];
+            slab.position( offset + ENTRY_HEADER_SIZE );
+            slab.get( bytes );
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+
+        try
+        {
+            return serializer.read( id, new DataInputStream( new ByteArrayInputStream( bytes ) ) );
+        }
+        catch ( IOException e )
+        {
+            logger.warn( "Unable to read " + id + " from " + name + ", will load it again", e );
+            remove( id );
+            return null;
+        }
+    }
+
+    private static long pointer( int slab, int offset )
+    {
+        return ((long) slab << 32) | offset;
+    }
+
+    private static class HotEntry<E extends EntityWithSize>
+    {
+        private final long id;
+        private final E entity;
+        private volatile boolean dirty;
+        private volatile boolean referenced = true;
+        private volatile boolean removed;
+
+        HotEntry( E entity, boolean dirty )
+        {
+            this.id = entity.getId();
+            this.entity = entity;
+            this.dirty = dirty;
+        }
+    }
+
+    /**
+     * Maps entity ids to where they are in the slabs. An open addressing hash table
+     * of primitive longs so that the heap cost per entity is 16 bytes plus slack,
+     * since that's what grows with the number of cached entities.
+     */
+    static class SlabIndex
+    {
+        private static final long FREE = -1;
+
+        private long[] keys;
+        private long[] values;
+        private int size;
+
+        SlabIndex()
+        {
+            clear();
+        }
+
+        long get( long key )
+        {
+            int mask = keys.length - 1;
+            for ( int slot = slot( key, mask ); keys[slot] != FREE; slot = (slot + 1) & mask )
+            {
+                if ( keys[slot] == key )
+                {
+                    return values[slot];
+                }
+            }
+            return FREE;
+        }
+
+        void put( long key, long value )
+        {
+            int mask = keys.length - 1;
+            int slot = slot( key, mask );
+            while ( keys[slot] != FREE && keys[slot] != key )
+            {
+                slot = (slot + 1) & mask;
+            }
+            if ( keys[slot] == FREE )
+            {
+                keys[slot] = key;
+                if ( ++size > keys.length / 3 * 2 )
+                {
+                    values[slot] = value;
+                    grow();
+                    return;
+                }
+            }
+            values[slot] = value;
+        }
+
+        void remove( long key )
+        {
+            int mask = keys.length - 1;
+            int slot = slot( key, mask );
+            while ( keys[slot] != key )
+            {
+                if ( keys[slot] == FREE )
+                {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            size--;
+            // Shift back following entries which would otherwise be unreachable behind the hole
+            for ( int next = (slot + 1) & mask; keys[next] != FREE; next = (next + 1) & mask )
+            {
+                int home = slot( keys[next], mask );
+                if ( ((next - home) & mask) >= ((next - slot) & mask) )
+                {
+                    keys[slot] = keys[next];
+                    values[slot] = values[next];
+                    slot = next;
+                }
+            }
+            keys[slot] = FREE;
+        }
+
+        int size()
+        {
+            return size;
+        }
+
+        void clear()
+        {
+            keys = new long[16];
+            values = new long[16];
+            Arrays.fill( keys, FREE );
+            size = 0;
+        }
+
+        private void grow()
+        {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldKeys.length * 2];
+            Arrays.fill( keys, FREE );
+            size = 0;
+            for ( int i = 0; i < oldKeys.length; i++ )
+            {
+                if ( oldKeys[i] != FREE )
+                {
+                    put( oldKeys[i], oldValues[i] );
+                }
+            }
+        }
+
+        private static int slot( long key, int mask )
+        {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & mask;
+        }
+    }
+}
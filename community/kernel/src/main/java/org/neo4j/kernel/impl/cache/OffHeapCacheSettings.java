@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import static org.neo4j.helpers.Settings.BYTES;
+import static org.neo4j.helpers.Settings.INTEGER;
+import static org.neo4j.helpers.Settings.min;
+import static org.neo4j.helpers.Settings.range;
+import static org.neo4j.helpers.Settings.setting;
+
+import org.neo4j.graphdb.config.Setting;
+import org.neo4j.graphdb.factory.Description;
+
+/**
+ * Settings for the off heap cache. Note that the JVM limits direct memory with
+ * -XX:MaxDirectMemorySize, which defaults to the max heap size.
+ */
+public class OffHeapCacheSettings
+{
+    @Description( "The amount of memory outside of the heap to use for nodes (when using the 'offheap' cache)." )
+    public static Setting<Long> node_off_heap_cache_size = setting( "node_off_heap_cache_size", BYTES, "512M" );
+
+    @Description( "The amount of memory outside of the heap to use for relationships (when using the 'offheap' " +
+            "cache)." )
+    public static Setting<Long> relationship_off_heap_cache_size =
+            setting( "relationship_off_heap_cache_size", BYTES, "256M" );
+
+    @Description( "The size of the memory slabs which the off heap cache allocates and evicts at a time. " +
+            "Entities bigger than this aren't cached off heap." )
+    @SuppressWarnings("unchecked")
+    public static Setting<Long> off_heap_cache_slab_size =
+            setting( "off_heap_cache_slab_size", BYTES, "8M", range( 1024L, (long) Integer.MAX_VALUE ) );
+
+    @Description( "The number of nodes to keep on heap, ready for use, when using the 'offheap' cache." )
+    @SuppressWarnings("unchecked")
+    public static Setting<Integer> node_off_heap_cache_hot_size =
+            setting( "node_off_heap_cache_hot_size", INTEGER, "10000", min( 1 ) );
+
+    @Description( "The number of relationships to keep on heap, ready for use, when using the 'offheap' cache." )
+    @SuppressWarnings("unchecked")
+    public static Setting<Integer> relationship_off_heap_cache_hot_size =
+            setting( "relationship_off_heap_cache_hot_size", INTEGER, "50000", min( 1 ) );
+}
@@ -97,6 +97,7 @@ public class SoftLruCache<E extends EntityWithSize> extends ReferenceCache<E>
         while ( clearedValue != null )
         {
             cache.remove( clearedValue.key );
+            counter.countEviction();
             clearedValue = refQueue.safePoll();
         }
     }
@@ -127,4 +128,10 @@ public class SoftLruCache<E extends EntityWithSize> extends ReferenceCache<E>
     {
         return counter.getMissCount();
     }
+
+    @Override
+    public long evictionCount()
+    {
+        return counter.getEvictionCount();
+    }
 }
@@ -86,6 +86,12 @@ public class StrongReferenceCache<E extends EntityWithSize> implements Cache<E>
         return counter.getMissCount();
     }
 
+    @Override
+    public long evictionCount()
+    {
+        return counter.getEvictionCount();
+    }
+
     public long size()
     {
         return cache.size();
@@ -0,0 +1,322 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.neo4j.kernel.impl.util.StringLogger;
+
+/**
+ * A cache bounded by the total size in bytes of the entities in it, as
+ * reported by {@link EntityWithSize#size()}. The cache is split into segments
+ * by id, each with its own lock, LRU order and share of the max size, so that
+ * concurrent lookups of different entities seldom contend.
+ *
+ * A new entity is only admitted if it's been used more often, according to a
+ * {@link FrequencySketch} of recent lookups, than each of the least recently
+ * used entities it would evict. This keeps one off scans of the graph from
+ * flushing out the entities which are used all the time.
+ */
+public class TinyLfuCache<E extends EntityWithSize> implements Cache<E>
+{
+    private static final int MIN_SEGMENT_SIZE = 1024 * 1024;
+    private static final int BYTES_PER_SKETCH_COUNTER = 256;
+    private static final int MIN_SKETCH_CAPACITY = 256;
+
+    private final String name;
+    private final long maxSize;
+    private final Segment<E>[] segments;
+    private final int segmentMask;
+    private final StringLogger logger;
+    private final HitCounter counter = new HitCounter();
+
+    public TinyLfuCache( String name, long maxSizeInBytes, StringLogger logger )
+    {
+        this( name, maxSizeInBytes, defaultSegmentCount( maxSizeInBytes ), logger );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    TinyLfuCache( String name, long maxSizeInBytes, int segmentCount, StringLogger logger )
+    {
+        if ( maxSizeInBytes < 1 )
+        {
+            throw new IllegalArgumentException( "Illegal max size " + maxSizeInBytes );
+        }
+        if ( Integer.bitCount( segmentCount ) != 1 )
+        {
+            throw new IllegalArgumentException( "Segment count must be a power of two, was " + segmentCount );
+        }
+        this.name = name;
+        this.maxSize = maxSizeInBytes;
+        this.logger = logger;
+        this.segments = new Segment[segmentCount];
+        this.segmentMask = segmentCount - 1;
+        long segmentSize = Math.max( 1, maxSizeInBytes / segmentCount );
+        int sketchCapacity = (int) Math.min( 1 << 24,
+                Math.max( MIN_SKETCH_CAPACITY, segmentSize / BYTES_PER_SKETCH_COUNTER ) );
+        for ( int i = 0; i < segmentCount; i++ )
+        {
+            segments[i] = new Segment<E>( segmentSize, sketchCapacity );
+        }
+    }
+
+    private static int defaultSegmentCount( long maxSizeInBytes )
+    {
+        int segmentCount = 1;
+        int target = Runtime.getRuntime().availableProcessors() * 4;
+        while ( segmentCount < target && maxSizeInBytes / (segmentCount * 2) >= MIN_SEGMENT_SIZE )
+        {
+            segmentCount *= 2;
+        }
+        return segmentCount;
+    }
+
+    private Segment<E> segmentFor( long id )
+    {
+        int hash = (int) (id ^ (id >>> 32));
+        hash ^= (hash >>> 16) ^ (hash >>> 8);
+        return segments[hash & segmentMask];
+    }
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public void put( E value )
+    {
+        Segment<E> segment = segmentFor( value.getId() );
+        synchronized ( segment )
+        {
+            Long key = value.getId();
+            E existing = segment.map.get( key );
+            if ( existing == value )
+            {
+                return;
+            }
+            int size = value.size();
+            if ( size > segment.maxSize )
+            {
+                return;
+            }
+            if ( existing != null )
+            {
+                // Replacing an instance which already earned its place
+                segment.currentSize -= existing.getRegisteredSize();
+            }
+            else if ( !segment.admit( value.getId(), size ) )
+            {
+                return;
+            }
+            value.setRegisteredSize( size );
+            segment.map.put( key, value );
+            segment.currentSize += size;
+            evict( segment );
+        }
+    }
+
+    @Override
+    public void putAll( Collection<E> values )
+    {
+        for ( E value : values )
+        {
+            put( value );
+        }
+    }
+
+    @Override
+    public E remove( long key )
+    {
+        Segment<E> segment = segmentFor( key );
+        synchronized ( segment )
+        {
+            E removed = segment.map.remove( key );
+            if ( removed != null )
+            {
+                segment.currentSize -= removed.getRegisteredSize();
+            }
+            return removed;
+        }
+    }
+
+    @Override
+    public E get( long key )
+    {
+        Segment<E> segment = segmentFor( key );
+        synchronized ( segment )
+        {
+            segment.sketch.increment( key );
+            return counter.count( segment.map.get( key ) );
+        }
+    }
+
+    @Override
+    public void updateSize( E entity, int newSize )
+    {
+        Segment<E> segment = segmentFor( entity.getId() );
+        synchronized ( segment )
+        {
+            if ( segment.map.get( entity.getId() ) != entity )
+            {
+                return;
+            }
+            segment.currentSize += newSize - entity.getRegisteredSize();
+            entity.setRegisteredSize( newSize );
+            evict( segment );
+        }
+    }
+
+    private void evict( Segment<E> segment )
+    {
+        Iterator<E> lru = segment.map.values().iterator();
+        while ( segment.currentSize > segment.maxSize && lru.hasNext() )
+        {
+            E victim = lru.next();
+            lru.remove();
+            segment.currentSize -= victim.getRegisteredSize();
+            counter.countEviction();
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        for ( Segment<E> segment : segments )
+        {
+            synchronized ( segment )
+            {
+                segment.map.clear();
+                segment.currentSize = 0;
+            }
+        }
+    }
+
+    /**
+     * @return the total size in bytes of the entities in this cache.
+     */
+    @Override
+    public long size()
+    {
+        long size = 0;
+        for ( Segment<E> segment : segments )
+        {
+            synchronized ( segment )
+            {
+                size += segment.currentSize;
+            }
+        }
+        return size;
+    }
+
+    public long maxSize()
+    {
+        return maxSize;
+    }
+
+    @Override
+    public long hitCount()
+    {
+        return counter.getHitsCount();
+    }
+
+    @Override
+    public long missCount()
+    {
+        return counter.getMissCount();
+    }
+
+    @Override
+    public long evictionCount()
+    {
+        return counter.getEvictionCount();
+    }
+
+    public double hitRatio()
+    {
+        return counter.getHitRatio();
+    }
+
+    @Override
+    public void printStatistics()
+    {
+        logger.logMessage( toString(), true );
+    }
+
+    @Override
+    public String toString()
+    {
+        int entities = 0;
+        for ( Segment<E> segment : segments )
+        {
+            synchronized ( segment )
+            {
+                entities += segment.map.size();
+            }
+        }
+        return name + " size:" + size() + "/" + maxSize + "b entities:" + entities + " in " + segments.length +
+                " segments hits:" + hitCount() + " misses:" + missCount() + " hit ratio:" + hitRatio() +
+                " evictions:" + evictionCount();
+    }
+
+    private static class Segment<E extends EntityWithSize>
+    {
+        private final LinkedHashMap<Long,E> map = new LinkedHashMap<Long,E>( 16, 0.75f, true );
+        private final FrequencySketch sketch;
+        private final long maxSize;
+        private long currentSize;
+
+        Segment( long maxSize, int sketchCapacity )
+        {
+            this.maxSize = maxSize;
+            this.sketch = new FrequencySketch( sketchCapacity );
+        }
+
+        /**
+         * The candidate is admitted if there's room for it, or if it's been
+         * used more than every entity which would be evicted to make room.
+         */
+        boolean admit( long candidate, int size )
+        {
+            long toFree = currentSize + size - maxSize;
+            if ( toFree <= 0 )
+            {
+                return true;
+            }
+            int candidateFrequency = sketch.frequency( candidate );
+            for ( E victim : map.values() )
+            {
+                if ( sketch.frequency( victim.getId() ) >= candidateFrequency )
+                {
+                    return false;
+                }
+                toFree -= victim.getRegisteredSize();
+                if ( toFree <= 0 )
+                {
+                    return true;
+                }
+            }
+            return true;
+        }
+    }
+}
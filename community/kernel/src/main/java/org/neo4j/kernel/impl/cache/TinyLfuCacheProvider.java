@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import org.neo4j.graphdb.config.Setting;
+import org.neo4j.helpers.Service;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.impl.core.NodeImpl;
+import org.neo4j.kernel.impl.core.RelationshipImpl;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+@Service.Implementation( CacheProvider.class )
+public class TinyLfuCacheProvider extends CacheProvider
+{
+    public static final String NAME = "tinylfu";
+
+    public TinyLfuCacheProvider()
+    {
+        super( NAME, "size bounded cache with frequency based admission" );
+    }
+
+    @Override
+    public Cache<NodeImpl> newNodeCache( StringLogger logger, Config config )
+    {
+        checkMemToUse( config );
+        return new TinyLfuCache<NodeImpl>( NODE_CACHE_NAME, sizeOf( config, TinyLfuCacheSettings.node_cache_size ),
+                logger );
+    }
+
+    @Override
+    public Cache<RelationshipImpl> newRelationshipCache( StringLogger logger, Config config )
+    {
+        checkMemToUse( config );
+        return new TinyLfuCache<RelationshipImpl>( RELATIONSHIP_CACHE_NAME,
+                sizeOf( config, TinyLfuCacheSettings.relationship_cache_size ), logger );
+    }
+
+    private long sizeOf( Config config, Setting<Long> setting )
+    {
+        Long size = config.get( setting );
+        return size != null ? size : Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    private void checkMemToUse( Config config )
+    {
+        long total = sizeOf( config, TinyLfuCacheSettings.node_cache_size ) +
+                sizeOf( config, TinyLfuCacheSettings.relationship_cache_size );
+        long available = Runtime.getRuntime().maxMemory();
+        if ( total > available )
+        {
+            throw new IllegalArgumentException( String.format( "Configured cache memory limits (total=%s) " +
+                    "exceeds available heap space (%s)", total, available ) );
+        }
+    }
+
+    @Override
+    public Class getSettingsClass()
+    {
+        return TinyLfuCacheSettings.class;
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import static org.neo4j.helpers.Settings.BYTES;
+import static org.neo4j.helpers.Settings.NO_DEFAULT;
+import static org.neo4j.helpers.Settings.setting;
+
+import org.neo4j.graphdb.config.Setting;
+import org.neo4j.graphdb.factory.Description;
+
+/**
+ * Settings for the TinyLFU cache. The sizes are the same settings as the ones
+ * of the GC resistant cache, so that switching between them keeps the limits.
+ */
+public class TinyLfuCacheSettings
+{
+    @Description( "The amount of heap to use for cached nodes (when using the 'tinylfu' cache). " +
+            "Defaults to a quarter of the max heap size." )
+    public static Setting<Long> node_cache_size = setting( "node_cache_size", BYTES, NO_DEFAULT );
+
+    @Description( "The amount of heap to use for cached relationships (when using the 'tinylfu' cache). " +
+            "Defaults to a quarter of the max heap size." )
+    public static Setting<Long> relationship_cache_size = setting( "relationship_cache_size", BYTES, NO_DEFAULT );
+}
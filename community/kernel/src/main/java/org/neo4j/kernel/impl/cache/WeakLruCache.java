@@ -97,6 +97,7 @@ public class WeakLruCache<E extends EntityWithSize> extends ReferenceCache<E>
         while ( clearedValue != null )
         {
             cache.remove( clearedValue.key );
+            counter.countEviction();
             clearedValue = refQueue.safePoll();
         }
     }
@@ -123,6 +124,12 @@ public class WeakLruCache<E extends EntityWithSize> extends ReferenceCache<E>
         return counter.getMissCount();
     }
 
+    @Override
+    public long evictionCount()
+    {
+        return counter.getEvictionCount();
+    }
+
     public String getName()
     {
         return name;
@@ -139,6 +139,15 @@ abstract class ArrayBasedPrimitive extends Primitive implements EntityWithSize
         return properties;
     }
 
+    /**
+     * Sets the properties of an instance recreated by a cache, as opposed to
+     * {@link #setProperties(ArrayMap, NodeManager)} there's no size update.
+     */
+    void setCachedProperties( PropertyData[] properties )
+    {
+        this.properties = properties;
+    }
+
     @SuppressWarnings( "unchecked" )
     @Override
     protected PropertyData getPropertyForIndex( int keyId )
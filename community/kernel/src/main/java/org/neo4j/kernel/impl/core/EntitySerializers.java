@@ -0,0 +1,520 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import static org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper.BOTH;
+import static org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper.INCOMING;
+import static org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper.OUTGOING;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.neo4j.kernel.impl.cache.EntitySerializer;
+import org.neo4j.kernel.impl.nioneo.store.PropertyData;
+import org.neo4j.kernel.impl.nioneo.store.PropertyDatas;
+import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.util.RelIdArray;
+import org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper;
+import org.neo4j.kernel.impl.util.RelIdArrayWithLoops;
+import org.neo4j.kernel.impl.util.RelIdIterator;
+
+/**
+ * {@link EntitySerializer}s for {@link NodeImpl} and {@link RelationshipImpl}, writing
+ * the state they have loaded: properties, relationship ids and the position in the
+ * relationship chain. Whatever hasn't been loaded is loaded on demand from the
+ * recreated instance, as it would have been from the original.
+ */
+public class EntitySerializers
+{
+    public static final EntitySerializer<NodeImpl> NODE = new EntitySerializer<NodeImpl>()
+    {
+        @Override
+        public boolean write( NodeImpl node, DataOutput out ) throws IOException
+        {
+            if ( !writeProperties( node.allProperties(), out ) )
+            {
+                return false;
+            }
+            // Relationship ids are modified in place under the node monitor
+            synchronized ( node )
+            {
+                RelIdArray[] relationships = node.getAllRelationshipIds();
+                if ( relationships == null )
+                {
+                    out.writeInt( -1 );
+                    return true;
+                }
+                out.writeInt( relationships.length );
+                out.writeLong( node.getRelChainPosition() );
+                for ( RelIdArray ids : relationships )
+                {
+                    boolean loops = ids instanceof RelIdArrayWithLoops;
+                    out.writeInt( ids.getType() );
+                    out.writeBoolean( loops );
+                    writeIds( ids, OUTGOING, out );
+                    writeIds( ids, INCOMING, out );
+                    if ( loops )
+                    {
+                        writeIds( ids, BOTH, out );
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public NodeImpl read( long id, DataInput in ) throws IOException
+        {
+            NodeImpl node = new NodeImpl( id, Record.NO_NEXT_RELATIONSHIP.intValue(), Record.NO_NEXT_PROPERTY.intValue() );
+            node.setCachedProperties( readProperties( in ) );
+            int count = in.readInt();
+            if ( count == -1 )
+            {
+                return node;
+            }
+            long relChainPosition = in.readLong();
+            RelIdArray[] relationships = new RelIdArray[count];
+            for ( int i = 0; i < count; i++ )
+            {
+                int type = in.readInt();
+                boolean loops = in.readBoolean();
+                RelIdArray ids = loops ? new RelIdArrayWithLoops( type ) : new RelIdArray( type );
+                readIds( ids, OUTGOING, in );
+                readIds( ids, INCOMING, in );
+                if ( loops )
+                {
+                    readIds( ids, BOTH, in );
+                }
+                relationships[i] = relChainPosition == Record.NO_NEXT_RELATIONSHIP.intValue() ? ids.shrink() : ids;
+            }
+            node.setCachedRelationships( relationships, relChainPosition );
+            return node;
+        }
+    };
+
+    public static final EntitySerializer<RelationshipImpl> RELATIONSHIP = new EntitySerializer<RelationshipImpl>()
+    {
+        @Override
+        public boolean write( RelationshipImpl relationship, DataOutput out ) throws IOException
+        {
+            out.writeLong( relationship.getStartNodeId() );
+            out.writeLong( relationship.getEndNodeId() );
+            out.writeInt( relationship.getTypeId() );
+            return writeProperties( relationship.allProperties(), out );
+        }
+
+        @Override
+        public RelationshipImpl read( long id, DataInput in ) throws IOException
+        {
+            long startNode = in.readLong();
+            long endNode = in.readLong();
+            int type = in.readInt();
+            RelationshipImpl relationship = new RelationshipImpl( id, startNode, endNode, type, false );
+            relationship.setCachedProperties( readProperties( in ) );
+            return relationship;
+        }
+    };
+
+    private static final byte NOT_LOADED = 0, BOOLEAN = 1, BYTE = 2, SHORT = 3, CHAR = 4, INT = 5,
+            LONG = 6, FLOAT = 7, DOUBLE = 8, STRING = 9, ARRAY = 10;
+
+    private EntitySerializers()
+    {
+    }
+
+    private static boolean writeProperties( PropertyData[] properties, DataOutput out ) throws IOException
+    {
+        if ( properties == null )
+        {
+            out.writeInt( -1 );
+            return true;
+        }
+        out.writeInt( properties.length );
+        for ( PropertyData property : properties )
+        {
+            out.writeInt( property.getIndex() );
+            out.writeLong( property.getId() );
+            Object value = property.getValue();
+            if ( value == null )
+            {
+                out.writeByte( NOT_LOADED );
+            }
+            else if ( value.getClass().isArray() )
+            {
+                out.writeByte( ARRAY );
+                if ( !writeArray( value, out ) )
+                {
+                    return false;
+                }
+            }
+            else if ( !writeValue( value, out ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean writeValue( Object value, DataOutput out ) throws IOException
+    {
+        if ( value instanceof String )
+        {
+            out.writeByte( STRING );
+            writeString( (String) value, out );
+        }
+        else if ( value instanceof Integer )
+        {
+            out.writeByte( INT );
+            out.writeInt( (Integer) value );
+        }
+        else if ( value instanceof Long )
+        {
+            out.writeByte( LONG );
+            out.writeLong( (Long) value );
+        }
+        else if ( value instanceof Boolean )
+        {
+            out.writeByte( BOOLEAN );
+            out.writeBoolean( (Boolean) value );
+        }
+        else if ( value instanceof Double )
+        {
+            out.writeByte( DOUBLE );
+            out.writeDouble( (Double) value );
+        }
+        else if ( value instanceof Float )
+        {
+            out.writeByte( FLOAT );
+            out.writeFloat( (Float) value );
+        }
+        else if ( value instanceof Byte )
+        {
+            out.writeByte( BYTE );
+            out.writeByte( (Byte) value );
+        }
+        else if ( value instanceof Short )
+        {
+            out.writeByte( SHORT );
+            out.writeShort( (Short) value );
+        }
+        else if ( value instanceof Character )
+        {
+            out.writeByte( CHAR );
+            out.writeChar( (Character) value );
+        }
+        else
+        {
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean writeArray( Object array, DataOutput out ) throws IOException
+    {
+        if ( array instanceof String[] )
+        {
+            String[] values = (String[]) array;
+            out.writeByte( STRING );
+            out.writeInt( values.length );
+            for ( String value : values )
+            {
+                writeString( value, out );
+            }
+        }
+        else if ( array instanceof int[] )
+        {
+            int[] values = (int[]) array;
+            out.writeByte( INT );
+            out.writeInt( values.length );
+            for ( int value : values )
+            {
+                out.writeInt( value );
+            }
+        }
+        else if ( array instanceof long[] )
+        {
+            long[] values = (long[]) array;
+            out.writeByte( LONG );
+            out.writeInt( values.length );
+            for ( long value : values )
+            {
+                out.writeLong( value );
+            }
+        }
+        else if ( array instanceof byte[] )
+        {
+            byte[] values = (byte[]) array;
+            out.writeByte( BYTE );
+            out.writeInt( values.length );
+            out.write( values );
+        }
+        else if ( array instanceof boolean[] )
+        {
+            boolean[] values = (boolean[]) array;
+            out.writeByte( BOOLEAN );
+            out.writeInt( values.length );
+            for ( boolean value : values )
+            {
+                out.writeBoolean( value );
+            }
+        }
+        else if ( array instanceof double[] )
+        {
+            double[] values = (double[]) array;
+            out.writeByte( DOUBLE );
+            out.writeInt( values.length );
+            for ( double value : values )
+            {
+                out.writeDouble( value );
+            }
+        }
+        else if ( array instanceof float[] )
+        {
+            float[] values = (float[]) array;
+            out.writeByte( FLOAT );
+            out.writeInt( values.length );
+            for ( float value : values )
+            {
+                out.writeFloat( value );
+            }
+        }
+        else if ( array instanceof short[] )
+        {
+            short[] values = (short[]) array;
+            out.writeByte( SHORT );
+            out.writeInt( values.length );
+            for ( short value : values )
+            {
+                out.writeShort( value );
+            }
+        }
+        else if ( array instanceof char[] )
+        {
+            char[] values = (char[]) array;
+            out.writeByte( CHAR );
+            out.writeInt( values.length );
+            for ( char value : values )
+            {
+                out.writeChar( value );
+            }
+        }
+        else
+        {
+            return false;
+        }
+        return true;
+    }
+
+    private static void writeString( String value, DataOutput out ) throws IOException
+    {
+        // Not writeUTF since that's limited to 64k
+        out.writeInt( value.length() );
+        out.writeChars( value );
+    }
+
+    private static PropertyData[] readProperties( DataInput in ) throws IOException
+    {
+        int count = in.readInt();
+        if ( count == -1 )
+        {
+            return null;
+        }
+        if ( count == 0 )
+        {
+            return Primitive.NO_PROPERTIES;
+        }
+        PropertyData[] properties = new PropertyData[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            int index = in.readInt();
+            long id = in.readLong();
+            byte type = in.readByte();
+            switch ( type )
+            {
+            case NOT_LOADED: properties[i] = PropertyDatas.forStringOrArray( index, id, null ); break;
+            case BOOLEAN: properties[i] = PropertyDatas.forBoolean( index, id, in.readBoolean() ); break;
+            case BYTE: properties[i] = PropertyDatas.forByte( index, id, in.readByte() ); break;
+            case SHORT: properties[i] = PropertyDatas.forShort( index, id, in.readShort() ); break;
+            case CHAR: properties[i] = PropertyDatas.forChar( index, id, in.readChar() ); break;
+            case INT: properties[i] = PropertyDatas.forInt( index, id, in.readInt() ); break;
+            case LONG: properties[i] = PropertyDatas.forLong( index, id, in.readLong() ); break;
+            case FLOAT: properties[i] = PropertyDatas.forFloat( index, id, in.readFloat() ); break;
+            case DOUBLE: properties[i] = PropertyDatas.forDouble( index, id, in.readDouble() ); break;
+            case STRING: properties[i] = PropertyDatas.forStringOrArray( index, id, readString( in ) ); break;
+            case ARRAY: properties[i] = PropertyDatas.forStringOrArray( index, id, readArray( in ) ); break;
+            default: throw new IOException( "Unknown property type " + type );
+            }
+        }
+        return properties;
+    }
+
+    private static Object readArray( DataInput in ) throws IOException
+    {
+        byte type = in.readByte();
+        int length = in.readInt();
+        switch ( type )
+        {
+        case STRING:
+        {
+            String[] values = new String[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                values[i] = readString( in );
+            }
+            return values;
+        }
+        case INT:
+        {
+            int[] values = new int[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                values[i] = in.readInt();
+            }
+            return values;
+        }
+        case LONG:
+        {
+            long[] values = new long[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                values[i] = in.readLong();
+            }
+            return values;
+        }
+        case BYTE:
+        {
+            byte[] values = new byte[length];
+            in.readFully( values );
+            return values;
+        }
+        case BOOLEAN:
+        {
+            boolean[] values = new boolean[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                values[i] = in.readBoolean();
+            }
+            return values;
+        }
+        case DOUBLE:
+        {
+            double[] values = new double[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                values[i] = in.readDouble();
+            }
+            return values;
+        }
+        case FLOAT:
+        {
+            float[] values = new float[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                values[i] = in.readFloat();
+            }
+            return values;
+        }
+        case SHORT:
+        {
+            short[] values = new short[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                values[i] = in.readShort();
+            }
+            return values;
+        }
+        case CHAR:
+        {
+            char[] values = new char[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                values[i] = in.readChar();
+            }
+            return values;
+        }
+        default: throw new IOException( "Unknown array type " + type );
+        }
+    }
+
+    private static String readString( DataInput in ) throws IOException
+    {
+        char[] chars = new char[in.readInt()];
+        for ( int i = 0; i < chars.length; i++ )
+        {
+            chars[i] = in.readChar();
+        }
+        return new String( chars );
+    }
+
+    /**
+     * Writes the ids as zig-zag varints of the delta to the previous id, relationship
+     * chains are mostly ordered so that takes one or two bytes per id.
+     */
+    private static void writeIds( RelIdArray ids, DirectionWrapper direction, DataOutput out ) throws IOException
+    {
+        long[] buffer = new long[16];
+        int count = 0;
+        for ( RelIdIterator iterator = ids.exactIterator( direction ); iterator.hasNext(); )
+        {
+            if ( count == buffer.length )
+            {
+                buffer = Arrays.copyOf( buffer, count*2 );
+            }
+            buffer[count++] = iterator.next();
+        }
+        out.writeInt( count );
+        long previous = 0;
+        for ( int i = 0; i < count; i++ )
+        {
+            long delta = buffer[i] - previous;
+            long value = (delta << 1) ^ (delta >> 63);
+            while ( (value & ~0x7FL) != 0 )
+            {
+                out.writeByte( (int) ((value & 0x7F) | 0x80) );
+                value >>>= 7;
+            }
+            out.writeByte( (int) value );
+            previous = buffer[i];
+        }
+    }
+
+    private static void readIds( RelIdArray ids, DirectionWrapper direction, DataInput in ) throws IOException
+    {
+        int count = in.readInt();
+        long previous = 0;
+        for ( int i = 0; i < count; i++ )
+        {
+            long value = 0;
+            for ( int shift = 0; ; shift += 7 )
+            {
+                byte b = in.readByte();
+                value |= (b & 0x7FL) << shift;
+                if ( b >= 0 )
+                {
+                    break;
+                }
+            }
+            previous += (value >>> 1) ^ -(value & 1);
+            ids.add( previous, direction );
+        }
+    }
+}
@@ -43,6 +43,12 @@ public class NoTransactionState implements TransactionState
         throw new NotInTransactionException();
     }
 
+    @Override
+    public LockElement[] acquireWriteLocks( Object... resources )
+    {
+        throw new NotInTransactionException();
+    }
+
     @Override
     public LockElement acquireReadLock( Object resource )
     {
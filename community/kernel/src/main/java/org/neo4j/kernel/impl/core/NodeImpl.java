@@ -660,7 +660,7 @@ public class NodeImpl extends ArrayBasedPrimitive
                         remove = cowRelationshipRemoveMap.get( type );
                     }
                     RelIdArray src = getRelIdArray( type );
-                    putRelIdArray( RelIdArray.from( src, add, remove ) );
+                    putRelIdArray( shrinkIfRebuilt( RelIdArray.from( src, add, remove ), remove ) );
                 }
             }
             if ( cowRelationshipRemoveMap != null )
@@ -676,7 +676,7 @@ public class NodeImpl extends ArrayBasedPrimitive
                     if ( src != null )
                     {
                         Collection<Long> remove = cowRelationshipRemoveMap.get( type );
-                        putRelIdArray( RelIdArray.from( src, null, remove ) );
+                        putRelIdArray( shrinkIfRebuilt( RelIdArray.from( src, null, remove ), remove ) );
                     }
                 }
             }
@@ -684,6 +684,15 @@ public class NodeImpl extends ArrayBasedPrimitive
         }
     }
 
+    /**
+     * Removing relationships builds a new {@link RelIdArray} which is left unpacked,
+     * shrink it here if it's complete, like {@link #setRelChainPosition(long)} does.
+     */
+    private RelIdArray shrinkIfRebuilt( RelIdArray ids, Collection<Long> remove )
+    {
+        return remove != null && ids != null && !hasMoreRelationshipsToLoad() ? ids.shrink() : ids;
+    }
+
     long getRelChainPosition()
     {
         return relChainPosition;
@@ -704,6 +713,23 @@ public class NodeImpl extends ArrayBasedPrimitive
         }
     }
 
+    /**
+     * @return the loaded relationship ids of all types, or {@code null} if they haven't been loaded.
+     */
+    RelIdArray[] getAllRelationshipIds()
+    {
+        return relationships;
+    }
+
+    /**
+     * Sets the relationships of an instance recreated by a cache.
+     */
+    synchronized void setCachedRelationships( RelIdArray[] relationships, long relChainPosition )
+    {
+        this.relationships = relationships;
+        this.relChainPosition = relChainPosition;
+    }
+
     RelIdArray getRelationshipIds( int type )
     {
         return getRelIdArray( type );
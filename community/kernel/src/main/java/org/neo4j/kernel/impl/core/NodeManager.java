@@ -31,6 +31,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.neo4j.graphdb.GraphDatabaseService;
@@ -40,9 +42,11 @@ import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.index.Index;
+import org.neo4j.helpers.DaemonThreadFactory;
 import org.neo4j.helpers.Pair;
 import org.neo4j.helpers.Predicate;
 import org.neo4j.helpers.Triplet;
+import org.neo4j.helpers.collection.ClosableIterator;
 import org.neo4j.helpers.collection.CombiningIterator;
 import org.neo4j.helpers.collection.FilteringIterator;
 import org.neo4j.helpers.collection.IteratorWrapper;
@@ -51,11 +55,15 @@ import org.neo4j.kernel.PropertyTracker;
 import org.neo4j.kernel.configuration.Config;
 import org.neo4j.kernel.impl.cache.Cache;
 import org.neo4j.kernel.impl.cache.CacheProvider;
+import org.neo4j.kernel.impl.nioneo.store.AbstractBaseRecord;
 import org.neo4j.kernel.impl.nioneo.store.NameData;
 import org.neo4j.kernel.impl.nioneo.store.NodeRecord;
+import org.neo4j.kernel.impl.nioneo.store.NodeStore;
 import org.neo4j.kernel.impl.nioneo.store.PropertyData;
 import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.nioneo.store.RecordScanner;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipStore;
 import org.neo4j.kernel.impl.persistence.EntityIdGenerator;
 import org.neo4j.kernel.impl.persistence.PersistenceManager;
 import org.neo4j.kernel.impl.transaction.AbstractTransactionManager;
@@ -105,6 +113,9 @@ public class NodeManager
 
     private NodeManagerDatasourceListener dataSourceListener;
 
+    // Runs the read ahead of store scans
+    private ExecutorService readAheadExecutor;
+
     public NodeManager( Config config, StringLogger logger, GraphDatabaseService graphDb,
                         AbstractTransactionManager transactionManager,
                         PersistenceManager persistenceManager, EntityIdGenerator idGenerator,
@@ -155,12 +166,16 @@ public class NodeManager
     public void start()
     {
         xaDsm.addDataSourceRegistrationListener( (dataSourceListener = new NodeManagerDatasourceListener()) );
+        readAheadExecutor = Executors.newCachedThreadPool( new DaemonThreadFactory( "Read ahead" ) );
     }
 
     @Override
     public void stop()
     {
         xaDsm.removeDataSourceRegistrationListener( dataSourceListener );
+        // Not interrupted, that would close the store files they read. Scans that are left stop reading ahead
+        // when they fail to read the closed stores, or are closed or dropped by their users.
+        readAheadExecutor.shutdown();
         clearCache();
         relTypeHolder.stop();
         propertyIndexManager.stop();
@@ -238,8 +253,7 @@ public class NodeManager
         TransactionState tx = transactionState;
         try
         {
-            transactionState.acquireWriteLock( startNodeProxy );
-            transactionState.acquireWriteLock( endNode );
+            transactionState.acquireWriteLocks( startNodeProxy, endNode );
             persistenceManager.relationshipCreate( id, typeId, startNodeId, endNodeId );
             if ( startNodeId == endNodeId )
             {
@@ -335,48 +349,34 @@ public class NodeManager
         return new RelationshipProxy( id, relationshipLookups );
     }
 
+    /**
+     * @return all nodes, which should be {@link ClosableIterator#close()
+     * closed} if not iterated to the end, to stop reading the store ahead.
+     */
     @SuppressWarnings( "unchecked" )
-    public Iterator<Node> getAllNodes()
+    public ClosableIterator<Node> getAllNodes()
     {
-        Iterator<Node> committedNodes = new PrefetchingIterator<Node>()
+        final NodeStore store = xaDsm.getNeoStoreDataSource().getNeoStore().getNodeStore();
+        ClosableIterator<Node> scan = new StoreScan<Node,NodeRecord>( Node.class )
         {
-            private long highId = getHighestPossibleIdInUse( Node.class );
-            private long currentId;
+            @Override
+            protected RecordScanner<NodeRecord> scan( long fromId, long toId )
+            {
+                return store.scan( fromId, toId, readAheadExecutor );
+            }
 
             @Override
-            protected Node fetchNextOrNull()
+            protected Node entity( NodeRecord record )
             {
-                while ( true )
-                {   // This outer loop is for checking if highId has changed since we started.
-                    while ( currentId <= highId )
-                    {
-                        try
-                        {
-                            Node node = getNodeByIdOrNull( currentId );
-                            if ( node != null )
-                            {
-                                return node;
-                            }
-                        }
-                        finally
-                        {
-                            currentId++;
-                        }
-                    }
-                
-                    long newHighId = getHighestPossibleIdInUse( Node.class );
-                    if ( newHighId > highId )
-                        highId = newHighId;
-                    else
-                        break;
-                }
-                return null;
+                // Not put in the cache, a big scan would only evict what's hot in there
+                return new NodeProxy( record.getId(), nodeLookup );
             }
         };
         
         final TransactionState txState = getTransactionState();
         if ( !txState.hasChanges() )
-            return committedNodes;
+            return scan;
+        Iterator<Node> committedNodes = scan;
             
         /* Created nodes are put in the cache right away, even before the transaction is committed.
          * We want this iterator to include nodes that have been created, but not yes committed in
@@ -407,7 +407,7 @@ public class NodeManager
         } );
         
         // Append nodes created in this transaction
-        return new CombiningIterator<Node>( asList( filteredRemovedNodes,
+        return closing( new CombiningIterator<Node>( asList( filteredRemovedNodes,
                 new IteratorWrapper<Node,Long>( createdNodes.iterator() )
         {
             @Override
@@ -415,7 +415,7 @@ public class NodeManager
             {
                 return getNodeById( id );
             }
-        } ) );
+        } ) ), scan );
     }
 
     NodeImpl getLightNode( long nodeId )
@@ -527,48 +527,34 @@ public class NodeManager
         return relationship;
     }
 
+    /**
+     * @return all relationships, which should be {@link ClosableIterator#close()
+     * closed} if not iterated to the end, to stop reading the store ahead.
+     */
     @SuppressWarnings( "unchecked" )
-    public Iterator<Relationship> getAllRelationships()
+    public ClosableIterator<Relationship> getAllRelationships()
     {
-        Iterator<Relationship> committedRelationships = new PrefetchingIterator<Relationship>()
+        final RelationshipStore store = xaDsm.getNeoStoreDataSource().getNeoStore().getRelationshipStore();
+        ClosableIterator<Relationship> scan = new StoreScan<Relationship,RelationshipRecord>( Relationship.class )
         {
-            private long highId = getHighestPossibleIdInUse( Relationship.class );
-            private long currentId;
+            @Override
+            protected RecordScanner<RelationshipRecord> scan( long fromId, long toId )
+            {
+                return store.scan( fromId, toId, readAheadExecutor );
+            }
 
             @Override
-            protected Relationship fetchNextOrNull()
+            protected Relationship entity( RelationshipRecord record )
             {
-                while ( true )
-                {   // This outer loop is for checking if highId has changed since we started.
-                    while ( currentId <= highId )
-                    {
-                        try
-                        {
-                            Relationship relationship = getRelationshipByIdOrNull( currentId );
-                            if ( relationship != null )
-                            {
-                                return relationship;
-                            }
-                        }
-                        finally
-                        {
-                            currentId++;
-                        }
-                    }
-
-                    long newHighId = getHighestPossibleIdInUse( Node.class );
-                    if ( newHighId > highId )
-                        highId = newHighId;
-                    else
-                        break;
-                }
-                return null;
+                // Not put in the cache, a big scan would only evict what's hot in there
+                return new RelationshipProxy( record.getId(), relationshipLookups );
             }
         };
 
         final TransactionState txState = getTransactionState();
         if ( !txState.hasChanges() )
-            return committedRelationships;
+            return scan;
+        Iterator<Relationship> committedRelationships = scan;
         
         /* Created relationships are put in the cache right away, even before the transaction is committed.
          * We want this iterator to include relationships that have been created, but not yes committed in
@@ -601,7 +587,7 @@ public class NodeManager
         } );
         
         // Append relationships created in this transaction
-        return new CombiningIterator<Relationship>( asList( filteredRemovedRelationships,
+        return closing( new CombiningIterator<Relationship>( asList( filteredRemovedRelationships,
                 new IteratorWrapper<Relationship, Long>( createdRelationships.iterator() )
         {
             @Override
@@ -609,7 +595,97 @@ public class NodeManager
             {
                 return getRelationshipById( id );
             }
-        } ) );
+        } ) ), scan );
+    }
+
+    private static <T> ClosableIterator<T> closing( final Iterator<T> iterator, final ClosableIterator<T> scan )
+    {
+        return new ClosableIterator<T>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next()
+            {
+                return iterator.next();
+            }
+
+            @Override
+            public void remove()
+            {
+                iterator.remove();
+            }
+
+            @Override
+            public void close()
+            {
+                scan.close();
+            }
+        };
+    }
+
+    /**
+     * Iterates over the entities in use in a store, in id order, and goes on
+     * with the ids added while scanning until the high id stops growing.
+     */
+    private abstract class StoreScan<T,R extends AbstractBaseRecord> extends PrefetchingIterator<T>
+            implements ClosableIterator<T>
+    {
+        private final Class<?> type;
+        private long highId;
+        private long scannedId;
+        private RecordScanner<R> scanner;
+        private boolean closed;
+
+        StoreScan( Class<?> type )
+        {
+            this.type = type;
+            this.highId = getHighestPossibleIdInUse( type );
+        }
+
+        protected abstract RecordScanner<R> scan( long fromId, long toId );
+
+        protected abstract T entity( R record );
+
+        @Override
+        protected T fetchNextOrNull()
+        {
+            while ( !closed )
+            {   // This loop is for checking if highId has changed since we started.
+                if ( scanner == null )
+                {
+                    scanner = scan( scannedId, highId + 1 );
+                    scannedId = highId + 1;
+                }
+                if ( scanner.hasNext() )
+                {
+                    return entity( scanner.next() );
+                }
+                scanner = null;
+
+                long newHighId = getHighestPossibleIdInUse( type );
+                if ( newHighId > highId )
+                    highId = newHighId;
+                else
+                    break;
+            }
+            return null;
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+            if ( scanner != null )
+            {
+                scanner.close();
+                scanner = null;
+            }
+        }
     }
 
     private Set<Long> asSet( RelIdIterator ids )
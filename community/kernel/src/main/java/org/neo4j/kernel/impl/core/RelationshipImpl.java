@@ -19,6 +19,9 @@
  */
 package org.neo4j.kernel.impl.core;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.kernel.impl.core.WritableTransactionState.CowEntityElement;
@@ -119,17 +122,19 @@ public class RelationshipImpl extends ArrayBasedPrimitive
         try
         {
             tx = nodeManager.getTransactionState();
+            List<Object> locks = new ArrayList<Object>( 3 );
             startNode = nodeManager.getLightNode( getStartNodeId() );
             if ( startNode != null )
             {
-                tx.acquireWriteLock( nodeManager.newNodeProxyById( getStartNodeId() ) );
+                locks.add( nodeManager.newNodeProxyById( getStartNodeId() ) );
             }
             endNode = nodeManager.getLightNode( getEndNodeId() );
             if ( endNode != null )
             {
-                tx.acquireWriteLock( nodeManager.newNodeProxyById( getEndNodeId() ) );
+                locks.add( nodeManager.newNodeProxyById( getEndNodeId() ) );
             }
-            tx.acquireWriteLock( proxy );
+            locks.add( proxy );
+            tx.acquireWriteLocks( locks.toArray() );
             // no need to load full relationship, all properties will be
             // deleted when relationship is deleted
 
@@ -47,6 +47,8 @@ public interface TransactionState
 {
     LockElement acquireWriteLock( Object resource );
 
+    LockElement[] acquireWriteLocks( Object... resources );
+
     LockElement acquireReadLock( Object resource );
     
     ArrayMap<Integer, RelIdArray> getCowRelationshipAddMap( NodeImpl node );
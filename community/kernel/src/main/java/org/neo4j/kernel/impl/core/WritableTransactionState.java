@@ -252,6 +252,19 @@ public class WritableTransactionState implements TransactionState
         return lock;
     }
 
+    @Override
+    public LockElement[] acquireWriteLocks( Object... resources )
+    {
+        lockManager.getWriteLocks( resources );
+        LockElement[] locks = new LockElement[resources.length];
+        for ( int i = 0; i < resources.length; i++ )
+        {
+            locks[i] = new LockElement( resources[i], LockType.WRITE, lockManager );
+            addLockToTransaction( locks[i] );
+        }
+        return locks;
+    }
+
     @Override
     public LockElement acquireReadLock( Object resource )
     {
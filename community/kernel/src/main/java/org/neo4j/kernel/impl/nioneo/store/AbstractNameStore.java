@@ -25,6 +25,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.neo4j.kernel.IdGeneratorFactory;
 import org.neo4j.kernel.IdType;
@@ -113,6 +114,13 @@ public abstract class AbstractNameStore<T extends AbstractNameRecord> extends Ab
         }
     }
 
+    @Override
+    protected void collectChangedPages( Map<File, ChangedPages> target )
+    {
+        nameStore.collectChangedPages( target );
+        super.collectChangedPages( target );
+    }
+
     @Override
     public void flushAll()
     {
@@ -0,0 +1,306 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps track of which pages of a store file have been written to since the
+ * start of an epoch, so that a copy of the file made during that epoch, like a
+ * backup, can be brought up to date by copying only those pages.
+ * <p>
+ * The pages are kept in a file next to the store file, but are only trusted if
+ * that file was written at a clean shutdown. After a crash it isn't known what
+ * was written to the store file, so the epoch is unknown until the next one
+ * is started.
+ */
+public class ChangedPages
+{
+    public static final String FILE_SUFFIX = ".changes";
+    public static final int PAGE_SIZE = 64 * 1024;
+    public static final long NO_EPOCH = -1;
+
+    private static final byte IN_USE = 0;
+    private static final byte CLEAN = 1;
+    private static final int WORDS_PER_CHUNK = 1024;
+    private static final long PAGES_PER_CHUNK = WORDS_PER_CHUNK * 64L;
+    // 4G per chunk, which makes it 4T per store file
+    private static final int MAX_CHUNKS = 1024;
+
+    private final FileSystemAbstraction fileSystem;
+    private final File file;
+    private final int recordSize;
+    private final AtomicReferenceArray<AtomicLongArray> chunks =
+            new AtomicReferenceArray<AtomicLongArray>( MAX_CHUNKS );
+    private volatile long epoch = NO_EPOCH;
+    // Set if a change couldn't be tracked, which makes the epoch unknown for as long as this instance lives
+    private volatile boolean lostTrack;
+
+    private ChangedPages( FileSystemAbstraction fileSystem, File file, int recordSize )
+    {
+        this.fileSystem = fileSystem;
+        this.file = file;
+        this.recordSize = recordSize;
+    }
+
+    /**
+     * Opens the changed pages of {@code storeFile}, starting where they were left
+     * at the last clean {@link #close()}, and marks them as in use until then.
+     */
+    public static ChangedPages open( FileSystemAbstraction fileSystem, File storeFile, int recordSize )
+    {
+        ChangedPages pages = new ChangedPages( fileSystem, new File( storeFile.getPath() + FILE_SUFFIX ),
+                recordSize );
+        try
+        {
+            if ( fileSystem.fileExists( pages.file ) )
+            {
+                pages.read();
+            }
+            pages.write( IN_USE );
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( "Unable to open " + pages.file, e );
+        }
+        return pages;
+    }
+
+    /**
+     * Called before the record with the given id is written to.
+     */
+    public void markRecord( long id )
+    {
+        long start = id * recordSize;
+        long lastPage = (start + recordSize - 1) / PAGE_SIZE;
+        for ( long page = start / PAGE_SIZE; page <= lastPage; page++ )
+        {
+            mark( page );
+        }
+    }
+
+    private void mark( long page )
+    {
+        long chunkIndex = page / PAGES_PER_CHUNK;
+        if ( chunkIndex >= MAX_CHUNKS )
+        {
+            lostTrack = true;
+            return;
+        }
+        AtomicLongArray chunk = chunks.get( (int) chunkIndex );
+        if ( chunk == null )
+        {
+            chunks.compareAndSet( (int) chunkIndex, null, new AtomicLongArray( WORDS_PER_CHUNK ) );
+            chunk = chunks.get( (int) chunkIndex );
+        }
+        int word = (int) ((page % PAGES_PER_CHUNK) >>> 6);
+        long bit = 1L << (page & 63);
+        long current;
+        while ( ((current = chunk.get( word )) & bit) == 0 )
+        {
+            if ( chunk.compareAndSet( word, current, current | bit ) )
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the current epoch, or {@link #NO_EPOCH} if the changes in it aren't known.
+     */
+    public long getEpoch()
+    {
+        return lostTrack ? NO_EPOCH : epoch;
+    }
+
+    public int countChangedPages()
+    {
+        int count = 0;
+        for ( int chunkIndex = 0; chunkIndex < MAX_CHUNKS; chunkIndex++ )
+        {
+            AtomicLongArray chunk = chunks.get( chunkIndex );
+            for ( int word = 0; chunk != null && word < WORDS_PER_CHUNK; word++ )
+            {
+                count += Long.bitCount( chunk.get( word ) );
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Ends the current epoch and starts {@code newEpoch}, with no changed pages.
+     * A page written to concurrently ends up in either of the epochs.
+     *
+     * @return the pages changed in the epoch that ended, or {@code null} if they aren't known.
+     */
+    public synchronized BitSet startEpoch( long newEpoch )
+    {
+        BitSet changes = new BitSet();
+        for ( int chunkIndex = 0; chunkIndex < MAX_CHUNKS; chunkIndex++ )
+        {
+            AtomicLongArray chunk = chunks.get( chunkIndex );
+            for ( int word = 0; chunk != null && word < WORDS_PER_CHUNK; word++ )
+            {
+                long bits = chunk.getAndSet( word, 0 );
+                while ( bits != 0 )
+                {
+                    changes.set( (int) (chunkIndex * PAGES_PER_CHUNK + word * 64 + Long.numberOfTrailingZeros( bits )) );
+                    bits &= bits - 1;
+                }
+            }
+        }
+        boolean known = getEpoch() != NO_EPOCH;
+        epoch = newEpoch;
+        return known ? changes : null;
+    }
+
+    /**
+     * Writes the changed pages so that they're trusted the next time they're opened.
+     * Only to be called when the store file has been closed cleanly.
+     */
+    public synchronized void close()
+    {
+        try
+        {
+            write( CLEAN );
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( "Unable to write " + file, e );
+        }
+    }
+
+    private void read() throws IOException
+    {
+        FileChannel channel = fileSystem.open( file, "r" );
+        try
+        {
+            ByteBuffer header = ByteBuffer.allocate( 13 );
+            if ( !readFully( channel, header ) )
+            {
+                return;
+            }
+            byte state = header.get();
+            long storedEpoch = header.getLong();
+            int chunkCount = header.getInt();
+            if ( state != CLEAN || chunkCount > MAX_CHUNKS )
+            {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate( 1 + WORDS_PER_CHUNK * 8 );
+            for ( int chunkIndex = 0; chunkIndex < chunkCount; chunkIndex++ )
+            {
+                buffer.clear();
+                if ( !readFully( channel, buffer ) )
+                {
+                    clear();
+                    return;
+                }
+                if ( buffer.get() == 1 )
+                {
+                    AtomicLongArray chunk = new AtomicLongArray( WORDS_PER_CHUNK );
+                    for ( int word = 0; word < WORDS_PER_CHUNK; word++ )
+                    {
+                        chunk.set( word, buffer.getLong() );
+                    }
+                    chunks.set( chunkIndex, chunk );
+                }
+            }
+            epoch = storedEpoch;
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    private static boolean readFully( FileChannel channel, ByteBuffer buffer ) throws IOException
+    {
+        while ( buffer.hasRemaining() )
+        {
+            if ( channel.read( buffer ) == -1 )
+            {
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    private void clear()
+    {
+        for ( int chunkIndex = 0; chunkIndex < MAX_CHUNKS; chunkIndex++ )
+        {
+            chunks.set( chunkIndex, null );
+        }
+    }
+
+    private void write( byte state ) throws IOException
+    {
+        // The pages are only written at clean shutdown, before that the file just says it's in use
+        int chunkCount = 0;
+        for ( int chunkIndex = 0; state == CLEAN && chunkIndex < MAX_CHUNKS; chunkIndex++ )
+        {
+            if ( chunks.get( chunkIndex ) != null )
+            {
+                chunkCount = chunkIndex + 1;
+            }
+        }
+        FileChannel channel = fileSystem.open( file, "rw" );
+        try
+        {
+            channel.truncate( 0 );
+            ByteBuffer buffer = ByteBuffer.allocate( 1 + WORDS_PER_CHUNK * 8 );
+            buffer.put( state ).putLong( getEpoch() ).putInt( chunkCount ).flip();
+            writeFully( channel, buffer );
+            for ( int chunkIndex = 0; chunkIndex < chunkCount; chunkIndex++ )
+            {
+                AtomicLongArray chunk = chunks.get( chunkIndex );
+                buffer.clear();
+                buffer.put( chunk != null ? (byte) 1 : (byte) 0 );
+                for ( int word = 0; chunk != null && word < WORDS_PER_CHUNK; word++ )
+                {
+                    buffer.putLong( chunk.get( word ) );
+                }
+                buffer.flip();
+                writeFully( channel, buffer );
+            }
+            channel.force( false );
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    private static void writeFully( FileChannel channel, ByteBuffer buffer ) throws IOException
+    {
+        while ( buffer.hasRemaining() )
+        {
+            channel.write( buffer );
+        }
+    }
+}
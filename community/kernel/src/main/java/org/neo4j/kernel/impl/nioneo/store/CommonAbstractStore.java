@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.OverlappingFileLockException;
+import java.util.Map;
 
 import org.neo4j.graphdb.config.Setting;
 import org.neo4j.graphdb.factory.GraphDatabaseSetting;
@@ -54,6 +55,9 @@ public abstract class CommonAbstractStore
         public static final GraphDatabaseSetting.BooleanSetting read_only = GraphDatabaseSettings.read_only;
         public static final GraphDatabaseSetting.BooleanSetting backup_slave = GraphDatabaseSettings.backup_slave;
         public static final GraphDatabaseSetting.BooleanSetting use_memory_mapped_buffers = GraphDatabaseSettings.use_memory_mapped_buffers;
+        public static final GraphDatabaseSettings.WindowPoolTypeSetting window_pool_type = GraphDatabaseSettings.window_pool_type;
+        public static final GraphDatabaseSetting<Long> mapped_memory_page_size = GraphDatabaseSettings.mapped_memory_page_size;
+        public static final GraphDatabaseSetting<Long> all_stores_total_mapped_memory_size = GraphDatabaseSettings.all_stores_total_mapped_memory_size;
     }
 
     public static final String ALL_STORES_VERSION = "v0.A.0";
@@ -77,6 +81,7 @@ public abstract class CommonAbstractStore
     private boolean readOnly = false;
     private boolean backupSlave = false;
     private long highestUpdateRecordId = -1;
+    private ChangedPages changedPages;
 
     /**
      * Opens and validates the store contained in <CODE>fileName</CODE>
@@ -220,6 +225,11 @@ public abstract class CommonAbstractStore
         this.windowPool = windowPoolFactory.create( getStorageFileName(),
             getEffectiveRecordSize(), getFileChannel(), configuration,
                 stringLogger );
+        if ( !isReadOnly() )
+        {
+            changedPages = ChangedPages.open( fileSystemAbstraction, getStorageFileName(),
+                    getEffectiveRecordSize() );
+        }
     }
 
     protected abstract int getEffectiveRecordSize();
@@ -446,6 +456,10 @@ public abstract class CommonAbstractStore
                 + " requested for high id[" + getHighId() + "], store is ok[" + storeOk + "]"
                 + " recovery[" + isInRecoveryMode() + "]", causeOfStoreNotOk );
         }
+        if ( type == OperationType.WRITE && changedPages != null )
+        {
+            changedPages.markRecord( position );
+        }
         return windowPool.acquire( position, type );
     }
 
@@ -618,6 +632,10 @@ public abstract class CommonAbstractStore
             throw new UnderlyingStorageException( "Unable to close store "
                 + getStorageFileName(), storedIoe );
         }
+        if ( changedPages != null )
+        {
+            changedPages.close();
+        }
     }
 
     protected void releaseFileLockAndCloseFileChannel()
@@ -668,6 +686,18 @@ public abstract class CommonAbstractStore
         return idGenerator.getNumberOfIdsInUse();
     }
 
+    /**
+     * Adds the {@link ChangedPages} of this store, and of the stores it consists of,
+     * to {@code target}. Stores that are read only have none.
+     */
+    protected void collectChangedPages( Map<File, ChangedPages> target )
+    {
+        if ( changedPages != null )
+        {
+            target.put( getStorageFileName(), changedPages );
+        }
+    }
+
     public WindowPoolStats getWindowPoolStats()
     {
         return windowPool.getStats();
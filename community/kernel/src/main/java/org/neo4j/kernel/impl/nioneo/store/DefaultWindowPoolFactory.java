@@ -24,24 +24,89 @@ import static org.neo4j.helpers.Settings.setting;
 import java.io.File;
 import java.nio.channels.FileChannel;
 import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings.WindowPoolTypeSetting;
 import org.neo4j.helpers.Settings;
 import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.impl.nioneo.store.windowpool.ScanResistantWindowPoolFactory;
 import org.neo4j.kernel.impl.nioneo.store.windowpool.WindowPool;
 import org.neo4j.kernel.impl.nioneo.store.windowpool.WindowPoolFactory;
 import org.neo4j.kernel.impl.util.StringLogger;
 
 public class DefaultWindowPoolFactory implements WindowPoolFactory
 {
+    /**
+     * A shared page cache with fewer pages than this would just have the
+     * stores evicting each others pages all the time.
+     */
+    private static final int MIN_SHARED_PAGE_COUNT = 16;
+
+    private PageCache pageCache;
+    private ScanResistantWindowPoolFactory scanResistantFactory;
+
     @Override
     public WindowPool create( File storageFileName, int recordSize, FileChannel fileChannel, Config configuration,
                               StringLogger log )
     {
+        boolean useMemoryMappedBuffers = GraphDatabaseSettings.UseMemoryMappedBuffers.shouldMemoryMap(
+                configuration.get( CommonAbstractStore.Configuration.use_memory_mapped_buffers ) );
+        boolean readOnly = isReadOnly( configuration ) && !isBackupSlave( configuration );
+
+        String windowPoolType = configuration.get( CommonAbstractStore.Configuration.window_pool_type );
+
+        if ( WindowPoolTypeSetting.page_cache.equals( windowPoolType ) )
+        {
+            PageCache sharedPageCache = pageCache( configuration );
+            if ( sharedPageCache.pageCount() >= MIN_SHARED_PAGE_COUNT && sharedPageCache.pageSize() >= recordSize )
+            {
+                return new PageCacheWindowPool( storageFileName, recordSize, fileChannel, sharedPageCache,
+                        readOnly, log );
+            }
+        }
+
+        if ( useMemoryMappedBuffers && WindowPoolTypeSetting.scan_resistant.equals( windowPoolType ) )
+        {
+            return scanResistantFactory( configuration, log ).create( storageFileName, recordSize, fileChannel,
+                    configuration, log );
+        }
+
+        if ( useMemoryMappedBuffers && WindowPoolTypeSetting.striped.equals( windowPoolType ) )
+        {
+            return new StripedWindowPool( storageFileName, recordSize, fileChannel,
+                    calculateMappedMemory( configuration, storageFileName ),
+                    configuration.get( CommonAbstractStore.Configuration.mapped_memory_page_size ), readOnly, log );
+        }
 
         return new PersistenceWindowPool( storageFileName, recordSize, fileChannel,
-                calculateMappedMemory( configuration, storageFileName ),
-                GraphDatabaseSettings.UseMemoryMappedBuffers.shouldMemoryMap( configuration.get( CommonAbstractStore
-                        .Configuration.use_memory_mapped_buffers )),
-                        isReadOnly( configuration ) && !isBackupSlave( configuration ), log );
+                calculateMappedMemory( configuration, storageFileName ), useMemoryMappedBuffers, readOnly, log );
+    }
+
+    /**
+     * All stores created by this factory share one page cache, which is
+     * created the first time a store asks for it.
+     */
+    private synchronized PageCache pageCache( Config configuration )
+    {
+        if ( pageCache == null )
+        {
+            pageCache = new PageCache(
+                    configuration.get( CommonAbstractStore.Configuration.all_stores_total_mapped_memory_size ),
+                    configuration.get( CommonAbstractStore.Configuration.mapped_memory_page_size ) );
+        }
+        return pageCache;
+    }
+
+    /**
+     * All stores created by this factory share the replacement strategy, and
+     * thereby the mapped memory, of one scan resistant factory.
+     */
+    private synchronized ScanResistantWindowPoolFactory scanResistantFactory( Config configuration,
+                                                                              StringLogger log )
+    {
+        if ( scanResistantFactory == null )
+        {
+            scanResistantFactory = new ScanResistantWindowPoolFactory( configuration, log );
+        }
+        return scanResistantFactory;
     }
 
     private boolean isBackupSlave( Config configuration )
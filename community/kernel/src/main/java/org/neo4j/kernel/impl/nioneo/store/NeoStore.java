@@ -24,7 +24,9 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.neo4j.graphdb.config.Setting;
 import org.neo4j.graphdb.factory.GraphDatabaseSettings;
@@ -70,6 +72,7 @@ public class NeoStore extends AbstractStore
     private RelationshipStore relStore;
     private RelationshipTypeStore relTypeStore;
     private final TxHook txHook;
+    private final StoreStatistics statistics;
     private boolean isStarted;
     private long lastCommittedTx = -1;
 
@@ -91,6 +94,7 @@ public class NeoStore extends AbstractStore
         this.propStore = propStore;
         this.relStore = relStore;
         this.nodeStore = nodeStore;
+        this.statistics = new StoreStatistics( nodeStore, relStore );
         REL_GRAB_SIZE = conf.get( Configuration.relationship_grab_size );
         this.txHook = txHook;
 
@@ -256,6 +260,31 @@ public class NeoStore extends AbstractStore
         nodeStore.flushAll();
     }
 
+    /**
+     * @return the {@link ChangedPages} of each of the files this store consists of.
+     */
+    public Map<File, ChangedPages> getChangedPages()
+    {
+        Map<File, ChangedPages> changedPages = new LinkedHashMap<File, ChangedPages>();
+        collectChangedPages( changedPages );
+        return changedPages;
+    }
+
+    @Override
+    protected void collectChangedPages( Map<File, ChangedPages> target )
+    {
+        if ( relTypeStore == null || propStore == null || relStore == null ||
+                nodeStore == null )
+        {
+            return;
+        }
+        super.collectChangedPages( target );
+        relTypeStore.collectChangedPages( target );
+        propStore.collectChangedPages( target );
+        relStore.collectChangedPages( target );
+        nodeStore.collectChangedPages( target );
+    }
+
     @Override
     public String getTypeDescriptor()
     {
@@ -519,6 +548,16 @@ public class NeoStore extends AbstractStore
         return relTypeStore;
     }
 
+    /**
+     * Returns the estimates of what the node and relationship stores hold.
+     *
+     * @return The store statistics
+     */
+    public StoreStatistics getStatistics()
+    {
+        return statistics;
+    }
+
     /**
      * Returns the property store.
      *
@@ -22,6 +22,7 @@ package org.neo4j.kernel.impl.nioneo.store;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.neo4j.kernel.IdGeneratorFactory;
 import org.neo4j.kernel.IdType;
@@ -193,9 +194,30 @@ public class NodeStore extends AbstractStore implements Store, RecordStore<NodeR
     }
 
     private NodeRecord getRecord( long id, PersistenceWindow window,
-        RecordLoad load  )
+        RecordLoad load )
+    {
+        return getRecord( id, window.getOffsettedBuffer( id ), load );
+    }
+
+    /**
+     * Scans the records with ids from {@code fromId} up to, but not
+     * including, {@code toId} that are in use, reading them ahead on the
+     * given executor, or as they're needed if it's <code>null</code>.
+     */
+    public RecordScanner<NodeRecord> scan( long fromId, long toId, Executor readAheadExecutor )
+    {
+        return new RecordScanner<NodeRecord>( this, fromId, toId, RecordScanner.DEFAULT_CHUNK_SIZE, readAheadExecutor )
+        {
+            @Override
+            protected NodeRecord read( long id, Buffer buffer )
+            {
+                return getRecord( id, buffer, RecordLoad.CHECK );
+            }
+        };
+    }
+
+    NodeRecord getRecord( long id, Buffer buffer, RecordLoad load )
     {
-        Buffer buffer = window.getOffsettedBuffer( id );
 
         // [    ,   x] in use bit
         // [    ,xxx ] higher bits for rel id
@@ -0,0 +1,253 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A fixed number of off-heap pages shared between all record stores of a
+ * database, see {@link PageCacheWindowPool}. Which store a page belongs to is
+ * decided by the workload: whenever a store needs a page that isn't cached a
+ * frame is taken from whichever store used it least recently, using a single
+ * CLOCK hand across all frames.
+ */
+public class PageCache
+{
+    private static final int MIN_PAGE_COUNT = 1024;
+    private static final int MIN_PAGE_SIZE = 4096;
+    private static final long DEFAULT_CLAIM_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis( 10 );
+
+    private final int pageSize;
+    private final long claimTimeoutMillis;
+    private final Frame[] frames;
+    private final AtomicInteger clockHand = new AtomicInteger();
+
+    /**
+     * @param totalMemory
+     *            Number of bytes of off-heap memory to use for pages.
+     * @param targetPageSize
+     *            Preferred size of each page in bytes, made smaller if
+     *            {@code totalMemory} wouldn't fit a reasonable number of pages.
+     */
+    public PageCache( long totalMemory, long targetPageSize )
+    {
+        this( totalMemory, targetPageSize, DEFAULT_CLAIM_TIMEOUT_MILLIS );
+    }
+
+    PageCache( long totalMemory, long targetPageSize, long claimTimeoutMillis )
+    {
+        this.claimTimeoutMillis = claimTimeoutMillis;
+        long pageSize = Math.min( targetPageSize, Math.max( totalMemory / MIN_PAGE_COUNT, MIN_PAGE_SIZE ) );
+        this.pageSize = (int) Math.min( pageSize, Integer.MAX_VALUE );
+        long frameCount = totalMemory / this.pageSize;
+        if ( frameCount > Integer.MAX_VALUE )
+        {
+            throw new IllegalArgumentException( "Page size[" + this.pageSize + "] and cache size[" + totalMemory
+                    + "] implies too many pages" );
+        }
+        this.frames = new Frame[(int) frameCount];
+        for ( int i = 0; i < frames.length; i++ )
+        {
+            frames[i] = new Frame();
+        }
+    }
+
+    public int pageSize()
+    {
+        return pageSize;
+    }
+
+    public int pageCount()
+    {
+        return frames.length;
+    }
+
+    public long size()
+    {
+        return (long) pageSize * frames.length;
+    }
+
+    /**
+     * Moves the CLOCK hand until it finds a frame that nobody has pinned and
+     * that hasn't been referenced since the hand last passed it. The contents
+     * of the frame is evicted from the store it belonged to.
+     *
+     * @return a claimed frame, which is exclusively owned by the caller until
+     * it's either {@link Frame#assign(PageCacheWindowPool, int) assigned} and
+     * {@link Frame#unclaim() unclaimed}, or {@link Frame#free() freed}.
+     * @throws UnderlyingStorageException if all frames stay pinned for too long,
+     * which means that the cache has fewer pages than there are threads using it.
+     */
+    Frame claimFrame()
+    {
+        long deadline = 0;
+        for ( int attempts = 1; ; attempts++ )
+        {
+            Frame frame = frames[(clockHand.getAndIncrement() & Integer.MAX_VALUE) % frames.length];
+            if ( frame.referenced )
+            {
+                frame.referenced = false;
+            }
+            else if ( frame.claim() )
+            {
+                PageCacheWindowPool owner = frame.owner;
+                if ( owner != null )
+                {
+                    owner.evicted( frame );
+                    frame.owner = null;
+                }
+                frame.ensureAllocated( pageSize );
+                return frame;
+            }
+            if ( attempts % (frames.length * 2) == 0 )
+            {
+                // Everything is pinned, give the pinning threads some room to finish
+                long now = System.currentTimeMillis();
+                if ( deadline == 0 )
+                {
+                    deadline = now + claimTimeoutMillis;
+                    Thread.yield();
+                }
+                else if ( now < deadline )
+                {
+                    LockSupport.parkNanos( TimeUnit.MILLISECONDS.toNanos( 1 ) );
+                }
+                else
+                {
+                    throw new UnderlyingStorageException( "All " + frames.length + " pages of the page cache "
+                            + "have been pinned for " + claimTimeoutMillis + "ms, the page cache is too small "
+                            + "for the number of threads using it" );
+                }
+            }
+        }
+    }
+
+    /**
+     * Frees all frames belonging to {@code owner}, which must not have any
+     * frames pinned.
+     */
+    void evictAll( PageCacheWindowPool owner )
+    {
+        for ( Frame frame : frames )
+        {
+            if ( frame.owner == owner )
+            {
+                while ( !frame.claim() )
+                {
+                    Thread.yield();
+                }
+                if ( frame.owner == owner )
+                {
+                    owner.evicted( frame );
+                    frame.owner = null;
+                }
+                frame.free();
+            }
+        }
+    }
+
+    /**
+     * A page sized slot of off-heap memory holding one page of one store.
+     */
+    static final class Frame
+    {
+        private static final int CLAIMED = -1;
+
+        private final AtomicInteger pins = new AtomicInteger();
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        ByteBuffer buffer;
+        volatile PageCacheWindowPool owner;
+        volatile int pageIndex = -1;
+        volatile boolean referenced;
+
+        private void ensureAllocated( int pageSize )
+        {
+            if ( buffer == null )
+            {
+                buffer = ByteBuffer.allocateDirect( pageSize );
+            }
+        }
+
+        boolean pin()
+        {
+            for ( int count = pins.get(); count != CLAIMED; count = pins.get() )
+            {
+                if ( pins.compareAndSet( count, count + 1 ) )
+                {
+                    if ( !referenced )
+                    {
+                        referenced = true;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void unpin()
+        {
+            pins.decrementAndGet();
+        }
+
+        boolean claim()
+        {
+            return pins.compareAndSet( 0, CLAIMED );
+        }
+
+        /**
+         * Marks a claimed frame as holding {@code pageIndex} of {@code owner}.
+         * The frame stays claimed, so nobody can pin it until it's unclaimed.
+         */
+        void assign( PageCacheWindowPool owner, int pageIndex )
+        {
+            this.pageIndex = pageIndex;
+            this.owner = owner;
+        }
+
+        /**
+         * Hands a claimed and assigned frame over to the caller as pinned.
+         */
+        void unclaim()
+        {
+            referenced = true;
+            pins.set( 1 );
+        }
+
+        /**
+         * Makes a claimed frame available to anyone.
+         */
+        void free()
+        {
+            owner = null;
+            pageIndex = -1;
+            pins.set( 0 );
+        }
+
+        boolean holds( PageCacheWindowPool owner, int pageIndex )
+        {
+            return this.owner == owner && this.pageIndex == pageIndex;
+        }
+    }
+}
@@ -0,0 +1,461 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+
+import org.neo4j.kernel.impl.nioneo.store.PageCache.Frame;
+import org.neo4j.kernel.impl.nioneo.store.windowpool.WindowPool;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+/**
+ * A {@link WindowPool} for one store, backed by pages from a {@link PageCache}
+ * that is shared with all other stores. Memory thereby follows the workload
+ * rather than a static split of mapped memory between the stores.
+ * <p>
+ * Pages are read from the file into the off-heap page on a miss. Writes go
+ * to the page and are written through to the file channel when the window is
+ * released, so evicting a page never has to write anything and the file always
+ * looks the same to code reading it through the channel directly.
+ * <p>
+ * A page that is loaded while another thread loads, writes and then evicts
+ * the same page must not be installed, since what it loaded may predate that
+ * write. Evictions therefore bump a generation for the page, which a loader
+ * compares before making its frame available.
+ */
+public class PageCacheWindowPool implements WindowPool
+{
+    private static final byte[] ZEROES = new byte[4096];
+    // Striped rather than one per page so that it doesn't have to grow with the page table,
+    // pages sharing a generation only means that a loader occasionally loads again
+    private static final int GENERATION_STRIPES = 1024; // must be a power of two
+
+    private final File storeName;
+    private final int recordSize;
+    private final int recordsPerPage;
+    private final int bytesPerPage;
+    private final boolean readOnly;
+    private final PageCache pageCache;
+    private final StringLogger log;
+    private FileChannel fileChannel;
+
+    private final Object pageTableGrowthLock = new Object();
+    private volatile AtomicReferenceArray<Frame> pageTable;
+    private final AtomicIntegerArray generations = new AtomicIntegerArray( GENERATION_STRIPES );
+    private final AtomicInteger cachedPages = new AtomicInteger();
+
+    // Statistics only, so it's OK to miss some updates here
+    private int hit = 0;
+    private int miss = 0;
+    private int evictions = 0;
+
+    public PageCacheWindowPool( File storeName, int recordSize, FileChannel fileChannel, PageCache pageCache,
+                                boolean readOnly, StringLogger log )
+    {
+        if ( recordSize <= 0 || recordSize > pageCache.pageSize() )
+        {
+            throw new IllegalArgumentException( "Record size[" + recordSize + "] of " + storeName
+                    + " doesn't fit in a page of " + pageCache.pageSize() + "b" );
+        }
+        this.storeName = storeName;
+        this.recordSize = recordSize;
+        this.recordsPerPage = pageCache.pageSize() / recordSize;
+        this.bytesPerPage = recordsPerPage * recordSize;
+        this.fileChannel = fileChannel;
+        this.pageCache = pageCache;
+        this.readOnly = readOnly;
+        this.log = log;
+        this.pageTable = new AtomicReferenceArray<Frame>( initialPageCount() );
+        dumpStatus();
+    }
+
+    private int initialPageCount()
+    {
+        try
+        {
+            return pageIndex( fileChannel.size() / recordSize ) + 1;
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( "Unable to get file size for " + storeName, e );
+        }
+    }
+
+    @Override
+    public PersistenceWindow acquire( long position, OperationType operationType )
+    {
+        int pageIndex = pageIndex( position );
+        Frame frame = pin( pageIndex );
+        Lock lock = operationType == OperationType.WRITE ? frame.lock.writeLock() : frame.lock.readLock();
+        lock.lock();
+        return new FrameWindow( frame, (long) pageIndex * recordsPerPage, position, lock, operationType );
+    }
+
+    private Frame pin( int pageIndex )
+    {
+        while ( true )
+        {
+            AtomicReferenceArray<Frame> table = pageTable;
+            if ( pageIndex >= table.length() )
+            {
+                table = growPageTable( pageIndex + 1 );
+            }
+            Frame frame = table.get( pageIndex );
+            if ( frame != null )
+            {
+                if ( !frame.holds( this, pageIndex ) )
+                {
+                    // The frame has been given to another page since it was put here, clear it
+                    table.compareAndSet( pageIndex, frame, null );
+                    continue;
+                }
+                if ( frame.pin() )
+                {
+                    if ( frame.holds( this, pageIndex ) )
+                    {
+                        hit++;
+                        return frame;
+                    }
+                    frame.unpin();
+                }
+                else
+                {
+                    // Being evicted right now
+                    Thread.yield();
+                }
+                continue;
+            }
+
+            frame = pageCache.claimFrame();
+            int generation = generations.get( generationStripe( pageIndex ) );
+            try
+            {
+                load( frame, pageIndex );
+            }
+            catch ( RuntimeException e )
+            {
+                frame.free();
+                throw e;
+            }
+            frame.assign( this, pageIndex );
+            if ( install( pageIndex, frame ) )
+            {
+                // Nobody can pin the frame while it's claimed, so it can still be taken back here
+                if ( generations.get( generationStripe( pageIndex ) ) == generation )
+                {
+                    frame.unclaim();
+                    miss++;
+                    cachedPages.incrementAndGet();
+                    return frame;
+                }
+                // The page was cached and evicted while we loaded it, what we loaded may be stale
+                uninstall( pageIndex, frame );
+            }
+            // Either someone else loaded this page before us, use that one instead, or load it again
+            frame.free();
+        }
+    }
+
+    private static int generationStripe( int pageIndex )
+    {
+        return pageIndex & (GENERATION_STRIPES - 1);
+    }
+
+    /*
+     * Installed under the growth lock, so that the table can't be copied between us installing the frame in it
+     * and the copy being published, which would leave the frame claimed but out of reach of eviction.
+     */
+    private boolean install( int pageIndex, Frame frame )
+    {
+        synchronized ( pageTableGrowthLock )
+        {
+            AtomicReferenceArray<Frame> table = pageTable;
+            return pageIndex < table.length() && table.compareAndSet( pageIndex, null, frame );
+        }
+    }
+
+    private void uninstall( int pageIndex, Frame frame )
+    {
+        synchronized ( pageTableGrowthLock )
+        {
+            AtomicReferenceArray<Frame> table = pageTable;
+            if ( pageIndex < table.length() )
+            {
+                table.compareAndSet( pageIndex, frame, null );
+            }
+        }
+    }
+
+    private AtomicReferenceArray<Frame> growPageTable( int minimumLength )
+    {
+        synchronized ( pageTableGrowthLock )
+        {
+            AtomicReferenceArray<Frame> table = pageTable;
+            if ( table.length() < minimumLength )
+            {
+                AtomicReferenceArray<Frame> newTable = new AtomicReferenceArray<Frame>(
+                        Math.max( minimumLength, table.length() + table.length() / 2 ) );
+                for ( int i = 0; i < table.length(); i++ )
+                {
+                    newTable.set( i, table.get( i ) );
+                }
+                pageTable = newTable;
+                table = newTable;
+            }
+            return table;
+        }
+    }
+
+    private void load( Frame frame, int pageIndex )
+    {
+        ByteBuffer buffer = frame.buffer;
+        buffer.clear();
+        buffer.limit( bytesPerPage );
+        long filePosition = (long) pageIndex * bytesPerPage;
+        try
+        {
+            while ( buffer.hasRemaining() )
+            {
+                if ( fileChannel.read( buffer, filePosition + buffer.position() ) <= 0 )
+                {
+                    break;
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( "Unable to load page[" + pageIndex + "] @["
+                    + filePosition + "] of " + storeName, e );
+        }
+        // The frame may have held another page before, don't let that show beyond end of file
+        while ( buffer.hasRemaining() )
+        {
+            buffer.put( ZEROES, 0, Math.min( ZEROES.length, buffer.remaining() ) );
+        }
+    }
+
+    /**
+     * Called by the {@link PageCache} when a frame holding a page of this
+     * store is about to be given to another page.
+     */
+    void evicted( Frame frame )
+    {
+        int pageIndex = frame.pageIndex;
+        AtomicReferenceArray<Frame> table = pageTable;
+        if ( pageIndex >= 0 && pageIndex < table.length() )
+        {
+            // Before clearing the slot, so that anyone installing into the cleared slot sees it
+            generations.incrementAndGet( generationStripe( pageIndex ) );
+            table.compareAndSet( pageIndex, frame, null );
+        }
+        cachedPages.decrementAndGet();
+        evictions++;
+    }
+
+    private void writeThrough( Frame frame, long firstRecordInPage, long position )
+    {
+        if ( readOnly )
+        {
+            return;
+        }
+        ByteBuffer record = frame.buffer.duplicate();
+        int offset = (int) (position - firstRecordInPage) * recordSize;
+        record.limit( offset + recordSize ).position( offset );
+        try
+        {
+            long filePosition = position * recordSize;
+            while ( record.hasRemaining() )
+            {
+                fileChannel.write( record, filePosition + record.position() - offset );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( "Unable to write record["
+                    + position + "] @[" + position * recordSize + "]", e );
+        }
+    }
+
+    private int pageIndex( long position )
+    {
+        long pageIndex = position / recordsPerPage;
+        if ( pageIndex >= Integer.MAX_VALUE )
+        {
+            throw new IllegalArgumentException( "Position[" + position + "] with current page size["
+                    + recordsPerPage + " records/page] implies an impossible page number[" + pageIndex + "]" );
+        }
+        return (int) pageIndex;
+    }
+
+    @Override
+    public void release( PersistenceWindow window )
+    {
+        ((FrameWindow) window).release();
+    }
+
+    @Override
+    public void flushAll()
+    {
+        if ( readOnly )
+            return;
+
+        // Pages are written through, so it's only a matter of forcing the channel
+        try
+        {
+            fileChannel.force( false );
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( "Failed to flush file channel " + storeName, e );
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        flushAll();
+        pageCache.evictAll( this );
+        fileChannel = null;
+        log.logMessage( storeName + " hit=" + hit + " miss=" + miss + " evictions=" + evictions );
+    }
+
+    private void dumpStatus()
+    {
+        try
+        {
+            log.logMessage( "[" + storeName + "] pageSize=" + bytesPerPage + "b sharedPageCache="
+                            + pageCache.size() + "b (storeSize=" + fileChannel.size() + "b)" );
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException(
+                "Unable to get file size for " + storeName, e );
+        }
+    }
+
+    @Override
+    public WindowPoolStats getStats()
+    {
+        int pages = cachedPages.get();
+        return new WindowPoolStats( storeName, pageCache.size(), (long) pages * pageCache.pageSize(), pages,
+                bytesPerPage, hit, miss, 0, 0, 0, 0, 0, evictions );
+    }
+
+    /**
+     * The window handed out for a pinned frame. Each acquisition gets its own
+     * view of the frame buffer so that readers sharing a frame don't step
+     * on each others buffer offsets.
+     */
+    private class FrameWindow implements PersistenceWindow
+    {
+        private final Frame frame;
+        private final long firstRecord;
+        private final long acquiredPosition;
+        private final Lock lock;
+        private final OperationType operationType;
+        private final Buffer buffer;
+
+        FrameWindow( Frame frame, long firstRecord, long acquiredPosition, Lock lock,
+                     OperationType operationType )
+        {
+            this.frame = frame;
+            this.firstRecord = firstRecord;
+            this.acquiredPosition = acquiredPosition;
+            this.lock = lock;
+            this.operationType = operationType;
+            ByteBuffer view = frame.buffer.duplicate();
+            view.limit( bytesPerPage );
+            this.buffer = new Buffer( this, view );
+        }
+
+        void release()
+        {
+            try
+            {
+                if ( operationType == OperationType.WRITE )
+                {
+                    writeThrough( frame, firstRecord, acquiredPosition );
+                }
+            }
+            finally
+            {
+                lock.unlock();
+                frame.unpin();
+            }
+        }
+
+        @Override
+        public Buffer getBuffer()
+        {
+            return buffer;
+        }
+
+        @Override
+        public Buffer getOffsettedBuffer( long id )
+        {
+            int offset = (int) (id - firstRecord) * recordSize;
+            buffer.setOffset( offset );
+            return buffer;
+        }
+
+        @Override
+        public int getRecordSize()
+        {
+            return recordSize;
+        }
+
+        @Override
+        public long position()
+        {
+            return firstRecord;
+        }
+
+        @Override
+        public int size()
+        {
+            return recordsPerPage;
+        }
+
+        @Override
+        public void force()
+        {
+            flushAll();
+        }
+
+        @Override
+        public void close()
+        {
+            // The frame outlives this window, it's handed around by the page cache
+        }
+
+        @Override
+        public String toString()
+        {
+            return "FrameWindow[p=" + firstRecord + ",rs=" + recordSize + ",ws=" + recordsPerPage + "]";
+        }
+    }
+}
@@ -131,6 +131,15 @@ public class PropertyStore extends AbstractStore implements Store, RecordStore<P
         }
     }
 
+    @Override
+    protected void collectChangedPages( Map<File, ChangedPages> target )
+    {
+        stringPropertyStore.collectChangedPages( target );
+        propertyIndexStore.collectChangedPages( target );
+        arrayPropertyStore.collectChangedPages( target );
+        super.collectChangedPages( target );
+    }
+
     @Override
     public void flushAll()
     {
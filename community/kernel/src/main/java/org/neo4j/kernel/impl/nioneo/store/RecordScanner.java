@@ -0,0 +1,371 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.helpers.collection.PrefetchingIterator;
+
+/**
+ * Iterates over the records in use in a range of ids of a store, in id order.
+ * The records are read in chunks of many records, so the consumer doesn't
+ * acquire a window for each record. Given an {@link Executor}, a task on it
+ * reads the chunks ahead of the consumer, so the consumer doesn't wait for the
+ * disk either. Without one the chunks are read as the consumer gets to them.
+ * <p>
+ * The chunks are copied out of the windows of the store a window at a time,
+ * so they include changes which haven't been written to the file yet. Parts
+ * of the store that aren't mapped, where the store only hands out a row for a
+ * single record, are read straight from the file channel instead, since rows
+ * are written to the file as they're released. So is a read only store. The
+ * records are a snapshot of each chunk as it was read, which means that
+ * changes made while scanning may or may not be seen, like with any iteration
+ * over the store.
+ * <p>
+ * Reading ahead stops when the range has been read, when the scanner is
+ * {@link #close() closed} or when the scanner is no longer referenced.
+ */
+public abstract class RecordScanner<R extends AbstractBaseRecord> extends PrefetchingIterator<R>
+{
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+    static final int READ_AHEAD_CHUNKS = 4;
+
+    private final ReadAhead readAhead;
+    private final int recordSize;
+    private Chunk chunk;
+    private int index;
+
+    /**
+     * @param readAheadExecutor runs the task reading ahead of the consumer, or
+     * <code>null</code> to read each chunk when the consumer gets to it.
+     */
+    protected RecordScanner( CommonAbstractStore store, long fromId, long toId, int chunkSize,
+            Executor readAheadExecutor )
+    {
+        this.recordSize = store.getEffectiveRecordSize();
+        this.readAhead = new ReadAhead( store, recordSize, fromId, toId, Math.max( 1, chunkSize / recordSize ),
+                new WeakReference<Object>( this ), readAheadExecutor == null );
+        if ( readAheadExecutor == null )
+        {
+            return;
+        }
+        if ( fromId >= toId )
+        {
+            readAhead.hand( END );
+            return;
+        }
+        readAheadExecutor.execute( readAhead );
+    }
+
+    /**
+     * @return the record with the given id read from the buffer, or
+     * <code>null</code> if it isn't in use.
+     */
+    protected abstract R read( long id, Buffer buffer );
+
+    @Override
+    protected R fetchNextOrNull()
+    {
+        while ( true )
+        {
+            if ( chunk == null )
+            {
+                chunk = readAhead.next();
+                if ( chunk == null )
+                {
+                    return null;
+                }
+                index = 0;
+            }
+            while ( index < chunk.count )
+            {
+                chunk.buffer.setOffset( index * recordSize );
+                R record = read( chunk.firstId + index++, chunk.buffer );
+                if ( record != null )
+                {
+                    return record;
+                }
+            }
+            readAhead.recycle( chunk );
+            chunk = null;
+        }
+    }
+
+    /**
+     * Stops reading ahead. Only needed if the scan is abandoned before it's
+     * done.
+     */
+    public void close()
+    {
+        readAhead.close();
+    }
+
+    private static class Chunk
+    {
+        private final ByteBuffer bytes;
+        private final Buffer buffer;
+        private long firstId;
+        private int count;
+
+        Chunk( int size )
+        {
+            this.bytes = ByteBuffer.allocate( size );
+            this.buffer = new Buffer( null, bytes );
+        }
+    }
+
+    private static final Chunk END = new Chunk( 0 );
+
+    /**
+     * The part run by the read ahead task, which doesn't reference the
+     * scanner itself so that an abandoned scanner can be garbage collected.
+     */
+    private static class ReadAhead implements Runnable
+    {
+        private final CommonAbstractStore store;
+        private final int recordSize;
+        private final int recordsPerChunk;
+        private final long toId;
+        private final WeakReference<Object> owner;
+        private final boolean inline;
+        private final BlockingQueue<Chunk> read = new ArrayBlockingQueue<Chunk>( READ_AHEAD_CHUNKS );
+        private final ConcurrentLinkedQueue<Chunk> free = new ConcurrentLinkedQueue<Chunk>();
+        private long nextId;
+        private volatile boolean closed;
+        private volatile Throwable failure;
+
+        ReadAhead( CommonAbstractStore store, int recordSize, long fromId, long toId, int recordsPerChunk,
+                WeakReference<Object> owner, boolean inline )
+        {
+            this.store = store;
+            this.recordSize = recordSize;
+            this.nextId = fromId;
+            this.toId = toId;
+            this.recordsPerChunk = recordsPerChunk;
+            this.owner = owner;
+            this.inline = inline;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while ( nextId < toId )
+                {
+                    if ( !hand( readChunk() ) )
+                    {
+                        return;
+                    }
+                }
+            }
+            catch ( Throwable e )
+            {
+                failure = e;
+            }
+            hand( END );
+        }
+
+        private Chunk readChunk() throws IOException
+        {
+            Chunk chunk = free.poll();
+            if ( chunk == null )
+            {
+                chunk = new Chunk( recordsPerChunk * recordSize );
+            }
+            chunk.firstId = nextId;
+            chunk.count = (int) Math.min( recordsPerChunk, toId - nextId );
+            chunk.bytes.clear();
+            chunk.bytes.limit( chunk.count * recordSize );
+            if ( store.isReadOnly() && !store.isBackupSlave() )
+            {
+                readFromChannel( chunk, chunk.count );
+            }
+            else
+            {
+                copyFromWindows( chunk );
+            }
+            chunk.bytes.flip();
+            nextId += chunk.count;
+            return chunk;
+        }
+
+        /**
+         * Reads the given number of records into the chunk, from the file
+         * position of the record at the current position of the chunk.
+         */
+        private void readFromChannel( Chunk chunk, long records ) throws IOException
+        {
+            FileChannel channel = store.getFileChannel();
+            int limit = chunk.bytes.limit();
+            chunk.bytes.limit( chunk.bytes.position() + (int) records * recordSize );
+            long position = chunk.firstId * recordSize;
+            while ( chunk.bytes.hasRemaining() )
+            {
+                if ( channel.read( chunk.bytes, position + chunk.bytes.position() ) == -1 )
+                {
+                    // Records past the end of the file aren't in use
+                    fillWithZeros( chunk.bytes );
+                }
+            }
+            chunk.bytes.limit( limit );
+        }
+
+        private void copyFromWindows( Chunk chunk ) throws IOException
+        {
+            long id = chunk.firstId;
+            long end = chunk.firstId + chunk.count;
+            long recordsPerWindow = store.getWindowPoolStats().getWindowSize() / recordSize;
+            while ( id < end )
+            {
+                PersistenceWindow window = store.acquireWindow( id, OperationType.READ );
+                try
+                {
+                    if ( window instanceof PersistenceRow )
+                    {
+                        // Not mapped, read the rest of this window's part of the store in one go
+                        long regionEnd = recordsPerWindow > 0 ?
+                                Math.min( end, (id / recordsPerWindow + 1) * recordsPerWindow ) : end;
+                        readFromChannel( chunk, regionEnd - id );
+                        id = regionEnd;
+                        continue;
+                    }
+                    ByteBuffer source = window.getOffsettedBuffer( id ).getBuffer().duplicate();
+                    long records = Math.min( window.position() + window.size(), end ) - id;
+                    int bytes = (int) Math.min( records * recordSize, source.remaining() );
+                    if ( bytes < recordSize )
+                    {
+                        fillWithZeros( chunk.bytes, recordSize );
+                        id++;
+                        continue;
+                    }
+                    bytes -= bytes % recordSize;
+                    source.limit( source.position() + bytes );
+                    chunk.bytes.put( source );
+                    id += bytes / recordSize;
+                }
+                finally
+                {
+                    store.releaseWindow( window );
+                }
+            }
+        }
+
+        private static void fillWithZeros( ByteBuffer bytes )
+        {
+            fillWithZeros( bytes, bytes.remaining() );
+        }
+
+        private static void fillWithZeros( ByteBuffer bytes, int count )
+        {
+            for ( int i = 0; i < count; i++ )
+            {
+                bytes.put( (byte) 0 );
+            }
+        }
+
+        /**
+         * @return <code>false</code> if the scanner has gone away.
+         */
+        private boolean hand( Chunk chunk )
+        {
+            try
+            {
+                while ( !read.offer( chunk, 1, TimeUnit.SECONDS ) )
+                {
+                    if ( closed || owner.get() == null )
+                    {
+                        return false;
+                    }
+                }
+                return !closed;
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        Chunk next()
+        {
+            if ( inline )
+            {
+                return readInline();
+            }
+            Chunk chunk;
+            try
+            {
+                chunk = read.take();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new UnderlyingStorageException( "Interrupted while scanning " + store.getStorageFileName() );
+            }
+            if ( chunk == END )
+            {
+                read.offer( END );
+                if ( failure != null )
+                {
+                    throw new UnderlyingStorageException( "Failed to read ahead in " + store.getStorageFileName(),
+                            failure );
+                }
+                return null;
+            }
+            return chunk;
+        }
+
+        private Chunk readInline()
+        {
+            if ( closed || nextId >= toId )
+            {
+                return null;
+            }
+            try
+            {
+                return readChunk();
+            }
+            catch ( IOException e )
+            {
+                throw new UnderlyingStorageException( "Failed to read " + store.getStorageFileName(), e );
+            }
+        }
+
+        void recycle( Chunk chunk )
+        {
+            free.offer( chunk );
+        }
+
+        void close()
+        {
+            closed = true;
+            read.clear();
+        }
+    }
+}
@@ -22,6 +22,7 @@ package org.neo4j.kernel.impl.nioneo.store;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.neo4j.kernel.IdGeneratorFactory;
 import org.neo4j.kernel.IdType;
@@ -257,7 +258,28 @@ public class RelationshipStore extends AbstractStore implements Store, RecordSto
     private RelationshipRecord getRecord( long id, PersistenceWindow window,
         RecordLoad load )
     {
-        Buffer buffer = window.getOffsettedBuffer( id );
+        return getRecord( id, window.getOffsettedBuffer( id ), load );
+    }
+
+    /**
+     * Scans the records with ids from {@code fromId} up to, but not
+     * including, {@code toId} that are in use, reading them ahead on the
+     * given executor, or as they're needed if it's <code>null</code>.
+     */
+    public RecordScanner<RelationshipRecord> scan( long fromId, long toId, Executor readAheadExecutor )
+    {
+        return new RecordScanner<RelationshipRecord>( this, fromId, toId, RecordScanner.DEFAULT_CHUNK_SIZE, readAheadExecutor )
+        {
+            @Override
+            protected RelationshipRecord read( long id, Buffer buffer )
+            {
+                return getRecord( id, buffer, RecordLoad.CHECK );
+            }
+        };
+    }
+
+    RelationshipRecord getRecord( long id, Buffer buffer, RecordLoad load )
+    {
 
         // [    ,   x] in use flag
         // [    ,xxx ] first node high order bits
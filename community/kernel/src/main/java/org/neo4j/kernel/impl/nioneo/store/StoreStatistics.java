@@ -0,0 +1,319 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.graphdb.Direction;
+
+/**
+ * Estimates of how many nodes and relationships there are in a store and of
+ * how they connect, for query planners to decide where to start matching and
+ * in which direction to expand.
+ * <p>
+ * Relationships are counted per type, together with how many distinct nodes
+ * they start and end at, on a sample of the relationship store taken the first
+ * time an estimate is asked for. Transactions committed through this instance
+ * keep the per type counts up to date from there on. Transactions applied from
+ * a log, on recovery or on an HA slave, don't tell created records from
+ * changed ones, so they are only tallied, and the sample is taken again once
+ * they add up to a tenth of the relationships.
+ * <p>
+ * Index estimates are fed back by whoever queries the indexes, as a moving
+ * average of the number of hits per index and key.
+ */
+public class StoreStatistics
+{
+    static final int SAMPLE_RANGES = 8;
+    static final int SAMPLE_RANGE_SIZE = 64 * 1024;
+    static final int SKETCH_BITS = 1 << 16;
+    private static final long MIN_CHANGES_BEFORE_RESAMPLING = 1000;
+    private static final double INDEX_HITS_WEIGHT = 0.2;
+
+    private final NodeStore nodeStore;
+    private final RelationshipStore relStore;
+    private final AtomicLong unaccountedChanges = new AtomicLong();
+    private final ConcurrentMap<String, Double> indexHits = new ConcurrentHashMap<String, Double>();
+    private volatile Sample sample;
+
+    public StoreStatistics( NodeStore nodeStore, RelationshipStore relStore )
+    {
+        this.nodeStore = nodeStore;
+        this.relStore = relStore;
+    }
+
+    public long getNodeCount()
+    {
+        return nodeStore.getNumberOfIdsInUse();
+    }
+
+    public long getRelationshipCount()
+    {
+        return relStore.getNumberOfIdsInUse();
+    }
+
+    public long getRelationshipCount( int type )
+    {
+        TypeStatistics statistics = sample().types.get( type );
+        return statistics == null ? 0 : Math.max( 0, statistics.count.get() );
+    }
+
+    /**
+     * @return the average number of relationships in the given direction a
+     * node has, over all nodes.
+     */
+    public double getAverageDegree( Direction direction )
+    {
+        long nodes = Math.max( 1, getNodeCount() );
+        double degree = (double) getRelationshipCount() / nodes;
+        return direction == Direction.BOTH ? 2 * degree : degree;
+    }
+
+    /**
+     * @return the average number of relationships of the given type in the
+     * given direction a node has, over the nodes which have at least one such
+     * relationship, or 0 if there are no relationships of the type.
+     */
+    public double getAverageDegree( int type, Direction direction )
+    {
+        TypeStatistics statistics = sample().types.get( type );
+        if ( statistics == null )
+        {
+            return 0;
+        }
+        switch ( direction )
+        {
+        case OUTGOING:
+            return statistics.outgoingDegree;
+        case INCOMING:
+            return statistics.incomingDegree;
+        default:
+            return statistics.outgoingDegree + statistics.incomingDegree;
+        }
+    }
+
+    /**
+     * @return the estimated number of hits of a lookup for {@code key} in the
+     * index, or -1 if that index and key hasn't been queried yet.
+     */
+    public double getIndexHits( String index, String key )
+    {
+        Double hits = indexHits.get( index + "/" + key );
+        return hits == null ? -1 : hits;
+    }
+
+    public void indexQueried( String index, String key, long hits )
+    {
+        String name = index + "/" + key;
+        Double previous = indexHits.get( name );
+        indexHits.put( name, previous == null ? hits : previous * (1 - INDEX_HITS_WEIGHT) + hits * INDEX_HITS_WEIGHT );
+    }
+
+    public void relationshipCreated( int type )
+    {
+        TypeStatistics statistics = existingSampleTypes( type );
+        if ( statistics != null )
+        {
+            statistics.count.incrementAndGet();
+        }
+    }
+
+    public void relationshipDeleted( int type )
+    {
+        TypeStatistics statistics = existingSampleTypes( type );
+        if ( statistics != null )
+        {
+            statistics.count.decrementAndGet();
+        }
+    }
+
+    /**
+     * Tallies records changed by a transaction that was applied without
+     * telling what kind of change it made.
+     */
+    public void changesApplied( int records )
+    {
+        unaccountedChanges.addAndGet( records );
+    }
+
+    private TypeStatistics existingSampleTypes( int type )
+    {
+        Sample current = sample;
+        if ( current == null )
+        {
+            // Nothing sampled yet, the sample will see this change once it's taken
+            return null;
+        }
+        TypeStatistics statistics = current.types.get( type );
+        if ( statistics == null )
+        {
+            statistics = new TypeStatistics( 0, 1, 1 );
+            TypeStatistics existing = current.types.putIfAbsent( type, statistics );
+            statistics = existing == null ? statistics : existing;
+        }
+        return statistics;
+    }
+
+    private Sample sample()
+    {
+        Sample current = sample;
+        if ( current == null || tooManyUnaccountedChanges() )
+        {
+            synchronized ( this )
+            {
+                current = sample;
+                if ( current == null || tooManyUnaccountedChanges() )
+                {
+                    unaccountedChanges.set( 0 );
+                    sample = current = takeSample();
+                }
+            }
+        }
+        return current;
+    }
+
+    private boolean tooManyUnaccountedChanges()
+    {
+        long changes = unaccountedChanges.get();
+        return changes > MIN_CHANGES_BEFORE_RESAMPLING && changes > getRelationshipCount() / 10;
+    }
+
+    private Sample takeSample()
+    {
+        long highId = relStore.getHighId();
+        Map<Integer, Sketch> sketches = new HashMap<Integer, Sketch>();
+        long sampled = 0;
+        for ( long[] range : sampleRanges( highId ) )
+        {
+            RecordScanner<RelationshipRecord> scanner = relStore.scan( range[0], range[1], null );
+            try
+            {
+                while ( scanner.hasNext() )
+                {
+                    RelationshipRecord record = scanner.next();
+                    Sketch sketch = sketches.get( record.getType() );
+                    if ( sketch == null )
+                    {
+                        sketch = new Sketch();
+                        sketches.put( record.getType(), sketch );
+                    }
+                    sketch.add( record.getFirstNode(), record.getSecondNode() );
+                    sampled++;
+                }
+            }
+            finally
+            {
+                scanner.close();
+            }
+        }
+
+        double scale = sampled == 0 ? 0 : (double) getRelationshipCount() / sampled;
+        Sample result = new Sample();
+        for ( Map.Entry<Integer, Sketch> entry : sketches.entrySet() )
+        {
+            Sketch sketch = entry.getValue();
+            result.types.put( entry.getKey(), new TypeStatistics( Math.round( sketch.count * scale ),
+                    sketch.count / sketch.startNodes.estimate( sketch.count ),
+                    sketch.count / sketch.endNodes.estimate( sketch.count ) ) );
+        }
+        return result;
+    }
+
+    static long[][] sampleRanges( long highId )
+    {
+        if ( highId <= (long) SAMPLE_RANGES * SAMPLE_RANGE_SIZE )
+        {
+            return new long[][] { { 0, highId } };
+        }
+        long[][] ranges = new long[SAMPLE_RANGES][];
+        long stride = highId / SAMPLE_RANGES;
+        for ( int i = 0; i < SAMPLE_RANGES; i++ )
+        {
+            ranges[i] = new long[] { i * stride, i * stride + SAMPLE_RANGE_SIZE };
+        }
+        return ranges;
+    }
+
+    private static class Sample
+    {
+        final ConcurrentMap<Integer, TypeStatistics> types = new ConcurrentHashMap<Integer, TypeStatistics>();
+    }
+
+    private static class TypeStatistics
+    {
+        final AtomicLong count;
+        final double outgoingDegree;
+        final double incomingDegree;
+
+        TypeStatistics( long count, double outgoingDegree, double incomingDegree )
+        {
+            this.count = new AtomicLong( count );
+            this.outgoingDegree = outgoingDegree;
+            this.incomingDegree = incomingDegree;
+        }
+    }
+
+    private static class Sketch
+    {
+        final DistinctCounter startNodes = new DistinctCounter();
+        final DistinctCounter endNodes = new DistinctCounter();
+        long count;
+
+        void add( long startNode, long endNode )
+        {
+            startNodes.add( startNode );
+            endNodes.add( endNode );
+            count++;
+        }
+    }
+
+    /**
+     * Linear counting of distinct ids in a fixed size bitmap.
+     */
+    static class DistinctCounter
+    {
+        private final BitSet bits = new BitSet( SKETCH_BITS );
+
+        void add( long id )
+        {
+            long hash = id * 0x9E3779B97F4A7C15L;
+            bits.set( (int) (hash >>> (64 - Integer.numberOfTrailingZeros( SKETCH_BITS ))) );
+        }
+
+        /**
+         * @param upperBound the number of ids added, which the estimate can't exceed.
+         */
+        double estimate( long upperBound )
+        {
+            int zeros = SKETCH_BITS - bits.cardinality();
+            if ( zeros == 0 )
+            {
+                return upperBound;
+            }
+            double estimate = -SKETCH_BITS * Math.log( (double) zeros / SKETCH_BITS );
+            return Math.max( 1, Math.min( upperBound, estimate ) );
+        }
+    }
+}
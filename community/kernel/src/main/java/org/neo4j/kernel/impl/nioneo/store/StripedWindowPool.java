@@ -0,0 +1,739 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.neo4j.kernel.impl.nioneo.store.windowpool.WindowPool;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+/**
+ * A {@link WindowPool} that keeps a page table of fixed size memory mapped
+ * pages for a store. In contrast to {@link PersistenceWindowPool} there is
+ * no pool wide monitor on the acquire path:
+ * <ul>
+ * <li>pages are looked up in an {@link AtomicReferenceArray} indexed by page number,</li>
+ * <li>a page is pinned with a CAS on its pin count rather than by locking a window,</li>
+ * <li>readers of the same page share a read lock from a small set of lock stripes,
+ * only writers need exclusive access to a stripe,</li>
+ * <li>pages are unmapped by a background evictor thread running a CLOCK sweep,
+ * which only ever evicts pages that nobody has pinned.</li>
+ * </ul>
+ * When a page isn't mapped and there's no memory left to map it the position
+ * is served by a {@link PersistenceRow}, exactly like the brick based pool,
+ * and the evictor is asked to make room.
+ * <p>
+ * A row and a page must never both be used for the same record, since the
+ * row writes its copy of the record back when released. So while there's a
+ * row for a position, acquiring that position goes to the row even if its page
+ * has been mapped since, and a row that finds its page mapped after it was
+ * taken is let go in favour of the page.
+ */
+public class StripedWindowPool implements WindowPool
+{
+    private static final int STRIPE_COUNT = 64; // must be a power of two
+    private static final long EVICTION_INTERVAL_MILLIS = 100;
+    private static final int MIN_PAGE_COUNT = 128;
+    private static final int MIN_PAGE_SIZE = 4096;
+
+    private final File storeName;
+    private final int recordSize;
+    private final int recordsPerPage;
+    private final int pageSize;
+    private final long availableMem;
+    private final boolean readOnly;
+    private final FileChannel.MapMode mapMode;
+    private final StringLogger log;
+    private FileChannel fileChannel;
+
+    private final ReadWriteLock[] stripes = new ReadWriteLock[STRIPE_COUNT];
+    private final Object pageTableGrowthLock = new Object();
+    private volatile AtomicReferenceArray<MappedPage> pageTable;
+    private final ConcurrentMap<Long,PersistenceRow> activeRowWindows =
+        new ConcurrentHashMap<Long,PersistenceRow>();
+    private final AtomicLong memUsed = new AtomicLong();
+    private final AtomicInteger mappedPages = new AtomicInteger();
+    private final Thread evictor;
+    private volatile boolean closed;
+
+    // Statistics only, so it's OK to miss some updates here
+    private int hit = 0;
+    private int miss = 0;
+    private int ooe = 0;
+    private int evictions = 0;
+    private int evictionRuns = 0;
+    private long evictionTime = 0;
+
+    /**
+     * Create new pool for a store.
+     *
+     * @param storeName
+     *            Name of store that use this pool
+     * @param recordSize
+     *            The size of each record/block in the store
+     * @param fileChannel
+     *            A fileChannel to the store
+     * @param mappedMem
+     *            Number of bytes dedicated to memory mapped pages
+     * @param targetPageSize
+     *            Preferred size of each mapped page, in bytes. The actual page size
+     *            is rounded down to a whole number of records, and made smaller
+     *            if {@code mappedMem} wouldn't fit a reasonable number of pages.
+     */
+    public StripedWindowPool( File storeName, int recordSize, FileChannel fileChannel, long mappedMem,
+            long targetPageSize, boolean readOnly, StringLogger log )
+    {
+        this.storeName = storeName;
+        this.recordSize = recordSize;
+        this.fileChannel = fileChannel;
+        this.readOnly = readOnly;
+        this.mapMode = readOnly ? MapMode.READ_ONLY : MapMode.READ_WRITE;
+        this.log = log;
+        // Small pools get smaller pages, so that there's always a decent number of pages to choose from
+        long pageSizeInBytes = Math.min( targetPageSize, Math.max( mappedMem / MIN_PAGE_COUNT, MIN_PAGE_SIZE ) );
+        this.recordsPerPage = recordSize == 0 ? 0 :
+                (int) Math.max( 1, Math.min( pageSizeInBytes, Integer.MAX_VALUE ) / recordSize );
+        this.pageSize = recordsPerPage * recordSize;
+        if ( pageSize > 0 && mappedMem >= pageSize )
+        {
+            this.availableMem = mappedMem;
+        }
+        else
+        {
+            if ( mappedMem > 0 )
+            {
+                logWarn( "Unable to use " + mappedMem + "b as memory mapped pages, need at least "
+                        + pageSize + "b (one page)" );
+                logWarn( "Memory mapped pages have been turned off" );
+            }
+            this.availableMem = 0;
+        }
+        for ( int i = 0; i < stripes.length; i++ )
+        {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        this.pageTable = new AtomicReferenceArray<MappedPage>( initialPageCount() );
+        this.evictor = new Thread( new Evictor(), "Window pool evictor[" + storeName.getName() + "]" );
+        if ( availableMem > 0 )
+        {
+            evictor.setDaemon( true );
+            evictor.start();
+        }
+        dumpStatus();
+    }
+
+    private int initialPageCount()
+    {
+        if ( pageSize == 0 )
+        {
+            return 0;
+        }
+        try
+        {
+            return pageIndex( fileChannel.size() / recordSize ) + 1;
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( "Unable to get file size for " + storeName, e );
+        }
+    }
+
+    /**
+     * Acquires a window for <CODE>position</CODE> and <CODE>operationType</CODE>.
+     * If the page containing the position is mapped the returned window shares
+     * its page stripe with other readers, otherwise a locked {@link PersistenceRow}
+     * is returned.
+     *
+     * @param position
+     *            The position the needs to be encapsulated by the window
+     * @param operationType
+     *            The type of operation (READ or WRITE)
+     * @return A locked window encapsulating the position
+     */
+    @Override
+    public PersistenceWindow acquire( long position, OperationType operationType )
+    {
+        while ( true )
+        {
+            PersistenceWindow window = availableMem > 0 ? acquirePage( position, operationType ) : null;
+            if ( window == null )
+            {
+                miss++;
+                window = acquireRow( position, operationType );
+            }
+            if ( window != null )
+            {
+                return window;
+            }
+        }
+    }
+
+    private PersistenceWindow acquirePage( long position, OperationType operationType )
+    {
+        int pageIndex = pageIndex( position );
+        MappedPage page = pin( pageIndex );
+        if ( page == null )
+        {
+            return null;
+        }
+        // The row check must come after pinning, see acquireRow
+        if ( activeRowWindows.containsKey( position ) )
+        {
+            page.unpin();
+            return null;
+        }
+        hit++;
+        ReadWriteLock stripe = stripes[pageIndex & (STRIPE_COUNT - 1)];
+        if ( operationType == OperationType.WRITE )
+        {
+            stripe.writeLock().lock();
+        }
+        else
+        {
+            stripe.readLock().lock();
+        }
+        return new PageWindow( page, stripe, operationType );
+    }
+
+    /**
+     * @return a locked row for the position, or {@code null} if the page of the
+     * position got mapped before the row was registered, in which case the page
+     * should be used instead.
+     */
+    private PersistenceWindow acquireRow( long position, OperationType operationType )
+    {
+        PersistenceRow window = null;
+        while ( window == null )
+        {
+            PersistenceRow dpw = activeRowWindows.get( position );
+            if ( dpw != null && dpw.markAsInUse() )
+            {
+                window = dpw;
+                break;
+            }
+
+            // Either there was no active row for this position or it got
+            // closed right before we managed to mark it as in use.
+            dpw = new PersistenceRow( position, recordSize, fileChannel );
+            PersistenceRow existing = activeRowWindows.putIfAbsent( position, dpw );
+            if ( existing == null )
+            {
+                window = dpw;
+            }
+            else
+            {
+                dpw.close();
+            }
+        }
+        window.lock( operationType );
+        // Only after the row is registered, so that either this sees a page pinned
+        // before that or the one pinning it sees the row, see acquire
+        if ( availableMem > 0 && isMapped( position ) )
+        {
+            release( window );
+            return null;
+        }
+        return window;
+    }
+
+    private boolean isMapped( long position )
+    {
+        AtomicReferenceArray<MappedPage> table = pageTable;
+        int pageIndex = pageIndex( position );
+        if ( pageIndex >= table.length() )
+        {
+            return false;
+        }
+        MappedPage page = table.get( pageIndex );
+        return page != null && !page.isEvicted();
+    }
+
+    /**
+     * Pins the page with the given index, mapping it if it isn't mapped and
+     * there's memory available to do so.
+     *
+     * @return the pinned page, or {@code null} if the page couldn't be pinned.
+     */
+    private MappedPage pin( int pageIndex )
+    {
+        while ( true )
+        {
+            AtomicReferenceArray<MappedPage> table = pageTable;
+            if ( pageIndex >= table.length() )
+            {
+                table = growPageTable( pageIndex + 1 );
+            }
+            MappedPage page = table.get( pageIndex );
+            if ( page == null )
+            {
+                return mapPage( pageIndex );
+            }
+            if ( page.pin() )
+            {
+                return page;
+            }
+            // The page got evicted after we read it from the table, but before the evictor
+            // cleared the slot. Clear it ourselves and have another go.
+            table.compareAndSet( pageIndex, page, null );
+        }
+    }
+
+    private MappedPage mapPage( int pageIndex )
+    {
+        if ( memUsed.addAndGet( pageSize ) > availableMem )
+        {
+            memUsed.addAndGet( -pageSize );
+            LockSupport.unpark( evictor );
+            return null;
+        }
+        MappedPage page;
+        try
+        {
+            long firstRecord = (long) pageIndex * recordsPerPage;
+            if ( readOnly && (firstRecord + recordsPerPage) * recordSize > fileChannel.size() )
+            {
+                // Read only mappings can't extend the file, let rows take care of the tail
+                memUsed.addAndGet( -pageSize );
+                return null;
+            }
+            page = new MappedPage( firstRecord, fileChannel.map( mapMode, firstRecord * recordSize, pageSize ) );
+        }
+        catch ( IOException e )
+        {
+            ooe++;
+            memUsed.addAndGet( -pageSize );
+            logWarn( "Unable to memory map", e );
+            return null;
+        }
+        catch ( OutOfMemoryError e )
+        {
+            ooe++;
+            memUsed.addAndGet( -pageSize );
+            logWarn( "Unable to allocate direct buffer", e );
+            return null;
+        }
+
+        // Installed under the growth lock, so that the table can't be copied between us installing the page
+        // in it and the copy being published, which would lose the page
+        MappedPage existing;
+        synchronized ( pageTableGrowthLock )
+        {
+            AtomicReferenceArray<MappedPage> table = pageTable;
+            if ( pageIndex < table.length() && table.compareAndSet( pageIndex, null, page ) )
+            {
+                mappedPages.incrementAndGet();
+                return page;
+            }
+            existing = pageIndex < table.length() ? table.get( pageIndex ) : null;
+        }
+        // Someone else mapped this page before us, use that one instead. Or the pool got closed.
+        page.discard();
+        memUsed.addAndGet( -pageSize );
+        return existing != null && existing.pin() ? existing : null;
+    }
+
+    private AtomicReferenceArray<MappedPage> growPageTable( int minimumLength )
+    {
+        synchronized ( pageTableGrowthLock )
+        {
+            AtomicReferenceArray<MappedPage> table = pageTable;
+            if ( table.length() < minimumLength )
+            {
+                AtomicReferenceArray<MappedPage> newTable = new AtomicReferenceArray<MappedPage>(
+                        Math.max( minimumLength, table.length() + table.length() / 2 ) );
+                for ( int i = 0; i < table.length(); i++ )
+                {
+                    newTable.set( i, table.get( i ) );
+                }
+                pageTable = newTable;
+                table = newTable;
+            }
+            return table;
+        }
+    }
+
+    private int pageIndex( long position )
+    {
+        long pageIndex = position / recordsPerPage;
+        if ( pageIndex >= Integer.MAX_VALUE )
+        {
+            throw new IllegalArgumentException( "Position[" + position + "] with current page size["
+                    + recordsPerPage + " records/page] implies an impossible page number[" + pageIndex + "]" );
+        }
+        return (int) pageIndex;
+    }
+
+    /**
+     * Releases a window used for an operation back to the pool and unlocks it
+     * so other threads may use it.
+     *
+     * @param window
+     *            The window to be released
+     */
+    @Override
+    public void release( PersistenceWindow window )
+    {
+        if ( window instanceof PageWindow )
+        {
+            ((PageWindow) window).release();
+            return;
+        }
+        try
+        {
+            PersistenceRow dpw = (PersistenceRow) window;
+            // Mapped pages share the file system cache with the file channel,
+            // so there's no need to hand over changes to a mapped page here.
+            if ( dpw.writeOutAndCloseIfFree( readOnly ) )
+            {
+                activeRowWindows.remove( dpw.position(), dpw );
+            }
+            else
+            {
+                dpw.reset();
+            }
+        }
+        finally
+        {
+            ((LockableWindow) window).unLock();
+        }
+    }
+
+    @Override
+    public void flushAll()
+    {
+        if ( readOnly )
+            return;
+
+        AtomicReferenceArray<MappedPage> table = pageTable;
+        for ( int i = 0; i < table.length(); i++ )
+        {
+            MappedPage page = table.get( i );
+            if ( page != null )
+            {
+                page.force();
+            }
+        }
+        try
+        {
+            fileChannel.force( false );
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( "Failed to flush file channel " + storeName, e );
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        LockSupport.unpark( evictor );
+        try
+        {
+            evictor.join( TimeUnit.SECONDS.toMillis( 10 ) );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.interrupted();
+        }
+        flushAll();
+        synchronized ( pageTableGrowthLock )
+        {
+            pageTable = new AtomicReferenceArray<MappedPage>( 0 );
+        }
+        fileChannel = null;
+        activeRowWindows.clear();
+        dumpStatistics();
+    }
+
+    /**
+     * Runs one sweep of the CLOCK hand over the page table, evicting unpinned
+     * pages that haven't been referenced since the last sweep until at least
+     * {@code target} bytes are free.
+     */
+    private void evict( long target )
+    {
+        AtomicReferenceArray<MappedPage> table = pageTable;
+        long startTime = System.currentTimeMillis();
+        // Two rounds, the first one will clear reference bits that the second one sees
+        for ( int round = 0; round < 2 && availableMem - memUsed.get() < target; round++ )
+        {
+            for ( int i = 0; i < table.length() && availableMem - memUsed.get() < target; i++ )
+            {
+                MappedPage page = table.get( i );
+                if ( page == null )
+                {
+                    continue;
+                }
+                if ( page.referenced )
+                {
+                    page.referenced = false;
+                }
+                else if ( page.evictIfUnpinned( readOnly ) )
+                {
+                    table.compareAndSet( i, page, null );
+                    mappedPages.decrementAndGet();
+                    memUsed.addAndGet( -pageSize );
+                    evictions++;
+                }
+            }
+        }
+        evictionRuns++;
+        evictionTime += System.currentTimeMillis() - startTime;
+    }
+
+    private class Evictor implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            // Keep some headroom so that readers missing a page can map it right away
+            long headroom = Math.max( pageSize, availableMem / 32 );
+            while ( !closed )
+            {
+                if ( availableMem - memUsed.get() < pageSize )
+                {
+                    try
+                    {
+                        evict( headroom );
+                    }
+                    catch ( RuntimeException e )
+                    {
+                        logWarn( "Unable to evict pages", e );
+                    }
+                }
+                LockSupport.parkNanos( this, TimeUnit.MILLISECONDS.toNanos( EVICTION_INTERVAL_MILLIS ) );
+            }
+        }
+    }
+
+    void dumpStatistics()
+    {
+        log.logMessage( storeName + " hit=" + hit + " miss=" + miss + " evictions="
+                        + evictions + " ooe=" + ooe );
+    }
+
+    private void dumpStatus()
+    {
+        try
+        {
+            log.logMessage( "[" + storeName + "] pageCount=" + pageTable.length()
+                            + " pageSize=" + pageSize + "b mappedMem=" + availableMem
+                            + "b (storeSize=" + fileChannel.size() + "b)" );
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException(
+                "Unable to get file size for " + storeName, e );
+        }
+    }
+
+    private void logWarn( String logMessage )
+    {
+        log.logMessage( "[" + storeName + "] " + logMessage );
+    }
+
+    private void logWarn( String logMessage, Throwable cause )
+    {
+        log.logMessage( "[" + storeName + "] " + logMessage, cause );
+    }
+
+    @Override
+    public WindowPoolStats getStats()
+    {
+        int avgEvictionTime = evictionRuns == 0 ? 0 : (int) (evictionTime / evictionRuns);
+        return new WindowPoolStats( storeName, availableMem, memUsed.get(), mappedPages.get(),
+                pageSize, hit, miss, ooe, 0, avgEvictionTime, evictionRuns, 0, evictions );
+    }
+
+    private static class MappedPage
+    {
+        private static final int EVICTED = -1;
+
+        private final long firstRecord;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger pins = new AtomicInteger( 1 ); // pinned by the thread mapping it
+        private volatile boolean referenced = true;
+
+        MappedPage( long firstRecord, MappedByteBuffer buffer )
+        {
+            this.firstRecord = firstRecord;
+            this.buffer = buffer;
+        }
+
+        boolean pin()
+        {
+            for ( int count = pins.get(); count != EVICTED; count = pins.get() )
+            {
+                if ( pins.compareAndSet( count, count + 1 ) )
+                {
+                    if ( !referenced )
+                    {
+                        referenced = true;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void unpin()
+        {
+            pins.decrementAndGet();
+        }
+
+        boolean isEvicted()
+        {
+            return pins.get() == EVICTED;
+        }
+
+        boolean evictIfUnpinned( boolean readOnly )
+        {
+            if ( pins.compareAndSet( 0, EVICTED ) )
+            {
+                if ( !readOnly )
+                {
+                    force();
+                }
+                return true;
+            }
+            return false;
+        }
+
+        void discard()
+        {
+            pins.set( EVICTED );
+        }
+
+        void force()
+        {
+            buffer.force();
+        }
+
+        ByteBuffer newView()
+        {
+            return buffer.duplicate();
+        }
+    }
+
+    /**
+     * The window handed out for a pinned page. Each acquisition gets its own
+     * view of the mapped buffer so that readers sharing a stripe don't step
+     * on each others buffer offsets.
+     */
+    private class PageWindow implements PersistenceWindow
+    {
+        private final MappedPage page;
+        private final ReadWriteLock stripe;
+        private final OperationType operationType;
+        private final Buffer buffer;
+
+        PageWindow( MappedPage page, ReadWriteLock stripe, OperationType operationType )
+        {
+            this.page = page;
+            this.stripe = stripe;
+            this.operationType = operationType;
+            this.buffer = new Buffer( this, page.newView() );
+        }
+
+        void release()
+        {
+            try
+            {
+                if ( operationType == OperationType.WRITE )
+                {
+                    stripe.writeLock().unlock();
+                }
+                else
+                {
+                    stripe.readLock().unlock();
+                }
+            }
+            finally
+            {
+                page.unpin();
+            }
+        }
+
+        @Override
+        public Buffer getBuffer()
+        {
+            return buffer;
+        }
+
+        @Override
+        public Buffer getOffsettedBuffer( long id )
+        {
+            int offset = (int) (id - page.firstRecord) * recordSize;
+            buffer.setOffset( offset );
+            return buffer;
+        }
+
+        @Override
+        public int getRecordSize()
+        {
+            return recordSize;
+        }
+
+        @Override
+        public long position()
+        {
+            return page.firstRecord;
+        }
+
+        @Override
+        public int size()
+        {
+            return recordsPerPage;
+        }
+
+        @Override
+        public void force()
+        {
+            page.force();
+        }
+
+        @Override
+        public void close()
+        {
+            // The page outlives this window, it's closed by the evictor
+        }
+
+        @Override
+        public String toString()
+        {
+            return "PageWindow[p=" + page.firstRecord + ",rs=" + recordSize + ",ws=" + recordsPerPage + "]";
+        }
+    }
+}
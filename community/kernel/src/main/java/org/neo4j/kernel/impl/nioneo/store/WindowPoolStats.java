@@ -39,10 +39,19 @@ public class WindowPoolStats
     private final int avgRefreshTime;
     private final int refreshCount;
     private final int avertedRefreshCount;
+    private final int evictionCount;
     
     public WindowPoolStats( File file, long memAvail, long memUsed, int windowCount,
             int windowSize, int hitCount, int missCount, int oomCount, int switchCount, int avgRefreshTime,
             int refreshCount, int avertedRefreshCount )
+    {
+        this( file, memAvail, memUsed, windowCount, windowSize, hitCount, missCount, oomCount, switchCount,
+                avgRefreshTime, refreshCount, avertedRefreshCount, 0 );
+    }
+
+    public WindowPoolStats( File file, long memAvail, long memUsed, int windowCount,
+            int windowSize, int hitCount, int missCount, int oomCount, int switchCount, int avgRefreshTime,
+            int refreshCount, int avertedRefreshCount, int evictionCount )
     {
         this.name = file.getName();
         this.memAvail = memAvail;
@@ -56,6 +65,7 @@ public class WindowPoolStats
         this.avgRefreshTime = avgRefreshTime;
         this.refreshCount = refreshCount;
         this.avertedRefreshCount = avertedRefreshCount;
+        this.evictionCount = evictionCount;
     }
     
     public String getName()
@@ -117,6 +127,11 @@ public class WindowPoolStats
     {
         return avertedRefreshCount;
     }
+
+    public int getEvictionCount()
+    {
+        return evictionCount;
+    }
     
     @Override
     public String toString()
@@ -132,7 +147,8 @@ public class WindowPoolStats
                 "switchCount:" + switchCount + ", " +
                 "avgRefreshTime:" + avgRefreshTime + ", " +
                 "refreshCount:" + refreshCount + ", " +
-                "avertedRefreshCount:" + avertedRefreshCount +
+                "avertedRefreshCount:" + avertedRefreshCount + ", " +
+                "evictionCount:" + evictionCount +
                 "]";
     }
 }
@@ -5,19 +5,19 @@
  * This file is part of Neo4j.
  *
  * Neo4j is free software: you can redistribute it and/or modify
- * it under the terms of the GNU Affero General Public License as
- * published by the Free Software Foundation, either version 3 of the
- * License, or (at your option) any later version.
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
  *
  * This program is distributed in the hope that it will be useful,
  * but WITHOUT ANY WARRANTY; without even the implied warranty of
  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
- * GNU Affero General Public License for more details.
+ * GNU General Public License for more details.
  *
- * You should have received a copy of the GNU Affero General Public License
- * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-package org.neo4j.consistency.store.paging;
+package org.neo4j.kernel.impl.nioneo.store.paging;
 
 public class Cart implements PageReplacementStrategy, TemporalUtilityCounter
 {
@@ -38,13 +38,35 @@ public class Cart implements PageReplacementStrategy, TemporalUtilityCounter
         this.capacity = capacity;
     }
 
+    /**
+     * Cache hits only set the reference bit of the page and don't need to take
+     * the lock, which is only taken for misses that have to change the lists.
+     */
     @Override
     public <PAYLOAD,PAGE extends Page<PAYLOAD>> PAYLOAD acquire( PAGE page, Storage<PAYLOAD,PAGE> storage )
             throws PageLoadFailureException
+    {
+        PAYLOAD payload = page.payload;
+        if ( payload != null )
+        {
+            page.setReferenced();
+            page.hit();
+            return payload;
+        }
+        return acquireMissing( page, storage );
+    }
+
+    private synchronized <PAYLOAD,PAGE extends Page<PAYLOAD>> PAYLOAD acquireMissing( PAGE page,
+            Storage<PAYLOAD,PAGE> storage ) throws PageLoadFailureException
     {
         if ( page.currentList == recencyCache || page.currentList == frequencyCache )
         {
             page.setReferenced();
+            if ( page.payload == null )
+            {
+                // A previous load of this page failed
+                return page.payload = storage.load( page );
+            }
             page.hit();
             return page.payload;
         }
@@ -92,7 +114,7 @@ public class Cart implements PageReplacementStrategy, TemporalUtilityCounter
     }
 
     @Override
-    public <PAYLOAD> void forceEvict( Page<PAYLOAD> page )
+    public synchronized <PAYLOAD> void forceEvict( Page<PAYLOAD> page )
     {
         page.clearReference().setUtility( this, TemporalUtility.UNKNOWN ).moveToTailOf( null ).evict();
     }
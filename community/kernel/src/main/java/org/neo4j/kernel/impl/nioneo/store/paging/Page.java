@@ -5,29 +5,30 @@
  * This file is part of Neo4j.
  *
  * Neo4j is free software: you can redistribute it and/or modify
- * it under the terms of the GNU Affero General Public License as
- * published by the Free Software Foundation, either version 3 of the
- * License, or (at your option) any later version.
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
  *
  * This program is distributed in the hope that it will be useful,
  * but WITHOUT ANY WARRANTY; without even the implied warranty of
  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
- * GNU Affero General Public License for more details.
+ * GNU General Public License for more details.
  *
- * You should have received a copy of the GNU Affero General Public License
- * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-package org.neo4j.consistency.store.paging;
+package org.neo4j.kernel.impl.nioneo.store.paging;
 
 public abstract class Page<T>
 {
-    boolean referenced = false;
+    // Read and written outside of the lock of the replacement strategy on cache hits
+    volatile boolean referenced = false;
     TemporalUtility utility = TemporalUtility.UNKNOWN;
 
     CachedPageList currentList = null;
     Page prevPage;
     Page nextPage;
-    T payload;
+    volatile T payload;
 
     Page moveToTailOf( CachedPageList targetList )
     {
@@ -5,21 +5,22 @@
  * This file is part of Neo4j.
  *
  * Neo4j is free software: you can redistribute it and/or modify
- * it under the terms of the GNU Affero General Public License as
- * published by the Free Software Foundation, either version 3 of the
- * License, or (at your option) any later version.
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
  *
  * This program is distributed in the hope that it will be useful,
  * but WITHOUT ANY WARRANTY; without even the implied warranty of
  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
- * GNU Affero General Public License for more details.
+ * GNU General Public License for more details.
  *
- * You should have received a copy of the GNU Affero General Public License
- * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-package org.neo4j.consistency.store.windowpool;
+package org.neo4j.kernel.impl.nioneo.store.windowpool;
 
 import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
 
 import java.io.IOException;
 import java.nio.channels.FileChannel;
@@ -27,10 +28,12 @@ import java.nio.channels.FileChannel;
 public class FileMapper
 {
     private final FileChannel fileChannel;
+    private final FileChannel.MapMode mapMode;
 
-    public FileMapper( FileChannel fileChannel )
+    public FileMapper( FileChannel fileChannel, boolean readOnly )
     {
         this.fileChannel = fileChannel;
+        this.mapMode = readOnly ? READ_ONLY : READ_WRITE;
     }
 
     public long fileSizeInBytes() throws IOException
@@ -41,6 +44,6 @@ public class FileMapper
     public MappedWindow mapWindow( long firstRecord, int recordsPerPage, int bytesPerRecord ) throws IOException
     {
         return new MappedWindow( recordsPerPage, bytesPerRecord, firstRecord,
-                fileChannel.map( READ_ONLY, firstRecord * bytesPerRecord, recordsPerPage * bytesPerRecord ) );
+                fileChannel.map( mapMode, firstRecord * bytesPerRecord, recordsPerPage * bytesPerRecord ) );
     }
 }
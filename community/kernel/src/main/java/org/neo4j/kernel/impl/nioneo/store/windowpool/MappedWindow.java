@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store.windowpool;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.neo4j.kernel.impl.nioneo.store.Buffer;
+import org.neo4j.kernel.impl.nioneo.store.PersistenceWindow;
+
+/**
+ * A mapped page of a store. Users {@link #pin() pin} the window while using
+ * its buffer, so that closing it only unmaps the buffer once the last user
+ * has {@link #unpin() unpinned} it, instead of leaving the unmapping to GC.
+ */
+class MappedWindow implements PersistenceWindow
+{
+    private static final int CLOSED = Integer.MIN_VALUE;
+
+    private final long startRecordId;
+    private final Buffer buffer;
+    private final int recordsPerPage;
+    private final int recordSize;
+    private final AtomicInteger pins = new AtomicInteger();
+    private volatile boolean dirty;
+    private boolean unmapped;
+
+    public MappedWindow( int recordsPerPage, int recordSize, long startRecordId, MappedByteBuffer mappedBuffer )
+    {
+        this.recordsPerPage = recordsPerPage;
+        this.recordSize = recordSize;
+        this.startRecordId = startRecordId;
+        this.buffer = new Buffer( this, mappedBuffer );
+    }
+
+    @Override
+    public Buffer getBuffer()
+    {
+        return buffer;
+    }
+
+    /**
+     * @return a view of the whole mapped buffer, with its own position, for
+     * one thread to use.
+     */
+    ByteBuffer duplicateBuffer()
+    {
+        return buffer.getBuffer().duplicate();
+    }
+
+    void markDirty()
+    {
+        dirty = true;
+    }
+
+    /**
+     * @return {@code false} if this window has been closed, and must be
+     * mapped again.
+     */
+    boolean pin()
+    {
+        for ( int count = pins.get(); count >= 0; count = pins.get() )
+        {
+            if ( pins.compareAndSet( count, count + 1 ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void unpin()
+    {
+        if ( pins.decrementAndGet() == CLOSED )
+        {
+            unmap();
+        }
+    }
+
+    /**
+     * @return {@code true} once this window has been closed, it's unmapped
+     * when the last user unpins it.
+     */
+    boolean isClosed()
+    {
+        return pins.get() < 0;
+    }
+
+    @Override
+    public Buffer getOffsettedBuffer( long id )
+    {
+        int offset = (int) (id - buffer.position()) * recordSize;
+        buffer.setOffset( offset );
+        return buffer;
+    }
+
+    @Override
+    public int getRecordSize()
+    {
+        return recordSize;
+    }
+
+    @Override
+    public long position()
+    {
+        return startRecordId;
+    }
+
+    @Override
+    public int size()
+    {
+        return recordsPerPage;
+    }
+
+    @Override
+    public synchronized void force()
+    {
+        if ( dirty && !unmapped )
+        {
+            dirty = false;
+            ((MappedByteBuffer) buffer.getBuffer()).force();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        while ( true )
+        {
+            int count = pins.get();
+            if ( count < 0 )
+            {
+                return;
+            }
+            if ( pins.compareAndSet( count, count | CLOSED ) )
+            {
+                if ( count == 0 )
+                {
+                    unmap();
+                }
+                return;
+            }
+        }
+    }
+
+    private synchronized void unmap()
+    {
+        force();
+        unmapped = true;
+        clean( buffer.getBuffer() );
+    }
+
+    /*
+     * The cleaner of a mapped buffer isn't public API, so it's looked up reflectively rather than compiled
+     * against. Should that fail on some JVM the buffer is unmapped by GC, like other mapped buffers are.
+     */
+    private static void clean( ByteBuffer mappedBuffer )
+    {
+        try
+        {
+            Method cleanerMethod = mappedBuffer.getClass().getMethod( "cleaner" );
+            cleanerMethod.setAccessible( true );
+            Object cleaner = cleanerMethod.invoke( mappedBuffer );
+            if ( cleaner != null )
+            {
+                Method cleanMethod = cleaner.getClass().getMethod( "clean" );
+                cleanMethod.setAccessible( true );
+                cleanMethod.invoke( cleaner );
+            }
+        }
+        catch ( Exception e )
+        {
+            // Left to GC
+        }
+    }
+}
@@ -0,0 +1,344 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store.windowpool;
+
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import org.neo4j.kernel.impl.nioneo.store.Buffer;
+import org.neo4j.kernel.impl.nioneo.store.OperationType;
+import org.neo4j.kernel.impl.nioneo.store.PersistenceWindow;
+import org.neo4j.kernel.impl.nioneo.store.UnderlyingStorageException;
+import org.neo4j.kernel.impl.nioneo.store.WindowPoolStats;
+import org.neo4j.kernel.impl.nioneo.store.paging.PageLoadFailureException;
+import org.neo4j.kernel.impl.nioneo.store.paging.PageReplacementStrategy;
+
+/**
+ * A {@link WindowPool} that maps fixed size pages of the store and leaves the
+ * decision of which pages to keep mapped to a {@link PageReplacementStrategy},
+ * typically a {@link org.neo4j.kernel.impl.nioneo.store.paging.Cart} shared by
+ * all stores. Unlike the brick based pool, a page touched only once, as by a
+ * full store scan, doesn't push out pages that are used over and over again.
+ * <p>
+ * Each page has a read/write lock, taken for the duration of an acquired
+ * window. Pages written to are forced on {@link #flushAll()}, as well as when
+ * the replacement strategy evicts them.
+ */
+public class ScanResistantWindowPool implements WindowPool,
+        PageReplacementStrategy.Storage<PersistenceWindow, WindowPage>
+{
+    private final File storeFileName;
+    private final FileMapper fileMapper;
+    private final PageReplacementStrategy replacementStrategy;
+    private final int bytesPerRecord;
+    private final int recordsPerPage;
+    private final int reportInterval;
+    private final MappingStatisticsListener statisticsListener;
+    private final boolean readOnly;
+    private final long availableMemory;
+    private final AtomicInteger mappedPages = new AtomicInteger();
+    private final Set<MappedWindow> dirtyWindows =
+            Collections.newSetFromMap( new ConcurrentHashMap<MappedWindow, Boolean>() );
+
+    private volatile WindowPage[] pages = new WindowPage[0];
+    // Statistics only, so it's OK to miss some updates here
+    private int acquireCount = 0;
+    private int mapCount = 0;
+
+    public ScanResistantWindowPool( File storeFileName, int bytesPerRecord, int targetBytesPerPage,
+                                    FileMapper fileMapper, PageReplacementStrategy replacementStrategy,
+                                    int reportInterval, MappingStatisticsListener statisticsListener )
+            throws IOException
+    {
+        this( storeFileName, bytesPerRecord, targetBytesPerPage, fileMapper, replacementStrategy, reportInterval,
+                statisticsListener, false, 0 );
+    }
+
+    public ScanResistantWindowPool( File storeFileName, int bytesPerRecord, int targetBytesPerPage,
+                                    FileMapper fileMapper, PageReplacementStrategy replacementStrategy,
+                                    int reportInterval, MappingStatisticsListener statisticsListener,
+                                    boolean readOnly, long availableMemory )
+            throws IOException
+    {
+        this.storeFileName = storeFileName;
+        this.readOnly = readOnly;
+        this.availableMemory = availableMemory;
+        this.bytesPerRecord = bytesPerRecord;
+        this.fileMapper = fileMapper;
+        this.replacementStrategy = replacementStrategy;
+        this.statisticsListener = statisticsListener;
+        this.recordsPerPage = calculateNumberOfRecordsPerPage( bytesPerRecord, targetBytesPerPage );
+        this.reportInterval = reportInterval;
+        this.setupPages();
+    }
+
+    private static int calculateNumberOfRecordsPerPage( int bytesPerRecord, int targetBytesPerPage )
+    {
+        if ( bytesPerRecord <= 0 || bytesPerRecord > targetBytesPerPage )
+        {
+            throw new IllegalArgumentException( format( "number of bytes per record [%d] " +
+                    "is not in the valid range [1-%d]", bytesPerRecord, targetBytesPerPage ) );
+        }
+        return targetBytesPerPage / bytesPerRecord;
+    }
+
+    private void setupPages() throws IOException
+    {
+        // pre-allocate pages that exist already
+        page( fileMapper.fileSizeInBytes() / bytesPerRecord );
+    }
+
+    private int pageNumber( long position )
+    {
+        long pageNumber = position / recordsPerPage;
+        if ( pageNumber + 1 > Integer.MAX_VALUE )
+        {
+            throw new IllegalArgumentException( format( "Position [record %d] with current page size [%d records/page]"
+                    + " implies an impossible page number [%d].", position, recordsPerPage, pageNumber ) );
+        }
+        return (int) (position / recordsPerPage);
+    }
+
+    private WindowPage page( long position )
+    {
+        int pageNumber = pageNumber( position );
+        WindowPage[] pages = this.pages;
+        if ( pageNumber >= pages.length )
+        {
+            pages = expandPages( pageNumber );
+        }
+        return pages[pageNumber];
+    }
+
+    private synchronized WindowPage[] expandPages( int pageNumber )
+    {
+        if ( pageNumber >= pages.length )
+        {
+            WindowPage[] newPages = new WindowPage[pageNumber + 1];
+            System.arraycopy( pages, 0, newPages, 0, pages.length );
+            for ( int i = pages.length; i < newPages.length; i++ )
+            {
+                newPages[i] = new WindowPage( i * (long) recordsPerPage, this );
+            }
+            pages = newPages;
+        }
+        return pages;
+    }
+
+    @Override
+    public PersistenceWindow acquire( long position, OperationType operationType )
+    {
+        if ( operationType != OperationType.READ && readOnly )
+        {
+            throw new UnsupportedOperationException( "Only supports READ operations on a read only store." );
+        }
+        try
+        {
+            acquireCount++;
+            WindowPage page = page( position );
+            MappedWindow window;
+            do
+            {
+                window = (MappedWindow) replacementStrategy.acquire( page, this );
+            }
+            while ( !window.pin() ); // it got evicted before we pinned it, just load it again
+            Lock lock = operationType == OperationType.WRITE ? page.lock.writeLock() : page.lock.readLock();
+            lock.lock();
+            return new LockedWindow( window, lock, operationType );
+        }
+        catch ( PageLoadFailureException e )
+        {
+            throw new UnderlyingStorageException( "Unable to load position["
+                    + position + "] @[" + position * bytesPerRecord + "]", e );
+        }
+        finally
+        {
+            reportStats();
+        }
+    }
+
+    private int lastMapCount;
+    private long lastReportTime = System.currentTimeMillis();
+
+    private void reportStats()
+    {
+        if ( acquireCount % reportInterval == 0 )
+        {
+            int deltaMapCount = mapCount - lastMapCount;
+            lastMapCount = mapCount;
+            long currentTime = System.currentTimeMillis();
+            long deltaTime = currentTime - lastReportTime;
+            lastReportTime = currentTime;
+
+            statisticsListener.onStatistics( storeFileName, reportInterval, deltaMapCount, deltaTime );
+        }
+    }
+
+    @Override
+    public void release( PersistenceWindow window )
+    {
+        LockedWindow lockedWindow = (LockedWindow) window;
+        if ( lockedWindow.operationType == OperationType.WRITE )
+        {
+            // Added after the write, so that a write racing with the eviction of this window still gets flushed
+            lockedWindow.window.markDirty();
+            dirtyWindows.add( lockedWindow.window );
+        }
+        lockedWindow.lock.unlock();
+        lockedWindow.window.unpin();
+        if ( lockedWindow.window.isClosed() )
+        {
+            // Evicted while we used it, the last unpin has forced it already
+            dirtyWindows.remove( lockedWindow.window );
+        }
+    }
+
+    /**
+     * Called after a window has been closed by the replacement strategy,
+     * closing forces it if it has been written to.
+     */
+    void evicted( PersistenceWindow window )
+    {
+        mappedPages.decrementAndGet();
+        dirtyWindows.remove( window );
+    }
+
+    @Override
+    public void flushAll()
+    {
+        if ( readOnly )
+        {
+            return;
+        }
+        for ( MappedWindow window : dirtyWindows )
+        {
+            dirtyWindows.remove( window );
+            window.force();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        flushAll();
+        for ( WindowPage page : pages )
+        {
+            replacementStrategy.forceEvict( page );
+        }
+    }
+
+    @Override
+    public WindowPoolStats getStats()
+    {
+        int bytesPerPage = bytesPerRecord * recordsPerPage;
+        return new WindowPoolStats( storeFileName, availableMemory, (long) mappedPages.get() * bytesPerPage,
+                pages.length, bytesPerPage, acquireCount - mapCount, mapCount, 0, 0, 0, 0, 0 );
+    }
+
+    @Override
+    public PersistenceWindow load( WindowPage page ) throws PageLoadFailureException
+    {
+        try
+        {
+            mapCount++;
+            PersistenceWindow window = fileMapper.mapWindow( page.firstRecord, recordsPerPage, bytesPerRecord );
+            mappedPages.incrementAndGet();
+            return window;
+        }
+        catch ( IOException e )
+        {
+            throw new PageLoadFailureException( e );
+        }
+    }
+
+    /**
+     * The window handed out for an acquired page, which holds the page lock
+     * and has its own view of the mapped buffer until it's released.
+     */
+    private static class LockedWindow implements PersistenceWindow
+    {
+        private final MappedWindow window;
+        private final Lock lock;
+        private final OperationType operationType;
+        private Buffer buffer;
+
+        LockedWindow( MappedWindow window, Lock lock, OperationType operationType )
+        {
+            this.window = window;
+            this.lock = lock;
+            this.operationType = operationType;
+        }
+
+        @Override
+        public Buffer getBuffer()
+        {
+            if ( buffer == null )
+            {
+                buffer = new Buffer( this, window.duplicateBuffer() );
+            }
+            return buffer;
+        }
+
+        @Override
+        public Buffer getOffsettedBuffer( long id )
+        {
+            Buffer buffer = getBuffer();
+            buffer.setOffset( (int) (id - window.position()) * window.getRecordSize() );
+            return buffer;
+        }
+
+        @Override
+        public int getRecordSize()
+        {
+            return window.getRecordSize();
+        }
+
+        @Override
+        public long position()
+        {
+            return window.position();
+        }
+
+        @Override
+        public int size()
+        {
+            return window.size();
+        }
+
+        @Override
+        public void force()
+        {
+            window.force();
+        }
+
+        @Override
+        public void close()
+        {
+            // the mapped window is closed when the replacement strategy evicts its page
+        }
+    }
+}
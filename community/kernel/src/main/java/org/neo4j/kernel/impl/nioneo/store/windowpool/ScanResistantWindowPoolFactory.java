@@ -5,19 +5,19 @@
  * This file is part of Neo4j.
  *
  * Neo4j is free software: you can redistribute it and/or modify
- * it under the terms of the GNU Affero General Public License as
- * published by the Free Software Foundation, either version 3 of the
- * License, or (at your option) any later version.
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
  *
  * This program is distributed in the hope that it will be useful,
  * but WITHOUT ANY WARRANTY; without even the implied warranty of
  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
- * GNU Affero General Public License for more details.
+ * GNU General Public License for more details.
  *
- * You should have received a copy of the GNU Affero General Public License
- * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-package org.neo4j.consistency.store.windowpool;
+package org.neo4j.kernel.impl.nioneo.store.windowpool;
 
 import static java.lang.String.format;
 
@@ -26,25 +26,26 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
 
-import org.neo4j.consistency.store.paging.Cart;
 import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 import org.neo4j.kernel.configuration.Config;
 import org.neo4j.kernel.impl.nioneo.store.UnderlyingStorageException;
-import org.neo4j.kernel.impl.nioneo.store.windowpool.WindowPool;
-import org.neo4j.kernel.impl.nioneo.store.windowpool.WindowPoolFactory;
+import org.neo4j.kernel.impl.nioneo.store.paging.Cart;
 import org.neo4j.kernel.impl.util.StringLogger;
 
 public class ScanResistantWindowPoolFactory implements WindowPoolFactory
 {
     private final int targetBytesPerPage;
     private final Cart cart;
+    private final long mappedMemory;
     private final int reportingInterval;
     private final MappingStatisticsListener statisticsListener;
 
     public ScanResistantWindowPoolFactory( Config configuration, StringLogger logger )
     {
         this.targetBytesPerPage = pageSize( configuration );
-        this.cart = new Cart( mappablePages( configuration, targetBytesPerPage ) );
+        int mappablePages = mappablePages( configuration, targetBytesPerPage );
+        this.cart = new Cart( mappablePages );
+        this.mappedMemory = (long) mappablePages * targetBytesPerPage;
         this.reportingInterval = configuration.get( GraphDatabaseSettings.log_mapped_memory_stats_interval );
         this.statisticsListener = createStatisticsListener( configuration, logger );
     }
@@ -101,8 +102,11 @@ public class ScanResistantWindowPoolFactory implements WindowPoolFactory
     {
         try
         {
+            boolean readOnly = configuration.get( GraphDatabaseSettings.read_only ) &&
+                    !configuration.get( GraphDatabaseSettings.backup_slave );
             return new ScanResistantWindowPool( storageFileName, recordSize, targetBytesPerPage,
-                    new FileMapper( fileChannel ), cart, reportingInterval, statisticsListener );
+                    new FileMapper( fileChannel, readOnly ), cart, reportingInterval, statisticsListener, readOnly,
+                    mappedMemory );
         }
         catch ( IOException e )
         {
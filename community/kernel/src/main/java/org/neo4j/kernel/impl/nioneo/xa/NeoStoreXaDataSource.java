@@ -46,6 +46,7 @@ import org.neo4j.kernel.configuration.Config;
 import org.neo4j.kernel.impl.core.PropertyIndex;
 import org.neo4j.kernel.impl.core.TransactionState;
 import org.neo4j.kernel.impl.index.IndexStore;
+import org.neo4j.kernel.impl.nioneo.store.ChangedPages;
 import org.neo4j.kernel.impl.nioneo.store.NeoStore;
 import org.neo4j.kernel.impl.nioneo.store.PropertyStore;
 import org.neo4j.kernel.impl.nioneo.store.Store;
@@ -563,7 +564,8 @@ public class NeoStoreXaDataSource extends LogBackedXaDataSource
                     neostoreFile = dbFile;
                 }
                 else if ( (name.startsWith( NeoStore.DEFAULT_NAME ) ||
-                        name.equals( IndexStore.INDEX_DB_FILE_NAME )) && !name.endsWith( ".id" ) )
+                        name.equals( IndexStore.INDEX_DB_FILE_NAME )) && !name.endsWith( ".id" ) &&
+                        !name.endsWith( ChangedPages.FILE_SUFFIX ) )
                 {   // Store files
                     files.add( dbFile );
                 }
@@ -64,6 +64,7 @@ import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipStore;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipTypeRecord;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipTypeStore;
+import org.neo4j.kernel.impl.nioneo.store.StoreStatistics;
 import org.neo4j.kernel.impl.persistence.NeoStoreTransaction;
 import org.neo4j.kernel.impl.transaction.xaframework.XaCommand;
 import org.neo4j.kernel.impl.transaction.xaframework.XaConnection;
@@ -490,6 +491,7 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
                     state.commitCows(); // updates the cached primitives
                 }
                 neoStore.setLastCommittedTx( getCommitTxId() );
+                updateStatistics( isRecovered );
             }
             finally
             {
@@ -511,7 +513,28 @@ public class WriteTransaction extends XaTransaction implements NeoStoreTransacti
         return xaConnection.delistResource( tx, tmsuccess );
     }
 
-    private void updateFirstRelationships()
+    private void updateStatistics( boolean isRecovered )
+    {
+        StoreStatistics statistics = neoStore.getStatistics();
+        if ( isRecovered )
+        {
+            statistics.changesApplied( relCommands.size() );
+            return;
+        }
+        for ( RelationshipRecord record : relRecords.values() )
+        {
+            if ( record.isCreated() && record.inUse() )
+            {
+                statistics.relationshipCreated( record.getType() );
+            }
+            else if ( !record.isCreated() && !record.inUse() )
+            {
+                statistics.relationshipDeleted( record.getType() );
+            }
+        }
+    }
+
+        private void updateFirstRelationships()
     {
         for ( NodeRecord record : nodeRecords.values() )
             state.setFirstIds( record.getId(), record.getNextRel(), record.getNextProp() );
@@ -41,6 +41,14 @@ public interface LockManager
     void getWriteLock( Object resource, Transaction tx )
                             throws DeadlockDetectedException, IllegalResourceException;
 
+    /**
+     * Acquires write locks on all the resources for the current transaction, in the given order. Implementations
+     * that have to ask someone else for their locks can do that with as few requests as possible. If any of the
+     * locks can't be acquired, those acquired by this call are released before the exception is thrown.
+     */
+    void getWriteLocks( Object... resources )
+                            throws DeadlockDetectedException, IllegalResourceException;
+
     void releaseReadLock( Object resource, Transaction tx )
                                 throws LockNotFoundException, IllegalResourceException;
 
@@ -20,9 +20,9 @@
 package org.neo4j.kernel.impl.transaction;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.transaction.Transaction;
 
@@ -49,15 +49,31 @@ import org.neo4j.kernel.logging.Logging;
  * must invoke <CODE>releaseReadLock</CODE> x times to release all the locks.
  * <p>
  * LockManager just maps locks to resources and they do all the hard work
- * together with a resource allocation graph.
+ * together with a resource allocation graph. The map is a concurrent one and
+ * there is no global monitor: a lock is marked before it is acquired and is
+ * discarded, and removed from the map, by the release that leaves it unused.
+ * Acquiring a lock that has just been discarded simply retries with another one.
+ * <p>
+ * Discarded locks are kept in a small pool per thread and reused for the next
+ * resource that thread locks, so taking and releasing locks doesn't create a
+ * new lock every time.
  */
 public class LockManagerImpl implements LockManager
 {
-    private final Map<Object,RWLock> resourceLockMap =
-        new HashMap<Object,RWLock>();
+    private final ConcurrentMap<Object,RWLock> resourceLockMap =
+        new ConcurrentHashMap<Object,RWLock>();
 
     private final RagManager ragManager;
 
+    private final ThreadLocal<LockPool> lockPool = new ThreadLocal<LockPool>()
+    {
+        @Override
+        protected LockPool initialValue()
+        {
+            return new LockPool();
+        }
+    };
+
     public LockManagerImpl( RagManager ragManager )
     {
         this.ragManager = ragManager;
@@ -105,18 +121,7 @@ public class LockManagerImpl implements LockManager
             throw new IllegalResourceException( "Null parameter" );
         }
 
-        RWLock lock = null;
-        synchronized ( resourceLockMap )
-        {
-            lock = resourceLockMap.get( resource );
-            if ( lock == null )
-            {
-                lock = new RWLock( resource, ragManager );
-                resourceLockMap.put( resource, lock );
-            }
-            lock.mark();
-        }
-        lock.acquireReadLock(tx);
+        getMarkedLock( resource ).acquireReadLock( tx );
     }
 
     /**
@@ -156,18 +161,83 @@ public class LockManagerImpl implements LockManager
             throw new IllegalResourceException( "Null parameter" );
         }
 
-        RWLock lock = null;
-        synchronized ( resourceLockMap )
+        getMarkedLock( resource ).acquireWriteLock( tx );
+    }
+
+    /**
+     * Acquires write locks on all <CODE>resources</CODE>, one after the other, for the current transaction. If
+     * one of them can't be acquired the ones already acquired by this call are released again.
+     *
+     * @param resources
+     *            The resources
+     * @throws DeadlockDetectedException
+     *             If a deadlock is detected
+     * @throws IllegalResourceException
+     */
+    @Override
+    public void getWriteLocks( Object... resources )
+        throws DeadlockDetectedException, IllegalResourceException
+    {
+        int acquired = 0;
+        try
+        {
+            for ( Object resource : resources )
+            {
+                getWriteLock( resource, null );
+                acquired++;
+            }
+        }
+        finally
         {
-            lock = resourceLockMap.get( resource );
+            if ( acquired < resources.length )
+            {
+                for ( int i = acquired - 1; i >= 0; i-- )
+                {
+                    releaseWriteLock( resources[i], null );
+                }
+            }
+        }
+    }
+
+    private RWLock getMarkedLock( Object resource )
+    {
+        while ( true )
+        {
+            RWLock lock = resourceLockMap.get( resource );
             if ( lock == null )
             {
-                lock = new RWLock( resource, ragManager );
-                resourceLockMap.put( resource, lock );
+                LockPool pool = lockPool.get();
+                RWLock newLock = pool.take( resource );
+                lock = resourceLockMap.putIfAbsent( resource, newLock );
+                if ( lock == null )
+                {
+                    newLock.publish();
+                    lock = newLock;
+                }
+                else
+                {
+                    pool.give( newLock );
+                }
+            }
+            if ( lock.mark( resource ) )
+            {
+                return lock;
             }
-            lock.mark();
+            // Discarded by a concurrent release, which is about to remove it from the map. Only that release
+            // removes it, since the lock may be reused for this very resource as soon as it's out of the map.
+            Thread.yield();
+        }
+    }
+
+    private RWLock getLockForRelease( Object resource, Transaction tx )
+    {
+        RWLock lock = resourceLockMap.get( resource );
+        if ( lock == null )
+        {
+            throw new LockNotFoundException( "Lock not found for: "
+                + resource + " tx:" + tx );
         }
-        lock.acquireWriteLock(tx);
+        return lock;
     }
 
     /**
@@ -189,22 +259,11 @@ public class LockManagerImpl implements LockManager
             throw new IllegalResourceException( "Null parameter" );
         }
 
-        RWLock lock = null;
-        synchronized ( resourceLockMap )
+        RWLock lock = getLockForRelease( resource, tx );
+        if ( lock.releaseReadLock( tx ) )
         {
-            lock = resourceLockMap.get( resource );
-            if ( lock == null )
-            {
-                throw new LockNotFoundException( "Lock not found for: "
-                    + resource + " tx:" + tx );
-            }
-            if ( !lock.isMarked() && lock.getReadCount() == 1 &&
-                lock.getWriteCount() == 0 &&
-                lock.getWaitingThreadsCount() == 0 )
-            {
-                resourceLockMap.remove( resource );
-            }
-            lock.releaseReadLock(tx);
+            resourceLockMap.remove( resource, lock );
+            lockPool.get().give( lock );
         }
     }
 
@@ -227,24 +286,12 @@ public class LockManagerImpl implements LockManager
             throw new IllegalResourceException( "Null parameter" );
         }
 
-        RWLock lock = null;
-        synchronized ( resourceLockMap )
+        RWLock lock = getLockForRelease( resource, tx );
+        if ( lock.releaseWriteLock( tx ) )
         {
-            lock = resourceLockMap.get( resource );
-            if ( lock == null )
-            {
-                throw new LockNotFoundException( "Lock not found for: "
-                    + resource + " tx:" + tx );
-            }
-            if ( !lock.isMarked() && lock.getReadCount() == 0 &&
-                lock.getWriteCount() == 1 &&
-                lock.getWaitingThreadsCount() == 0 )
-            {
-                resourceLockMap.remove( resource );
-            }
-            lock.releaseWriteLock(tx);
+            resourceLockMap.remove( resource, lock );
+            lockPool.get().give( lock );
         }
-
     }
 
     /**
@@ -256,15 +303,11 @@ public class LockManagerImpl implements LockManager
     public void dumpLocksOnResource( Object resource, Logging logging )
     {
         StringLogger logger = logging.getLogger( LockManager.class );
-        RWLock lock = null;
-        synchronized ( resourceLockMap )
+        RWLock lock = resourceLockMap.get( resource );
+        if ( lock == null )
         {
-            if ( !resourceLockMap.containsKey( resource ) )
-            {
-                logger.info( "No locks on " + resource );
-                return;
-            }
-            lock = resourceLockMap.get( resource );
+            logger.info( "No locks on " + resource );
+            return;
         }
         logger.logLongMessage( "Dump locks on resource " + resource, lock );
     }
@@ -288,12 +331,9 @@ public class LockManagerImpl implements LockManager
      */
     private <V extends Visitor<LockInfo>> V eachLock( V visitor )
     {
-        synchronized ( resourceLockMap )
+        for ( RWLock lock : resourceLockMap.values() )
         {
-            for ( RWLock lock : resourceLockMap.values() )
-            {
-                if ( visitor.visit( lock.info() ) ) break;
-            }
+            if ( visitor.visit( lock.info() ) ) break;
         }
         return visitor;
     }
@@ -312,12 +352,9 @@ public class LockManagerImpl implements LockManager
     private <V extends Visitor<LockInfo>> V eachAwaitedLock( V visitor, long minWaitTime )
     {
         long waitStart = System.currentTimeMillis() - minWaitTime;
-        synchronized ( resourceLockMap )
+        for ( RWLock lock : resourceLockMap.values() )
         {
-            for ( RWLock lock : resourceLockMap.values() )
-            {
-                if ( lock.acceptVisitorIfWaitedSinceBefore( visitor, waitStart ) ) break;
-            }
+            if ( lock.acceptVisitorIfWaitedSinceBefore( visitor, waitStart ) ) break;
         }
         return visitor;
     }
@@ -341,6 +378,36 @@ public class LockManagerImpl implements LockManager
         dump.done();
     }
 
+    /**
+     * Unused locks of one thread, kept for reuse. Only discarded locks that
+     * are no longer in the lock map are given to the pool.
+     */
+    private class LockPool
+    {
+        private final RWLock[] locks = new RWLock[16];
+        private int size = 0;
+
+        RWLock take( Object resource )
+        {
+            if ( size == 0 )
+            {
+                return new RWLock( resource, ragManager );
+            }
+            RWLock lock = locks[--size];
+            locks[size] = null;
+            lock.reuse( resource );
+            return lock;
+        }
+
+        void give( RWLock lock )
+        {
+            if ( size < locks.length )
+            {
+                locks[size++] = lock;
+            }
+        }
+    }
+
     private static class ListAppendingVisitor implements Visitor<LockInfo>
     {
         private final List<LockInfo> result = new ArrayList<LockInfo>();
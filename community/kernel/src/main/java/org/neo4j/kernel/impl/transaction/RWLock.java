@@ -20,6 +20,7 @@
 package org.neo4j.kernel.impl.transaction;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -33,7 +34,6 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.helpers.collection.Visitor;
 import org.neo4j.kernel.DeadlockDetectedException;
-import org.neo4j.kernel.impl.util.ArrayMap;
 import org.neo4j.kernel.impl.util.StringLogger.LineLogger;
 import org.neo4j.kernel.info.LockInfo;
 import org.neo4j.kernel.info.LockingTransaction;
@@ -65,20 +65,32 @@ import org.neo4j.kernel.info.WaitingThread;
  * the queue is checked for waiting txs. This implementation tries to avoid lock
  * starvation and increase performance since only waiting txs that can acquire
  * the lock are notified.
+ * <p>
+ * The {@link LockManagerImpl} marks a lock before acquiring it and discards it
+ * when the last holder releases it, a discarded lock can't be marked again and
+ * the lock manager will use another lock for the resource instead. Discarded
+ * locks are {@link #reuse(Object) reused} for other resources, so a lock can
+ * only be marked for the resource it currently guards. The element keeping
+ * track of a transaction's lock counts is kept as a spare when that
+ * transaction releases the lock, and handed to the next transaction.
  */
 class RWLock implements Visitor<LineLogger>
 {
     private int writeCount = 0; // total writeCount
     private int readCount = 0; // total readCount
     private int marked = 0; // synch helper in LockManager
+    private boolean discarded = false; // removed, or not yet put, in the lock map in LockManager
+    // holders published for deadlock detection while there are waiting threads
+    private volatile Transaction[] waitedOnHolders;
 
-    private final Object resource; // the resource for this RWLock
+    private Object resource; // the resource for this RWLock
 
     private final LinkedList<WaitElement> waitingThreadList =
         new LinkedList<WaitElement>();
 
-    private final ArrayMap<Transaction,TxLockElement> txLockElementMap =
-        new ArrayMap<Transaction,TxLockElement>( (byte)5, false, true );
+    private TxLockElement[] txLockElements = new TxLockElement[2];
+    private int txLockElementCount = 0;
+    private TxLockElement spareTxLockElement;
 
     private final RagManager ragManager;
 
@@ -91,7 +103,7 @@ class RWLock implements Visitor<LineLogger>
     // keeps track of a transactions read and write lock count on this RWLock
     private static class TxLockElement
     {
-        final Transaction tx;
+        Transaction tx;
         int readCount = 0;
         int writeCount = 0;
 
@@ -119,9 +131,20 @@ class RWLock implements Visitor<LineLogger>
         }
     }
 
-    synchronized void mark()
+    /**
+     * Marks this lock as about to be acquired, so that it isn't discarded.
+     *
+     * @return {@code false} if this lock has been discarded, or now guards
+     * another resource, and another lock must be used for the resource.
+     */
+    synchronized boolean mark( Object resource )
     {
+        if ( discarded || !this.resource.equals( resource ) )
+        {
+            return false;
+        }
         this.marked++;
+        return true;
     }
 
     synchronized boolean isMarked()
@@ -129,6 +152,30 @@ class RWLock implements Visitor<LineLogger>
         return marked > 0;
     }
 
+    /**
+     * Prepares this unused lock for guarding another resource. It stays
+     * discarded until it's {@link #publish() published}, so that a lock manager
+     * that still sees it for its previous resource can't mark it.
+     */
+    synchronized void reuse( Object resource )
+    {
+        this.resource = resource;
+        this.discarded = true;
+        this.waitedOnHolders = null;
+        while ( txLockElementCount > 0 )
+        {
+            removeTxLockElement( txLockElements[txLockElementCount - 1] );
+        }
+    }
+
+    /**
+     * Makes this lock available for marking, once it's in the lock map.
+     */
+    synchronized void publish()
+    {
+        this.discarded = false;
+    }
+
     /**
      * Calls {@link #acquireReadLock(Transaction)} with the transaction
      * associated with the current thread.
@@ -157,10 +204,11 @@ class RWLock implements Visitor<LineLogger>
         {
             tx = new PlaceboTransaction();
         }
-        TxLockElement tle = txLockElementMap.get( tx );
-        if ( tle == null )
+        TxLockElement tle = getTxLockElement( tx );
+        boolean listed = tle != null;
+        if ( !listed )
         {
-            tle = new TxLockElement( tx );
+            tle = newTxLockElement( tx );
         }
 
         try
@@ -168,6 +216,7 @@ class RWLock implements Visitor<LineLogger>
             tle.movedOn = false;
             while ( writeCount > tle.writeCount )
             {
+                waitedOnHolders = holders();
                 ragManager.checkWaitOn( this, tx );
                 waitingThreadList.addFirst( new WaitElement( tle,
                     LockType.READ, Thread.currentThread() ) );
@@ -182,15 +231,18 @@ class RWLock implements Visitor<LineLogger>
                 ragManager.stopWaitOn( this, tx );
             }
 
-            if ( tle.readCount == 0 && tle.writeCount == 0 )
-            {
-                ragManager.lockAcquired( this, tx );
-            }
+            boolean newHolder = tle.readCount == 0 && tle.writeCount == 0;
             readCount++;
             tle.readCount++;
             tle.movedOn = true;
-            // TODO: this put could be optimized?
-            txLockElementMap.put( tx, tle );
+            if ( !listed )
+            {
+                addTxLockElement( tle );
+            }
+            if ( newHolder )
+            {
+                holdersChanged();
+            }
         }
         finally
         {
@@ -207,14 +259,17 @@ class RWLock implements Visitor<LineLogger>
 	 * not necessarily available through the tm. If there are waiting
 	 * transactions in the queue they will be interrupted if they can acquire
 	 * the lock.
+	 *
+	 * @return {@code true} if this lock was discarded since it is no longer
+	 * held, marked or waited on by anyone.
 	 */
-    synchronized void releaseReadLock(Transaction tx) throws LockNotFoundException
+    synchronized boolean releaseReadLock(Transaction tx) throws LockNotFoundException
     {
         if ( tx == null && (tx = ragManager.getCurrentTransaction()) == null )
         {
             tx = new PlaceboTransaction();
         }
-        TxLockElement tle = txLockElementMap.get( tx );
+        TxLockElement tle = getTxLockElement( tx );
         if ( tle == null )
         {
             throw new LockNotFoundException(
@@ -232,9 +287,9 @@ class RWLock implements Visitor<LineLogger>
         {
             if ( !this.isMarked() )
             {
-                txLockElementMap.remove( tx );
+                removeTxLockElement( tle );
             }
-            ragManager.lockReleased( this, tx );
+            holdersChanged();
         }
         if ( waitingThreadList.size() > 0 )
         {
@@ -306,6 +361,7 @@ class RWLock implements Visitor<LineLogger>
                 }
             }
         }
+        return discardIfUnused();
     }
 
     /**
@@ -337,10 +393,11 @@ class RWLock implements Visitor<LineLogger>
         {
             tx = new PlaceboTransaction();
         }
-        TxLockElement tle = txLockElementMap.get( tx );
-        if ( tle == null )
+        TxLockElement tle = getTxLockElement( tx );
+        boolean listed = tle != null;
+        if ( !listed )
         {
-            tle = new TxLockElement( tx );
+            tle = newTxLockElement( tx );
         }
 
         try
@@ -348,6 +405,7 @@ class RWLock implements Visitor<LineLogger>
             tle.movedOn = false;
             while ( writeCount > tle.writeCount || readCount > tle.readCount )
             {
+                waitedOnHolders = holders();
                 ragManager.checkWaitOn( this, tx );
                 waitingThreadList.addFirst( new WaitElement( tle,
                     LockType.WRITE, Thread.currentThread() ) );
@@ -362,15 +420,18 @@ class RWLock implements Visitor<LineLogger>
                 ragManager.stopWaitOn( this, tx );
             }
 
-            if ( tle.readCount == 0 && tle.writeCount == 0 )
-            {
-                ragManager.lockAcquired( this, tx );
-            }
+            boolean newHolder = tle.readCount == 0 && tle.writeCount == 0;
             writeCount++;
             tle.writeCount++;
             tle.movedOn = true;
-            // TODO optimize this put?
-            txLockElementMap.put( tx, tle );
+            if ( !listed )
+            {
+                addTxLockElement( tle );
+            }
+            if ( newHolder )
+            {
+                holdersChanged();
+            }
         }
         finally
         {
@@ -387,14 +448,17 @@ class RWLock implements Visitor<LineLogger>
 	 * necessarily available. If write count is zero and there are waiting
 	 * transactions in the queue they will be interrupted if they can acquire
 	 * the lock.
+	 *
+	 * @return {@code true} if this lock was discarded since it is no longer
+	 * held, marked or waited on by anyone.
 	 */
-    synchronized void releaseWriteLock(Transaction tx) throws LockNotFoundException
+    synchronized boolean releaseWriteLock(Transaction tx) throws LockNotFoundException
     {
         if ( tx == null && (tx = ragManager.getCurrentTransaction()) == null )
         {
             tx = new PlaceboTransaction();
         }
-        TxLockElement tle = txLockElementMap.get( tx );
+        TxLockElement tle = getTxLockElement( tx );
         if ( tle == null )
         {
             throw new LockNotFoundException(
@@ -412,9 +476,9 @@ class RWLock implements Visitor<LineLogger>
         {
             if ( !this.isMarked() )
             {
-                txLockElementMap.remove( tx );
+                removeTxLockElement( tle );
             }
-            ragManager.lockReleased( this, tx );
+            holdersChanged();
         }
 
         // the threads in the waitingList cannot be currentThread
@@ -440,6 +504,98 @@ class RWLock implements Visitor<LineLogger>
             }
             while ( waitingThreadList.size() > 0 );
         }
+        return discardIfUnused();
+    }
+
+    private boolean discardIfUnused()
+    {
+        if ( marked == 0 && readCount == 0 && writeCount == 0 && waitingThreadList.isEmpty() )
+        {
+            discarded = true;
+        }
+        return discarded;
+    }
+
+    private TxLockElement getTxLockElement( Transaction tx )
+    {
+        for ( int i = 0; i < txLockElementCount; i++ )
+        {
+            if ( txLockElements[i].tx.equals( tx ) )
+            {
+                return txLockElements[i];
+            }
+        }
+        return null;
+    }
+
+    private TxLockElement newTxLockElement( Transaction tx )
+    {
+        TxLockElement tle = spareTxLockElement;
+        if ( tle == null )
+        {
+            return new TxLockElement( tx );
+        }
+        spareTxLockElement = null;
+        tle.tx = tx;
+        tle.movedOn = false;
+        return tle;
+    }
+
+    private void addTxLockElement( TxLockElement tle )
+    {
+        if ( txLockElementCount == txLockElements.length )
+        {
+            txLockElements = Arrays.copyOf( txLockElements, txLockElementCount * 2 );
+        }
+        txLockElements[txLockElementCount++] = tle;
+    }
+
+    // only called for elements without locks, that no waiting thread refers to
+    private void removeTxLockElement( TxLockElement tle )
+    {
+        for ( int i = 0; i < txLockElementCount; i++ )
+        {
+            if ( txLockElements[i] == tle )
+            {
+                txLockElements[i] = txLockElements[--txLockElementCount];
+                txLockElements[txLockElementCount] = null;
+                tle.tx = null;
+                spareTxLockElement = tle;
+                return;
+            }
+        }
+    }
+
+    private void holdersChanged()
+    {
+        if ( !waitingThreadList.isEmpty() )
+        {
+            waitedOnHolders = holders();
+        }
+    }
+
+    private Transaction[] holders()
+    {
+        Transaction[] holders = new Transaction[txLockElementCount];
+        int count = 0;
+        for ( int i = 0; i < txLockElementCount; i++ )
+        {
+            TxLockElement tle = txLockElements[i];
+            if ( tle.readCount > 0 || tle.writeCount > 0 )
+            {
+                holders[count++] = tle.tx;
+            }
+        }
+        return count == holders.length ? holders : Arrays.copyOf( holders, count );
+    }
+
+    /**
+     * Returns the transactions holding this lock, as published for the
+     * {@link RagManager} when some transaction is about to wait on it.
+     */
+    Transaction[] getWaitedOnHolders()
+    {
+        return waitedOnHolders;
     }
 
     int getWriteCount()
@@ -482,10 +638,9 @@ class RWLock implements Visitor<LineLogger>
         }
 
         logger.logLine( "Locking transactions:" );
-        Iterator<TxLockElement> lElements = txLockElementMap.values().iterator();
-        while ( lElements.hasNext() )
+        for ( int i = 0; i < txLockElementCount; i++ )
         {
-            TxLockElement tle = lElements.next();
+            TxLockElement tle = txLockElements[i];
             logger.logLine( "" + tle.tx + "(" + tle.readCount + "r,"
                 + tle.writeCount + "w)" );
         }
@@ -496,8 +651,9 @@ class RWLock implements Visitor<LineLogger>
     {
         Set<LockingTransaction> lockingTxs = new HashSet<LockingTransaction>();
         Set<WaitingThread> waitingTxs = new HashSet<WaitingThread>();
-        for ( TxLockElement tle : txLockElementMap.values() )
+        for ( int i = 0; i < txLockElementCount; i++ )
         {
+            TxLockElement tle = txLockElements[i];
             lockingTxs.add( new LockingTransaction( tle.tx.toString(), tle.readCount, tle.writeCount ) );
         }
         for ( WaitElement thread : waitingThreadList )
@@ -19,12 +19,11 @@
  */
 package org.neo4j.kernel.impl.transaction;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.transaction.SystemException;
@@ -34,15 +33,14 @@ import javax.transaction.TransactionManager;
 import org.neo4j.graphdb.TransactionFailureException;
 import org.neo4j.helpers.collection.Visitor;
 import org.neo4j.kernel.DeadlockDetectedException;
-import org.neo4j.kernel.impl.util.ArrayMap;
 import org.neo4j.kernel.impl.util.StringLogger.LineLogger;
 
 /**
  * The Resource Allocation Graph manager is used for deadlock detection. It
- * keeps track of all locked resources and transactions waiting for resources.
- * When a {@link RWLock} cannot give the lock to a transaction the tx has to
- * wait and that may lead to a deadlock. So before the tx is put into wait mode
- * the {@link RagManager#checkWaitOn} method is invoked to check if a wait of
+ * keeps track of transactions waiting for resources. When a {@link RWLock}
+ * cannot give the lock to a transaction the tx has to wait and that may lead
+ * to a deadlock. So before the tx is put into wait mode the
+ * {@link RagManager#checkWaitOn} method is invoked to check if a wait of
  * this transaction will lead to a deadlock.
  * <p>
  * The <CODE>checkWaitOn</CODE> throws a {@link DeadlockDetectedException} if
@@ -51,35 +49,38 @@ import org.neo4j.kernel.impl.util.StringLogger.LineLogger;
  * <p>
  * Think of the resource allocation graph as a node space. We have two node
  * types, resource nodes (R) and tx/process nodes (T). When a transaction
- * acquires lock on some resource a relationship is added from the resource to
+ * holds a lock on some resource there is a relationship from the resource to
  * the tx (R->T) and when a transaction waits for a resource a relationship is
  * added from the tx to the resource (T->R). The only thing we need to do to see
  * if a deadlock occurs when some transaction waits for a resource is to
  * traverse node nodespace starting on the resource and see if we can get back
  * to the tx ( T1 wants to wait on R1 and R1->T2->R2->T3->R8->T1 <==>
  * deadlock!).
+ * <p>
+ * Only the T->R relationships are kept here, in a concurrent map. The R->T
+ * relationships are the holders of each lock, which a {@link RWLock} publishes
+ * through {@link RWLock#getWaitedOnHolders()} for as long as some transaction
+ * waits on it. Acquiring and releasing locks doesn't touch the graph at all,
+ * work is only done when a transaction is about to block.
+ * <p>
+ * A transaction registers its wait before traversing the graph, so when two
+ * transactions close a cycle concurrently at least one of them will see the
+ * other one's wait and detect the deadlock.
  */
 public class RagManager implements Visitor<LineLogger>
 {
     // if a runtime exception is thrown from any method it means that the
     // RWLock class hasn't kept the contract to the RagManager
     // The contract is:
-    // o When a transaction gets a lock on a resource and both the readCount and
-    // writeCount for that transaction on the resource was 0
-    // RagManager.lockAcquired( resource ) must be invoked
-    // o When a tx releases a lock on a resource and both the readCount and
-    // writeCount for that transaction on the resource goes down to zero
-    // RagManager.lockReleased( resource ) must be invoked
-    // o After invoke to the checkWaitOn( resource ) method that didn't result
+    // o Before invoking checkWaitOn( lock ) the holders of the lock must have
+    // been published so that RWLock.getWaitedOnHolders() returns them, and they
+    // must be kept up to date for as long as any transaction waits on the lock
+    // o After invoke to the checkWaitOn( lock ) method that didn't result
     // in a DeadlockDetectedException the transaction must wait
-    // o When the transaction wakes up from waiting on a resource the
-    // stopWaitOn( resource ) method must be invoked
-
-    private final Map<Object,List<Transaction>> resourceMap =
-        new HashMap<Object,List<Transaction>>();
+    // o When the transaction wakes up from waiting on a lock the
+    // stopWaitOn( lock ) method must be invoked
 
-    private final ArrayMap<Transaction,Object> waitingTxMap =
-        new ArrayMap<Transaction,Object>( (byte)5, false, true );
+    private final Map<Transaction,RWLock> waitingTxMap = new ConcurrentHashMap<Transaction,RWLock>();
 
     private final TransactionManager tm;
 
@@ -95,107 +96,78 @@ public class RagManager implements Visitor<LineLogger>
         return deadlockCount.longValue();
     }
 
-    synchronized void lockAcquired( Object resource, Transaction tx )
-    {
-        List<Transaction> lockingTxList = resourceMap.get( resource );
-        if ( lockingTxList != null )
-        {
-            assert !lockingTxList.contains( tx );
-            lockingTxList.add( tx );
-        }
-        else
-        {
-            lockingTxList = new LinkedList<Transaction>();
-            lockingTxList.add( tx );
-            resourceMap.put( resource, lockingTxList );
-        }
-    }
-
-    synchronized void lockReleased( Object resource, Transaction tx )
-    {
-        List<Transaction> lockingTxList = resourceMap.get( resource );
-        if ( lockingTxList == null )
-        {
-            throw new LockException( resource + " not found in resource map" );
-        }
-
-        if ( !lockingTxList.remove( tx ) )
-        {
-            throw new LockException( tx + "not found in locking tx list" );
-        }
-        if ( lockingTxList.size() == 0 )
-        {
-            resourceMap.remove( resource );
-        }
-    }
-
-    synchronized void stopWaitOn( Object resource, Transaction tx )
+    void stopWaitOn( RWLock lock, Transaction tx )
     {
         if ( waitingTxMap.remove( tx ) == null )
         {
-            throw new LockException( tx + " not waiting on " + resource );
+            throw new LockException( tx + " not waiting on " + lock );
         }
     }
 
     // after invoke the transaction must wait on the resource
-    synchronized void checkWaitOn( Object resource, Transaction tx )
+    void checkWaitOn( RWLock lock, Transaction tx )
         throws DeadlockDetectedException
     {
-        List<Transaction> lockingTxList = resourceMap.get( resource );
-        if ( lockingTxList == null )
+        Transaction[] lockingTxs = lock.getWaitedOnHolders();
+        if ( lockingTxs == null )
         {
-            throw new LockException( "Illegal resource[" + resource
-                + "], not found in map" );
+            throw new LockException( "Illegal resource[" + lock
+                + "], holders not published" );
         }
 
-        if ( waitingTxMap.get( tx ) != null )
+        if ( waitingTxMap.put( tx, lock ) != null )
         {
             throw new LockException( tx + " already waiting for resource" );
         }
 
-        Iterator<Transaction> itr = lockingTxList.iterator();
-        List<Transaction> checkedTransactions = new LinkedList<Transaction>();
+        Set<Transaction> checkedTransactions = new HashSet<Transaction>();
         Stack<Object> graphStack = new Stack<Object>();
         // has resource,transaction interleaved
-        graphStack.push( resource );
-        while ( itr.hasNext() )
+        graphStack.push( lock );
+        try
         {
-            Transaction lockingTx = itr.next();
-            // the if statement bellow is valid because:
-            // t1 -> r1 -> t1 (can happened with RW locks) is ok but,
-            // t1 -> r1 -> t1&t2 where t2 -> r1 is a deadlock
-            // think like this, we have two transactions and one resource
-            // o t1 takes read lock on r1
-            // o t2 takes read lock on r1
-            // o t1 wanna take write lock on r1 but has to wait for t2
-            // to release the read lock ( t1->r1->(t1&t2), ok not deadlock yet
-            // o t2 wanna take write lock on r1 but has to wait for t1
-            // to release read lock....
-            // DEADLOCK t1->r1->(t1&t2) and t2->r1->(t1&t2) ===>
-            // t1->r1->t2->r1->t1, t2->r1->t1->r1->t2 etc...
-            // to allow the first three steps above we check if lockingTx ==
-            // waitingTx on first level.
-            // because of this special case we have to keep track on the
-            // already "checked" tx since it is (now) legal for one type of
-            // circular reference to exist (t1->r1->t1) otherwise we may
-            // traverse t1->r1->t2->r1->t2->r1->t2... until SOE
-            // ... KISS to you too
-            if ( lockingTx.equals( tx ) )
+            for ( Transaction lockingTx : lockingTxs )
             {
-                continue;
+                // the if statement bellow is valid because:
+                // t1 -> r1 -> t1 (can happened with RW locks) is ok but,
+                // t1 -> r1 -> t1&t2 where t2 -> r1 is a deadlock
+                // think like this, we have two transactions and one resource
+                // o t1 takes read lock on r1
+                // o t2 takes read lock on r1
+                // o t1 wanna take write lock on r1 but has to wait for t2
+                // to release the read lock ( t1->r1->(t1&t2), ok not deadlock yet
+                // o t2 wanna take write lock on r1 but has to wait for t1
+                // to release read lock....
+                // DEADLOCK t1->r1->(t1&t2) and t2->r1->(t1&t2) ===>
+                // t1->r1->t2->r1->t1, t2->r1->t1->r1->t2 etc...
+                // to allow the first three steps above we check if lockingTx ==
+                // waitingTx on first level.
+                // because of this special case we have to keep track on the
+                // already "checked" tx since it is (now) legal for one type of
+                // circular reference to exist (t1->r1->t1) otherwise we may
+                // traverse t1->r1->t2->r1->t2->r1->t2... until SOE
+                // ... KISS to you too
+                if ( lockingTx.equals( tx ) )
+                {
+                    continue;
+                }
+                graphStack.push( lockingTx );
+                checkWaitOnRecursive( lockingTx, tx, checkedTransactions,
+                    graphStack );
+                graphStack.pop();
             }
-            graphStack.push( lockingTx );
-            checkWaitOnRecursive( lockingTx, tx, checkedTransactions,
-                graphStack );
-            graphStack.pop();
+        }
+        catch ( DeadlockDetectedException e )
+        {
+            waitingTxMap.remove( tx );
+            throw e;
         }
 
         // ok no deadlock, we can wait on resource
-        waitingTxMap.put( tx, resource );
     }
 
-    private synchronized void checkWaitOnRecursive( Transaction lockingTx,
-        Transaction waitingTx, List<Transaction> checkedTransactions,
+    private void checkWaitOnRecursive( Transaction lockingTx,
+        Transaction waitingTx, Set<Transaction> checkedTransactions,
         Stack<Object> graphStack ) throws DeadlockDetectedException
     {
         if ( lockingTx.equals( waitingTx ) )
@@ -222,31 +194,28 @@ public class RagManager implements Visitor<LineLogger>
                 " can't wait on resource " + resource + " since => " + circle );
         }
         checkedTransactions.add( lockingTx );
-        Object resource = waitingTxMap.get( lockingTx );
-        if ( resource != null )
+        RWLock lock = waitingTxMap.get( lockingTx );
+        if ( lock != null )
         {
-            graphStack.push( resource );
-            // if the resource doesn't exist in resorceMap that means all the
-            // locks on the resource has been released
+            graphStack.push( lock );
+            // if the lock has no published holders that means all the
+            // waiters on the lock have been woken up
             // it is possible when this tx was in RWLock.acquire and
             // saw it had to wait for the lock the scheduler changes to some
-            // other tx that will release the locks on the resource and
-            // remove it from the map
+            // other tx that will release the locks on the resource
             // this is ok since current tx or any other tx will wake
             // in the synchronized block and will be forced to do the deadlock
             // check once more if lock cannot be acquired
-            List<Transaction> lockingTxList = resourceMap.get( resource );
-            if ( lockingTxList != null )
+            Transaction[] lockingTxs = lock.getWaitedOnHolders();
+            if ( lockingTxs != null )
             {
-                Iterator<Transaction> itr = lockingTxList.iterator();
-                while ( itr.hasNext() )
+                for ( Transaction holder : lockingTxs )
                 {
-                    lockingTx = itr.next();
                     // so we don't
-                    if ( !checkedTransactions.contains( lockingTx ) )
+                    if ( !checkedTransactions.contains( holder ) )
                     {
-                        graphStack.push( lockingTx );
-                        checkWaitOnRecursive( lockingTx, waitingTx,
+                        graphStack.push( holder );
+                        checkWaitOnRecursive( holder, waitingTx,
                             checkedTransactions, graphStack );
                         graphStack.pop();
                     }
@@ -257,11 +226,10 @@ public class RagManager implements Visitor<LineLogger>
     }
 
     @Override
-    public synchronized boolean visit( LineLogger logger )
+    public boolean visit( LineLogger logger )
     {
         logger.logLine( "Waiting list: " );
-        Iterator<Transaction> transactions = waitingTxMap.keySet().iterator();
-        if ( !transactions.hasNext() )
+        if ( waitingTxMap.isEmpty() )
         {
             logger.logLine( "No transactions waiting on resources" );
         }
@@ -269,41 +237,34 @@ public class RagManager implements Visitor<LineLogger>
         {
             logger.logLine( "" ); // new line
         }
-        while ( transactions.hasNext() )
+        Set<RWLock> waitedOnLocks = new HashSet<RWLock>();
+        for ( Map.Entry<Transaction,RWLock> waiting : waitingTxMap.entrySet() )
         {
-            Transaction tx = transactions.next();
-            logger.logLine( "" + tx + "->" + waitingTxMap.get( tx ) );
+            logger.logLine( "" + waiting.getKey() + "->" + waiting.getValue() );
+            waitedOnLocks.add( waiting.getValue() );
         }
         logger.logLine( "Resource lock list: " );
-        Iterator<?> resources = resourceMap.keySet().iterator();
-        if ( !resources.hasNext() )
+        if ( waitedOnLocks.isEmpty() )
         {
-            logger.logLine( "No locked resources found" );
+            logger.logLine( "No waited on resources found" );
         }
         else
         {
             logger.logLine( "" );
         }
-        while ( resources.hasNext() )
+        for ( RWLock lock : waitedOnLocks )
         {
-            Object resource = resources.next();
-            logger.logLine( "" + resource + "->" );
-            Iterator<Transaction> itr = resourceMap.get( resource ).iterator();
-            if ( !itr.hasNext() )
+            logger.logLine( "" + lock + "->" );
+            Transaction[] holders = lock.getWaitedOnHolders();
+            if ( holders == null || holders.length == 0 )
             {
-                logger.logLine( " Error empty list found" );
+                logger.logLine( " No holders found" );
+                continue;
             }
-            while ( itr.hasNext() )
+            for ( int i = 0; i < holders.length; i++ )
             {
-                logger.logLine( "" + itr.next() );
-                if ( itr.hasNext() )
-                {
-                    logger.logLine( "," );
-                }
-                else
-                {
-                    logger.logLine( "" );
-                }
+                logger.logLine( "" + holders[i] );
+                logger.logLine( i < holders.length - 1 ? "," : "" );
             }
         }
         return true;
@@ -321,4 +282,4 @@ public class RagManager implements Visitor<LineLogger>
                 "Could not get current transaction.", e );
         }
     }
-}
\ No newline at end of file
+}
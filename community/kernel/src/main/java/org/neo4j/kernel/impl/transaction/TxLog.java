@@ -41,11 +41,11 @@ import org.neo4j.helpers.UTF8;
 import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
 import org.neo4j.kernel.impl.transaction.xaframework.DirectMappedLogBuffer;
 import org.neo4j.kernel.impl.transaction.xaframework.ForceMode;
+import org.neo4j.kernel.impl.transaction.xaframework.GroupCommit;
 import org.neo4j.kernel.impl.transaction.xaframework.LogBuffer;
 
 // TODO: fixed sized logs (pre-initialize them)
 // keep dangling records in memory for log switch
-// batch disk forces
 /**
  * This class is made public for testing purposes only, do not use.
  * <p>
@@ -56,7 +56,7 @@ import org.neo4j.kernel.impl.transaction.xaframework.LogBuffer;
 public class TxLog
 {
     private File name = null;
-    private LogBuffer logBuffer;
+    private volatile LogBuffer logBuffer;
     private int recordCount = 0;
     private final Set<ByteArrayKey> activeTransactions = new HashSet<ByteArrayKey>();
 
@@ -65,6 +65,9 @@ public class TxLog
     public static final byte MARK_COMMIT = 3;
     public static final byte TX_DONE = 4;
     private final FileSystemAbstraction fileSystem;
+    private final GroupCommit groupCommit;
+    // Guards closing of the log channel against a concurrent group commit force
+    private final Object logChannelForceLock = new Object();
     
     private static final class ByteArrayKey
     {
@@ -100,12 +103,31 @@ public class TxLog
      *             If unable to open file
      */
     public TxLog( File fileName, FileSystemAbstraction fileSystem ) throws IOException
+    {
+        this( fileName, fileSystem, false, 0 );
+    }
+
+    /**
+     * Initializes a transaction log using <CODE>filename</CODE> which, if
+     * <CODE>groupCommit</CODE> is set, lets concurrent
+     * {@link #markAsCommitting(byte[], ForceMode)} calls share one force.
+     */
+    public TxLog( File fileName, FileSystemAbstraction fileSystem, boolean groupCommit, long groupCommitMaxWait )
+            throws IOException
     {
         if ( fileName == null )
         {
             throw new IllegalArgumentException( "Null filename" );
         }
         this.fileSystem = fileSystem;
+        this.groupCommit = new GroupCommit( groupCommit, groupCommitMaxWait, new GroupCommit.Force()
+        {
+            @Override
+            public void force() throws IOException
+            {
+                forceLogChannel();
+            }
+        } );
         FileChannel fileChannel = fileSystem.open( fileName, "rw" );
         fileChannel.position( fileChannel.size() );
         logBuffer = new DirectMappedLogBuffer( fileChannel );
@@ -145,7 +167,10 @@ public class TxLog
     public synchronized void close() throws IOException
     {
         logBuffer.force();
-        logBuffer.getFileChannel().close();
+        synchronized ( logChannelForceLock )
+        {
+            logBuffer.getFileChannel().close();
+        }
     }
 
     /**
@@ -234,15 +259,55 @@ public class TxLog
      */
     // mark_committing(byte)|gid_length(byte)|globalId
     // forces
-    public synchronized void markAsCommitting( byte globalId[], ForceMode forceMode )
+    public void markAsCommitting( byte globalId[], ForceMode forceMode )
+        throws IOException
+    {
+        long ticket = writeMarkAsCommitting( globalId, forceMode );
+        if ( ticket != 0 )
+        {
+            groupCommit.awaitForced( ticket );
+        }
+    }
+
+    private synchronized long writeMarkAsCommitting( byte globalId[], ForceMode forceMode )
         throws IOException
     {
         assertNotNull( globalId, "global id" );
         assertActive( globalId );
         
         logBuffer.put( MARK_COMMIT ).put( (byte) globalId.length ).put( globalId );
-        forceMode.force( logBuffer );
         recordCount++;
+        if ( forceMode != ForceMode.forced )
+        {
+            forceMode.force( logBuffer );
+            return 0;
+        }
+        if ( groupCommit.isEnabled() )
+        {
+            logBuffer.writeOut();
+            return groupCommit.appended();
+        }
+        long start = System.nanoTime();
+        forceMode.force( logBuffer );
+        groupCommit.forced( 1, System.nanoTime() - start );
+        return 0;
+    }
+
+    private void forceLogChannel() throws IOException
+    {
+        synchronized ( logChannelForceLock )
+        {
+            FileChannel channel = logBuffer.getFileChannel();
+            if ( channel.isOpen() )
+            {
+                channel.force( false );
+            }
+        }
+    }
+
+    public GroupCommit getGroupCommit()
+    {
+        return groupCommit;
     }
 
     /**
@@ -47,6 +47,7 @@ import org.neo4j.kernel.impl.core.KernelPanicEventGenerator;
 import org.neo4j.kernel.impl.core.TransactionState;
 import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
 import org.neo4j.kernel.impl.transaction.xaframework.ForceMode;
+import org.neo4j.kernel.impl.transaction.xaframework.GroupCommit;
 import org.neo4j.kernel.impl.transaction.xaframework.XaDataSource;
 import org.neo4j.kernel.impl.transaction.xaframework.XaResource;
 import org.neo4j.kernel.impl.util.ExceptionCauseSetter;
@@ -88,6 +89,8 @@ public class TxManager extends AbstractTransactionManager implements Lifecycle
 
     private Throwable recoveryError;
     private final TransactionStateFactory stateFactory;
+    private final boolean groupCommit;
+    private final long groupCommitMaxWait;
 
     public TxManager( File txLogDir,
                       XaDataSourceManager xaDataSourceManager,
@@ -97,6 +100,21 @@ public class TxManager extends AbstractTransactionManager implements Lifecycle
                       TransactionStateFactory stateFactory
     )
     {
+        this( txLogDir, xaDataSourceManager, kpe, log, fileSystem, stateFactory, false, 0 );
+    }
+
+    public TxManager( File txLogDir,
+                      XaDataSourceManager xaDataSourceManager,
+                      KernelPanicEventGenerator kpe,
+                      StringLogger log,
+                      FileSystemAbstraction fileSystem,
+                      TransactionStateFactory stateFactory,
+                      boolean groupCommit,
+                      long groupCommitMaxWait
+    )
+    {
+        this.groupCommit = groupCommit;
+        this.groupCommitMaxWait = groupCommitMaxWait;
         this.txLogDir = txLogDir;
         this.xaDataSourceManager = xaDataSourceManager;
         this.fileSystem = fileSystem;
@@ -727,7 +745,7 @@ public class TxManager extends AbstractTransactionManager implements Lifecycle
                                     "Unable to start TM, " + "active tx log file[" +
                                             currentTxLog + "] not found." ) );
                 }
-                txLog = new TxLog( currentTxLog, fileSystem );
+                txLog = new TxLog( currentTxLog, fileSystem, groupCommit, groupCommitMaxWait );
                 log.logMessage( "TM opening log: " + currentTxLog, true );
             }
             else
@@ -747,7 +765,7 @@ public class TxManager extends AbstractTransactionManager implements Lifecycle
                         .getBytes( "UTF-8" ) );
                 FileChannel fc = fileSystem.open( logSwitcherFileName, "rw" );
                 fc.write( buf );
-                txLog = new TxLog( new File( txLogDir, txLog1FileName), fileSystem );
+                txLog = new TxLog( new File( txLogDir, txLog1FileName), fileSystem, groupCommit, groupCommitMaxWait );
                 log.logMessage( "TM new log: " + txLog1FileName, true );
                 fc.force( true );
                 fc.close();
@@ -929,6 +947,16 @@ public class TxManager extends AbstractTransactionManager implements Lifecycle
         return peakConcurrentTransactions;
     }
 
+    /**
+     * @return the force statistics of the transaction log, or {@code null}
+     * if the transaction manager isn't started.
+     */
+    public GroupCommit getTxLogGroupCommit()
+    {
+        TxLog currentLog = txLog;
+        return currentLog != null ? currentLog.getGroupCommit() : null;
+    }
+
     @Override
     public TransactionState getTransactionState()
     {
@@ -0,0 +1,228 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.xaframework;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lets concurrent committers share a single force of a log. Each committer
+ * appends its commit record and writes it out to the file channel while
+ * holding the log monitor, takes a ticket with {@link #appended()}, leaves
+ * the monitor and then calls {@link #awaitForced(long)}. The first waiting
+ * committer becomes the leader and forces the log on behalf of everyone that
+ * has appended so far, the others wait for the leader to finish. A new leader
+ * is elected among the remaining waiters for the next batch.
+ * <p>
+ * If the previous batch contained more than one commit the leader waits up
+ * to the configured max wait for about as many committers to append before
+ * it forces, so that the batch doesn't fall apart under steady load.
+ * <p>
+ * Batch size and force latency statistics are kept also when group commit is
+ * disabled, the log then reports each force through {@link #forced(int, long)}.
+ */
+public class GroupCommit
+{
+    public interface Force
+    {
+        void force() throws IOException;
+    }
+
+    private final Force force;
+    private final boolean enabled;
+    private final long maxWaitNanos;
+
+    private final AtomicLong appended = new AtomicLong();
+    private volatile long forced;
+    private boolean forcing;
+    private volatile int lastBatchSize;
+
+    private long forceCount;
+    private long forcedCommitCount;
+    private int maxBatchSize;
+    private long totalForceTimeNanos;
+    private long maxForceTimeNanos;
+
+    public GroupCommit( boolean enabled, long maxWaitMillis, Force force )
+    {
+        this.enabled = enabled;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos( maxWaitMillis );
+        this.force = force;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Must be called after the commit record has been written out to the
+     * file channel, while still holding the monitor of the log.
+     *
+     * @return the ticket to wait for with {@link #awaitForced(long)}.
+     */
+    public long appended()
+    {
+        return appended.incrementAndGet();
+    }
+
+    /**
+     * Returns when everything appended up to and including {@code ticket} has
+     * been forced to disk, forcing the log itself if no one else is doing it.
+     * Must not be called while holding the monitor of the log.
+     */
+    public void awaitForced( long ticket ) throws IOException
+    {
+        boolean interrupted = false;
+        try
+        {
+            synchronized ( this )
+            {
+                while ( true )
+                {
+                    if ( forced >= ticket )
+                    {
+                        return;
+                    }
+                    if ( !forcing )
+                    {
+                        forcing = true;
+                        break;
+                    }
+                    try
+                    {
+                        wait();
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        // The commit record is already written, we have to see it forced
+                        interrupted = true;
+                    }
+                }
+            }
+            lead();
+        }
+        finally
+        {
+            if ( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void lead() throws IOException
+    {
+        try
+        {
+            gatherBatch();
+            long highest = appended.get();
+            long start = System.nanoTime();
+            force.force();
+            long time = System.nanoTime() - start;
+            synchronized ( this )
+            {
+                int batchSize = (int) (highest - forced);
+                forced = highest;
+                lastBatchSize = batchSize;
+                forced( batchSize, time );
+            }
+        }
+        finally
+        {
+            synchronized ( this )
+            {
+                forcing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    private void gatherBatch()
+    {
+        int expected = lastBatchSize;
+        if ( maxWaitNanos <= 0 || expected <= 1 )
+        {
+            return;
+        }
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while ( appended.get() - forced < expected )
+        {
+            long remaining = deadline - System.nanoTime();
+            if ( remaining <= 0 )
+            {
+                return;
+            }
+            LockSupport.parkNanos( Math.min( remaining, 20000 ) );
+        }
+    }
+
+    /**
+     * Records a force of the log that made {@code batchSize} commits durable.
+     */
+    public synchronized void forced( int batchSize, long forceTimeNanos )
+    {
+        forceCount++;
+        forcedCommitCount += batchSize;
+        maxBatchSize = Math.max( maxBatchSize, batchSize );
+        totalForceTimeNanos += forceTimeNanos;
+        maxForceTimeNanos = Math.max( maxForceTimeNanos, forceTimeNanos );
+    }
+
+    public synchronized long getForceCount()
+    {
+        return forceCount;
+    }
+
+    public synchronized long getForcedCommitCount()
+    {
+        return forcedCommitCount;
+    }
+
+    public synchronized double getAverageBatchSize()
+    {
+        return forceCount == 0 ? 0 : (double) forcedCommitCount / forceCount;
+    }
+
+    public synchronized int getMaxBatchSize()
+    {
+        return maxBatchSize;
+    }
+
+    public synchronized long getAverageForceTime( TimeUnit unit )
+    {
+        return forceCount == 0 ? 0 : unit.convert( totalForceTimeNanos / forceCount, TimeUnit.NANOSECONDS );
+    }
+
+    public synchronized long getMaxForceTime( TimeUnit unit )
+    {
+        return unit.convert( maxForceTimeNanos, TimeUnit.NANOSECONDS );
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return getClass().getSimpleName() + "[" + (enabled ? "enabled" : "disabled") + ", forces:" + forceCount
+                + ", commits:" + forcedCommitCount + ", max batch:" + maxBatchSize + ", avg force:"
+                + getAverageForceTime( TimeUnit.MICROSECONDS ) + "us]";
+    }
+}
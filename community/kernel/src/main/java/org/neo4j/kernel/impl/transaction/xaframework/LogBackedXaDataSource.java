@@ -134,6 +134,12 @@ public abstract class LogBackedXaDataSource extends XaDataSource
         logicalLog.getPreparedTransaction( identifier, targetBuffer );
     }
 
+    @Override
+    public long getLastCommittingTxId()
+    {
+        return getXaContainer().getResourceManager().getLastCommittingTxId();
+    }
+
     @Override
     public Pair<Integer,Long> getMasterForCommittedTx( long txId ) throws IOException
     {
@@ -27,7 +27,7 @@ public interface TxIdGenerator
     {
         public long generate( XaDataSource dataSource, int identifier )
         {
-            return dataSource.getLastCommittedTxId() + 1;
+            return dataSource.getLastCommittingTxId() + 1;
         }
         
         public int getCurrentMasterId()
@@ -251,6 +251,17 @@ public abstract class XaDataSource implements Lifecycle
         throw new UnsupportedOperationException( getClass().getName() );
     }
     
+    /**
+     * Returns the tx id of the last transaction that has written its commit
+     * record to the logical log. Transactions waiting for the log to be
+     * forced haven't been applied yet, so this may be ahead of
+     * {@link #getLastCommittedTxId()}.
+     */
+    public long getLastCommittingTxId()
+    {
+        return getLastCommittedTxId();
+    }
+
     public void setLastCommittedTxId( long txId )
     {
         throw new UnsupportedOperationException( getClass().getName() );
@@ -75,7 +75,7 @@ import org.neo4j.kernel.logging.Logging;
  */
 public class XaLogicalLog implements LogLoader
 {
-    private FileChannel fileChannel = null;
+    private volatile FileChannel fileChannel = null;
     private final ByteBuffer sharedBuffer;
     private LogBuffer writeBuffer = null;
     private long previousLogLastCommittedTx = -1;
@@ -112,9 +112,21 @@ public class XaLogicalLog implements LogLoader
 
     private final TransactionStateFactory stateFactory;
 
+    private final GroupCommit groupCommit;
+    // Guards closing of the log channel against a concurrent group commit force
+    private final Object logChannelForceLock = new Object();
+
     public XaLogicalLog( File fileName, XaResourceManager xaRm, XaCommandFactory cf,
                          XaTransactionFactory xaTf, LogBufferFactory logBufferFactory, FileSystemAbstraction fileSystem,
                          Logging logging, LogPruneStrategy pruneStrategy, TransactionStateFactory stateFactory )
+    {
+        this( fileName, xaRm, cf, xaTf, logBufferFactory, fileSystem, logging, pruneStrategy, stateFactory, false, 0 );
+    }
+
+    public XaLogicalLog( File fileName, XaResourceManager xaRm, XaCommandFactory cf,
+                         XaTransactionFactory xaTf, LogBufferFactory logBufferFactory, FileSystemAbstraction fileSystem,
+                         Logging logging, LogPruneStrategy pruneStrategy, TransactionStateFactory stateFactory,
+                         boolean groupCommit, long groupCommitMaxWait )
     {
         this.fileName = fileName;
         this.xaRm = xaRm;
@@ -131,6 +143,14 @@ public class XaLogicalLog implements LogLoader
         msgLog = logging.getLogger( getClass() );
 
         this.partialTransactionCopier = new PartialTransactionCopier( sharedBuffer, cf, msgLog, positionCache, this, xidIdentMap );
+        this.groupCommit = new GroupCommit( groupCommit, groupCommitMaxWait, new GroupCommit.Force()
+        {
+            @Override
+            public void force() throws IOException
+            {
+                forceLogChannel();
+            }
+        } );
     }
 
     synchronized void open() throws IOException
@@ -330,23 +350,10 @@ public class XaLogicalLog implements LogLoader
     }
 
     // [TX_1P_COMMIT][identifier]
-    public synchronized void commitOnePhase( int identifier, long txId, ForceMode forceMode )
+    public void commitOnePhase( int identifier, long txId, ForceMode forceMode )
             throws XAException
     {
-        LogEntry.Start startEntry = xidIdentMap.get( identifier );
-        assert startEntry != null;
-        assert txId != -1;
-        try
-        {
-            positionCache.cacheStartPosition( txId, startEntry, logVersion );
-            LogIoUtils.writeCommit( false, writeBuffer, identifier, txId, System.currentTimeMillis() );
-            forceMode.force( writeBuffer );
-        }
-        catch ( IOException e )
-        {
-            throw Exceptions.withCause(
-                    new XAException( "Logical log unable to mark 1P-commit [" + identifier + "] " ), e );
-        }
+        awaitCommitForced( writeCommit( false, identifier, txId, forceMode ), identifier );
     }
 
     // [DONE][identifier]
@@ -387,7 +394,20 @@ public class XaLogicalLog implements LogLoader
     }
 
     // [TX_2P_COMMIT][identifier]
-    public synchronized void commitTwoPhase( int identifier, long txId, ForceMode forceMode )
+    public void commitTwoPhase( int identifier, long txId, ForceMode forceMode )
+            throws XAException
+    {
+        awaitCommitForced( writeCommit( true, identifier, txId, forceMode ), identifier );
+    }
+
+    /**
+     * Writes the commit entry like {@link #commitOnePhase(int, long, ForceMode)}
+     * and {@link #commitTwoPhase(int, long, ForceMode)} do, but with group
+     * commit enabled it doesn't wait for the log to be forced. The returned
+     * ticket must then be passed to {@link #awaitCommitForced(long, int)}
+     * without holding any monitor that other committers need.
+     */
+    synchronized long writeCommit( boolean twoPhase, int identifier, long txId, ForceMode forceMode )
             throws XAException
     {
         LogEntry.Start startEntry = xidIdentMap.get( identifier );
@@ -396,15 +416,75 @@ public class XaLogicalLog implements LogLoader
         try
         {
             positionCache.cacheStartPosition( txId, startEntry, logVersion );
-            LogIoUtils.writeCommit( true, writeBuffer, identifier, txId, System.currentTimeMillis() );
+            LogIoUtils.writeCommit( twoPhase, writeBuffer, identifier, txId, System.currentTimeMillis() );
+            return force( forceMode );
+        }
+        catch ( IOException e )
+        {
+            throw Exceptions.withCause( new XAException( "Logical log unable to mark " +
+                    (twoPhase ? "2PC" : "1P-commit") + " [" + identifier + "] " ), e );
+        }
+    }
+
+    /**
+     * Forces the write buffer as told by {@code forceMode}. With group commit
+     * enabled a forced commit is only written out to the channel and the
+     * returned ticket has to be passed to {@link #awaitCommitForced(long, int)}
+     * after leaving the monitor of this log. Returns 0 if there's nothing
+     * to wait for.
+     */
+    private long force( ForceMode forceMode ) throws IOException
+    {
+        if ( forceMode != ForceMode.forced )
+        {
             forceMode.force( writeBuffer );
+            return 0;
+        }
+        if ( groupCommit.isEnabled() )
+        {
+            writeBuffer.writeOut();
+            return groupCommit.appended();
+        }
+        long start = System.nanoTime();
+        forceMode.force( writeBuffer );
+        groupCommit.forced( 1, System.nanoTime() - start );
+        return 0;
+    }
+
+    void awaitCommitForced( long ticket, int identifier ) throws XAException
+    {
+        if ( ticket == 0 )
+        {
+            return;
+        }
+        try
+        {
+            groupCommit.awaitForced( ticket );
         }
         catch ( IOException e )
         {
-            throw Exceptions.withCause( new XAException( "Logical log unable to mark 2PC [" + identifier + "] " ), e );
+            throw Exceptions.withCause( new XAException( "Logical log unable to force commit [" + identifier + "] " ),
+                    e );
         }
     }
 
+    private void forceLogChannel() throws IOException
+    {
+        synchronized ( logChannelForceLock )
+        {
+            FileChannel channel = fileChannel;
+            if ( channel != null && channel.isOpen() )
+            {
+                channel.force( false );
+            }
+        }
+    }
+
+    public GroupCommit getGroupCommit()
+    {
+        return groupCommit;
+    }
+
     // [COMMAND][identifier][COMMAND_DATA]
     public synchronized void writeCommand( XaCommand command, int identifier )
             throws IOException
@@ -674,8 +754,11 @@ public class XaLogicalLog implements LogLoader
         {
             writeBuffer.force();
         }
-        fileChannel.close();
-        fileChannel = null;
+        synchronized ( logChannelForceLock )
+        {
+            fileChannel.close();
+            fileChannel = null;
+        }
     }
 
     public synchronized void close() throws IOException
@@ -691,7 +774,10 @@ public class XaLogicalLog implements LogLoader
             msgLog.info( "Close invoked with " + xidIdentMap.size() +
                     " running transaction(s). " );
             writeBuffer.force();
-            fileChannel.close();
+            synchronized ( logChannelForceLock )
+            {
+                fileChannel.close();
+            }
             msgLog.info( "Dirty log: " + fileName + "." + currentLog +
                     " now closed. Recovery will be started automatically next " +
                     "time it is opened." );
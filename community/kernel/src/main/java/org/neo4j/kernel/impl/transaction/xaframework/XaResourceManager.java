@@ -50,6 +50,7 @@ public class XaResourceManager
         new ArrayMap<Xid,XidStatus>();
     private int recoveredTxCount = 0;
     private final Set<TransactionInfo> recoveredTransactions = new HashSet<TransactionInfo>();
+    private final LinkedList<Long> committingTxIds = new LinkedList<Long>();
 
     private XaLogicalLog log = null;
     private final XaTransactionFactory tf;
@@ -425,6 +426,8 @@ public class XaResourceManager
     {
         XaTransaction xaTransaction;
         boolean isReadOnly;
+        long forceTicket = 0;
+        boolean committing = false;
 
         synchronized ( this )
         {
@@ -450,8 +453,9 @@ public class XaResourceManager
                         long txId = txIdGenerator.generate( dataSource,
                                 xaTransaction.getIdentifier() );
                         xaTransaction.setCommitTxId( txId );
-                        log.commitOnePhase( xaTransaction.getIdentifier(),
+                        forceTicket = log.writeCommit( false, xaTransaction.getIdentifier(),
                                 xaTransaction.getCommitTxId(), getForceMode() );
+                        committing = true;
                     }
                 }
             }
@@ -469,41 +473,87 @@ public class XaResourceManager
                         long txId = txIdGenerator.generate( dataSource,
                                 xaTransaction.getIdentifier() );
                         xaTransaction.setCommitTxId( txId );
-                        log.commitTwoPhase( xaTransaction.getIdentifier(),
+                        forceTicket = log.writeCommit( true, xaTransaction.getIdentifier(),
                                 xaTransaction.getCommitTxId(), getForceMode() );
+                        committing = true;
                     }
                 }
                 txStatus.markCommitStarted();
-                if ( xaTransaction.isRecovered() && xaTransaction.getCommitTxId() == -1 )
+            }
+            if ( committing )
+            {
+                committingTxIds.add( xaTransaction.getCommitTxId() );
+            }
+        }
+
+        if ( committing )
+        {
+            // With group commit the commit entry has only been written out, wait outside of the monitor
+            // for it to be forced along with other committing transactions before touching the store
+            try
+            {
+                log.awaitCommitForced( forceTicket, xaTransaction.getIdentifier() );
+            }
+            catch ( XAException e )
+            {
+                synchronized ( this )
                 {
-                    boolean previousRecoveredValue = dataSource.setRecovered( true );
-                    try
-                    {
-                        xaTransaction.setCommitTxId( dataSource.getLastCommittedTxId() + 1 );
-                    }
-                    finally
-                    {
-                        dataSource.setRecovered( previousRecoveredValue );
-                    }
+                    committingTxIds.remove( Long.valueOf( xaTransaction.getCommitTxId() ) );
+                    notifyAll();
                 }
-                xaTransaction.commit();
+                throw e;
             }
-            if ( !xaTransaction.isRecovered() )
+        }
+
+        synchronized ( this )
+        {
+            if ( committing )
             {
-                log.done( xaTransaction.getIdentifier() );
+                awaitTurnToApply( xaTransaction.getCommitTxId() );
             }
-            else if ( !log.scanIsComplete() || recoveredTxCount > 0 )
+            try
             {
-                int identifier = xaTransaction.getIdentifier();
-                Start startEntry = log.getStartEntry( identifier );
-                recoveredTransactions.add( new TransactionInfo( identifier, onePhase,
-                        xaTransaction.getCommitTxId(), startEntry.getMasterId(), startEntry.getChecksum() ) );
+                if ( !isReadOnly )
+                {
+                    if ( xaTransaction.isRecovered() && xaTransaction.getCommitTxId() == -1 )
+                    {
+                        boolean previousRecoveredValue = dataSource.setRecovered( true );
+                        try
+                        {
+                            xaTransaction.setCommitTxId( dataSource.getLastCommittedTxId() + 1 );
+                        }
+                        finally
+                        {
+                            dataSource.setRecovered( previousRecoveredValue );
+                        }
+                    }
+                    xaTransaction.commit();
+                }
+                if ( !xaTransaction.isRecovered() )
+                {
+                    log.done( xaTransaction.getIdentifier() );
+                }
+                else if ( !log.scanIsComplete() || recoveredTxCount > 0 )
+                {
+                    int identifier = xaTransaction.getIdentifier();
+                    Start startEntry = log.getStartEntry( identifier );
+                    recoveredTransactions.add( new TransactionInfo( identifier, onePhase,
+                            xaTransaction.getCommitTxId(), startEntry.getMasterId(), startEntry.getChecksum() ) );
+                }
+                xidMap.remove( xid );
+                if ( xaTransaction.isRecovered() )
+                {
+                    recoveredTxCount--;
+                    checkIfRecoveryComplete();
+                }
             }
-            xidMap.remove( xid );
-            if ( xaTransaction.isRecovered() )
+            finally
             {
-                recoveredTxCount--;
-                checkIfRecoveryComplete();
+                if ( committing )
+                {
+                    committingTxIds.removeFirst();
+                    notifyAll();
+                }
             }
         }
 
@@ -512,6 +562,80 @@ public class XaResourceManager
         return xaTransaction;
     }
 
+    /**
+     * Transactions are applied to the store in the order their commit
+     * records were written, which is the order of their tx ids. Must be
+     * called while holding the monitor.
+     */
+    private void awaitTurnToApply( long txId )
+    {
+        boolean interrupted = false;
+        try
+        {
+            while ( committingTxIds.getFirst().longValue() != txId )
+            {
+                try
+                {
+                    wait();
+                }
+                catch ( InterruptedException e )
+                {
+                    // The commit record is already forced, we have to see it applied
+                    interrupted = true;
+                }
+            }
+        }
+        finally
+        {
+            if ( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Waits for transactions that have written their commit record, but not
+     * yet been applied to the store, to be applied. Must be called while
+     * holding the monitor.
+     */
+    private void awaitCommittingTransactions()
+    {
+        boolean interrupted = false;
+        try
+        {
+            while ( !committingTxIds.isEmpty() )
+            {
+                try
+                {
+                    wait();
+                }
+                catch ( InterruptedException e )
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        finally
+        {
+            if ( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns the tx id of the last transaction that has written its commit
+     * record to the log. It is ahead of the last committed tx id of the data
+     * source while transactions are waiting for the log to be forced before
+     * they are applied to the store.
+     */
+    public synchronized long getLastCommittingTxId()
+    {
+        return committingTxIds.isEmpty() ? dataSource.getLastCommittedTxId() : committingTxIds.getLast().longValue();
+    }
+
     private ForceMode getForceMode()
     {
         return transactionManager.getForceMode();
@@ -760,6 +884,7 @@ public class XaResourceManager
     public synchronized void applyCommittedTransaction(
             ReadableByteChannel transaction, long txId ) throws IOException
     {
+        awaitCommittingTransactions();
         long lastCommittedTxId = dataSource.getLastCommittedTxId();
         if ( lastCommittedTxId + 1 == txId )
         {
@@ -775,6 +900,7 @@ public class XaResourceManager
     public synchronized long applyPreparedTransaction(
             ReadableByteChannel transaction ) throws IOException
     {
+        awaitCommittingTransactions();
         try
         {
             long txId = TxIdGenerator.DEFAULT.generate( dataSource, 0 );
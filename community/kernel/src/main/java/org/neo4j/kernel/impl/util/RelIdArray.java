@@ -85,6 +85,13 @@ public class RelIdArray implements SizeOf
     
     public static final RelIdArray EMPTY = new EmptyRelIdArray( -1 );
     
+    /**
+     * Blocks with at least this many ids get packed into delta encoded varints
+     * when they are {@link #shrink() shrunk}, i.e. when all relationships of a
+     * node have been loaded. Smaller blocks aren't worth the extra decoding.
+     */
+    public static final int COMPRESSION_THRESHOLD = 128;
+    
     private final int type;
     private IdBlock lastOutBlock;
     private IdBlock lastInBlock;
@@ -130,7 +137,7 @@ public class RelIdArray implements SizeOf
     {
         IdBlock lastBlock = direction.getLastBlock( this );
         long highBits = id&0xFFFFFFFF00000000L;
-        if ( lastBlock == null || lastBlock.getHighBits() != highBits )
+        if ( lastBlock == null || lastBlock.getHighBits() != highBits || lastBlock.isPacked() )
         {
             IdBlock newLastBlock = null;
             if ( highBits == 0 && lastBlock == null )
@@ -210,7 +217,7 @@ public class RelIdArray implements SizeOf
             {
                 direction.setLastBlock( this, fromBlock.copy() );
             }
-            else if ( toBlock.getHighBits() == fromBlock.getHighBits() )
+            else if ( toBlock.getHighBits() == fromBlock.getHighBits() && !toBlock.isPacked() )
             {
                 toBlock.addAll( fromBlock );
                 if ( fromBlock.getPrev() != null )
@@ -270,6 +277,16 @@ public class RelIdArray implements SizeOf
         return direction.iterator( this );
     }
     
+    /**
+     * Unlike {@link #iterator(DirectionWrapper)}, which includes the loops for
+     * {@link DirectionWrapper#OUTGOING} and {@link DirectionWrapper#INCOMING},
+     * this only returns the ids added with exactly {@code direction}.
+     */
+    public RelIdIterator exactIterator( DirectionWrapper direction )
+    {
+        return new RelIdIteratorImpl( this, new DirectionWrapper[] { direction } );
+    }
+    
     public RelIdArray newSimilarInstance()
     {
         return new RelIdArray( type );
@@ -379,7 +396,17 @@ public class RelIdArray implements SizeOf
     public static abstract class IdBlock implements SizeOf
     {
         // First element is the actual length w/o the slack
-        private int[] ids = new int[3];
+        private int[] ids;
+        
+        IdBlock()
+        {
+            this( new int[3] );
+        }
+        
+        IdBlock( int[] ids )
+        {
+            this.ids = ids;
+        }
         
         /**
          * @return a copy of itself. The copy is also shrunk so that there's no
@@ -396,18 +423,104 @@ public class RelIdArray implements SizeOf
         
         public int size()
         {
-            return withObjectOverhead( withReference( withArrayOverhead( 4*ids.length ) ) );
+            return withObjectOverhead( withReference( sizeOfIds() ) );
+        }
+        
+        int sizeOfIds()
+        {
+            return withArrayOverhead( 4*ids.length );
         }
         
         /**
          * @return a shrunk version of itself. It returns itself if there is
-         * no need to shrink it or a {@link #copy()} if there is slack in the array.
+         * no need to shrink it, a {@link PackedIdBlock} if it has at least
+         * {@link RelIdArray#COMPRESSION_THRESHOLD} ids which pack well or
+         * a {@link #copy()} if there is slack in the array.
          */
         IdBlock shrink()
         {
+            IdBlock packedBlock = length() >= COMPRESSION_THRESHOLD ? pack() : null;
+            if ( packedBlock != null )
+            {
+                return packedBlock;
+            }
             return length() == ids.length-1 ? this : copy();
         }
         
+        /**
+         * @return a packed copy of this block, or {@code null} if packing
+         * wouldn't save at least a quarter of the memory for the ids.
+         */
+        private IdBlock pack()
+        {
+            int length = length();
+            int bytes = 0;
+            int previous = 0;
+            for ( int i = 1; i <= length; i++ )
+            {
+                bytes += varIntSize( zigZag( ids[i]-previous ) );
+                previous = ids[i];
+            }
+            if ( bytes > length*3 )
+            {
+                return null;
+            }
+            
+            byte[] target = new byte[bytes];
+            int offset = 0;
+            previous = 0;
+            for ( int i = 1; i <= length; i++ )
+            {
+                int value = zigZag( ids[i]-previous );
+                while ( (value & ~0x7F) != 0 )
+                {
+                    target[offset++] = (byte) ((value & 0x7F) | 0x80);
+                    value >>>= 7;
+                }
+                target[offset++] = (byte) value;
+                previous = ids[i];
+            }
+            return new PackedIdBlock( getHighBits(), target, length );
+        }
+        
+        private static int zigZag( int delta )
+        {
+            return (delta << 1) ^ (delta >> 31);
+        }
+        
+        private static int varIntSize( int value )
+        {
+            int size = 1;
+            while ( (value & ~0x7F) != 0 )
+            {
+                value >>>= 7;
+                size++;
+            }
+            return size;
+        }
+        
+        boolean isPacked()
+        {
+            return false;
+        }
+        
+        /**
+         * @return the ids in the layout of {@link #ids}, for a packed block decoded into a new array.
+         */
+        int[] unpackedIds()
+        {
+            return ids;
+        }
+        
+        /**
+         * @return this block, or if it or any block before it is packed, a copy of the chain
+         * with those blocks unpacked so that it can be modified.
+         */
+        IdBlock unpacked()
+        {
+            return this;
+        }
+        
         /**
          * Upgrades to a {@link HighIdBlock} if this is a {@link LowIdBlock}.
          */
@@ -455,9 +568,10 @@ public class RelIdArray implements SizeOf
         
         void addAll( IdBlock block )
         {
-            int otherBlockLength = block.length();
+            int[] otherIds = block.unpackedIds();
+            int otherBlockLength = otherIds[0];
             int length = ensureSpace( otherBlockLength+1 );
-            System.arraycopy( block.ids, 1, ids, length+1, otherBlockLength );
+            System.arraycopy( otherIds, 1, ids, length+1, otherBlockLength );
             ids[0] = otherBlockLength+length;
         }
         
@@ -523,6 +637,12 @@ public class RelIdArray implements SizeOf
             this.highBits = highBits;
         }
         
+        HighIdBlock( long highBits, int[] ids )
+        {
+            super( ids );
+            this.highBits = highBits;
+        }
+        
         public int size()
         {
             int size = super.size() + 8 + SizeOfs.REFERENCE_SIZE;
@@ -549,6 +669,40 @@ public class RelIdArray implements SizeOf
             }
             return copy;
         }
+        
+        /**
+         * Shrinks the whole chain of blocks, not only this one, since
+         * all of them may be big enough to be packed.
+         */
+        @Override
+        IdBlock shrink()
+        {
+            IdBlock shrunkPrev = prev != null ? prev.shrink() : null;
+            IdBlock shrunk = super.shrink();
+            if ( shrunk == this )
+            {
+                if ( shrunkPrev == prev )
+                {
+                    return this;
+                }
+                shrunk = new HighIdBlock( highBits, ((IdBlock)this).ids );
+            }
+            shrunk.setPrev( shrunkPrev );
+            return shrunk;
+        }
+        
+        @Override
+        IdBlock unpacked()
+        {
+            IdBlock unpackedPrev = prev != null ? prev.unpacked() : null;
+            if ( unpackedPrev == prev )
+            {
+                return this;
+            }
+            IdBlock unpacked = new HighIdBlock( highBits, ((IdBlock)this).ids );
+            unpacked.setPrev( unpackedPrev );
+            return unpacked;
+        }
 
         @Override
         IdBlock getPrev()
@@ -581,11 +735,178 @@ public class RelIdArray implements SizeOf
         }
     }
     
+    /**
+     * The ids of a shrunk block, each one as a zig-zag varint of the delta to
+     * the id before it, in the same order as they were added. It's immutable
+     * apart from the chain of blocks before it: anything that would modify the
+     * ids works on an {@link #unpacked()} copy, or appends a new block after it.
+     * That also makes it safe for iterators to read concurrently.
+     */
+    private static class PackedIdBlock extends HighIdBlock
+    {
+        private final byte[] packed;
+        private final int length;
+        
+        PackedIdBlock( long highBits, byte[] packed, int length )
+        {
+            super( highBits, null );
+            this.packed = packed;
+            this.length = length;
+        }
+        
+        @Override
+        int sizeOfIds()
+        {
+            // The packed ids and their count, on top of the (null) ids reference
+            return withReference( 4 + withArrayOverhead( packed.length ) );
+        }
+        
+        @Override
+        IdBlock copy()
+        {
+            IdBlock copy = copyInstance();
+            if ( getPrev() != null )
+            {
+                copy.setPrev( getPrev().copy() );
+            }
+            return copy;
+        }
+        
+        @Override
+        IdBlock shrink()
+        {
+            IdBlock prev = getPrev();
+            IdBlock shrunkPrev = prev != null ? prev.shrink() : null;
+            if ( shrunkPrev == prev )
+            {
+                return this;
+            }
+            IdBlock shrunk = copyInstance();
+            shrunk.setPrev( shrunkPrev );
+            return shrunk;
+        }
+        
+        @Override
+        boolean isPacked()
+        {
+            return true;
+        }
+        
+        @Override
+        int[] unpackedIds()
+        {
+            int[] result = new int[length+1];
+            PackedIdReader reader = new PackedIdReader();
+            reader.reset( packed );
+            for ( int i = 1; i <= length; i++ )
+            {
+                result[i] = reader.next();
+            }
+            result[0] = length;
+            return result;
+        }
+        
+        @Override
+        IdBlock unpacked()
+        {
+            IdBlock unpacked = new HighIdBlock( getHighBits(), unpackedIds() );
+            if ( getPrev() != null )
+            {
+                unpacked.setPrev( getPrev().unpacked() );
+            }
+            return unpacked;
+        }
+        
+        @Override
+        int length()
+        {
+            return length;
+        }
+        
+        @Override
+        protected IdBlock copyInstance()
+        {
+            return new PackedIdBlock( getHighBits(), packed, length );
+        }
+        
+        @Override
+        void add( int id )
+        {
+            throw new UnsupportedOperationException( "Packed blocks are immutable" );
+        }
+        
+        @Override
+        int ensureSpace( int delta )
+        {
+            throw new UnsupportedOperationException( "Packed blocks are immutable" );
+        }
+        
+        @Override
+        void set( long id, int index )
+        {
+            throw new UnsupportedOperationException( "Packed blocks are immutable" );
+        }
+        
+        /**
+         * Random access into a packed block means decoding from the start,
+         * iterate with {@link IteratorState} instead.
+         */
+        @Override
+        long get( int index )
+        {
+            assert index >= 0 && index < length;
+            PackedIdReader reader = new PackedIdReader();
+            reader.reset( packed );
+            while ( reader.position < index )
+            {
+                reader.next();
+            }
+            return transform( reader.next() );
+        }
+    }
+    
+    /**
+     * Decodes the ids of a packed {@link IdBlock} one at a time.
+     */
+    private static class PackedIdReader
+    {
+        private byte[] packed;
+        private int offset;
+        private int position;
+        private int value;
+        
+        void reset( byte[] packed )
+        {
+            this.packed = packed;
+            this.offset = 0;
+            this.position = 0;
+            this.value = 0;
+        }
+        
+        int next()
+        {
+            int zigZag = 0;
+            for ( int shift = 0; ; shift += 7 )
+            {
+                byte b = packed[offset++];
+                zigZag |= (b & 0x7F) << shift;
+                if ( b >= 0 )
+                {
+                    break;
+                }
+            }
+            value += (zigZag >>> 1) ^ -(zigZag & 1);
+            position++;
+            return value;
+        }
+    }
+    
     private static class IteratorState
     {
         private int blockIndex;
         private IdBlock block;
         private int relativePosition;
+        private PackedIdReader reader;
         
         public IteratorState( IdBlock block, int relativePosition )
         {
@@ -615,7 +936,27 @@ public class RelIdArray implements SizeOf
          */
         long next()
         {
-            return block.get( relativePosition++ );
+            if ( !block.isPacked() )
+            {
+                return block.get( relativePosition++ );
+            }
+            byte[] packed = ((PackedIdBlock) block).packed;
+            if ( reader == null )
+            {
+                reader = new PackedIdReader();
+            }
+            if ( reader.packed != packed || reader.position != relativePosition )
+            {
+                // First read from this block, or the block got replaced by a shrunk
+                // one when the last relationships got loaded, seek to our position
+                reader.reset( packed );
+                while ( reader.position < relativePosition )
+                {
+                    reader.next();
+                }
+            }
+            relativePosition++;
+            return block.transform( reader.next() );
         }
 
         public void update( IdBlock lastBlock )
@@ -814,6 +1155,7 @@ public class RelIdArray implements SizeOf
             {
                 newArray = src.newSimilarInstance();
                 newArray.addAll( src );
+                unpack( newArray );
                 evictExcluded( newArray, remove );
             }
             else
@@ -836,6 +1178,22 @@ public class RelIdArray implements SizeOf
         }
     }
 
+    /**
+     * Replaces packed blocks with unpacked copies, so that {@link #evictExcluded(RelIdArray, Collection)}
+     * can modify them without touching blocks that other arrays or iterators may see.
+     */
+    private static void unpack( RelIdArray ids )
+    {
+        for ( DirectionWrapper direction : DirectionWrapper.values() )
+        {
+            IdBlock block = direction.getLastBlock( ids );
+            if ( block != null )
+            {
+                direction.setLastBlock( ids, block.unpacked() );
+            }
+        }
+    }
+
     private static void evictExcluded( RelIdArray ids, Collection<Long> excluded )
     {
         for ( RelIdIteratorImpl iterator = (RelIdIteratorImpl) DirectionWrapper.BOTH.iterator( ids ); iterator.hasNext(); )
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.batchinsert;
+
+import java.util.Iterator;
+
+/**
+ * Imports big amounts of nodes and relationships into a store, faster than a
+ * {@link BatchInserter} can insert them one at a time. The import is done in
+ * stages which run in parallel: the ids are assigned, then the properties
+ * are encoded by several threads, and then the records are written in id
+ * order so that the store files are written sequentially. The relationship
+ * chains are linked in a last pass over the relationships once all of them
+ * have been written.
+ * <p>
+ * Like the batch inserter the importer doesn't support transactions, and the
+ * store is not consistent until {@link #shutdown()} has completed
+ * successfully.
+ */
+public interface BatchImporter
+{
+    /**
+     * Imports nodes and relationships. The store must not contain any
+     * relationships beforehand.
+     *
+     * @param nodes the nodes to import, in ascending id order, with ids higher
+     * than any node already in the store.
+     * @param relationships the relationships to import, which may only refer
+     * to imported nodes or nodes already in the store.
+     */
+    public void doImport( Iterator<InputNode> nodes, Iterator<InputRelationship> relationships );
+
+    /**
+     * @return statistics of the stages of the imports done so far.
+     */
+    public Iterable<ImportStage> getStages();
+
+    /**
+     * Closes the store.
+     */
+    public void shutdown();
+
+    public String getStoreDir();
+}
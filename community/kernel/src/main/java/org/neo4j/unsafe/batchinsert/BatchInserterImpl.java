@@ -469,11 +469,7 @@ public class BatchInserterImpl implements BatchInserter
     {
         NodeRecord firstNode = getNodeRecord( node1 );
         NodeRecord secondNode = getNodeRecord( node2 );
-        int typeId = typeHolder.getTypeId( type.name() );
-        if ( typeId == -1 )
-        {
-            typeId = createNewRelationshipType( type.name() );
-        }
+        int typeId = getOrCreateRelationshipTypeId( type.name() );
         long id = getRelationshipStore().nextId();
         RelationshipRecord record = new RelationshipRecord( id, node1, node2, typeId );
         record.setInUse( true );
@@ -753,11 +749,7 @@ public class BatchInserterImpl implements BatchInserter
         propRecords.add( currentRecord );
         for ( Entry<String, Object> entry : properties.entrySet() )
         {
-            int keyId = indexHolder.getKeyId( entry.getKey() );
-            if ( keyId == -1 )
-            {
-                keyId = createNewPropertyIndex( entry.getKey() );
-            }
+            int keyId = getOrCreatePropertyKeyId( entry.getKey() );
 
             PropertyBlock block = new PropertyBlock();
             propStore.encodeValue( block, keyId, entry.getValue() );
@@ -846,6 +838,26 @@ public class BatchInserterImpl implements BatchInserter
         return properties;
     }
 
+    int getOrCreatePropertyKeyId( String key )
+    {
+        int keyId = indexHolder.getKeyId( key );
+        if ( keyId == -1 )
+        {
+            keyId = createNewPropertyIndex( key );
+        }
+        return keyId;
+    }
+
+    int getOrCreateRelationshipTypeId( String name )
+    {
+        int typeId = typeHolder.getTypeId( name );
+        if ( typeId == -1 )
+        {
+            typeId = createNewRelationshipType( name );
+        }
+        return typeId;
+    }
+
     private int createNewPropertyIndex( String stringKey )
     {
         PropertyIndexStore idxStore = getPropertyIndexStore();
@@ -885,6 +897,11 @@ public class BatchInserterImpl implements BatchInserter
         return id;
     }
 
+    NeoStore getNeoStore()
+    {
+        return neoStore;
+    }
+
     private NodeStore getNodeStore()
     {
         return neoStore.getNodeStore();
@@ -34,6 +34,11 @@ import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
  * {@link GraphDatabaseService} retrievied from {@link #batchDatabase(String)}
  * or {@link #batchDatabase(String, Map)} methods is there for convenience, so
  * you can reuse existing code.
+ * <p>
+ * A {@link BatchImporter} retrieved from the {@link #importer(String)} or
+ * {@link #importer(String, Map)} methods imports whole streams of nodes and
+ * relationships, using several threads, and is the fastest way to do an
+ * initial load of a big graph.
  */
 public final class BatchInserters
 {
@@ -84,6 +89,31 @@ public final class BatchInserters
         return new BatchInserterImpl( storeDir, fileSystem, config );
     }
     
+    /**
+     * Get a {@link BatchImporter} given a store directory.
+     *
+     * @param storeDir the store directory
+     * @return a new {@link BatchImporter}
+     */
+    public static BatchImporter importer( String storeDir )
+    {
+        return importer( storeDir, new HashMap<String, String>() );
+    }
+
+    /**
+     * Get a {@link BatchImporter} given a store directory. The properties are
+     * encoded by as many threads as there are processors.
+     *
+     * @param storeDir the store directory
+     * @param config configuration settings to use
+     * @return a new {@link BatchImporter}
+     */
+    public static BatchImporter importer( String storeDir, Map<String,String> config )
+    {
+        return new ParallelBatchImporter( new BatchInserterImpl( storeDir, config ),
+                Runtime.getRuntime().availableProcessors() );
+    }
+
     /**
      * Get a {@link GraphDatabaseService} that does not support deletions and
      * transactions.
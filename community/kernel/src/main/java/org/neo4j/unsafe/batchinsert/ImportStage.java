@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.batchinsert;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of one stage of a {@link BatchImporter} import, such as the
+ * encoding of the properties of the nodes. A stage can be carried out by
+ * several threads at once, in which case its busy time can be longer than its
+ * elapsed time.
+ */
+public final class ImportStage
+{
+    private final String name;
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private volatile long startNanos, endNanos;
+
+    ImportStage( String name )
+    {
+        this.name = name;
+    }
+
+    long start()
+    {
+        long now = System.nanoTime();
+        if ( startNanos == 0 )
+        {
+            synchronized ( this )
+            {
+                if ( startNanos == 0 )
+                {
+                    startNanos = now;
+                }
+            }
+        }
+        return now;
+    }
+
+    void done( long startedAt, int recordCount )
+    {
+        long now = System.nanoTime();
+        records.addAndGet( recordCount );
+        busyNanos.addAndGet( now - startedAt );
+        endNanos = now;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public long getRecords()
+    {
+        return records.get();
+    }
+
+    /**
+     * @return the time from when the stage got its first records until it was
+     * done with its last.
+     */
+    public long getElapsedTime( TimeUnit unit )
+    {
+        return unit.convert( Math.max( 0, endNanos - startNanos ), TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * @return the time the threads of the stage spent working, in total.
+     */
+    public long getBusyTime( TimeUnit unit )
+    {
+        return unit.convert( busyNanos.get(), TimeUnit.NANOSECONDS );
+    }
+
+    public double getRecordsPerSecond()
+    {
+        long elapsed = endNanos - startNanos;
+        return elapsed <= 0 ? 0 : records.get() * 1000000000.0 / elapsed;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "%s: %d records in %d ms (%.0f records/s, busy %d ms)", name, getRecords(),
+                getElapsedTime( TimeUnit.MILLISECONDS ), getRecordsPerSecond(),
+                getBusyTime( TimeUnit.MILLISECONDS ) );
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.batchinsert;
+
+import java.util.Map;
+
+import org.neo4j.graphdb.RelationshipType;
+
+/**
+ * A relationship to import with a {@link BatchImporter}. Relationships get
+ * their ids in the order they are imported.
+ */
+public final class InputRelationship
+{
+    private final long startNode;
+    private final long endNode;
+    private final RelationshipType type;
+    private final Map<String,Object> properties;
+
+    /**
+     * @param startNode the id of the start node.
+     * @param endNode the id of the end node.
+     * @param type the type of the relationship.
+     * @param properties the properties of the relationship or
+     * <code>null</code>.
+     */
+    public InputRelationship( long startNode, long endNode, RelationshipType type, Map<String,Object> properties )
+    {
+        this.startNode = startNode;
+        this.endNode = endNode;
+        this.type = type;
+        this.properties = properties;
+    }
+
+    public long getStartNode()
+    {
+        return startNode;
+    }
+
+    public long getEndNode()
+    {
+        return endNode;
+    }
+
+    public RelationshipType getType()
+    {
+        return type;
+    }
+
+    public Map<String,Object> getProperties()
+    {
+        return properties;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "InputRelationship[" + startNode + "-[" + type.name() + "]->" + endNode + "]";
+    }
+}
@@ -0,0 +1,553 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.batchinsert;
+
+import static org.neo4j.helpers.Exceptions.launderedException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.kernel.IdType;
+import org.neo4j.kernel.impl.nioneo.store.IdGeneratorImpl;
+import org.neo4j.kernel.impl.nioneo.store.NeoStore;
+import org.neo4j.kernel.impl.nioneo.store.NodeRecord;
+import org.neo4j.kernel.impl.nioneo.store.NodeStore;
+import org.neo4j.kernel.impl.nioneo.store.PropertyBlock;
+import org.neo4j.kernel.impl.nioneo.store.PropertyRecord;
+import org.neo4j.kernel.impl.nioneo.store.PropertyStore;
+import org.neo4j.kernel.impl.nioneo.store.PropertyType;
+import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipStore;
+
+/**
+ * Imports nodes and relationships in batches which flow through a pipeline:
+ * <ol>
+ * <li>The calling thread reads a batch from the input, assigns the ids and
+ * looks up the ids of the property keys and relationship types.</li>
+ * <li>A pool of threads encodes the property values of the batches, which
+ * includes allocating their string and array records.</li>
+ * <li>A single thread writes the records of the batches in the order they
+ * were read, so that the ids, and with them the file offsets, ascend.</li>
+ * </ol>
+ * The relationships are written with the previous relationship in the chain
+ * of each node, which is known since they are written in id order. The next
+ * relationship and the first relationship of each node are filled in by a
+ * second pass over the relationships, in descending id order, once all of
+ * them are written. Each pass keeps one long per node in memory.
+ */
+class ParallelBatchImporter implements BatchImporter
+{
+    static final int BATCH_SIZE = 10000;
+
+    private static final long MAX_NODE_ID = IdType.NODE.getMaxValue();
+    private static final long NO_RELATIONSHIP = Record.NO_NEXT_RELATIONSHIP.intValue();
+    private static final Future<Batch> END_OF_INPUT = new FutureTask<Batch>( new Callable<Batch>()
+    {
+        @Override
+        public Batch call()
+        {
+            return null;
+        }
+    } );
+
+    private final BatchInserterImpl inserter;
+    private final NeoStore neoStore;
+    private final int encoderCount;
+    private final List<ImportStage> stages = new ArrayList<ImportStage>();
+
+    ParallelBatchImporter( BatchInserterImpl inserter, int encoderCount )
+    {
+        if ( encoderCount < 1 )
+        {
+            throw new IllegalArgumentException( "Need at least one encoder thread, got " + encoderCount );
+        }
+        this.inserter = inserter;
+        this.neoStore = inserter.getNeoStore();
+        this.encoderCount = encoderCount;
+    }
+
+    @Override
+    public void doImport( Iterator<InputNode> nodes, Iterator<InputRelationship> relationships )
+    {
+        long relationshipHighId = neoStore.getRelationshipStore().getHighId();
+        if ( relationshipHighId > 0 )
+        {
+            throw new IllegalStateException( "Can only import into a store without relationships, but " +
+                    getStoreDir() + " has relationship ids up to " + relationshipHighId );
+        }
+        ExecutorService encoders = Executors.newFixedThreadPool( encoderCount );
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try
+        {
+            run( new NodeImport(), nodes, encoders, writer );
+            RelationshipImport relationshipImport = new RelationshipImport( neoStore.getNodeStore().getHighId() );
+            run( relationshipImport, relationships, encoders, writer );
+            relationshipImport.link();
+        }
+        finally
+        {
+            encoders.shutdownNow();
+            writer.shutdownNow();
+        }
+    }
+
+    private <INPUT> void run( final Step<INPUT> step, Iterator<INPUT> input, ExecutorService encoders,
+            ExecutorService writer )
+    {
+        final BlockingQueue<Future<Batch>> encoded = new ArrayBlockingQueue<Future<Batch>>( encoderCount * 2 );
+        Future<Void> writing = writer.submit( new Callable<Void>()
+        {
+            @Override
+            public Void call() throws Exception
+            {
+                for ( Future<Batch> next = encoded.take(); next != END_OF_INPUT; next = encoded.take() )
+                {
+                    Batch batch = next.get();
+                    long startedAt = step.write.start();
+                    step.write( batch );
+                    step.write.done( startedAt, batch.size );
+                }
+                return null;
+            }
+        } );
+        try
+        {
+            while ( input.hasNext() )
+            {
+                final Batch batch = step.read( input );
+                enqueue( encoded, encoders.submit( new Callable<Batch>()
+                {
+                    @Override
+                    public Batch call()
+                    {
+                        long startedAt = step.encode.start();
+                        encodeProperties( batch );
+                        step.encode.done( startedAt, batch.size );
+                        return batch;
+                    }
+                } ), writing );
+            }
+            enqueue( encoded, END_OF_INPUT, writing );
+            writing.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while importing " + step.entities, e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw launderedException( "Failed to import " + step.entities, e.getCause() );
+        }
+        finally
+        {
+            writing.cancel( true );
+        }
+    }
+
+    /**
+     * Waits for room in the queue, which is what keeps the input from running
+     * ahead of the writer, unless the writer has failed.
+     */
+    private void enqueue( BlockingQueue<Future<Batch>> queue, Future<Batch> batch, Future<Void> writing )
+            throws InterruptedException, ExecutionException
+    {
+        while ( !queue.offer( batch, 100, TimeUnit.MILLISECONDS ) )
+        {
+            if ( writing.isDone() )
+            {
+                writing.get();
+                throw new IllegalStateException( "Writer stopped before the end of the input" );
+            }
+        }
+    }
+
+    private void encodeProperties( Batch batch )
+    {
+        PropertyStore propertyStore = neoStore.getPropertyStore();
+        for ( int i = 0; i < batch.size; i++ )
+        {
+            int[] keys = batch.keys[i];
+            if ( keys == null )
+            {
+                continue;
+            }
+            PropertyBlock[] blocks = new PropertyBlock[keys.length];
+            for ( int j = 0; j < keys.length; j++ )
+            {
+                blocks[j] = new PropertyBlock();
+                propertyStore.encodeValue( blocks[j], keys[j], batch.values[i][j] );
+            }
+            batch.blocks[i] = blocks;
+            batch.values[i] = null;
+        }
+    }
+
+    /**
+     * Writes the property records of one entity, with the same layout as
+     * {@link BatchInserterImpl} gives them.
+     *
+     * @return the id of the first property record.
+     */
+    private long writeProperties( PropertyBlock[] blocks )
+    {
+        if ( blocks == null || blocks.length == 0 )
+        {
+            return Record.NO_NEXT_PROPERTY.intValue();
+        }
+        PropertyStore propertyStore = neoStore.getPropertyStore();
+        List<PropertyRecord> records = new ArrayList<PropertyRecord>();
+        PropertyRecord current = newPropertyRecord( propertyStore.nextId() );
+        records.add( current );
+        for ( PropertyBlock block : blocks )
+        {
+            if ( current.size() + block.getSize() > PropertyType.getPayloadSize() )
+            {
+                PropertyRecord previous = current;
+                current = newPropertyRecord( propertyStore.nextId() );
+                previous.setNextProp( current.getId() );
+                current.setPrevProp( previous.getId() );
+                records.add( current );
+            }
+            current.addPropertyBlock( block );
+        }
+        for ( PropertyRecord record : records )
+        {
+            propertyStore.updateRecord( record );
+        }
+        return records.get( 0 ).getId();
+    }
+
+    private static PropertyRecord newPropertyRecord( long id )
+    {
+        PropertyRecord record = new PropertyRecord( id );
+        record.setInUse( true );
+        record.setCreated();
+        return record;
+    }
+
+    private ImportStage newStage( String name )
+    {
+        ImportStage stage = new ImportStage( name );
+        stages.add( stage );
+        return stage;
+    }
+
+    @Override
+    public Iterable<ImportStage> getStages()
+    {
+        return Collections.unmodifiableList( stages );
+    }
+
+    @Override
+    public void shutdown()
+    {
+        inserter.shutdown();
+    }
+
+    @Override
+    public String getStoreDir()
+    {
+        return inserter.getStoreDir();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ParallelBatchImporter[" + getStoreDir() + "]";
+    }
+
+    private static class Batch
+    {
+        final long[] ids = new long[BATCH_SIZE];
+        final int[][] keys = new int[BATCH_SIZE][];
+        final Object[][] values = new Object[BATCH_SIZE][];
+        final PropertyBlock[][] blocks = new PropertyBlock[BATCH_SIZE][];
+        long[] startNodes, endNodes;
+        int[] types;
+        int size;
+    }
+
+    private abstract class Step<INPUT>
+    {
+        final String entities;
+        final ImportStage assign, encode, write;
+
+        Step( String entities )
+        {
+            this.entities = entities;
+            this.assign = newStage( entities + ": assign ids" );
+            this.encode = newStage( entities + ": encode properties" );
+            this.write = newStage( entities + ": write records" );
+        }
+
+        Batch read( Iterator<INPUT> input )
+        {
+            long startedAt = assign.start();
+            Batch batch = newBatch();
+            while ( batch.size < BATCH_SIZE && input.hasNext() )
+            {
+                INPUT item = input.next();
+                assign( batch, batch.size, item );
+                Map<String,Object> properties = propertiesOf( item );
+                if ( properties != null && !properties.isEmpty() )
+                {
+                    int[] keys = new int[properties.size()];
+                    Object[] values = new Object[properties.size()];
+                    int j = 0;
+                    for ( Entry<String,Object> property : properties.entrySet() )
+                    {
+                        keys[j] = inserter.getOrCreatePropertyKeyId( property.getKey() );
+                        values[j++] = property.getValue();
+                    }
+                    batch.keys[batch.size] = keys;
+                    batch.values[batch.size] = values;
+                }
+                batch.size++;
+            }
+            assigned( batch );
+            assign.done( startedAt, batch.size );
+            return batch;
+        }
+
+        Batch newBatch()
+        {
+            return new Batch();
+        }
+
+        abstract void assign( Batch batch, int index, INPUT item );
+
+        abstract Map<String,Object> propertiesOf( INPUT item );
+
+        void assigned( Batch batch )
+        {
+        }
+
+        abstract void write( Batch batch );
+    }
+
+    private class NodeImport extends Step<InputNode>
+    {
+        private final NodeStore nodeStore = neoStore.getNodeStore();
+        private long highestId = nodeStore.getHighId() - 1;
+
+        NodeImport()
+        {
+            super( "nodes" );
+        }
+
+        @Override
+        void assign( Batch batch, int index, InputNode node )
+        {
+            long id = node.getId();
+            if ( id <= highestId )
+            {
+                throw new IllegalArgumentException( node + " must have a higher id than " + highestId +
+                        ", the highest id in the store or of the nodes before it" );
+            }
+            if ( id > MAX_NODE_ID || id == IdGeneratorImpl.INTEGER_MINUS_ONE )
+            {
+                throw new IllegalArgumentException( node + " has an illegal id" );
+            }
+            batch.ids[index] = id;
+            highestId = id;
+        }
+
+        @Override
+        Map<String,Object> propertiesOf( InputNode node )
+        {
+            return node.getProperties();
+        }
+
+        @Override
+        void assigned( Batch batch )
+        {
+            if ( nodeStore.getHighId() <= highestId )
+            {
+                nodeStore.setHighId( highestId + 1 );
+            }
+        }
+
+        @Override
+        void write( Batch batch )
+        {
+            for ( int i = 0; i < batch.size; i++ )
+            {
+                NodeRecord record = new NodeRecord( batch.ids[i], NO_RELATIONSHIP,
+                        writeProperties( batch.blocks[i] ) );
+                record.setInUse( true );
+                record.setCreated();
+                nodeStore.updateRecord( record );
+            }
+        }
+    }
+
+    private class RelationshipImport extends Step<InputRelationship>
+    {
+        private final RelationshipStore relationshipStore = neoStore.getRelationshipStore();
+        private final long nodeHighId;
+        /**
+         * The last relationship written for each node while writing, and
+         * the first relationship after it while linking.
+         */
+        private final long[] chains;
+
+        RelationshipImport( long nodeHighId )
+        {
+            super( "relationships" );
+            if ( nodeHighId > Integer.MAX_VALUE )
+            {
+                throw new IllegalArgumentException( "Can import relationships between at most " +
+                        Integer.MAX_VALUE + " nodes, not " + nodeHighId );
+            }
+            this.nodeHighId = nodeHighId;
+            this.chains = new long[(int) nodeHighId];
+            Arrays.fill( chains, NO_RELATIONSHIP );
+        }
+
+        @Override
+        Batch newBatch()
+        {
+            Batch batch = new Batch();
+            batch.startNodes = new long[BATCH_SIZE];
+            batch.endNodes = new long[BATCH_SIZE];
+            batch.types = new int[BATCH_SIZE];
+            return batch;
+        }
+
+        @Override
+        void assign( Batch batch, int index, InputRelationship relationship )
+        {
+            if ( relationship.getStartNode() < 0 || relationship.getStartNode() >= nodeHighId ||
+                 relationship.getEndNode() < 0 || relationship.getEndNode() >= nodeHighId )
+            {
+                throw new IllegalArgumentException( relationship + " refers to a node which doesn't exist" );
+            }
+            batch.ids[index] = relationshipStore.nextId();
+            batch.startNodes[index] = relationship.getStartNode();
+            batch.endNodes[index] = relationship.getEndNode();
+            batch.types[index] = inserter.getOrCreateRelationshipTypeId( relationship.getType().name() );
+        }
+
+        @Override
+        Map<String,Object> propertiesOf( InputRelationship relationship )
+        {
+            return relationship.getProperties();
+        }
+
+        @Override
+        void write( Batch batch )
+        {
+            for ( int i = 0; i < batch.size; i++ )
+            {
+                long id = batch.ids[i];
+                int startNode = (int) batch.startNodes[i], endNode = (int) batch.endNodes[i];
+                RelationshipRecord record = new RelationshipRecord( id, startNode, endNode, batch.types[i] );
+                record.setInUse( true );
+                record.setCreated();
+                record.setNextProp( writeProperties( batch.blocks[i] ) );
+                record.setFirstPrevRel( chains[startNode] );
+                chains[startNode] = id;
+                if ( endNode != startNode )
+                {
+                    record.setSecondPrevRel( chains[endNode] );
+                    chains[endNode] = id;
+                }
+                else
+                {
+                    record.setSecondPrevRel( record.getFirstPrevRel() );
+                }
+                relationshipStore.updateRecord( record );
+            }
+        }
+
+        /**
+         * Fills in the next relationship of each relationship, going from the
+         * highest id to the lowest, and then the first relationship of each
+         * node, which is the one with the lowest id.
+         */
+        void link()
+        {
+            ImportStage linkRelationships = newStage( "relationships: link chains" );
+            Arrays.fill( chains, NO_RELATIONSHIP );
+            long startedAt = linkRelationships.start();
+            int linked = 0;
+            for ( long id = relationshipStore.getHighId() - 1; id >= 0; id-- )
+            {
+                if ( id == IdGeneratorImpl.INTEGER_MINUS_ONE )
+                {
+                    continue;
+                }
+                RelationshipRecord record = relationshipStore.getRecord( id );
+                int startNode = (int) record.getFirstNode(), endNode = (int) record.getSecondNode();
+                record.setFirstNextRel( chains[startNode] );
+                chains[startNode] = id;
+                if ( endNode != startNode )
+                {
+                    record.setSecondNextRel( chains[endNode] );
+                    chains[endNode] = id;
+                }
+                else
+                {
+                    record.setSecondNextRel( record.getFirstNextRel() );
+                }
+                relationshipStore.updateRecord( record );
+                if ( ++linked == BATCH_SIZE )
+                {
+                    linkRelationships.done( startedAt, linked );
+                    startedAt = linkRelationships.start();
+                    linked = 0;
+                }
+            }
+            linkRelationships.done( startedAt, linked );
+
+            ImportStage linkNodes = newStage( "nodes: link chains" );
+            NodeStore nodeStore = neoStore.getNodeStore();
+            startedAt = linkNodes.start();
+            linked = 0;
+            for ( int node = 0; node < chains.length; node++ )
+            {
+                if ( chains[node] != NO_RELATIONSHIP )
+                {
+                    NodeRecord record = nodeStore.getRecord( node );
+                    record.setNextRel( chains[node] );
+                    nodeStore.updateRecord( record );
+                    linked++;
+                }
+            }
+            linkNodes.done( startedAt, linked );
+        }
+    }
+}
@@ -75,6 +75,22 @@ public class TestCacheTypes extends AbstractNeo4jTestCase
         db.shutdown();
     }
     
+    @Test
+    public void testOffHeapCache()
+    {
+        GraphDatabaseAPI db = newDb( OffHeapCacheProvider.NAME );
+        assertEquals( OffHeapCacheProvider.NAME, db.getNodeManager().getCacheType().getName() );
+        db.shutdown();
+    }
+
+    @Test
+    public void testTinyLfuCache()
+    {
+        GraphDatabaseAPI db = newDb( TinyLfuCacheProvider.NAME );
+        assertEquals( TinyLfuCacheProvider.NAME, db.getNodeManager().getCacheType().getName() );
+        db.shutdown();
+    }
+    
     @Test
     public void testInvalidCache()
     {
@@ -0,0 +1,214 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+public class TestOffHeapCache
+{
+    private static final int SLAB_SIZE = 1024;
+
+    @Test
+    public void shouldRecreateEntitiesEvictedFromHeap() throws Exception
+    {
+        OffHeapCache<Entity> cache = newCache( 10*SLAB_SIZE, 2 );
+        for ( int i = 0; i < 10; i++ )
+        {
+            cache.put( new Entity( i, "value" + i ) );
+        }
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            Entity entity = cache.get( i );
+            assertNotNull( entity );
+            assertEquals( "value" + i, entity.value );
+        }
+        assertEquals( 10, cache.hitCount() );
+        assertTrue( cache.getOffHeapHitCount() >= 8 );
+    }
+
+    @Test
+    public void shouldReturnSameInstanceWhileOnHeap() throws Exception
+    {
+        OffHeapCache<Entity> cache = newCache( 10*SLAB_SIZE, 10 );
+        Entity entity = new Entity( 1, "a" );
+        cache.put( entity );
+        assertTrue( entity == cache.get( 1 ) );
+        assertTrue( cache.get( 1 ) == cache.get( 1 ) );
+    }
+
+    @Test
+    public void shouldStoreChangesOfEntitiesOnHeap() throws Exception
+    {
+        OffHeapCache<Entity> cache = newCache( 10*SLAB_SIZE, 1 );
+        cache.put( new Entity( 1, "a" ) );
+        cache.put( new Entity( 2, "b" ) );
+        Entity entity = cache.get( 1 );
+        entity.value = "changed";
+        cache.updateSize( entity, entity.size() );
+        cache.put( new Entity( 3, "c" ) );
+
+        assertEquals( "changed", cache.get( 1 ).value );
+    }
+
+    @Test
+    public void shouldDropEntitiesChangedAfterEviction() throws Exception
+    {
+        OffHeapCache<Entity> cache = newCache( 10*SLAB_SIZE, 1 );
+        Entity entity = new Entity( 1, "a" );
+        cache.put( entity );
+        cache.put( new Entity( 2, "b" ) );
+
+        entity.value = "changed";
+        cache.updateSize( entity, entity.size() );
+        assertNull( cache.get( 1 ) );
+    }
+
+    @Test
+    public void shouldRemoveAndClear() throws Exception
+    {
+        OffHeapCache<Entity> cache = newCache( 10*SLAB_SIZE, 1 );
+        cache.put( new Entity( 1, "a" ) );
+        cache.put( new Entity( 2, "b" ) );
+        cache.put( new Entity( 3, "c" ) );
+
+        assertEquals( "a", cache.remove( 1 ).value );
+        assertEquals( "c", cache.remove( 3 ).value );
+        assertNull( cache.get( 1 ) );
+        assertNull( cache.get( 3 ) );
+        assertNotNull( cache.get( 2 ) );
+
+        cache.clear();
+        assertNull( cache.get( 2 ) );
+        assertEquals( 0, cache.size() );
+    }
+
+    @Test
+    public void shouldEvictOldestSlabWhenFull() throws Exception
+    {
+        OffHeapCache<Entity> cache = newCache( 2*SLAB_SIZE, 1 );
+        String value = "0123456789012345678901234567890123456789";
+        int count = 100;
+        for ( int i = 0; i < count; i++ )
+        {
+            cache.put( new Entity( i, value ) );
+        }
+
+        assertNull( cache.get( 0 ) );
+        assertNotNull( cache.get( count-2 ) );
+        assertTrue( cache.size() < count );
+    }
+
+    @Test
+    public void shouldNotCacheEntitiesBiggerThanASlab() throws Exception
+    {
+        OffHeapCache<Entity> cache = newCache( 2*SLAB_SIZE, 1 );
+        cache.put( new Entity( 1, new String( new char[SLAB_SIZE] ) ) );
+        cache.put( new Entity( 2, "b" ) );
+        assertNull( cache.get( 1 ) );
+    }
+
+    @Test
+    public void indexShouldHandleCollisionsAndRemovals() throws Exception
+    {
+        OffHeapCache.SlabIndex index = new OffHeapCache.SlabIndex();
+        for ( long i = 0; i < 1000; i++ )
+        {
+            index.put( i*16, i );
+        }
+        for ( long i = 0; i < 1000; i += 3 )
+        {
+            index.remove( i*16 );
+        }
+        for ( long i = 0; i < 1000; i++ )
+        {
+            assertEquals( i % 3 == 0 ? -1 : i, index.get( i*16 ) );
+        }
+        assertEquals( 666, index.size() );
+        assertFalse( index.get( 1 ) != -1 );
+    }
+
+    private OffHeapCache<Entity> newCache( long size, int hotSize )
+    {
+        return new OffHeapCache<Entity>( "test", new EntitySerializer<Entity>()
+        {
+            @Override
+            public boolean write( Entity entity, DataOutput out ) throws IOException
+            {
+                out.writeUTF( entity.value );
+                return true;
+            }
+
+            @Override
+            public Entity read( long id, DataInput in ) throws IOException
+            {
+                return new Entity( id, in.readUTF() );
+            }
+        }, size, SLAB_SIZE, hotSize, StringLogger.DEV_NULL );
+    }
+
+    private static class Entity implements EntityWithSize
+    {
+        private final long id;
+        private String value;
+        private int registeredSize;
+
+        Entity( long id, String value )
+        {
+            this.id = id;
+            this.value = value;
+        }
+
+        @Override
+        public int size()
+        {
+            return 32 + value.length()*2;
+        }
+
+        @Override
+        public long getId()
+        {
+            return id;
+        }
+
+        @Override
+        public void setRegisteredSize( int size )
+        {
+            this.registeredSize = size;
+        }
+
+        @Override
+        public int getRegisteredSize()
+        {
+            return registeredSize;
+        }
+    }
+}
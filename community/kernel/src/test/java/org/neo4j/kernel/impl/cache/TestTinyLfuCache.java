@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+public class TestTinyLfuCache
+{
+    @Test
+    public void shouldKeepTotalSizeWithinMaxSize() throws Exception
+    {
+        TinyLfuCache<Entity> cache = newCache( 100 );
+        for ( int i = 0; i < 10; i++ )
+        {
+            cache.put( new Entity( i, 10 ) );
+        }
+        assertEquals( 100, cache.size() );
+        for ( int i = 0; i < 10; i++ )
+        {
+            assertNotNull( cache.get( i ) );
+        }
+
+        Entity big = new Entity( 10, 30 );
+        for ( int i = 0; i < 5; i++ )
+        {
+            cache.get( big.getId() );
+        }
+        cache.put( big );
+        assertTrue( big == cache.get( 10 ) );
+        assertEquals( 3, cache.evictionCount() );
+        assertEquals( 100, cache.size() );
+    }
+
+    @Test
+    public void shouldNotLetRarelyUsedEntitiesEvictFrequentlyUsedOnes() throws Exception
+    {
+        TinyLfuCache<Entity> cache = newCache( 100 );
+        for ( int i = 0; i < 10; i++ )
+        {
+            cache.put( new Entity( i, 10 ) );
+            cache.get( i );
+            cache.get( i );
+        }
+
+        // A scan over entities which are only used once
+        for ( int i = 100; i < 200; i++ )
+        {
+            assertNull( cache.get( i ) );
+            cache.put( new Entity( i, 10 ) );
+        }
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            assertNotNull( cache.get( i ) );
+        }
+        assertEquals( 0, cache.evictionCount() );
+    }
+
+    @Test
+    public void shouldNeverCacheEntitiesBiggerThanTheCache() throws Exception
+    {
+        TinyLfuCache<Entity> cache = newCache( 100 );
+        cache.put( new Entity( 1, 101 ) );
+        assertNull( cache.get( 1 ) );
+        assertEquals( 0, cache.size() );
+    }
+
+    @Test
+    public void shouldEvictWhenEntitiesGrow() throws Exception
+    {
+        TinyLfuCache<Entity> cache = newCache( 100 );
+        Entity first = new Entity( 1, 40 );
+        Entity second = new Entity( 2, 40 );
+        cache.put( first );
+        cache.put( second );
+        cache.get( 2 );
+
+        first.size = 50;
+        cache.updateSize( first, first.size );
+        assertEquals( 90, cache.size() );
+
+        second.size = 60;
+        cache.updateSize( second, second.size );
+        assertNull( cache.get( 1 ) );
+        assertTrue( second == cache.get( 2 ) );
+        assertEquals( 60, cache.size() );
+        assertEquals( 1, cache.evictionCount() );
+    }
+
+    @Test
+    public void shouldSpreadEntitiesOverSegments() throws Exception
+    {
+        TinyLfuCache<Entity> cache = new TinyLfuCache<Entity>( "test", 1000, 4, StringLogger.DEV_NULL );
+        for ( int i = 0; i < 100; i++ )
+        {
+            cache.put( new Entity( i, 5 ) );
+        }
+        assertEquals( 500, cache.size() );
+        assertEquals( 7, cache.remove( 7 ).getId() );
+        assertNull( cache.get( 7 ) );
+        assertEquals( 495, cache.size() );
+
+        cache.clear();
+        assertEquals( 0, cache.size() );
+        assertNull( cache.get( 8 ) );
+    }
+
+    @Test
+    public void shouldCountHitRatio() throws Exception
+    {
+        TinyLfuCache<Entity> cache = newCache( 100 );
+        cache.put( new Entity( 1, 10 ) );
+        cache.get( 1 );
+        cache.get( 1 );
+        cache.get( 1 );
+        cache.get( 2 );
+        assertEquals( 3, cache.hitCount() );
+        assertEquals( 1, cache.missCount() );
+        assertEquals( 0.75, cache.hitRatio(), 0.0001 );
+    }
+
+    private TinyLfuCache<Entity> newCache( long maxSize )
+    {
+        return new TinyLfuCache<Entity>( "test", maxSize, 1, StringLogger.DEV_NULL );
+    }
+
+    private static class Entity implements EntityWithSize
+    {
+        private final long id;
+        private int size;
+        private int registeredSize;
+
+        Entity( long id, int size )
+        {
+            this.id = id;
+            this.size = size;
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        @Override
+        public long getId()
+        {
+            return id;
+        }
+
+        @Override
+        public void setRegisteredSize( int size )
+        {
+            this.registeredSize = size;
+        }
+
+        @Override
+        public int getRegisteredSize()
+        {
+            return registeredSize;
+        }
+    }
+}
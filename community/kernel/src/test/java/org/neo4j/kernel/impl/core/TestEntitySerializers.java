@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper.BOTH;
+import static org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper.INCOMING;
+import static org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper.OUTGOING;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.neo4j.kernel.impl.cache.EntitySerializer;
+import org.neo4j.kernel.impl.cache.EntityWithSize;
+import org.neo4j.kernel.impl.nioneo.store.PropertyData;
+import org.neo4j.kernel.impl.nioneo.store.PropertyDatas;
+import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.util.RelIdArray;
+import org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper;
+import org.neo4j.kernel.impl.util.RelIdArrayWithLoops;
+import org.neo4j.kernel.impl.util.RelIdIterator;
+
+public class TestEntitySerializers
+{
+    @Test
+    public void shouldRecreateNodeWithPropertiesAndRelationships() throws Exception
+    {
+        NodeImpl node = new NodeImpl( 5, Record.NO_NEXT_RELATIONSHIP.intValue(), Record.NO_NEXT_PROPERTY.intValue() );
+        node.setCachedProperties( properties() );
+        RelIdArray knows = new RelIdArray( 0 );
+        for ( int i = 0; i < 300; i++ )
+        {
+            knows.add( 1000-i, i % 2 == 0 ? OUTGOING : INCOMING );
+        }
+        RelIdArray likes = new RelIdArrayWithLoops( 1 );
+        likes.add( 3, OUTGOING );
+        likes.add( 4, BOTH );
+        likes.add( (long) Math.pow( 2, 33 ), INCOMING );
+        node.setCachedRelationships( new RelIdArray[] { knows.shrink(), likes }, 123 );
+
+        NodeImpl copy = roundTrip( EntitySerializers.NODE, node );
+
+        assertEquals( 5, copy.getId() );
+        assertEquals( 123, copy.getRelChainPosition() );
+        assertProperties( node.allProperties(), copy.allProperties() );
+        RelIdArray[] relationships = copy.getAllRelationshipIds();
+        assertEquals( 2, relationships.length );
+        for ( int i = 0; i < relationships.length; i++ )
+        {
+            RelIdArray expected = node.getAllRelationshipIds()[i];
+            assertEquals( expected.getType(), relationships[i].getType() );
+            for ( DirectionWrapper direction : DirectionWrapper.values() )
+            {
+                assertEquals( ids( expected, direction ), ids( relationships[i], direction ) );
+            }
+        }
+    }
+
+    @Test
+    public void shouldKeepWhatHasNotBeenLoadedUnloaded() throws Exception
+    {
+        NodeImpl node = new NodeImpl( 5, Record.NO_NEXT_RELATIONSHIP.intValue(), Record.NO_NEXT_PROPERTY.intValue() );
+
+        NodeImpl copy = roundTrip( EntitySerializers.NODE, node );
+
+        assertNull( copy.allProperties() );
+        assertNull( copy.getAllRelationshipIds() );
+    }
+
+    @Test
+    public void shouldRecreateRelationship() throws Exception
+    {
+        long highId = (long) Math.pow( 2, 34 ) + 7;
+        RelationshipImpl relationship = new RelationshipImpl( 10, highId, 3, 2, false );
+        relationship.setCachedProperties( properties() );
+
+        RelationshipImpl copy = roundTrip( EntitySerializers.RELATIONSHIP, relationship );
+
+        assertEquals( 10, copy.getId() );
+        assertEquals( highId, copy.getStartNodeId() );
+        assertEquals( 3, copy.getEndNodeId() );
+        assertEquals( 2, copy.getTypeId() );
+        assertProperties( relationship.allProperties(), copy.allProperties() );
+    }
+
+    @Test
+    public void shouldRefuseUnknownPropertyValues() throws Exception
+    {
+        RelationshipImpl relationship = new RelationshipImpl( 10, 1, 3, 2, false );
+        relationship.setCachedProperties( new PropertyData[] {
+                PropertyDatas.forStringOrArray( 0, 1, new Object[] { new Object() } ) } );
+
+        assertFalse( EntitySerializers.RELATIONSHIP.write( relationship,
+                new DataOutputStream( new ByteArrayOutputStream() ) ) );
+    }
+
+    private PropertyData[] properties()
+    {
+        return new PropertyData[] {
+                PropertyDatas.forInt( 0, 10, 42 ),
+                PropertyDatas.forLong( 1, 11, Long.MAX_VALUE ),
+                PropertyDatas.forBoolean( 2, 12, true ),
+                PropertyDatas.forDouble( 3, 13, 1.5d ),
+                PropertyDatas.forChar( 4, 14, 'x' ),
+                PropertyDatas.forStringOrArray( 5, 15, "a string" ),
+                PropertyDatas.forStringOrArray( 6, 16, new int[] { 1, 2, 3 } ),
+                PropertyDatas.forStringOrArray( 7, 17, new String[] { "a", "b" } ),
+                PropertyDatas.forStringOrArray( 8, 18, null ) };
+    }
+
+    private void assertProperties( PropertyData[] expected, PropertyData[] actual )
+    {
+        assertEquals( expected.length, actual.length );
+        for ( int i = 0; i < expected.length; i++ )
+        {
+            assertEquals( expected[i].getIndex(), actual[i].getIndex() );
+            assertEquals( expected[i].getId(), actual[i].getId() );
+            Object value = expected[i].getValue();
+            if ( value instanceof int[] )
+            {
+                assertArrayEquals( (int[]) value, (int[]) actual[i].getValue() );
+            }
+            else if ( value instanceof Object[] )
+            {
+                assertArrayEquals( (Object[]) value, (Object[]) actual[i].getValue() );
+            }
+            else
+            {
+                assertEquals( value, actual[i].getValue() );
+            }
+        }
+    }
+
+    private List<Long> ids( RelIdArray array, DirectionWrapper direction )
+    {
+        List<Long> ids = new ArrayList<Long>();
+        for ( RelIdIterator iterator = array.exactIterator( direction ); iterator.hasNext(); )
+        {
+            ids.add( iterator.next() );
+        }
+        return ids;
+    }
+
+    private <E extends EntityWithSize> E roundTrip( EntitySerializer<E> serializer, E entity ) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        serializer.write( entity, new DataOutputStream( bytes ) );
+        return serializer.read( entity.getId(),
+                new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) );
+    }
+}
@@ -143,6 +143,118 @@ public class TestRelIdArray
                 0L, 1L, justOverIntMax, justOverIntMax+1 ) ), new HashSet<Long>( asList( all ) ) );
     }
     
+    @Test
+    public void shouldPackBigArraysWhenShrunk() throws Exception
+    {
+        RelIdArray array = new RelIdArray( 0 );
+        List<Long> expected = new ArrayList<Long>();
+        long justUnderIntMax = (long) Math.pow( 2, 32 )-3;
+        for ( int i = 0; i < 1000; i++ )
+        {
+            long id = i < 600 ? 50000-i*3 : justUnderIntMax+i;
+            array.add( id, i % 3 == 0 ? INCOMING : OUTGOING );
+        }
+        for ( RelIdIterator iterator = array.iterator( BOTH ); iterator.hasNext(); )
+        {
+            expected.add( iterator.next() );
+        }
+        
+        RelIdArray shrunk = array.shrink();
+        assertEquals( expected, asList( shrunk ) );
+        assertTrue( "Expected " + shrunk.size() + " to be less than half of " + array.size(),
+                shrunk.size() < array.size()/2 );
+    }
+    
+    @Test
+    public void shouldNotPackArraysBelowThreshold() throws Exception
+    {
+        RelIdArray array = new RelIdArray( 0 );
+        for ( int i = 0; i < RelIdArray.COMPRESSION_THRESHOLD-1; i++ )
+        {
+            array.add( i, OUTGOING );
+        }
+        RelIdArray shrunk = array.shrink();
+        RelIdArray shrunkAgain = shrunk.shrink();
+        assertTrue( shrunk == shrunkAgain );
+        assertEquals( asList( array ), asList( shrunk ) );
+    }
+    
+    @Test
+    public void shouldContinueIteratingWhenSourceGetsPacked() throws Exception
+    {
+        RelIdArray array = new RelIdArray( 0 );
+        for ( int i = 0; i < 500; i++ )
+        {
+            array.add( 10000-i, OUTGOING );
+        }
+        List<Long> expected = asList( array );
+        
+        List<Long> result = new ArrayList<Long>();
+        RelIdIterator iterator = array.iterator( OUTGOING );
+        for ( int i = 0; i < 100; i++ )
+        {
+            result.add( iterator.next() );
+        }
+        iterator = iterator.updateSource( array.shrink(), OUTGOING );
+        while ( iterator.hasNext() )
+        {
+            result.add( iterator.next() );
+        }
+        assertEquals( expected, result );
+    }
+    
+    @Test
+    public void shouldAddAndRemoveOnPackedArray() throws Exception
+    {
+        RelIdArray array = new RelIdArray( 0 );
+        for ( int i = 0; i < 500; i++ )
+        {
+            array.add( i, i % 2 == 0 ? OUTGOING : INCOMING );
+        }
+        RelIdArray packed = array.shrink();
+        List<Long> packedIds = asList( packed );
+        
+        RelIdArray add = new RelIdArray( 0 );
+        add.add( 1000, OUTGOING );
+        add.add( 1001, INCOMING );
+        Collection<Long> remove = new HashSet<Long>( Arrays.asList( 10L, 11L, 1001L ) );
+        Collection<Long> expected = new HashSet<Long>( packedIds );
+        expected.add( 1000L );
+        expected.removeAll( remove );
+        
+        assertEquals( expected, new HashSet<Long>( asList( RelIdArray.from( packed, add, remove ) ) ) );
+        assertEquals( packedIds, asList( packed ) );
+        
+        expected = new HashSet<Long>( packedIds );
+        expected.add( 1000L );
+        expected.add( 1001L );
+        assertEquals( expected, new HashSet<Long>( asList( RelIdArray.from( packed, add, null ) ) ) );
+    }
+    
+    @Test
+    public void shouldNotModifyPackedBlocksWhenAddingToThem() throws Exception
+    {
+        RelIdArray array = new RelIdArray( 0 );
+        for ( int i = 0; i < 500; i++ )
+        {
+            array.add( i, OUTGOING );
+        }
+        RelIdArray packed = array.shrink();
+        List<Long> expected = asList( packed );
+        RelIdIterator iterator = packed.iterator( OUTGOING );
+
+        packed.add( 1000, OUTGOING );
+        expected.add( 0, 1000L );
+        assertEquals( expected, asList( packed ) );
+        expected.remove( 0 );
+        List<Long> result = new ArrayList<Long>();
+        while ( iterator.hasNext() )
+        {
+            result.add( iterator.next() );
+        }
+        assertEquals( expected, result );
+    }
+
     private List<Long> asList( RelIdArray ids )
     {
         List<Long> result = new ArrayList<Long>();
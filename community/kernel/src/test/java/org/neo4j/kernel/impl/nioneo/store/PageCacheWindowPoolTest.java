@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.kernel.impl.util.StringLogger;
+import org.neo4j.test.ResourceCollection;
+import org.neo4j.test.TargetDirectory;
+
+public class PageCacheWindowPoolTest
+{
+    private static final TargetDirectory target = TargetDirectory.forTest( PageCacheWindowPoolTest.class );
+    @Rule
+    public final TargetDirectory.TestDirectory directory = target.testDirectory();
+    @Rule
+    public final ResourceCollection resources = new ResourceCollection();
+
+    private static final int RECORD_SIZE = 8;
+    private static final int PAGE_SIZE = 4096;
+    private static final int RECORDS_PER_PAGE = PAGE_SIZE / RECORD_SIZE;
+
+    @Test
+    public void shouldWriteRecordsThroughToTheFile() throws Exception
+    {
+        // given
+        FileChannel channel = newChannel( "through.file" );
+        PageCacheWindowPool pool = newPool( channel, new PageCache( PAGE_SIZE * 4, PAGE_SIZE ) );
+
+        // when
+        write( pool, 20, 1234 );
+
+        // then
+        ByteBuffer buffer = ByteBuffer.allocate( RECORD_SIZE );
+        channel.read( buffer, 20 * RECORD_SIZE );
+        buffer.flip();
+        assertEquals( 1234, buffer.getLong() );
+        assertEquals( 1234, read( pool, 20 ) );
+        pool.close();
+    }
+
+    @Test
+    public void storesShouldShareAndEvictEachOthersPages() throws Exception
+    {
+        // given
+        PageCache pageCache = new PageCache( PAGE_SIZE * 2, PAGE_SIZE );
+        PageCacheWindowPool first = newPool( newChannel( "first.file" ), pageCache );
+        PageCacheWindowPool second = newPool( newChannel( "second.file" ), pageCache );
+        write( first, 0, 1 );
+        write( first, RECORDS_PER_PAGE, 2 );
+
+        // when
+        write( second, 0, 3 );
+        write( second, RECORDS_PER_PAGE, 4 );
+
+        // then
+        assertEquals( 2, first.getStats().getEvictionCount() );
+        assertEquals( 0, first.getStats().getMemUsed() );
+        assertEquals( 2 * PAGE_SIZE, second.getStats().getMemUsed() );
+        assertEquals( 1, read( first, 0 ) );
+        assertEquals( 2, read( first, RECORDS_PER_PAGE ) );
+        assertEquals( 3, read( second, 0 ) );
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void shouldNotEvictPinnedPages() throws Exception
+    {
+        // given
+        PageCache pageCache = new PageCache( PAGE_SIZE * 2, PAGE_SIZE );
+        PageCacheWindowPool pool = newPool( newChannel( "pinned.file" ), pageCache );
+        write( pool, 0, 5 );
+        PersistenceWindow pinned = pool.acquire( 0, OperationType.READ );
+        try
+        {
+            // when
+            for ( int page = 1; page < 10; page++ )
+            {
+                write( pool, page * RECORDS_PER_PAGE, page );
+            }
+
+            // then
+            assertEquals( 5, pinned.getOffsettedBuffer( 0 ).getLong() );
+            assertTrue( pool.getStats().getEvictionCount() > 0 );
+        }
+        finally
+        {
+            pool.release( pinned );
+        }
+        pool.close();
+    }
+
+    @Test
+    public void shouldFailClaimingFrameWhenAllFramesStayPinned() throws Exception
+    {
+        // given
+        PageCacheWindowPool pool = newPool( newChannel( "pinned.file" ),
+                new PageCache( PAGE_SIZE * 2, PAGE_SIZE, 100 ) );
+        PersistenceWindow first = pool.acquire( 0, OperationType.READ );
+        PersistenceWindow second = pool.acquire( RECORDS_PER_PAGE, OperationType.READ );
+        try
+        {
+            // when
+            pool.acquire( RECORDS_PER_PAGE * 2, OperationType.READ );
+            fail( "Should not be able to claim a frame when all are pinned" );
+        }
+        catch ( UnderlyingStorageException e )
+        {   // then good
+        }
+        finally
+        {
+            pool.release( first );
+            pool.release( second );
+        }
+
+        // and when a frame is unpinned again
+        assertEquals( 0, read( pool, RECORDS_PER_PAGE * 2 ) );
+        pool.close();
+    }
+
+    private void write( PageCacheWindowPool pool, long id, long value )
+    {
+        PersistenceWindow window = pool.acquire( id, OperationType.WRITE );
+        try
+        {
+            window.getOffsettedBuffer( id ).putLong( value );
+        }
+        finally
+        {
+            pool.release( window );
+        }
+    }
+
+    private long read( PageCacheWindowPool pool, long id )
+    {
+        PersistenceWindow window = pool.acquire( id, OperationType.READ );
+        try
+        {
+            return window.getOffsettedBuffer( id ).getLong();
+        }
+        finally
+        {
+            pool.release( window );
+        }
+    }
+
+    private FileChannel newChannel( String name ) throws Exception
+    {
+        String filename = new File( directory.directory(), name ).getAbsolutePath();
+        return resources.add( new RandomAccessFile( filename, "rw" ) ).getChannel();
+    }
+
+    private PageCacheWindowPool newPool( FileChannel channel, PageCache pageCache )
+    {
+        return new PageCacheWindowPool( new File( "test.store" ), RECORD_SIZE, channel, pageCache, false,
+                StringLogger.DEV_NULL );
+    }
+}
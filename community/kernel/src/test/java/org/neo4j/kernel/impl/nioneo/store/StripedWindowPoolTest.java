@@ -0,0 +1,242 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.kernel.impl.util.StringLogger;
+import org.neo4j.test.OtherThreadExecutor;
+import org.neo4j.test.OtherThreadExecutor.WorkerCommand;
+import org.neo4j.test.ResourceCollection;
+import org.neo4j.test.TargetDirectory;
+
+public class StripedWindowPoolTest
+{
+    private static final TargetDirectory target = TargetDirectory.forTest( StripedWindowPoolTest.class );
+    @Rule
+    public final TargetDirectory.TestDirectory directory = target.testDirectory();
+    @Rule
+    public final ResourceCollection resources = new ResourceCollection();
+
+    private static final int RECORD_SIZE = 8;
+    private static final int PAGE_SIZE = RECORD_SIZE * 16;
+
+    @Test
+    public void shouldReadBackRecordWrittenThroughMappedPage() throws Exception
+    {
+        // given
+        StripedWindowPool pool = newPool( PAGE_SIZE * 4 );
+        PersistenceWindow window = pool.acquire( 20, OperationType.WRITE );
+        try
+        {
+            window.getOffsettedBuffer( 20 ).putLong( 1234 );
+        }
+        finally
+        {
+            pool.release( window );
+        }
+
+        // when
+        window = pool.acquire( 20, OperationType.READ );
+        try
+        {
+            // then
+            assertFalse( window instanceof PersistenceRow );
+            assertEquals( 1234, window.getOffsettedBuffer( 20 ).getLong() );
+        }
+        finally
+        {
+            pool.release( window );
+        }
+        pool.close();
+    }
+
+    @Test
+    public void shouldFallBackToRowsWhenNoMemoryIsAvailable() throws Exception
+    {
+        // given
+        StripedWindowPool pool = newPool( 0 );
+
+        // when
+        PersistenceWindow window = pool.acquire( 3, OperationType.WRITE );
+        try
+        {
+            window.getOffsettedBuffer( 3 ).putLong( 42 );
+        }
+        finally
+        {
+            pool.release( window );
+        }
+
+        // then
+        assertTrue( window instanceof PersistenceRow );
+        window = pool.acquire( 3, OperationType.READ );
+        try
+        {
+            assertEquals( 42, window.getOffsettedBuffer( 3 ).getLong() );
+        }
+        finally
+        {
+            pool.release( window );
+        }
+        pool.close();
+    }
+
+    @Test
+    public void readersOfTheSamePageShouldNotBlockEachOther() throws Exception
+    {
+        // given
+        final StripedWindowPool pool = newPool( PAGE_SIZE * 4 );
+        PersistenceWindow window = pool.acquire( 0, OperationType.READ );
+        OtherThreadExecutor<Void> otherThread = new OtherThreadExecutor<Void>( "other reader", null );
+        try
+        {
+            // when
+            Boolean mapped = otherThread.execute( new WorkerCommand<Void, Boolean>()
+            {
+                @Override
+                public Boolean doWork( Void state )
+                {
+                    PersistenceWindow otherWindow = pool.acquire( 1, OperationType.READ );
+                    pool.release( otherWindow );
+                    return !(otherWindow instanceof PersistenceRow);
+                }
+            }, 10, SECONDS );
+
+            // then
+            assertTrue( mapped );
+        }
+        finally
+        {
+            pool.release( window );
+            otherThread.shutdown();
+        }
+        pool.close();
+    }
+
+    @Test
+    public void shouldEvictUnpinnedPagesWhenRunningOutOfMemory() throws Exception
+    {
+        // given
+        StripedWindowPool pool = newPool( PAGE_SIZE * 2 );
+
+        // when
+        long deadline = System.currentTimeMillis() + SECONDS.toMillis( 10 );
+        while ( pool.getStats().getEvictionCount() == 0 && System.currentTimeMillis() < deadline )
+        {
+            for ( long position = 0; position < 16 * 10; position += 16 )
+            {
+                pool.release( pool.acquire( position, OperationType.READ ) );
+            }
+            Thread.sleep( 10 );
+        }
+
+        // then
+        WindowPoolStats stats = pool.getStats();
+        assertTrue( stats.getEvictionCount() > 0 );
+        assertTrue( stats.getMemUsed() <= stats.getMemAvail() );
+        pool.close();
+    }
+
+    @Test
+    public void shouldNotUseMappedPageForRecordWithActiveRow() throws Exception
+    {
+        // given a row for a record in a page that can't be mapped since the only page of memory is pinned
+        final StripedWindowPool pool = newPool( PAGE_SIZE );
+        PersistenceWindow pinned = pool.acquire( 0, OperationType.READ );
+        PersistenceWindow row = pool.acquire( 16, OperationType.WRITE );
+        assertTrue( row instanceof PersistenceRow );
+        pool.release( pinned );
+        OtherThreadExecutor<Void> otherThread = new OtherThreadExecutor<Void>( "incrementer", null );
+        try
+        {
+            // when the page gets mapped and another thread increments the record meanwhile
+            Future<Boolean> incremented = otherThread.executeDontWait( new WorkerCommand<Void, Boolean>()
+            {
+                @Override
+                public Boolean doWork( Void state )
+                {
+                    long deadline = System.currentTimeMillis() + SECONDS.toMillis( 10 );
+                    PersistenceWindow window;
+                    do
+                    {
+                        window = pool.acquire( 17, OperationType.READ );
+                        pool.release( window );
+                    }
+                    while ( window instanceof PersistenceRow && System.currentTimeMillis() < deadline );
+                    if ( window instanceof PersistenceRow )
+                    {
+                        return false;
+                    }
+
+                    window = pool.acquire( 16, OperationType.WRITE );
+                    try
+                    {
+                        Buffer buffer = window.getOffsettedBuffer( 16 );
+                        long value = buffer.getLong();
+                        window.getOffsettedBuffer( 16 ).putLong( value + 1 );
+                    }
+                    finally
+                    {
+                        pool.release( window );
+                    }
+                    return true;
+                }
+            } );
+            otherThread.waitUntilWaiting();
+            row.getOffsettedBuffer( 16 ).putLong( 5 );
+            pool.release( row );
+            assertTrue( "Page never got mapped", otherThread.awaitFuture( incremented ) );
+
+            // then the increment should be of what the row wrote
+            PersistenceWindow window = pool.acquire( 16, OperationType.READ );
+            try
+            {
+                assertEquals( 6, window.getOffsettedBuffer( 16 ).getLong() );
+            }
+            finally
+            {
+                pool.release( window );
+            }
+        }
+        finally
+        {
+            otherThread.shutdown();
+        }
+        pool.close();
+    }
+
+    private StripedWindowPool newPool( long mappedMemory ) throws Exception
+    {
+        String filename = new File( directory.directory(), "striped.file" ).getAbsolutePath();
+        RandomAccessFile file = resources.add( new RandomAccessFile( filename, "rw" ) );
+        return new StripedWindowPool( new File( "test.store" ), RECORD_SIZE, file.getChannel(), mappedMemory,
+                PAGE_SIZE, false, StringLogger.DEV_NULL );
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.neo4j.kernel.impl.nioneo.store.ChangedPages.NO_EPOCH;
+import static org.neo4j.kernel.impl.nioneo.store.ChangedPages.PAGE_SIZE;
+
+import java.io.File;
+import java.util.BitSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.test.EphemeralFileSystemRule;
+
+public class TestChangedPages
+{
+    private static final int RECORD_SIZE = 9;
+
+    @Rule public EphemeralFileSystemRule fs = new EphemeralFileSystemRule();
+    private final File storeFile = new File( "neostore.nodestore.db" );
+
+    @Test
+    public void shouldNotKnowChangesOfFirstEpoch() throws Exception
+    {
+        ChangedPages pages = ChangedPages.open( fs.get(), storeFile, RECORD_SIZE );
+        pages.markRecord( 0 );
+
+        assertEquals( NO_EPOCH, pages.getEpoch() );
+        assertNull( pages.startEpoch( 1 ) );
+        assertEquals( 1, pages.getEpoch() );
+    }
+
+    @Test
+    public void shouldReturnPagesOfWrittenRecords() throws Exception
+    {
+        ChangedPages pages = ChangedPages.open( fs.get(), storeFile, RECORD_SIZE );
+        pages.startEpoch( 1 );
+
+        pages.markRecord( 0 );
+        pages.markRecord( 1 );
+        pages.markRecord( recordInPage( 5 ) );
+        assertEquals( 2, pages.countChangedPages() );
+
+        assertEquals( bits( 0, 5 ), pages.startEpoch( 2 ) );
+        assertEquals( new BitSet(), pages.startEpoch( 3 ) );
+    }
+
+    @Test
+    public void shouldMarkBothPagesOfRecordOnPageBoundary() throws Exception
+    {
+        ChangedPages pages = ChangedPages.open( fs.get(), storeFile, RECORD_SIZE );
+        pages.startEpoch( 1 );
+
+        pages.markRecord( PAGE_SIZE / RECORD_SIZE );
+
+        assertEquals( bits( 0, 1 ), pages.startEpoch( 2 ) );
+    }
+
+    @Test
+    public void shouldKeepEpochAndPagesOverCleanClose() throws Exception
+    {
+        ChangedPages pages = ChangedPages.open( fs.get(), storeFile, RECORD_SIZE );
+        pages.startEpoch( 10 );
+        pages.markRecord( recordInPage( 3 ) );
+        pages.markRecord( recordInPage( 70000 ) );
+        pages.close();
+
+        pages = ChangedPages.open( fs.get(), storeFile, RECORD_SIZE );
+        assertEquals( 10, pages.getEpoch() );
+        assertEquals( bits( 3, 70000 ), pages.startEpoch( 11 ) );
+    }
+
+    @Test
+    public void shouldNotKnowChangesAfterCrash() throws Exception
+    {
+        ChangedPages pages = ChangedPages.open( fs.get(), storeFile, RECORD_SIZE );
+        pages.startEpoch( 10 );
+        pages.close();
+        pages = ChangedPages.open( fs.get(), storeFile, RECORD_SIZE );
+        pages.markRecord( 0 );
+        // No close, like after a crash
+
+        pages = ChangedPages.open( fs.get(), storeFile, RECORD_SIZE );
+        assertEquals( NO_EPOCH, pages.getEpoch() );
+        assertNull( pages.startEpoch( 11 ) );
+    }
+
+    private long recordInPage( long page )
+    {
+        return page * PAGE_SIZE / RECORD_SIZE + 1;
+    }
+
+    private BitSet bits( int... pages )
+    {
+        BitSet bits = new BitSet();
+        for ( int page : pages )
+        {
+            bits.set( page );
+        }
+        return bits;
+    }
+}
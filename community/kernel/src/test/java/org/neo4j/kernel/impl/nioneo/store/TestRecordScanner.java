@@ -0,0 +1,254 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.helpers.collection.IteratorUtil.count;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.kernel.EmbeddedReadOnlyGraphDatabase;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.test.TargetDirectory;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+public class TestRecordScanner
+{
+    private GraphDatabaseAPI db;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void shutdownDb()
+    {
+        executor.shutdown();
+        if ( db != null )
+        {
+            db.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldScanRecordsInUseInIdOrder() throws Exception
+    {
+        db = (GraphDatabaseAPI) new TestGraphDatabaseFactory().newImpermanentDatabase();
+        List<Long> expected = createNodesAndDeleteEveryThird( 1000 );
+
+        // Chunks of a few records each, to cross many chunk and window boundaries
+        RecordScanner<NodeRecord> scanner = scanner( nodeStore(), 0, nodeStore().getHighId(), 7, executor );
+        List<Long> ids = new ArrayList<Long>();
+        while ( scanner.hasNext() )
+        {
+            ids.add( scanner.next().getId() );
+        }
+
+        assertEquals( expected, ids );
+    }
+
+    @Test
+    public void shouldScanOnlyTheGivenRange() throws Exception
+    {
+        db = (GraphDatabaseAPI) new TestGraphDatabaseFactory().newImpermanentDatabase();
+        createNodesAndDeleteEveryThird( 100 );
+
+        RecordScanner<NodeRecord> scanner = scanner( nodeStore(), 10, 20, 3, executor );
+        List<Long> ids = new ArrayList<Long>();
+        while ( scanner.hasNext() )
+        {
+            ids.add( scanner.next().getId() );
+        }
+
+        List<Long> expected = new ArrayList<Long>();
+        for ( long id = 10; id < 20; id++ )
+        {
+            if ( nodeStore().loadLightNode( id ) != null )
+            {
+                expected.add( id );
+            }
+        }
+        assertEquals( expected, ids );
+    }
+
+    @Test
+    public void shouldScanNothingInAnEmptyRange() throws Exception
+    {
+        db = (GraphDatabaseAPI) new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        assertFalse( nodeStore().scan( 5, 5, executor ).hasNext() );
+        assertFalse( nodeStore().scan( 5, 5, null ).hasNext() );
+    }
+
+    @Test
+    public void shouldReadChunksAsTheyAreNeededWithoutExecutor() throws Exception
+    {
+        db = (GraphDatabaseAPI) new TestGraphDatabaseFactory().newImpermanentDatabase();
+        List<Long> expected = createNodesAndDeleteEveryThird( 1000 );
+
+        RecordScanner<NodeRecord> scanner = scanner( nodeStore(), 0, nodeStore().getHighId(), 7, null );
+        List<Long> ids = new ArrayList<Long>();
+        while ( scanner.hasNext() )
+        {
+            ids.add( scanner.next().getId() );
+        }
+
+        assertEquals( expected, ids );
+    }
+
+    @Test
+    public void shouldReadUnmappedPartsOfTheStoreStraightFromTheFile() throws Exception
+    {
+        db = (GraphDatabaseAPI) new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder()
+                .setConfig( GraphDatabaseSettings.nodestore_mapped_memory_size, "0M" ).newGraphDatabase();
+        List<Long> expected = createNodesAndDeleteEveryThird( 1000 );
+        int acquiredBefore = acquiredWindows( nodeStore() );
+
+        RecordScanner<NodeRecord> scanner = scanner( nodeStore(), 0, nodeStore().getHighId(), 500, executor );
+        List<Long> ids = new ArrayList<Long>();
+        while ( scanner.hasNext() )
+        {
+            ids.add( scanner.next().getId() );
+        }
+
+        assertEquals( expected, ids );
+        // One row per chunk, rather than one per record
+        assertTrue( acquiredWindows( nodeStore() ) - acquiredBefore <= 3 );
+    }
+
+    @Test
+    public void shouldStopReadingAheadWhenClosed() throws Exception
+    {
+        db = (GraphDatabaseAPI) new TestGraphDatabaseFactory().newImpermanentDatabase();
+        createNodesAndDeleteEveryThird( 1000 );
+        RecordScanner<NodeRecord> scanner = scanner( nodeStore(), 0, nodeStore().getHighId(), 1, executor );
+        scanner.next();
+
+        // when
+        scanner.close();
+
+        // then
+        executor.shutdown();
+        assertTrue( executor.awaitTermination( 10, TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    public void shouldSeeAllNodesAndRelationshipsThroughGlobalOperations() throws Exception
+    {
+        db = (GraphDatabaseAPI) new TestGraphDatabaseFactory().newImpermanentDatabase();
+        List<Long> nodes = createNodesAndDeleteEveryThird( 300 );
+
+        Transaction tx = db.beginTx();
+        Node previous = null;
+        for ( Node node : GlobalGraphOperations.at( db ).getAllNodes() )
+        {
+            if ( previous != null )
+            {
+                previous.createRelationshipTo( node, DynamicRelationshipType.withName( "NEXT" ) );
+            }
+            previous = node;
+        }
+        tx.success();
+        tx.finish();
+
+        assertEquals( nodes.size(), count( GlobalGraphOperations.at( db ).getAllNodes() ) );
+        assertEquals( nodes.size() - 1, count( GlobalGraphOperations.at( db ).getAllRelationships() ) );
+    }
+
+    @Test
+    public void shouldReadReadOnlyStoresStraightFromTheFile() throws Exception
+    {
+        File storeDir = TargetDirectory.forTest( getClass() ).directory( "readonly", true );
+        db = (GraphDatabaseAPI) new TestGraphDatabaseFactory().newEmbeddedDatabase( storeDir.getAbsolutePath() );
+        List<Long> expected = createNodesAndDeleteEveryThird( 500 );
+        db.shutdown();
+
+        db = new EmbeddedReadOnlyGraphDatabase( storeDir.getAbsolutePath() );
+        List<Long> ids = new ArrayList<Long>();
+        RecordScanner<NodeRecord> scanner = scanner( nodeStore(), 0, nodeStore().getHighId() + 10, 11, executor );
+        while ( scanner.hasNext() )
+        {
+            ids.add( scanner.next().getId() );
+        }
+
+        assertEquals( expected, ids );
+    }
+
+    private List<Long> createNodesAndDeleteEveryThird( int count )
+    {
+        List<Long> ids = new ArrayList<Long>();
+        ids.add( db.getReferenceNode().getId() );
+        Transaction tx = db.beginTx();
+        List<Node> nodes = new ArrayList<Node>();
+        for ( int i = 0; i < count; i++ )
+        {
+            nodes.add( db.createNode() );
+        }
+        for ( int i = 0; i < count; i++ )
+        {
+            if ( i % 3 == 0 )
+            {
+                nodes.get( i ).delete();
+            }
+            else
+            {
+                ids.add( nodes.get( i ).getId() );
+            }
+        }
+        tx.success();
+        tx.finish();
+        return ids;
+    }
+
+    private NodeStore nodeStore()
+    {
+        return db.getXaDataSourceManager().getNeoStoreDataSource().getNeoStore().getNodeStore();
+    }
+
+    private static int acquiredWindows( NodeStore store )
+    {
+        WindowPoolStats stats = store.getWindowPoolStats();
+        return stats.getHitCount() + stats.getMissCount();
+    }
+
+    private static RecordScanner<NodeRecord> scanner( final NodeStore store, long fromId, long toId,
+            int recordsPerChunk, ExecutorService executor )
+    {
+        return new RecordScanner<NodeRecord>( store, fromId, toId, recordsPerChunk * store.getRecordSize(), executor )
+        {
+            @Override
+            protected NodeRecord read( long id, Buffer buffer )
+            {
+                return store.getRecord( id, buffer, RecordLoad.CHECK );
+            }
+        };
+    }
+}
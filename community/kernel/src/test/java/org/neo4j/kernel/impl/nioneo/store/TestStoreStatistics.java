@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+public class TestStoreStatistics
+{
+    private static final RelationshipType LIVES_IN = DynamicRelationshipType.withName( "LIVES_IN" );
+    private static final RelationshipType KNOWS = DynamicRelationshipType.withName( "KNOWS" );
+
+    private GraphDatabaseAPI db;
+
+    @Before
+    public void startDb()
+    {
+        db = (GraphDatabaseAPI) new TestGraphDatabaseFactory().newImpermanentDatabase();
+    }
+
+    @After
+    public void shutdownDb()
+    {
+        db.shutdown();
+    }
+
+    @Test
+    public void shouldCountRelationshipsPerTypeAndTheirDegreePerDirection() throws Exception
+    {
+        // 100 people living in 2 cities, each knowing the next one
+        createPeopleInCities( 100, 2 );
+
+        StoreStatistics statistics = statistics();
+
+        assertEquals( 100, statistics.getRelationshipCount( typeId( LIVES_IN ) ) );
+        assertEquals( 99, statistics.getRelationshipCount( typeId( KNOWS ) ) );
+        assertEquals( 1.0, statistics.getAverageDegree( typeId( LIVES_IN ), Direction.OUTGOING ), 0.1 );
+        assertEquals( 50.0, statistics.getAverageDegree( typeId( LIVES_IN ), Direction.INCOMING ), 5 );
+        assertEquals( 1.0, statistics.getAverageDegree( typeId( KNOWS ), Direction.INCOMING ), 0.1 );
+    }
+
+    @Test
+    public void shouldKeepCountingOnCommit() throws Exception
+    {
+        createPeopleInCities( 10, 1 );
+        StoreStatistics statistics = statistics();
+        assertEquals( 10, statistics.getRelationshipCount( typeId( LIVES_IN ) ) );
+
+        Transaction tx = db.beginTx();
+        Relationship toDelete = db.getNodeById( 1 ).getSingleRelationship( LIVES_IN, Direction.OUTGOING );
+        toDelete.delete();
+        Node newcomer = db.createNode();
+        newcomer.createRelationshipTo( toDelete.getEndNode(), LIVES_IN );
+        newcomer.createRelationshipTo( toDelete.getEndNode(), KNOWS );
+        tx.success();
+        tx.finish();
+
+        assertEquals( 10, statistics.getRelationshipCount( typeId( LIVES_IN ) ) );
+        assertEquals( 10, statistics.getRelationshipCount( typeId( KNOWS ) ) );
+    }
+
+    @Test
+    public void shouldAverageIndexHits() throws Exception
+    {
+        StoreStatistics statistics = statistics();
+        assertEquals( -1.0, statistics.getIndexHits( "people", "name" ), 0 );
+
+        statistics.indexQueried( "people", "name", 10 );
+        statistics.indexQueried( "people", "name", 20 );
+
+        double hits = statistics.getIndexHits( "people", "name" );
+        assertTrue( "" + hits, hits > 10 && hits < 20 );
+    }
+
+    @Test
+    public void shouldSampleRangesSpreadOverTheStore() throws Exception
+    {
+        assertEquals( 1, StoreStatistics.sampleRanges( 1000 ).length );
+
+        long highId = 100L * StoreStatistics.SAMPLE_RANGES * StoreStatistics.SAMPLE_RANGE_SIZE;
+        long[][] ranges = StoreStatistics.sampleRanges( highId );
+        assertEquals( StoreStatistics.SAMPLE_RANGES, ranges.length );
+        assertEquals( 0, ranges[0][0] );
+        assertTrue( ranges[ranges.length - 1][1] <= highId );
+    }
+
+    private void createPeopleInCities( int people, int cities )
+    {
+        Transaction tx = db.beginTx();
+        Node[] personNodes = new Node[people];
+        for ( int i = 0; i < people; i++ )
+        {
+            personNodes[i] = db.createNode();
+        }
+        Node[] cityNodes = new Node[cities];
+        for ( int i = 0; i < cities; i++ )
+        {
+            cityNodes[i] = db.createNode();
+        }
+        for ( int i = 0; i < people; i++ )
+        {
+            personNodes[i].createRelationshipTo( cityNodes[i % cities], LIVES_IN );
+            if ( i > 0 )
+            {
+                personNodes[i - 1].createRelationshipTo( personNodes[i], KNOWS );
+            }
+        }
+        tx.success();
+        tx.finish();
+    }
+
+    private int typeId( RelationshipType type )
+    {
+        return db.getNodeManager().getRelationshipTypeHolder().getIdFor( type.name() );
+    }
+
+    private StoreStatistics statistics()
+    {
+        return db.getXaDataSourceManager().getNeoStoreDataSource().getNeoStore().getStatistics();
+    }
+}
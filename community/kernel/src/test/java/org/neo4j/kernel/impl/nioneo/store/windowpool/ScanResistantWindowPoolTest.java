@@ -5,34 +5,50 @@
  * This file is part of Neo4j.
  *
  * Neo4j is free software: you can redistribute it and/or modify
- * it under the terms of the GNU Affero General Public License as
- * published by the Free Software Foundation, either version 3 of the
- * License, or (at your option) any later version.
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
  *
  * This program is distributed in the hope that it will be useful,
  * but WITHOUT ANY WARRANTY; without even the implied warranty of
  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
- * GNU Affero General Public License for more details.
+ * GNU General Public License for more details.
  *
- * You should have received a copy of the GNU Affero General Public License
- * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-package org.neo4j.consistency.store.windowpool;
+package org.neo4j.kernel.impl.nioneo.store.windowpool;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
+import java.io.RandomAccessFile;
 
+import org.junit.Rule;
 import org.junit.Test;
-import org.neo4j.consistency.store.paging.PageReplacementStrategy;
-import org.neo4j.consistency.store.paging.StubPageReplacementStrategy;
 import org.neo4j.kernel.impl.nioneo.store.OperationType;
+import org.neo4j.kernel.impl.nioneo.store.PersistenceWindow;
+import org.neo4j.kernel.impl.nioneo.store.paging.Cart;
+import org.neo4j.kernel.impl.nioneo.store.paging.PageReplacementStrategy;
+import org.neo4j.kernel.impl.nioneo.store.paging.StubPageReplacementStrategy;
+import org.neo4j.test.ResourceCollection;
+import org.neo4j.test.TargetDirectory;
 
 public class ScanResistantWindowPoolTest
 {
+    private static final TargetDirectory target = TargetDirectory.forTest( ScanResistantWindowPoolTest.class );
+    @Rule
+    public final TargetDirectory.TestDirectory directory = target.testDirectory();
+    @Rule
+    public final ResourceCollection resources = new ResourceCollection();
+
     @Test
     public void shouldMapConsecutiveWindowsWithAppropriateBoundaries() throws Exception
     {
@@ -40,6 +56,8 @@ public class ScanResistantWindowPoolTest
         int bytesPerRecord = 10;
         int targetBytesPerPage = 1000;
         FileMapper fileMapper = mock( FileMapper.class );
+        MappedWindow window = pinnableWindow();
+        when( fileMapper.mapWindow( anyLong(), anyInt(), anyInt() ) ).thenReturn( window );
         ScanResistantWindowPool pool = new ScanResistantWindowPool( new File("storeFileName"), bytesPerRecord, targetBytesPerPage,
                 fileMapper, new StubPageReplacementStrategy(), 100000, mock( MappingStatisticsListener.class ) );
 
@@ -117,13 +135,14 @@ public class ScanResistantWindowPoolTest
         }
     }
     @Test
-    public void shouldRejectWriteOperations() throws Exception
+    public void shouldRejectWriteOperationsOnReadOnlyStore() throws Exception
     {
         // given
         int recordSize = 9;
         int targetBytesPerPage = 4096;
         ScanResistantWindowPool pool = new ScanResistantWindowPool( new File("storeFileName"), recordSize, targetBytesPerPage,
-                mock( FileMapper.class ), mock( PageReplacementStrategy.class ), 100000, mock( MappingStatisticsListener.class ) );
+                mock( FileMapper.class ), mock( PageReplacementStrategy.class ), 100000, mock( MappingStatisticsListener.class ),
+                true, 0 );
 
         // when
         try
@@ -145,9 +164,9 @@ public class ScanResistantWindowPoolTest
         int bytesPerRecord = 10;
         int targetBytesPerPage = 1000;
         FileMapper fileMapper = mock( FileMapper.class );
-        MappedWindow window0 = mock( MappedWindow.class );
+        MappedWindow window0 = pinnableWindow();
         when( fileMapper.mapWindow(  0, 100, 10  ) ).thenReturn( window0 );
-        MappedWindow window1 = mock( MappedWindow.class );
+        MappedWindow window1 = pinnableWindow();
         when( fileMapper.mapWindow(  100, 100, 10  ) ).thenReturn( window1 );
         ScanResistantWindowPool pool = new ScanResistantWindowPool( new File("storeFileName"), bytesPerRecord, targetBytesPerPage,
                 fileMapper, new StubPageReplacementStrategy(), 100000, mock( MappingStatisticsListener.class ) );
@@ -163,4 +182,86 @@ public class ScanResistantWindowPoolTest
         verify( window1 ).close();
     }
 
+    @Test
+    public void shouldReadBackRecordsWrittenThroughTheMappedPages() throws Exception
+    {
+        // given
+        File file = new File( directory.directory(), "store.file" );
+        RandomAccessFile randomAccessFile = resources.add( new RandomAccessFile( file, "rw" ) );
+        ScanResistantWindowPool pool = new ScanResistantWindowPool( file, 8, 80,
+                new FileMapper( randomAccessFile.getChannel(), false ), new Cart( 1 ), 100000,
+                mock( MappingStatisticsListener.class ), false, 0 );
+
+        // when
+        for ( long id = 0; id < 30; id++ )
+        {
+            PersistenceWindow window = pool.acquire( id, OperationType.WRITE );
+            window.getOffsettedBuffer( id ).putLong( id * 3 );
+            pool.release( window );
+        }
+        pool.flushAll();
+
+        // then
+        for ( long id = 0; id < 30; id++ )
+        {
+            PersistenceWindow window = pool.acquire( id, OperationType.READ );
+            assertEquals( id * 3, window.getOffsettedBuffer( id ).getLong() );
+            pool.release( window );
+        }
+        pool.close();
+    }
+
+    @Test
+    public void shouldForgetDirtyWindowEvictedWhileInUse() throws Exception
+    {
+        // given
+        FileMapper fileMapper = mock( FileMapper.class );
+        MappedWindow window = pinnableWindow();
+        when( fileMapper.mapWindow( anyLong(), anyInt(), anyInt() ) ).thenReturn( window );
+        ScanResistantWindowPool pool = new ScanResistantWindowPool( new File( "storeFileName" ), 10, 1000,
+                fileMapper, new StubPageReplacementStrategy(), 100000, mock( MappingStatisticsListener.class ) );
+        PersistenceWindow acquired = pool.acquire( 0, OperationType.WRITE );
+
+        // when
+        when( window.isClosed() ).thenReturn( true );
+        pool.release( acquired );
+        pool.flushAll();
+
+        // then
+        verify( window, never() ).force();
+    }
+
+    @Test
+    public void shouldReportMemoryOfMappedPages() throws Exception
+    {
+        // given
+        File file = new File( directory.directory(), "store.file" );
+        RandomAccessFile randomAccessFile = resources.add( new RandomAccessFile( file, "rw" ) );
+        ScanResistantWindowPool pool = new ScanResistantWindowPool( file, 8, 80,
+                new FileMapper( randomAccessFile.getChannel(), false ), new Cart( 2 ), 100000,
+                mock( MappingStatisticsListener.class ), false, 160 );
+
+        // when
+        for ( long id = 0; id < 30; id += 10 )
+        {
+            pool.release( pool.acquire( id, OperationType.WRITE ) );
+        }
+
+        // then
+        assertEquals( 160, pool.getStats().getMemAvail() );
+        assertEquals( 160, pool.getStats().getMemUsed() );
+
+        // when
+        pool.close();
+
+        // then
+        assertEquals( 0, pool.getStats().getMemUsed() );
+    }
+
+    private static MappedWindow pinnableWindow()
+    {
+        MappedWindow window = mock( MappedWindow.class );
+        when( window.pin() ).thenReturn( true );
+        return window;
+    }
 }
@@ -30,6 +30,7 @@ import java.io.File;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -364,6 +365,117 @@ public class TestRWLock
                 throw stressThread.error;
     }
 
+    @Test
+    public void shouldDiscardLocksNoLongerHeldByAnyone() throws Exception
+    {
+        final ResourceObject shared = new ResourceObject( "shared" );
+        Thread[] threads = new Thread[20];
+        final Exception[] errors = new Exception[threads.length];
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            final int id = i;
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for ( int j = 0; j < 1000; j++ )
+                        {
+                            ResourceObject own = new ResourceObject( "R" + id + "-" + j );
+                            lm.getWriteLock( own );
+                            lm.getReadLock( shared );
+                            lm.releaseReadLock( shared, null );
+                            lm.releaseWriteLock( own, null );
+                        }
+                    }
+                    catch ( Exception e )
+                    {
+                        errors[id] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            threads[i].join();
+            if ( errors[i] != null )
+            {
+                throw errors[i];
+            }
+        }
+
+        assertTrue( lm.getAllLocks().isEmpty() );
+    }
+
+    @Test
+    public void shouldKeepWriteLocksExclusiveWhileLocksAreReused() throws Exception
+    {
+        final ResourceObject[] shared = new ResourceObject[4];
+        final AtomicInteger[] holders = new AtomicInteger[shared.length];
+        for ( int i = 0; i < shared.length; i++ )
+        {
+            shared[i] = new ResourceObject( "shared" + i );
+            holders[i] = new AtomicInteger();
+        }
+        Thread[] threads = new Thread[8];
+        final Exception[] errors = new Exception[threads.length];
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            final int id = i;
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for ( int j = 0; j < 5000; j++ )
+                        {
+                            // locks released on these go back to the pool and are reused for the shared ones
+                            ResourceObject own = new ResourceObject( "R" + id + "-" + j );
+                            lm.getWriteLock( own );
+                            lm.releaseWriteLock( own, null );
+
+                            int index = j % shared.length;
+                            lm.getWriteLock( shared[index] );
+                            try
+                            {
+                                if ( holders[index].incrementAndGet() != 1 )
+                                {
+                                    throw new IllegalStateException( "Two holders of write lock on " + shared[index] );
+                                }
+                                Thread.yield();
+                                holders[index].decrementAndGet();
+                            }
+                            finally
+                            {
+                                lm.releaseWriteLock( shared[index], null );
+                            }
+                        }
+                    }
+                    catch ( Exception e )
+                    {
+                        errors[id] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            threads[i].join();
+            if ( errors[i] != null )
+            {
+                throw errors[i];
+            }
+        }
+
+        assertTrue( lm.getAllLocks().isEmpty() );
+    }
+
     private void sleepALittle()
     {
         try
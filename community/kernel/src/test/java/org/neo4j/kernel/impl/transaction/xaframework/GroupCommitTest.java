@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.xaframework;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class GroupCommitTest
+{
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void shutdownExecutor()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldNotForceAgainForAlreadyForcedTickets() throws Exception
+    {
+        CountingForce force = new CountingForce();
+        GroupCommit groupCommit = new GroupCommit( true, 0, force );
+
+        long first = groupCommit.appended();
+        long second = groupCommit.appended();
+        groupCommit.awaitForced( second );
+        groupCommit.awaitForced( first );
+
+        assertEquals( 1, force.forces.get() );
+        assertEquals( 1, groupCommit.getForceCount() );
+        assertEquals( 2, groupCommit.getMaxBatchSize() );
+    }
+
+    @Test
+    public void shouldForceCommitsAppendedDuringAForceInOneBatch() throws Exception
+    {
+        final CountDownLatch forceStarted = new CountDownLatch( 1 );
+        final CountDownLatch releaseForce = new CountDownLatch( 1 );
+        final CountingForce force = new CountingForce()
+        {
+            @Override
+            public void force() throws IOException
+            {
+                super.force();
+                if ( forces.get() == 1 )
+                {
+                    forceStarted.countDown();
+                    await( releaseForce );
+                }
+            }
+        };
+        final GroupCommit groupCommit = new GroupCommit( true, 0, force );
+
+        Future<Void> leader = executor.submit( committer( groupCommit, groupCommit.appended() ) );
+        await( forceStarted );
+        List<Future<Void>> followers = new ArrayList<Future<Void>>();
+        for ( int i = 0; i < 10; i++ )
+        {
+            followers.add( executor.submit( committer( groupCommit, groupCommit.appended() ) ) );
+        }
+        releaseForce.countDown();
+
+        leader.get( 10, TimeUnit.SECONDS );
+        for ( Future<Void> follower : followers )
+        {
+            follower.get( 10, TimeUnit.SECONDS );
+        }
+        assertEquals( 2, force.forces.get() );
+        assertEquals( 11, groupCommit.getForcedCommitCount() );
+        assertEquals( 10, groupCommit.getMaxBatchSize() );
+    }
+
+    @Test
+    public void shouldLetNextCommitterRetryFailedForce() throws Exception
+    {
+        CountingForce force = new CountingForce()
+        {
+            @Override
+            public void force() throws IOException
+            {
+                if ( forces.incrementAndGet() == 1 )
+                {
+                    throw new IOException( "Simulated failure" );
+                }
+            }
+        };
+        GroupCommit groupCommit = new GroupCommit( true, 0, force );
+
+        long first = groupCommit.appended();
+        long second = groupCommit.appended();
+        try
+        {
+            groupCommit.awaitForced( first );
+            fail( "Should have failed to force" );
+        }
+        catch ( IOException e )
+        {   // Good
+        }
+        groupCommit.awaitForced( second );
+
+        assertEquals( 2, force.forces.get() );
+        assertEquals( 1, groupCommit.getForceCount() );
+    }
+
+    @Test
+    public void shouldMakeAllConcurrentCommitsDurable() throws Exception
+    {
+        final CountingForce force = new CountingForce();
+        final GroupCommit groupCommit = new GroupCommit( true, 1, force );
+
+        List<Callable<Void>> committers = new ArrayList<Callable<Void>>();
+        for ( int i = 0; i < 20; i++ )
+        {
+            committers.add( new Callable<Void>()
+            {
+                @Override
+                public Void call() throws Exception
+                {
+                    for ( int i = 0; i < 100; i++ )
+                    {
+                        long ticket;
+                        synchronized ( force )
+                        {   // The monitor of the log
+                            ticket = groupCommit.appended();
+                        }
+                        groupCommit.awaitForced( ticket );
+                    }
+                    return null;
+                }
+            } );
+        }
+        for ( Future<Void> result : executor.invokeAll( committers ) )
+        {
+            result.get();
+        }
+
+        assertEquals( 2000, groupCommit.getForcedCommitCount() );
+        assertEquals( force.forces.get(), groupCommit.getForceCount() );
+        assertTrue( groupCommit.getForceCount() <= 2000 );
+    }
+
+    @Test
+    public void shouldKeepStatisticsOfForcesReportedWhenDisabled() throws Exception
+    {
+        GroupCommit groupCommit = new GroupCommit( false, 0, new CountingForce() );
+
+        groupCommit.forced( 1, TimeUnit.MICROSECONDS.toNanos( 100 ) );
+        groupCommit.forced( 1, TimeUnit.MICROSECONDS.toNanos( 300 ) );
+
+        assertThat( groupCommit.getForceCount(), is( 2L ) );
+        assertThat( groupCommit.getAverageBatchSize(), is( 1.0 ) );
+        assertThat( groupCommit.getAverageForceTime( TimeUnit.MICROSECONDS ), is( 200L ) );
+        assertThat( groupCommit.getMaxForceTime( TimeUnit.MICROSECONDS ), is( 300L ) );
+    }
+
+    private static Callable<Void> committer( final GroupCommit groupCommit, final long ticket )
+    {
+        return new Callable<Void>()
+        {
+            @Override
+            public Void call() throws Exception
+            {
+                groupCommit.awaitForced( ticket );
+                return null;
+            }
+        };
+    }
+
+    private static void await( CountDownLatch latch ) throws IOException
+    {
+        try
+        {
+            latch.await();
+        }
+        catch ( InterruptedException e )
+        {
+            throw new IOException( e );
+        }
+    }
+
+    private static class CountingForce implements GroupCommit.Force
+    {
+        final AtomicInteger forces = new AtomicInteger();
+
+        @Override
+        public void force() throws IOException
+        {
+            forces.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.batchinsert;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.neo4j.helpers.collection.MapUtil.map;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.test.TargetDirectory;
+
+public class TestParallelBatchImporter
+{
+    private static final RelationshipType KNOWS = DynamicRelationshipType.withName( "KNOWS" );
+    private static final RelationshipType LIKES = DynamicRelationshipType.withName( "LIKES" );
+
+    @Test
+    public void shouldImportNodesAndLinkTheirRelationships() throws Exception
+    {
+        String storeDir = TargetDirectory.forTest( getClass() ).graphDbDir( true ).getAbsolutePath();
+        int nodeCount = ParallelBatchImporter.BATCH_SIZE * 2 + 17;
+        List<InputNode> nodes = new ArrayList<InputNode>();
+        for ( int i = 1; i <= nodeCount; i++ )
+        {
+            Map<String, Object> properties = i % 3 == 0 ? null : map( "name", name( i ), "id", (long) i,
+                    "scores", new int[] { i, i * 2, i * 3 } );
+            nodes.add( new InputNode( i, properties ) );
+        }
+        Random random = new Random( 1234 );
+        List<InputRelationship> relationships = new ArrayList<InputRelationship>();
+        Map<Long, Integer> degrees = new HashMap<Long, Integer>();
+        for ( int i = 0; i < nodeCount * 3; i++ )
+        {
+            long start = 1 + random.nextInt( 100 );
+            long end = i % 50 == 0 ? start : 1 + random.nextInt( nodeCount );
+            relationships.add( new InputRelationship( start, end, i % 2 == 0 ? KNOWS : LIKES,
+                    i % 4 == 0 ? map( "since", i ) : null ) );
+            increment( degrees, start );
+            if ( end != start )
+            {
+                increment( degrees, end );
+            }
+        }
+
+        BatchImporter importer = new ParallelBatchImporter( new BatchInserterImpl( storeDir ), 3 );
+        try
+        {
+            importer.doImport( nodes.iterator(), relationships.iterator() );
+            for ( ImportStage stage : importer.getStages() )
+            {
+                if ( stage.getName().endsWith( "write records" ) || stage.getName().endsWith( "assign ids" ) )
+                {
+                    assertTrue( stage.toString(), stage.getRecords() == nodeCount ||
+                            stage.getRecords() == relationships.size() );
+                }
+            }
+        }
+        finally
+        {
+            importer.shutdown();
+        }
+
+        GraphDatabaseService db = new GraphDatabaseFactory().newEmbeddedDatabase( storeDir );
+        try
+        {
+            for ( int i = 1; i <= nodeCount; i++ )
+            {
+                Node node = db.getNodeById( i );
+                if ( i % 3 == 0 )
+                {
+                    assertFalse( node.getPropertyKeys().iterator().hasNext() );
+                }
+                else
+                {
+                    assertEquals( name( i ), node.getProperty( "name" ) );
+                    assertEquals( (long) i, node.getProperty( "id" ) );
+                    assertArrayEquals( new int[] { i, i * 2, i * 3 }, (int[]) node.getProperty( "scores" ) );
+                }
+                int degree = 0;
+                for ( Relationship relationship : node.getRelationships() )
+                {
+                    assertTrue( relationship.getStartNode().equals( node ) ||
+                            relationship.getEndNode().equals( node ) );
+                    degree++;
+                }
+                Integer expected = degrees.get( (long) i );
+                assertEquals( "degree of " + node, expected == null ? 0 : expected.intValue(), degree );
+            }
+            for ( int i = 0; i < relationships.size(); i += 97 )
+            {
+                Relationship relationship = db.getRelationshipById( i );
+                InputRelationship input = relationships.get( i );
+                assertEquals( input.getStartNode(), relationship.getStartNode().getId() );
+                assertEquals( input.getEndNode(), relationship.getEndNode().getId() );
+                assertEquals( input.getType().name(), relationship.getType().name() );
+                assertEquals( i % 4 == 0 ? i : null, relationship.getProperty( "since", null ) );
+            }
+
+            // Deleting relationships unlinks them using the previous relationship pointers
+            Transaction tx = db.beginTx();
+            try
+            {
+                for ( Relationship relationship : db.getNodeById( 7 ).getRelationships() )
+                {
+                    relationship.delete();
+                }
+                tx.success();
+            }
+            finally
+            {
+                tx.finish();
+            }
+            assertFalse( db.getNodeById( 7 ).hasRelationship() );
+            int total = 0;
+            for ( int i = 1; i <= 100; i++ )
+            {
+                for ( Relationship relationship : db.getNodeById( i ).getRelationships() )
+                {
+                    total++;
+                }
+            }
+            assertTrue( total > 0 );
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldRejectNodesWhichAreNotInIdOrder() throws Exception
+    {
+        String storeDir = TargetDirectory.forTest( getClass() ).graphDbDir( true ).getAbsolutePath();
+        BatchImporter importer = new ParallelBatchImporter( new BatchInserterImpl( storeDir ), 2 );
+        try
+        {
+            importer.doImport( nodes( 1, 2, 5, 4 ), Collections.<InputRelationship>emptyList().iterator() );
+            fail( "Should not import nodes out of order" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // expected
+        }
+        finally
+        {
+            importer.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldRejectRelationshipsToNodesWhichDontExist() throws Exception
+    {
+        String storeDir = TargetDirectory.forTest( getClass() ).graphDbDir( true ).getAbsolutePath();
+        BatchImporter importer = new ParallelBatchImporter( new BatchInserterImpl( storeDir ), 2 );
+        try
+        {
+            importer.doImport( nodes( 1, 2 ), Collections.singletonList(
+                    new InputRelationship( 1, 3, KNOWS, null ) ).iterator() );
+            fail( "Should not import relationships to missing nodes" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // expected
+        }
+        finally
+        {
+            importer.shutdown();
+        }
+    }
+
+    private static Iterator<InputNode> nodes( long... ids )
+    {
+        List<InputNode> nodes = new ArrayList<InputNode>();
+        for ( long id : ids )
+        {
+            nodes.add( new InputNode( id, null ) );
+        }
+        return nodes.iterator();
+    }
+
+    private static String name( int i )
+    {
+        // Every tenth name is too long to be inlined, so that it goes to the string store
+        return i % 10 == 0 ? "a rather long name which needs a dynamic record, number " + i : "node" + i;
+    }
+
+    private static void increment( Map<Long, Integer> counts, long key )
+    {
+        Integer count = counts.get( key );
+        counts.put( key, count == null ? 1 : count + 1 );
+    }
+}
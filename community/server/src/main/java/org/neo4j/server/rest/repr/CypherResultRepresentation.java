@@ -37,6 +37,7 @@ import org.neo4j.server.webadmin.rest.representations.JmxAttributeRepresentation
 
 public class CypherResultRepresentation extends MappingRepresentation
 {
+    private final ExecutionResult result;
     private final ListRepresentation resultRepresentation;
     private final ListRepresentation columns;
     private final MappingRepresentation plan;
@@ -45,6 +46,7 @@ public class CypherResultRepresentation extends MappingRepresentation
     public CypherResultRepresentation( final ExecutionResult result, boolean includePlan )
     {
         super( RepresentationType.STRING );
+        this.result = result;
         resultRepresentation = createResultRepresentation( result );
         columns = ListRepresentation.string( result.columns() );
         plan = includePlan ? createPlanRepresentation( planProvider( result ) ) : null;
@@ -54,7 +56,15 @@ public class CypherResultRepresentation extends MappingRepresentation
     protected void serialize( MappingSerializer serializer )
     {
         serializer.putList( "columns", columns );
-        serializer.putList( "data", resultRepresentation );
+        try
+        {
+            serializer.putList( "data", resultRepresentation );
+        }
+        finally
+        {
+            // Rows are pulled from the query as they are written, so a client that goes away leaves it half read
+            result.close();
+        }
         if (plan != null)
             serializer.putMapping( "plan", plan );
     }
@@ -101,6 +111,13 @@ public class CypherResultRepresentation extends MappingRepresentation
                     ProfilerStatistics stats = planDescription.getProfilerStatistics();
                     mappingSerializer.putNumber( "rows", stats.getRows() );
                     mappingSerializer.putNumber( "dbHits", stats.getDbHits() );
+                    mappingSerializer.putNumber( "timeMillis", stats.getTimeMillis() );
+                    if ( stats.getAllocatedBytes() >= 0 )
+                    {
+                        mappingSerializer.putNumber( "allocatedBytes", stats.getAllocatedBytes() );
+                    }
+                    mappingSerializer.putNumber( "cacheHits", stats.getCacheHits() );
+                    mappingSerializer.putNumber( "cacheMisses", stats.getCacheMisses() );
                 }
 
                 mappingSerializer.putList( "children",
@@ -80,7 +80,7 @@ public class StreamingJsonFormat extends RepresentationFormat implements Streami
     public StreamingRepresentationFormat writeTo(OutputStream output) {
         try {
             final JsonGenerator g = factory.createJsonGenerator(output);
-            return new StreamingRepresentationFormat(g,this);
+            return new StreamingRepresentationFormat(new IntervalFlush(g),this);
         } catch (IOException e) {
             throw new WebApplicationException( e );
         }
@@ -178,11 +178,45 @@ public class StreamingJsonFormat extends RepresentationFormat implements Streami
         return string;
     }
 
-    private static class StreamingMappingWriter extends MappingWriter {
+    /**
+     * Flushes what has been generated so far once a list element or an object is complete, but at most once per
+     * interval. The first element goes out right away, so a client sees the start of a long result as soon as it
+     * is there, and a slow one holds back the reading of more rows instead of having them pile up in memory.
+     */
+    static class IntervalFlush {
+        static final long INTERVAL_MILLIS = 200;
+
         private final JsonGenerator g;
+        private long lastFlush = 0;
 
-        public StreamingMappingWriter(JsonGenerator g) {
+        IntervalFlush(JsonGenerator g) {
             this.g = g;
+        }
+
+        void completed() {
+            long now = System.currentTimeMillis();
+            if (now - lastFlush >= INTERVAL_MILLIS) {
+                lastFlush = now;
+                flush();
+            }
+        }
+
+        void flush() {
+            try {
+                g.flush();
+            } catch (IOException e) {
+                throw new WebApplicationException(e);
+            }
+        }
+    }
+
+    private static class StreamingMappingWriter extends MappingWriter {
+        private final JsonGenerator g;
+        private final IntervalFlush flush;
+
+        public StreamingMappingWriter(IntervalFlush flush) {
+            this.flush = flush;
+            this.g = flush.g;
             try {
                 g.writeStartObject();
             } catch (IOException e) {
@@ -190,8 +224,9 @@ public class StreamingJsonFormat extends RepresentationFormat implements Streami
             }
         }
 
-        public StreamingMappingWriter(JsonGenerator g, String key) {
-            this.g = g;
+        public StreamingMappingWriter(IntervalFlush flush, String key) {
+            this.flush = flush;
+            this.g = flush.g;
             try {
                 g.writeObjectFieldStart(key);
             } catch (IOException e) {
@@ -201,12 +236,12 @@ public class StreamingJsonFormat extends RepresentationFormat implements Streami
 
         @Override
         public MappingWriter newMapping(String type, String key) {
-            return new StreamingMappingWriter(g,key);
+            return new StreamingMappingWriter(flush,key);
         }
 
         @Override
         public ListWriter newList(String type, String key) {
-            return new StreamingListWriter(g,key);
+            return new StreamingListWriter(flush,key);
         }
 
         @Override
@@ -225,14 +260,17 @@ public class StreamingJsonFormat extends RepresentationFormat implements Streami
             } catch (IOException e) {
                 throw new WebApplicationException(e);
             }
+            flush.completed();
         }
     }
 
     private static class StreamingListWriter extends ListWriter {
         private final JsonGenerator g;
+        private final IntervalFlush flush;
 
-        public StreamingListWriter(JsonGenerator g) {
-            this.g = g;
+        public StreamingListWriter(IntervalFlush flush) {
+            this.flush = flush;
+            this.g = flush.g;
             try {
                 g.writeStartArray();
             } catch (IOException e) {
@@ -240,8 +278,9 @@ public class StreamingJsonFormat extends RepresentationFormat implements Streami
             }
         }
 
-        public StreamingListWriter(JsonGenerator g, String key) {
-            this.g = g;
+        public StreamingListWriter(IntervalFlush flush, String key) {
+            this.flush = flush;
+            this.g = flush.g;
             try {
                 g.writeArrayFieldStart(key);
             } catch (IOException e) {
@@ -251,12 +290,12 @@ public class StreamingJsonFormat extends RepresentationFormat implements Streami
 
         @Override
         public MappingWriter newMapping(String type) {
-            return new StreamingMappingWriter(g);
+            return new StreamingMappingWriter(flush);
         }
 
         @Override
         public ListWriter newList(String type) {
-            return new StreamingListWriter(g);
+            return new StreamingListWriter(flush);
         }
 
         @Override
@@ -275,20 +314,27 @@ public class StreamingJsonFormat extends RepresentationFormat implements Streami
             } catch (IOException e) {
                 throw new WebApplicationException(e);
             }
+            flush.completed();
         }
 
     }
 
     public static class StreamingRepresentationFormat extends RepresentationFormat {
         private final JsonGenerator g;
+        private final IntervalFlush flush;
         private final InputFormat inputFormat;
 
-        public StreamingRepresentationFormat(JsonGenerator g, InputFormat inputFormat) {
+        StreamingRepresentationFormat(IntervalFlush flush, InputFormat inputFormat) {
             super(StreamingFormat.MEDIA_TYPE);
-            this.g = g;
+            this.flush = flush;
+            this.g = flush.g;
             this.inputFormat = inputFormat;
         }
 
+        public StreamingRepresentationFormat(JsonGenerator g, InputFormat inputFormat) {
+            this(new IntervalFlush(g), inputFormat);
+        }
+
         public StreamingRepresentationFormat usePrettyPrinter() {
             g.useDefaultPrettyPrinter();
             return this;
@@ -306,12 +352,12 @@ public class StreamingJsonFormat extends RepresentationFormat implements Streami
 
         @Override
         protected ListWriter serializeList(String type) {
-            return new StreamingListWriter(g);
+            return new StreamingListWriter(flush);
         }
 
         @Override
         public MappingWriter serializeMapping(String type) {
-            return new StreamingMappingWriter(g);
+            return new StreamingMappingWriter(flush);
         }
 
         @Override
@@ -25,13 +25,16 @@ import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.neo4j.server.rest.domain.JsonHelper.jsonToMap;
 
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -61,6 +64,10 @@ public class CypherResultRepresentationTest
         ProfilerStatistics stats = mock( ProfilerStatistics.class );
         when( stats.getDbHits() ).thenReturn( 13l );
         when( stats.getRows() ).thenReturn( 25l );
+        when( stats.getTimeMillis() ).thenReturn( 1.5 );
+        when( stats.getAllocatedBytes() ).thenReturn( 4096l );
+        when( stats.getCacheHits() ).thenReturn( 7l );
+        when( stats.getCacheMisses() ).thenReturn( 3l );
 
         when( plan.getProfilerStatistics() ).thenReturn( stats );
 
@@ -77,6 +84,10 @@ public class CypherResultRepresentationTest
         assertThat( (String) serializedPlan.get( "name" ), equalTo( name ) );
         assertThat( (Integer) serializedPlan.get( "rows" ), is( 25 ) );
         assertThat( (Integer) serializedPlan.get( "dbHits" ), is( 13 ) );
+        assertThat( (Double) serializedPlan.get( "timeMillis" ), is( 1.5 ) );
+        assertThat( (Integer) serializedPlan.get( "allocatedBytes" ), is( 4096 ) );
+        assertThat( (Integer) serializedPlan.get( "cacheHits" ), is( 7 ) );
+        assertThat( (Integer) serializedPlan.get( "cacheMisses" ), is( 3 ) );
 
         List<Map<String, Object>> children = (List<Map<String, Object>>) serializedPlan.get( "children" );
         assertThat( children.size(), is( 1 ) );
@@ -101,6 +112,34 @@ public class CypherResultRepresentationTest
         assertFalse( "Didn't expect to see a plan here", serialized.containsKey( "plan" ) );
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldCloseTheResultWhenSerializationFails() throws Exception
+    {
+        // Given
+        Iterator<Map<String, Object>> rows = mock( Iterator.class );
+        when( rows.hasNext() ).thenReturn( true );
+        when( rows.next() ).thenThrow( new RuntimeException( "client went away" ) );
+
+        ExecutionResult result = mock( ExecutionResult.class );
+        when( result.iterator() ).thenReturn( rows );
+        when( result.columns() ).thenReturn( asList( "n" ) );
+
+        // When
+        try
+        {
+            serialize( new CypherResultRepresentation( result, false ) );
+            fail( "Expected the failure to come through" );
+        }
+        catch ( Exception e )
+        {
+            // expected
+        }
+
+        // Then
+        verify( result ).close();
+    }
+
     private PlanDescription getMockDescription( String name )
     {
         PlanDescription plan = mock( PlanDescription.class );
@@ -24,18 +24,23 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.neo4j.graphdb.Node;
+import org.neo4j.helpers.collection.PrefetchingIterator;
 import org.neo4j.server.rest.domain.JsonHelper;
 import org.neo4j.server.rest.repr.ListRepresentation;
 import org.neo4j.server.rest.repr.MappingRepresentation;
 import org.neo4j.server.rest.repr.MappingSerializer;
 import org.neo4j.server.rest.repr.NodeRepresentation;
 import org.neo4j.server.rest.repr.OutputFormat;
+import org.neo4j.server.rest.repr.Representation;
 import org.neo4j.server.rest.repr.ValueRepresentation;
 import org.neo4j.test.ImpermanentGraphDatabase;
 
@@ -146,4 +151,38 @@ public class StreamingJsonFormatTest
                 JsonHelper.createJsonFrom( Collections.singletonMap( "nested",
                         Collections.singletonMap( "data", "expected data" ) ) ), stream.toString() );
     }
+
+    @Test
+    public void shouldFlushTheFirstElementOfAListBeforeReadingTheNext() throws Exception
+    {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        OutputFormat format = new OutputFormat( new StreamingJsonFormat().writeTo( output ), new URI( "http://localhost/" ), null );
+        final List<String> writtenBeforeSecondElement = new ArrayList<String>();
+
+        format.assemble( new ListRepresentation( "rows", new Iterable<Representation>()
+        {
+            @Override
+            public Iterator<Representation> iterator()
+            {
+                return new PrefetchingIterator<Representation>()
+                {
+                    int row = 0;
+
+                    @Override
+                    protected Representation fetchNextOrNull()
+                    {
+                        row++;
+                        if ( row == 2 )
+                        {
+                            writtenBeforeSecondElement.add( output.toString() );
+                        }
+                        return row <= 2 ? ListRepresentation.strings( "row" + row ) : null;
+                    }
+                };
+            }
+        } ) );
+
+        assertEquals( Arrays.asList( "[[\"row1\"]" ), writtenBeforeSecondElement );
+        assertEquals( "[[\"row1\"],[\"row2\"]]", output.toString() );
+    }
 }
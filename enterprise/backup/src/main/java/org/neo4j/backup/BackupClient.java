@@ -22,6 +22,9 @@ package org.neo4j.backup;
 import static org.neo4j.backup.BackupServer.FRAME_LENGTH;
 import static org.neo4j.backup.BackupServer.PROTOCOL_VERSION;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.neo4j.com.Client;
 import org.neo4j.com.ObjectSerializer;
@@ -29,6 +32,10 @@ import org.neo4j.com.Protocol;
 import org.neo4j.com.RequestContext;
 import org.neo4j.com.RequestType;
 import org.neo4j.com.Response;
+import org.neo4j.com.Serializer;
+import org.neo4j.com.StoreCopyManifest;
+import org.neo4j.com.StoreFileRange;
+import org.neo4j.com.StoreRangeWriter;
 import org.neo4j.com.StoreWriter;
 import org.neo4j.com.TargetCaller;
 import org.neo4j.com.ToNetworkStoreWriter;
@@ -37,9 +44,11 @@ import org.neo4j.kernel.logging.Logging;
 
 class BackupClient extends Client<TheBackupInterface> implements TheBackupInterface
 {
+    static final int READ_TIMEOUT = 40 * 1000;
+
     public BackupClient( String hostNameOrIp, int port, Logging logging, StoreId storeId )
     {
-        super( hostNameOrIp, port, logging, storeId, FRAME_LENGTH, PROTOCOL_VERSION, 40 * 1000,
+        super( hostNameOrIp, port, logging, storeId, FRAME_LENGTH, PROTOCOL_VERSION, READ_TIMEOUT,
                 Client.DEFAULT_MAX_NUMBER_OF_CONCURRENT_CHANNELS_PER_CLIENT,
                 Client.DEFAULT_MAX_NUMBER_OF_CONCURRENT_CHANNELS_PER_CLIENT, FRAME_LENGTH );
     }
@@ -56,10 +65,73 @@ class BackupClient extends Client<TheBackupInterface> implements TheBackupInterf
                 Protocol.VOID_DESERIALIZER );
     }
 
+    public Response<StoreCopyManifest> openStoreCopy( final long sinceEpoch )
+    {
+        return sendRequest( BackupRequestType.OPEN_STORE_COPY, RequestContext.EMPTY, new Serializer()
+        {
+            public void write( ChannelBuffer buffer, ByteBuffer readBuffer ) throws IOException
+            {
+                buffer.writeLong( sinceEpoch );
+            }
+        }, Protocol.STORE_COPY_MANIFEST_DESERIALIZER );
+    }
+
+    public Response<Void> copyStoreRange( final long sessionId, final StoreFileRange range, StoreRangeWriter writer )
+    {
+        return sendRequest( BackupRequestType.COPY_STORE_RANGE, RequestContext.EMPTY, new Serializer()
+        {
+            public void write( ChannelBuffer buffer, ByteBuffer readBuffer ) throws IOException
+            {
+                buffer.writeLong( sessionId );
+                range.writeTo( buffer );
+            }
+        }, new Protocol.StoreRangeDeserializer( range, writer ) );
+    }
+
+    public Response<Void> finishStoreCopy( final long sessionId )
+    {
+        return sendRequest( BackupRequestType.FINISH_STORE_COPY, RequestContext.EMPTY, new Serializer()
+        {
+            public void write( ChannelBuffer buffer, ByteBuffer readBuffer ) throws IOException
+            {
+                buffer.writeLong( sessionId );
+            }
+        }, Protocol.VOID_DESERIALIZER );
+    }
+
+    public Response<Long> incrementalStoreCopySize( final long sinceEpoch )
+    {
+        return sendRequest( BackupRequestType.INCREMENTAL_STORE_COPY_SIZE, RequestContext.EMPTY, new Serializer()
+        {
+            public void write( ChannelBuffer buffer, ByteBuffer readBuffer ) throws IOException
+            {
+                buffer.writeLong( sinceEpoch );
+            }
+        }, Protocol.LONG_DESERIALIZER );
+    }
+
+    public Response<Long> transactionLogSize( RequestContext context )
+    {
+        return sendRequest( BackupRequestType.TRANSACTION_LOG_SIZE, context, Protocol.EMPTY_SERIALIZER,
+                Protocol.LONG_DESERIALIZER );
+    }
+
+    @Override
+    protected boolean acceptsCompressedResponses()
+    {
+        // Backups are bulk transfers of store files and logs, which compress well
+        return true;
+    }
+
     @Override
     protected boolean shouldCheckStoreId( RequestType<TheBackupInterface> type )
     {
-        return type != BackupRequestType.FULL_BACKUP;
+        // A full copy, streamed or in ranges, is for a client that doesn't have a store yet,
+        // whereas one since an epoch is into the store that the client has
+        return type == BackupRequestType.INCREMENTAL_BACKUP ||
+                type == BackupRequestType.INCREMENTAL_STORE_COPY_SIZE ||
+                type == BackupRequestType.TRANSACTION_LOG_SIZE ||
+                (type == BackupRequestType.OPEN_STORE_COPY && getStoreId() != null);
     }
 
     public static enum BackupRequestType implements RequestType<TheBackupInterface>
@@ -79,7 +151,48 @@ class BackupClient extends Client<TheBackupInterface> implements TheBackupInterf
             {
                 return master.incrementalBackup( context );
             }
-        }, Protocol.VOID_SERIALIZER )
+        }, Protocol.VOID_SERIALIZER ),
+        OPEN_STORE_COPY( new TargetCaller<TheBackupInterface, StoreCopyManifest>()
+        {
+            public Response<StoreCopyManifest> call( TheBackupInterface master, RequestContext context,
+                    ChannelBuffer input, ChannelBuffer target )
+            {
+                return master.openStoreCopy( input.readLong() );
+            }
+        }, Protocol.STORE_COPY_MANIFEST_SERIALIZER ),
+        COPY_STORE_RANGE( new TargetCaller<TheBackupInterface, Void>()
+        {
+            public Response<Void> call( TheBackupInterface master, RequestContext context,
+                    ChannelBuffer input, ChannelBuffer target )
+            {
+                return master.copyStoreRange( input.readLong(), StoreFileRange.readFrom( input ),
+                        new ToNetworkStoreWriter( target ) );
+            }
+        }, Protocol.VOID_SERIALIZER ),
+        FINISH_STORE_COPY( new TargetCaller<TheBackupInterface, Void>()
+        {
+            public Response<Void> call( TheBackupInterface master, RequestContext context,
+                    ChannelBuffer input, ChannelBuffer target )
+            {
+                return master.finishStoreCopy( input.readLong() );
+            }
+        }, Protocol.VOID_SERIALIZER ),
+        INCREMENTAL_STORE_COPY_SIZE( new TargetCaller<TheBackupInterface, Long>()
+        {
+            public Response<Long> call( TheBackupInterface master, RequestContext context,
+                    ChannelBuffer input, ChannelBuffer target )
+            {
+                return master.incrementalStoreCopySize( input.readLong() );
+            }
+        }, Protocol.LONG_SERIALIZER ),
+        TRANSACTION_LOG_SIZE( new TargetCaller<TheBackupInterface, Long>()
+        {
+            public Response<Long> call( TheBackupInterface master, RequestContext context,
+                    ChannelBuffer input, ChannelBuffer target )
+            {
+                return master.transactionLogSize( context );
+            }
+        }, Protocol.LONG_SERIALIZER )
 
         ;
         @SuppressWarnings( "rawtypes" )
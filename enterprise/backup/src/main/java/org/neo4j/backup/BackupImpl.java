@@ -19,20 +19,33 @@
  */
 package org.neo4j.backup;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import org.neo4j.com.ServerFailureException;
 import org.neo4j.com.ServerUtil;
 import org.neo4j.com.Response;
 import org.neo4j.com.RequestContext;
+import org.neo4j.com.StoreCopyManifest;
+import org.neo4j.com.StoreCopySessions;
+import org.neo4j.com.StoreFileRange;
+import org.neo4j.com.StoreRangeWriter;
 import org.neo4j.com.StoreWriter;
 import org.neo4j.graphdb.factory.GraphDatabaseSetting;
 import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.kernel.impl.transaction.xaframework.LogIoUtils;
+import org.neo4j.kernel.impl.transaction.xaframework.XaDataSource;
 
 class BackupImpl implements TheBackupInterface
 {
     private final GraphDatabaseAPI graphDb;
+    private final StoreCopySessions storeCopySessions;
 
     public BackupImpl( GraphDatabaseAPI graphDb )
     {
         this.graphDb = graphDb;
+        this.storeCopySessions = new StoreCopySessions( graphDb, BackupClient.READ_TIMEOUT );
     }
     
     public Response<Void> fullBackup( StoreWriter writer )
@@ -47,6 +60,112 @@ class BackupImpl implements TheBackupInterface
         return packResponse( context );
     }
     
+    public Response<StoreCopyManifest> openStoreCopy( long sinceEpoch )
+    {
+        try
+        {
+            return ServerUtil.packResponseWithoutTransactionStream( graphDb.getStoreId(),
+                    storeCopySessions.openSinceEpoch( false, sinceEpoch ) );
+        }
+        catch ( IOException e )
+        {
+            throw new ServerFailureException( e );
+        }
+    }
+
+    public Response<Void> copyStoreRange( long sessionId, StoreFileRange range, StoreRangeWriter writer )
+    {
+        try
+        {
+            storeCopySessions.copyRange( sessionId, range, writer );
+        }
+        catch ( IOException e )
+        {
+            throw new ServerFailureException( e );
+        }
+        return ServerUtil.packResponseWithoutTransactionStream( graphDb.getStoreId(), null );
+    }
+
+    public Response<Void> finishStoreCopy( long sessionId )
+    {
+        return packResponse( storeCopySessions.finish( sessionId ) );
+    }
+
+    public Response<Long> incrementalStoreCopySize( long sinceEpoch )
+    {
+        try
+        {
+            return ServerUtil.packResponseWithoutTransactionStream( graphDb.getStoreId(),
+                    storeCopySessions.incrementalSize( sinceEpoch ) );
+        }
+        catch ( IOException e )
+        {
+            throw new ServerFailureException( e );
+        }
+    }
+
+    public Response<Long> transactionLogSize( RequestContext context )
+    {
+        // Rotate so that all transactions are in history logs, whose sizes are known
+        ServerUtil.rotateLogs( graphDb );
+        long size = 0;
+        try
+        {
+            for ( RequestContext.Tx tx : context.lastAppliedTransactions() )
+            {
+                XaDataSource dataSource = graphDb.getXaDataSourceManager().getXaDataSource(
+                        tx.getDataSourceName() );
+                long logSize = dataSource == null ? 0 : logSizeSince( dataSource, tx.getTxId() );
+                if ( logSize == -1 )
+                {
+                    size = -1;
+                    break;
+                }
+                size += logSize;
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new ServerFailureException( e );
+        }
+        return ServerUtil.packResponseWithoutTransactionStream( graphDb.getStoreId(), size );
+    }
+
+    private static long logSizeSince( XaDataSource dataSource, long txId ) throws IOException
+    {
+        long size = 0;
+        ByteBuffer buffer = ByteBuffer.allocate( 16 );
+        for ( long version = dataSource.getCurrentLogVersion() - 1; version >= 0; version-- )
+        {
+            if ( !dataSource.hasLogicalLog( version ) )
+            {
+                return -1;
+            }
+            size += dataSource.getLogicalLogLength( version );
+            ReadableByteChannel log = dataSource.getLogicalLog( version );
+            long lastTxBefore;
+            try
+            {
+                buffer.clear();
+                lastTxBefore = LogIoUtils.readLogHeader( buffer, log, true )[1];
+            }
+            finally
+            {
+                log.close();
+            }
+            if ( lastTxBefore <= txId )
+            {
+                return size;
+            }
+        }
+        return size;
+    }
+
+    void close()
+    {
+        storeCopySessions.close();
+    }
+
     private Response<Void> packResponse( RequestContext context )
     {
         // On Windows there's a problem extracting logs from the current log version
@@ -21,10 +21,14 @@ package org.neo4j.backup;
 
 import static java.util.Collections.emptyMap;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.io.Writer;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
@@ -37,11 +41,16 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 
+import org.neo4j.com.ComException;
+import org.neo4j.com.ParallelStoreCopy;
 import org.neo4j.com.RequestContext;
 import org.neo4j.com.RequestContext.Tx;
 import org.neo4j.com.Response;
 import org.neo4j.com.ServerUtil;
 import org.neo4j.com.ServerUtil.TxHandler;
+import org.neo4j.com.StoreCopyManifest;
+import org.neo4j.com.StoreFileRange;
+import org.neo4j.com.StoreRangeWriter;
 import org.neo4j.com.StoreWriter;
 import org.neo4j.com.ToFileStoreWriter;
 import org.neo4j.com.TransactionStream;
@@ -58,7 +67,9 @@ import org.neo4j.kernel.EmbeddedGraphDatabase;
 import org.neo4j.kernel.GraphDatabaseAPI;
 import org.neo4j.kernel.configuration.Config;
 import org.neo4j.kernel.configuration.ConfigParam;
+import org.neo4j.kernel.impl.nioneo.store.ChangedPages;
 import org.neo4j.kernel.impl.nioneo.store.NeoStore;
+import org.neo4j.kernel.impl.nioneo.store.StoreId;
 import org.neo4j.kernel.impl.transaction.XaDataSourceManager;
 import org.neo4j.kernel.impl.transaction.xaframework.LogIoUtils;
 import org.neo4j.kernel.impl.transaction.xaframework.NoSuchLogVersionException;
@@ -84,6 +95,12 @@ class BackupService
         }
     }
 
+    /**
+     * The name of the file in a backup that has the epoch of its store files, so
+     * that the next incremental backup can copy just the pages changed since then.
+     */
+    static final String EPOCH_FILE_NAME = "backup-epoch";
+
     BackupOutcome doFullBackup( String sourceHostNameOrIp, int sourcePort, String targetDirectory,
                                 boolean checkConsistency, Config tuningConfiguration )
     {
@@ -91,15 +108,27 @@ class BackupService
         {
             throw new RuntimeException( targetDirectory + " already contains a database" );
         }
+        return copyStore( sourceHostNameOrIp, sourcePort, targetDirectory, ChangedPages.NO_EPOCH, null,
+                checkConsistency, tuningConfiguration );
+    }
 
-        BackupClient client = new BackupClient( sourceHostNameOrIp, sourcePort, new DevNullLoggingService(), null );
+    /**
+     * Copies the store into {@code targetDirectory}, all of it or, given the epoch
+     * and store id of the store already there, the pages changed since then.
+     */
+    private BackupOutcome copyStore( String sourceHostNameOrIp, int sourcePort, String targetDirectory,
+                                     long sinceEpoch, StoreId storeId, boolean checkConsistency,
+                                     Config tuningConfiguration )
+    {
+        BackupClient client = new BackupClient( sourceHostNameOrIp, sourcePort, new DevNullLoggingService(),
+                storeId );
         client.start();
         long timestamp = System.currentTimeMillis();
         Map<String, Long> lastCommittedTxs = emptyMap();
         try
         {
-            Response<Void> response = client.fullBackup( decorateWithProgressIndicator(
-                    new ToFileStoreWriter( new File( targetDirectory ) ) ) );
+            ProgressSource source = new ProgressSource( client, sinceEpoch );
+            Response<Void> response = copyStore( client, source, new File( targetDirectory ), storeId == null );
             GraphDatabaseAPI targetDb = startTemporaryDb( targetDirectory,
                     VerificationLevel.NONE /* run full check instead */ );
             try
@@ -210,6 +239,7 @@ class BackupService
                 targetDb.shutdown();
             }
             bumpLogFile( targetDirectory, timestamp );
+            writeEpoch( targetDirectory, source.epoch );
             if ( checkConsistency )
             {
                 StringLogger logger = StringLogger.SYSTEM;
@@ -267,20 +297,137 @@ class BackupService
                 VerificationLevel.valueOf( verification ), keepLogs );
 
         long backupStartTime = System.currentTimeMillis();
+        long sinceEpoch = readEpoch( targetDirectory );
         BackupOutcome outcome = null;
+        StoreId storeId = null;
         try
         {
-            outcome = doIncrementalBackup( sourceHostNameOrIp, sourcePort, targetDb );
+            if ( changedPagesAreSmaller( sourceHostNameOrIp, sourcePort, targetDb, sinceEpoch ) )
+            {
+                storeId = targetDb.getStoreId();
+            }
+            else
+            {
+                outcome = doIncrementalBackup( sourceHostNameOrIp, sourcePort, targetDb );
+            }
         }
         finally
         {
             targetDb.shutdown();
         }
 
+        if ( storeId != null )
+        {
+            return copyStore( sourceHostNameOrIp, sourcePort, targetDirectory, sinceEpoch, storeId, false, null );
+        }
         bumpLogFile( targetDirectory, backupStartTime );
         return outcome;
     }
 
+    /**
+     * @return whether or not copying the store pages changed since {@code sinceEpoch}
+     * transfers less than the transactions committed since the backup was taken.
+     */
+    private boolean changedPagesAreSmaller( String sourceHostNameOrIp, int sourcePort, GraphDatabaseAPI targetDb,
+                                            long sinceEpoch )
+    {
+        if ( sinceEpoch == ChangedPages.NO_EPOCH )
+        {
+            return false;
+        }
+        BackupClient client = new BackupClient( sourceHostNameOrIp, sourcePort,
+                targetDb.getDependencyResolver().resolveDependency( Logging.class ), targetDb.getStoreId() );
+        client.start();
+        try
+        {
+            long storeBytes = sizeOf( client.incrementalStoreCopySize( sinceEpoch ) );
+            if ( storeBytes < 0 )
+            {
+                return false;
+            }
+            long logBytes = sizeOf( client.transactionLogSize( slaveContextOf( targetDb ) ) );
+            return logBytes < 0 || storeBytes < logBytes;
+        }
+        catch ( ComException e )
+        {
+            // A server of an older version, which can only send transactions
+            return false;
+        }
+        finally
+        {
+            try
+            {
+                client.stop();
+            }
+            catch ( Throwable throwable )
+            {
+                throw new RuntimeException( throwable );
+            }
+        }
+    }
+
+    private static long sizeOf( Response<Long> response )
+    {
+        try
+        {
+            return response.response();
+        }
+        finally
+        {
+            response.close();
+        }
+    }
+
+    private static long readEpoch( String targetDirectory )
+    {
+        try
+        {
+            BufferedReader reader = new BufferedReader(
+                    new FileReader( new File( targetDirectory, EPOCH_FILE_NAME ) ) );
+            try
+            {
+                return Long.parseLong( reader.readLine().trim() );
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            return ChangedPages.NO_EPOCH;
+        }
+        catch ( RuntimeException e )
+        {   // An empty or garbled file, from a crash while writing it
+            return ChangedPages.NO_EPOCH;
+        }
+    }
+
+    private static void writeEpoch( String targetDirectory, long epoch )
+    {
+        File file = new File( targetDirectory, EPOCH_FILE_NAME );
+        if ( epoch != ChangedPages.NO_EPOCH )
+        {
+            try
+            {
+                Writer writer = new FileWriter( file );
+                try
+                {
+                    writer.write( epoch + "\n" );
+                    return;
+                }
+                finally
+                {
+                    writer.close();
+                }
+            }
+            catch ( IOException e )
+            {   // Then the next incremental backup applies transactions instead
+            }
+        }
+        file.delete();
+    }
+
     BackupOutcome doIncrementalBackup( String sourceHostNameOrIp, int sourcePort, GraphDatabaseAPI targetDb )
     {
         return incrementalWithContext( sourceHostNameOrIp, sourcePort, targetDb, slaveContextOf( targetDb ) );
@@ -297,6 +444,31 @@ class BackupService
         return RequestContext.anonymous( txs.toArray( new Tx[0] ) );
     }
 
+    private Response<Void> copyStore( BackupClient client, ProgressSource source, File targetDirectory,
+                                      boolean mayStream )
+    {
+        try
+        {
+            Response<Void> response = new ParallelStoreCopy( targetDirectory, ParallelStoreCopy.DEFAULT_PARALLELISM,
+                    ParallelStoreCopy.DEFAULT_RANGE_SIZE, StringLogger.SYSTEM ).copy( source );
+            source.done();
+            return response;
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( e );
+        }
+        catch ( ComException e )
+        {
+            if ( source.opened || !mayStream )
+            {
+                throw e;
+            }
+            // A server of an older version, which can only stream the store
+            return client.fullBackup( decorateWithProgressIndicator( new ToFileStoreWriter( targetDirectory ) ) );
+        }
+    }
+
     private StoreWriter decorateWithProgressIndicator( final StoreWriter actual )
     {
         return new StoreWriter()
@@ -324,7 +496,9 @@ class BackupService
 
     boolean directoryContainsDb( String targetDirectory )
     {
-        return new File( targetDirectory, NeoStore.DEFAULT_NAME ).exists();
+        // An interrupted full backup has store files, but they are yet to be completed
+        return new File( targetDirectory, NeoStore.DEFAULT_NAME ).exists() &&
+                !ParallelStoreCopy.isInProgress( new File( targetDirectory ) );
     }
 
     static EmbeddedGraphDatabase startTemporaryDb( String targetDirectory, ConfigParam... params )
@@ -500,6 +674,57 @@ class BackupService
         return previous.renameTo( to );
     }
 
+    private static class ProgressSource implements ParallelStoreCopy.Source
+    {
+        private final BackupClient client;
+        private final long sinceEpoch;
+        private final ProgressIndicator progress = new ProgressIndicator.UnknownEndProgress( 100, "Ranges copied" );
+        private volatile boolean opened;
+        private volatile long epoch = ChangedPages.NO_EPOCH;
+        private int totalRanges;
+
+        ProgressSource( BackupClient client, long sinceEpoch )
+        {
+            this.client = client;
+            this.sinceEpoch = sinceEpoch;
+        }
+
+        @Override
+        public Response<StoreCopyManifest> openStoreCopy()
+        {
+            Response<StoreCopyManifest> response = client.openStoreCopy( sinceEpoch );
+            opened = true;
+            epoch = response.response().getEpoch();
+            return response;
+        }
+
+        @Override
+        public Response<Void> copyStoreRange( long sessionId, StoreFileRange range, StoreRangeWriter writer )
+        {
+            Response<Void> response = client.copyStoreRange( sessionId, range, writer );
+            synchronized ( progress )
+            {
+                progress.update( true, 1 );
+                totalRanges++;
+            }
+            return response;
+        }
+
+        @Override
+        public Response<Void> finishStoreCopy( long sessionId )
+        {
+            return client.finishStoreCopy( sessionId );
+        }
+
+        void done()
+        {
+            synchronized ( progress )
+            {
+                progress.done( totalRanges );
+            }
+        }
+    }
+
     private static class ProgressTxHandler implements TxHandler
     {
         private final ProgressIndicator progress = new ProgressIndicator.UnknownEndProgress( 1000,
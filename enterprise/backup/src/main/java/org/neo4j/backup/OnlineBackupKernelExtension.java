@@ -39,6 +39,7 @@ public class OnlineBackupKernelExtension implements Lifecycle
     private Config config;
     private GraphDatabaseAPI graphDatabaseAPI;
     private BackupServer server;
+    private BackupImpl backup;
     private URI backupUri;
 
     public OnlineBackupKernelExtension( Config config, GraphDatabaseAPI graphDatabaseAPI )
@@ -57,7 +58,7 @@ public class OnlineBackupKernelExtension implements Lifecycle
     {
         if ( config.<Boolean>get( OnlineBackupSettings.online_backup_enabled ) )
         {
-            TheBackupInterface backup = new BackupImpl( graphDatabaseAPI );
+            backup = new BackupImpl( graphDatabaseAPI );
             try
             {
                 server = new BackupServer( backup,
@@ -95,6 +96,8 @@ public class OnlineBackupKernelExtension implements Lifecycle
             server.stop();
             server.shutdown();
             server = null;
+            backup.close();
+            backup = null;
 
             try
             {
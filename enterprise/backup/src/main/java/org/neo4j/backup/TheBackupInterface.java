@@ -21,6 +21,9 @@ package org.neo4j.backup;
 
 import org.neo4j.com.Response;
 import org.neo4j.com.RequestContext;
+import org.neo4j.com.StoreCopyManifest;
+import org.neo4j.com.StoreFileRange;
+import org.neo4j.com.StoreRangeWriter;
 import org.neo4j.com.StoreWriter;
 
 public interface TheBackupInterface
@@ -28,4 +31,26 @@ public interface TheBackupInterface
     Response<Void> fullBackup( StoreWriter writer );
     
     Response<Void> incrementalBackup( RequestContext context );
+
+    /**
+     * @param sinceEpoch the {@link StoreCopyManifest#getEpoch() epoch} of the copy
+     * that the client has, to get the pages changed since then listed.
+     */
+    Response<StoreCopyManifest> openStoreCopy( long sinceEpoch );
+
+    Response<Void> copyStoreRange( long sessionId, StoreFileRange range, StoreRangeWriter writer );
+
+    Response<Void> finishStoreCopy( long sessionId );
+
+    /**
+     * @return roughly how many bytes a store copy since {@code sinceEpoch} would
+     * transfer, or -1 if that isn't known.
+     */
+    Response<Long> incrementalStoreCopySize( long sinceEpoch );
+
+    /**
+     * @return how many bytes of logical logs the transactions since {@code context}
+     * are in, or -1 if some of them aren't there anymore.
+     */
+    Response<Long> transactionLogSize( RequestContext context );
 }
@@ -0,0 +1,251 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.com;
+
+import java.util.Arrays;
+
+/**
+ * Fast block compression of chunk payloads in the LZ4 block format: a sequence
+ * of [token][literals][offset][match] entries, where the token holds the number
+ * of literals in its high nibble and the match length minus four in its low
+ * nibble, each extended with 255-valued bytes when it doesn't fit. The last
+ * five bytes of a block are always literals and the last entry has no match.
+ * <p>
+ * Compression is a single greedy pass matching four byte sequences through a
+ * hash table, which trades some ratio for speed since this is done on the
+ * hot path of streaming transactions and store files. An instance keeps its
+ * hash table between blocks and is therefore not thread safe, decompression
+ * is stateless.
+ */
+public class BlockCompressor
+{
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int HASH_LOG = 14;
+    private static final int SKIP_TRIGGER = 6;
+
+    private final int[] hashTable = new int[1 << HASH_LOG];
+
+    /**
+     * @return the worst case size of {@code length} bytes compressed, i.e.
+     * the size of a target array that will always be big enough.
+     */
+    public static int maxCompressedLength( int length )
+    {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses {@code length} bytes from {@code source} into {@code target},
+     * which must have room for at least {@link #maxCompressedLength(int)} bytes.
+     *
+     * @return the number of bytes written to {@code target}.
+     */
+    public int compress( byte[] source, int sourceOffset, int length, byte[] target, int targetOffset )
+    {
+        int end = sourceOffset + length;
+        int anchor = sourceOffset;
+        int targetPos = targetOffset;
+        if ( length > MATCH_FIND_LIMIT )
+        {
+            Arrays.fill( hashTable, -1 );
+            int matchFindLimit = end - MATCH_FIND_LIMIT;
+            int matchLimit = end - LAST_LITERALS;
+            int pos = sourceOffset;
+            int misses = 0;
+            while ( pos < matchFindLimit )
+            {
+                int sequence = readInt( source, pos );
+                int hash = hash( sequence );
+                int candidate = hashTable[hash];
+                hashTable[hash] = pos;
+                if ( candidate < 0 || pos - candidate > MAX_OFFSET || readInt( source, candidate ) != sequence )
+                {
+                    // Step faster through data that doesn't compress
+                    pos += 1 + (misses++ >>> SKIP_TRIGGER);
+                    continue;
+                }
+                misses = 0;
+
+                while ( pos > anchor && candidate > sourceOffset && source[pos - 1] == source[candidate - 1] )
+                {
+                    pos--;
+                    candidate--;
+                }
+                int matchLength = MIN_MATCH;
+                while ( pos + matchLength < matchLimit && source[candidate + matchLength] == source[pos + matchLength] )
+                {
+                    matchLength++;
+                }
+
+                targetPos = writeSequence( source, anchor, pos - anchor, pos - candidate, matchLength,
+                        target, targetPos );
+                pos += matchLength;
+                anchor = pos;
+                if ( pos < matchFindLimit )
+                {
+                    hashTable[hash( readInt( source, pos - 2 ) )] = pos - 2;
+                }
+            }
+        }
+        return writeLastLiterals( source, anchor, end - anchor, target, targetPos ) - targetOffset;
+    }
+
+    /**
+     * Decompresses a block of {@code length} bytes from {@code source} into {@code target}.
+     *
+     * @return the number of bytes written to {@code target}, which may at most be {@code maxLength}.
+     * @throws ComException if the block is malformed.
+     */
+    public static int decompress( byte[] source, int sourceOffset, int length,
+            byte[] target, int targetOffset, int maxLength )
+    {
+        int sourcePos = sourceOffset;
+        int sourceEnd = sourceOffset + length;
+        int targetPos = targetOffset;
+        int targetEnd = targetOffset + maxLength;
+        try
+        {
+            while ( true )
+            {
+                int token = source[sourcePos++] & 0xFF;
+                int literals = token >>> 4;
+                if ( literals == 0xF )
+                {
+                    int value;
+                    do
+                    {
+                        value = source[sourcePos++] & 0xFF;
+                        literals += value;
+                    }
+                    while ( value == 0xFF );
+                }
+                if ( sourcePos + literals > sourceEnd || targetPos + literals > targetEnd )
+                {
+                    throw malformed( sourcePos - sourceOffset );
+                }
+                System.arraycopy( source, sourcePos, target, targetPos, literals );
+                sourcePos += literals;
+                targetPos += literals;
+                if ( sourcePos == sourceEnd )
+                {
+                    return targetPos - targetOffset;
+                }
+
+                int offset = (source[sourcePos] & 0xFF) | ((source[sourcePos + 1] & 0xFF) << 8);
+                sourcePos += 2;
+                int matchLength = token & 0xF;
+                if ( matchLength == 0xF )
+                {
+                    int value;
+                    do
+                    {
+                        value = source[sourcePos++] & 0xFF;
+                        matchLength += value;
+                    }
+                    while ( value == 0xFF );
+                }
+                matchLength += MIN_MATCH;
+                int matchPos = targetPos - offset;
+                if ( offset == 0 || matchPos < targetOffset || targetPos + matchLength > targetEnd )
+                {
+                    throw malformed( sourcePos - sourceOffset );
+                }
+                if ( offset >= matchLength )
+                {
+                    System.arraycopy( target, matchPos, target, targetPos, matchLength );
+                    targetPos += matchLength;
+                }
+                else
+                {   // Overlapping match, i.e. a repeating pattern, copy byte by byte
+                    for ( int i = 0; i < matchLength; i++ )
+                    {
+                        target[targetPos++] = target[matchPos++];
+                    }
+                }
+            }
+        }
+        catch ( ArrayIndexOutOfBoundsException e )
+        {
+            throw malformed( sourcePos - sourceOffset );
+        }
+    }
+
+    private static ComException malformed( int position )
+    {
+        return new ComException( "Malformed compressed block at position " + position );
+    }
+
+    private static int writeSequence( byte[] source, int literalsOffset, int literals, int offset, int matchLength,
+            byte[] target, int targetPos )
+    {
+        int extraMatchLength = matchLength - MIN_MATCH;
+        target[targetPos++] = (byte) ((Math.min( literals, 0xF ) << 4) | Math.min( extraMatchLength, 0xF ));
+        targetPos = writeLiterals( source, literalsOffset, literals, target, targetPos );
+        target[targetPos++] = (byte) offset;
+        target[targetPos++] = (byte) (offset >>> 8);
+        if ( extraMatchLength >= 0xF )
+        {
+            targetPos = writeLength( extraMatchLength - 0xF, target, targetPos );
+        }
+        return targetPos;
+    }
+
+    private static int writeLastLiterals( byte[] source, int literalsOffset, int literals,
+            byte[] target, int targetPos )
+    {
+        target[targetPos++] = (byte) (Math.min( literals, 0xF ) << 4);
+        return writeLiterals( source, literalsOffset, literals, target, targetPos );
+    }
+
+    private static int writeLiterals( byte[] source, int literalsOffset, int literals, byte[] target, int targetPos )
+    {
+        if ( literals >= 0xF )
+        {
+            targetPos = writeLength( literals - 0xF, target, targetPos );
+        }
+        System.arraycopy( source, literalsOffset, target, targetPos, literals );
+        return targetPos + literals;
+    }
+
+    private static int writeLength( int length, byte[] target, int targetPos )
+    {
+        while ( length >= 0xFF )
+        {
+            target[targetPos++] = (byte) 0xFF;
+            length -= 0xFF;
+        }
+        target[targetPos++] = (byte) length;
+        return targetPos;
+    }
+
+    private static int readInt( byte[] source, int pos )
+    {
+        return (source[pos] & 0xFF) | ((source[pos + 1] & 0xFF) << 8)
+                | ((source[pos + 2] & 0xFF) << 16) | ((source[pos + 3] & 0xFF) << 24);
+    }
+
+    private static int hash( int sequence )
+    {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
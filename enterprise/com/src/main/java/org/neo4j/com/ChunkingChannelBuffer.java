@@ -55,6 +55,13 @@ import org.jboss.netty.channel.ChannelFutureListener;
  * MAX_WRITE_AHEAD_CHUNKS are left pending - in such a case the write process
  * sleeps until some acknowledgment comes back from the other side that chunks
  * have been read.
+ * <p>
+ * The highest bit of the continuation header is used for negotiating
+ * compression. A client sets it in its request chunks to signal that it can
+ * read compressed responses, and a server answering such a request block
+ * compresses, using {@link BlockCompressor}, every chunk that gets smaller from
+ * it and sets the bit in those chunks only. Peers that don't know about
+ * compression ignore that bit, so they keep talking uncompressed to each other.
  */
 public class ChunkingChannelBuffer implements ChannelBuffer, ChannelFutureListener
 {
@@ -62,7 +69,13 @@ public class ChunkingChannelBuffer implements ChannelBuffer, ChannelFutureListen
     static final byte CONTINUATION_MORE = 1;
     static final byte OUTCOME_SUCCESS = 0;
     static final byte OUTCOME_FAILURE = 1;
+    static final byte COMPRESSION_NONE = 0;
+    static final byte COMPRESSION_ACCEPTED = 1;
+    static final byte COMPRESSION_BLOCK = 2;
+    static final int COMPRESSION_BIT = 0x80;
     private static final int MAX_WRITE_AHEAD_CHUNKS = 5;
+    // Smaller chunks than this aren't worth the effort of compressing
+    private static final int MIN_COMPRESSED_PAYLOAD = 512;
 
     private ChannelBuffer buffer;
     private final Channel channel;
@@ -72,22 +85,37 @@ public class ChunkingChannelBuffer implements ChannelBuffer, ChannelFutureListen
     private volatile boolean failure;
     private final byte applicationProtocolVersion;
     private final byte internalProtocolVersion;
+    private final byte compression;
+    private BlockCompressor compressor;
+    private byte[] uncompressed;
 
     public ChunkingChannelBuffer( ChannelBuffer buffer, Channel channel, int capacity,
             byte internalProtocolVersion, byte applicationProtocolVersion )
+    {
+        this( buffer, channel, capacity, internalProtocolVersion, applicationProtocolVersion, COMPRESSION_NONE );
+    }
+
+    /**
+     * @param compression {@link #COMPRESSION_ACCEPTED} for a request where compressed
+     * responses can be read, {@link #COMPRESSION_BLOCK} for a response to such a request,
+     * otherwise {@link #COMPRESSION_NONE}.
+     */
+    public ChunkingChannelBuffer( ChannelBuffer buffer, Channel channel, int capacity,
+            byte internalProtocolVersion, byte applicationProtocolVersion, byte compression )
     {
         this.buffer = buffer;
         this.channel = channel;
         this.capacity = capacity;
         this.internalProtocolVersion = internalProtocolVersion;
         this.applicationProtocolVersion = applicationProtocolVersion;
+        this.compression = compression;
         addRoomForContinuationHeader();
     }
 
     private void addRoomForContinuationHeader()
     {
         continuationPosition = writerIndex();
-        // byte 0: [pppp,ppoc] p: internal protocol version, o: outcome, c: continuation
+        // byte 0: [zppp,ppoc] z: compression, p: internal protocol version, o: outcome, c: continuation
         // byte 1: [aaaa,aaaa] a: application protocol version
         buffer.writeBytes( header( CONTINUATION_LAST ) );
     }
@@ -96,6 +124,10 @@ public class ChunkingChannelBuffer implements ChannelBuffer, ChannelFutureListen
     {
         byte[] header = new byte[2];
         header[0] = (byte)((internalProtocolVersion << 2) | ((failure?OUTCOME_FAILURE:OUTCOME_SUCCESS) << 1) | continuation );
+        if ( compression == COMPRESSION_ACCEPTED )
+        {
+            header[0] |= COMPRESSION_BIT;
+        }
         header[1] = applicationProtocolVersion;
         return header;
     }
@@ -545,11 +577,48 @@ public class ChunkingChannelBuffer implements ChannelBuffer, ChannelFutureListen
             throw new ComException( "Channel has been closed, so no need to try to write to it anymore. Client closed it?" );
 
         waitForClientToCatchUpOnReadingChunks();
-        ChannelFuture future = channel.write( buffer );
+        ChannelFuture future = channel.write( compression == COMPRESSION_BLOCK ? compress( buffer ) : buffer );
         future.addListener( this );
         writeAheadCounter.incrementAndGet();
     }
 
+    /**
+     * Compressed chunk layout: the continuation header with the compression bit set,
+     * an int with the uncompressed payload length and then the compressed payload.
+     * Returns the chunk as it is if compressing it doesn't make it smaller.
+     */
+    private ChannelBuffer compress( ChannelBuffer chunk )
+    {
+        int headerPosition = chunk.readerIndex();
+        int payloadLength = chunk.readableBytes() - 2;
+        if ( payloadLength < MIN_COMPRESSED_PAYLOAD )
+        {
+            return chunk;
+        }
+
+        if ( compressor == null )
+        {
+            compressor = new BlockCompressor();
+        }
+        if ( uncompressed == null || uncompressed.length < payloadLength )
+        {
+            uncompressed = new byte[payloadLength];
+        }
+        chunk.getBytes( headerPosition + 2, uncompressed, 0, payloadLength );
+        byte[] target = new byte[2 + 4 + BlockCompressor.maxCompressedLength( payloadLength )];
+        int compressedLength = compressor.compress( uncompressed, 0, payloadLength, target, 2 + 4 );
+        if ( 4 + compressedLength >= payloadLength )
+        {
+            return chunk;
+        }
+
+        ChannelBuffer result = ChannelBuffers.wrappedBuffer( target, 0, 2 + 4 + compressedLength );
+        result.setByte( 0, chunk.getByte( headerPosition ) | COMPRESSION_BIT );
+        result.setByte( 1, chunk.getByte( headerPosition + 1 ) );
+        result.setInt( 2, payloadLength );
+        return result;
+    }
+
     private void waitForClientToCatchUpOnReadingChunks()
     {
         // Wait until channel gets disconnected or client catches up.
@@ -190,6 +190,16 @@ public abstract class Client<T> extends LifecycleAdapter implements ChannelPipel
         return Server.INTERNAL_PROTOCOL_VERSION;
     }
 
+    /**
+     * Whether or not the server should compress the responses to requests from this client,
+     * trading some CPU on both ends for less data over the network. It's up to the server
+     * to honor it, servers not knowing about compression just send uncompressed responses.
+     */
+    protected boolean acceptsCompressedResponses()
+    {
+        return false;
+    }
+
     protected <R> Response<R> sendRequest( RequestType<T> type, RequestContext context,
                                            Serializer serializer, Deserializer<R> deserializer )
     {
@@ -209,7 +219,9 @@ public abstract class Client<T> extends LifecycleAdapter implements ChannelPipel
             Channel channel = channelContext.first();
             channelContext.second().clear();
             ChunkingChannelBuffer chunkingBuffer = new ChunkingChannelBuffer( channelContext.second(),
-                    channel, chunkSize, getInternalProtocolVersion(), applicationProtocolVersion );
+                    channel, chunkSize, getInternalProtocolVersion(), applicationProtocolVersion,
+                    acceptsCompressedResponses() ? ChunkingChannelBuffer.COMPRESSION_ACCEPTED :
+                            ChunkingChannelBuffer.COMPRESSION_NONE );
             chunkingBuffer.writeByte( type.id() );
             writeContext( type, context, chunkingBuffer );
             serializer.write( chunkingBuffer, channelContext.third() );
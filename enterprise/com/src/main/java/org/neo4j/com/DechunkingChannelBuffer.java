@@ -95,13 +95,18 @@ public class DechunkingChannelBuffer implements ChannelBuffer
         /* Header layout:
          * [    ,    ][    ,   x] 0: last chunk in message, 1: there a more chunks after this one
          * [    ,    ][    ,  x ] 0: success, 1: failure
-         * [    ,    ][xxxx,xx  ] internal protocol version
+         * [    ,    ][ xxx,xx  ] internal protocol version
+         * [    ,    ][x   ,    ] 1: the rest of the chunk is compressed
          * [xxxx,xxxx][    ,    ] application protocol version */
         byte[] header = new byte[2];
         readBuffer.readBytes( header );
         more = (header[0] & 0x1) != 0;
         failure = (header[0] & 0x2) != 0;
         assertSameProtocolVersion( header, internalProtocolVersion, applicationProtocolVersion );
+        if ( (header[0] & ChunkingChannelBuffer.COMPRESSION_BIT) != 0 )
+        {
+            readBuffer = decompress( readBuffer );
+        }
 
         if ( !more && buffer == null )
         {
@@ -123,6 +128,19 @@ public class DechunkingChannelBuffer implements ChannelBuffer
         }
     }
 
+    private static ChannelBuffer decompress( ChannelBuffer chunk )
+    {
+        int length = chunk.readInt();
+        byte[] compressed = new byte[chunk.readableBytes()];
+        chunk.readBytes( compressed );
+        byte[] uncompressed = new byte[length];
+        if ( BlockCompressor.decompress( compressed, 0, compressed.length, uncompressed, 0, length ) != length )
+        {
+            throw new ComException( "Compressed chunk didn't contain the expected " + length + " bytes" );
+        }
+        return ChannelBuffers.wrappedBuffer( uncompressed );
+    }
+
     static void assertSameProtocolVersion( byte[] header, byte internalProtocolVersion, byte applicationProtocolVersion )
     {
         /* [aaaa,aaaa][pppp,ppoc]
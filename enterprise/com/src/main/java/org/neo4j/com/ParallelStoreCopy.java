@@ -0,0 +1,418 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.com;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.helpers.Exceptions;
+import org.neo4j.helpers.NamedThreadFactory;
+import org.neo4j.kernel.impl.nioneo.store.ChangedPages;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+/**
+ * Copies a store, from a server serving {@link StoreCopySessions}, into a directory
+ * one {@link StoreFileRange range} at a time with several ranges in flight at once,
+ * which on a {@link Client} means over several channels. Each received range is
+ * verified against its checksum, forced to disk and then recorded in a journal in
+ * the target directory, which is forced as well, so that an interrupted copy, even
+ * one in an earlier process or before a crash, resumes from there: the recorded
+ * ranges are only confirmed with the server, which sends those that changed since.
+ * <p>
+ * The journal is removed when all ranges are in place, which is before the
+ * returned transactions are applied, since applying them changes the files.
+ * <p>
+ * If the server lists {@link StoreCopyManifest#getChangedPages() changed pages}
+ * the target directory is expected to have the copy from the epoch they changed
+ * since, and only those pages, and the end of each file, are fetched.
+ * <p>
+ * Files in the target directory that aren't part of the copy, like id files of
+ * an earlier copy, are removed since they wouldn't match the copied files.
+ */
+public class ParallelStoreCopy
+{
+    public static final String JOURNAL_NAME = "store-copy.journal";
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final int DEFAULT_RANGE_SIZE = 8 * Protocol.MEGA;
+    private static final int ATTEMPTS_PER_RANGE = 3;
+    private static final int TRAILER_MARGIN = 64;
+
+    /**
+     * The requests of a range based store copy, typically implemented by a {@link Client}.
+     */
+    public interface Source
+    {
+        Response<StoreCopyManifest> openStoreCopy();
+
+        Response<Void> copyStoreRange( long sessionId, StoreFileRange range, StoreRangeWriter writer );
+
+        /**
+         * @return a response with the transactions committed since the session was opened.
+         */
+        Response<Void> finishStoreCopy( long sessionId );
+    }
+
+    private final File targetDirectory;
+    private final int parallelism;
+    private final int rangeSize;
+    private final StringLogger msgLog;
+    private final AtomicLong bytesTransferred = new AtomicLong();
+    private final AtomicLong rangesConfirmed = new AtomicLong();
+
+    public ParallelStoreCopy( File targetDirectory, int parallelism, int rangeSize, StringLogger msgLog )
+    {
+        if ( rangeSize <= 0 || rangeSize > StoreCopySessions.MAX_RANGE_SIZE )
+        {
+            throw new IllegalArgumentException( "Range size " + rangeSize + " must be within 1-" +
+                    StoreCopySessions.MAX_RANGE_SIZE );
+        }
+        this.targetDirectory = targetDirectory;
+        this.parallelism = parallelism;
+        this.rangeSize = rangeSize;
+        this.msgLog = msgLog;
+    }
+
+    /**
+     * @return whether or not there's an unfinished copy in {@code directory} that
+     * a copy into it would resume.
+     */
+    public static boolean isInProgress( File directory )
+    {
+        return new File( directory, JOURNAL_NAME ).exists();
+    }
+
+    /**
+     * Copies all store files into the target directory.
+     *
+     * @return the response with the transactions committed on the server since the
+     * copy started, which must be applied to the copied store and then closed.
+     */
+    public Response<Void> copy( Source source ) throws IOException
+    {
+        targetDirectory.mkdirs();
+        File journalFile = new File( targetDirectory, JOURNAL_NAME );
+        Map<String, Long> verified = readJournal( journalFile );
+
+        StoreCopyManifest manifest;
+        Response<StoreCopyManifest> opened = source.openStoreCopy();
+        try
+        {
+            manifest = opened.response();
+        }
+        finally
+        {
+            opened.close();
+        }
+
+        List<StoreFileRange> ranges = new ArrayList<StoreFileRange>();
+        for ( Map.Entry<String, Long> file : manifest.getFiles().entrySet() )
+        {
+            BitSet changedPages = manifest.getChangedPages().get( file.getKey() );
+            if ( changedPages == null )
+            {
+                addRanges( ranges, file.getKey(), 0, file.getValue(), verified );
+            }
+            else
+            {
+                addChangedRanges( ranges, file.getKey(), file.getValue(), changedPages, verified );
+            }
+        }
+        int previouslyVerified = 0;
+        for ( StoreFileRange range : ranges )
+        {
+            if ( range.getChecksum() != StoreFileRange.NO_CHECKSUM )
+            {
+                previouslyVerified++;
+            }
+        }
+        removeFilesNotIn( manifest );
+        msgLog.logMessage( "Copying " + manifest.getFiles().size() + " store files" +
+                (manifest.getChangedPages().isEmpty() ? "" : ", " + manifest.getChangedPages().size() +
+                        " of them only where changed,") + " in " + ranges.size() + " ranges over " + parallelism +
+                " channels" +
+                (previouslyVerified > 0 ? ", resuming with " + previouslyVerified + " ranges already copied" : "") );
+
+        FileOutputStream journal = new FileOutputStream( journalFile, true );
+        ExecutorService executor = Executors.newFixedThreadPool( parallelism, new NamedThreadFactory( "Store copy" ) );
+        try
+        {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>( ranges.size() );
+            for ( StoreFileRange range : ranges )
+            {
+                futures.add( executor.submit( new RangeCopier( source, manifest.getSessionId(), range, journal ),
+                        null ) );
+            }
+            for ( Future<Object> future : futures )
+            {
+                future.get();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            throw new ComException( "Interrupted while copying store", e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw Exceptions.launderedException( IOException.class, e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+            journal.close();
+        }
+
+        setLengths( manifest );
+        Response<Void> response = source.finishStoreCopy( manifest.getSessionId() );
+        if ( !journalFile.delete() )
+        {
+            response.close();
+            throw new IOException( "Unable to delete " + journalFile );
+        }
+        msgLog.logMessage( "Copied store, " + bytesTransferred.get() + " bytes transferred and " +
+                rangesConfirmed.get() + " ranges confirmed as already copied" );
+        return response;
+    }
+
+    private void addRanges( List<StoreFileRange> ranges, String path, long start, long end,
+            Map<String, Long> verified )
+    {
+        for ( long offset = start; offset < end; offset += rangeSize )
+        {
+            int length = (int) Math.min( rangeSize, end - offset );
+            Long checksum = verified.get( key( path, offset, length ) );
+            ranges.add( new StoreFileRange( path, offset, length,
+                    checksum != null ? checksum : StoreFileRange.NO_CHECKSUM ) );
+        }
+    }
+
+    private void addChangedRanges( List<StoreFileRange> ranges, String path, long length, BitSet changedPages,
+            Map<String, Long> verified )
+    {
+        // The end of the local file is copied too, since it has grown on the server or, if it
+        // was closed there, has a trailer where the server may have records
+        BitSet pages = (BitSet) changedPages.clone();
+        long localLength = new File( targetDirectory, path ).length();
+        int lastPage = (int) ((length - 1) / ChangedPages.PAGE_SIZE);
+        int tailPage = (int) (Math.max( 0, Math.min( localLength, length ) - TRAILER_MARGIN ) /
+                ChangedPages.PAGE_SIZE);
+        if ( length > 0 )
+        {
+            pages.set( tailPage, lastPage + 1 );
+        }
+        for ( int page = pages.nextSetBit( 0 ); page >= 0 && page <= lastPage;
+              page = pages.nextSetBit( page ) )
+        {
+            int endPage = pages.nextClearBit( page );
+            addRanges( ranges, path, (long) page * ChangedPages.PAGE_SIZE,
+                    Math.min( length, (long) endPage * ChangedPages.PAGE_SIZE ), verified );
+            page = endPage;
+        }
+    }
+
+    private void removeFilesNotIn( StoreCopyManifest manifest ) throws IOException
+    {
+        for ( File file : listFiles( targetDirectory ) )
+        {
+            String path = ServerUtil.relativePath( targetDirectory, file );
+            if ( !manifest.getFiles().containsKey( path ) && !path.equals( JOURNAL_NAME ) &&
+                    !path.equals( StringLogger.DEFAULT_NAME ) && !file.delete() )
+            {
+                throw new IOException( "Unable to delete " + file + ", which isn't part of the copied store" );
+            }
+        }
+    }
+
+    private static List<File> listFiles( File directory )
+    {
+        List<File> result = new ArrayList<File>();
+        File[] files = directory.listFiles();
+        if ( files != null )
+        {
+            for ( File file : files )
+            {
+                if ( file.isDirectory() )
+                {
+                    result.addAll( listFiles( file ) );
+                }
+                else
+                {
+                    result.add( file );
+                }
+            }
+        }
+        return result;
+    }
+
+    private void setLengths( StoreCopyManifest manifest ) throws IOException
+    {
+        // Files may be longer from an earlier attempt, and empty files have no ranges
+        for ( Map.Entry<String, Long> file : manifest.getFiles().entrySet() )
+        {
+            File target = new File( targetDirectory, file.getKey() );
+            target.getParentFile().mkdirs();
+            RandomAccessFile randomAccessFile = new RandomAccessFile( target, "rw" );
+            try
+            {
+                randomAccessFile.setLength( file.getValue() );
+            }
+            finally
+            {
+                randomAccessFile.close();
+            }
+        }
+    }
+
+    private class RangeCopier implements Runnable
+    {
+        private final Source source;
+        private final long sessionId;
+        private final StoreFileRange range;
+        private final FileOutputStream journal;
+
+        RangeCopier( Source source, long sessionId, StoreFileRange range, FileOutputStream journal )
+        {
+            this.source = source;
+            this.sessionId = sessionId;
+            this.range = range;
+            this.journal = journal;
+        }
+
+        @Override
+        public void run()
+        {
+            for ( int attempt = 1; ; attempt++ )
+            {
+                try
+                {
+                    copy();
+                    return;
+                }
+                catch ( RuntimeException e )
+                {
+                    if ( attempt == ATTEMPTS_PER_RANGE || Thread.currentThread().isInterrupted() )
+                    {
+                        throw e;
+                    }
+                    msgLog.logMessage( "Copying " + range + " failed, retrying", e );
+                }
+            }
+        }
+
+        private void copy()
+        {
+            final ToFileStoreWriter fileWriter = new ToFileStoreWriter( targetDirectory );
+            final long[] checksum = new long[1];
+            Response<Void> response = source.copyStoreRange( sessionId, range, new StoreRangeWriter()
+            {
+                @Override
+                public void writeRange( StoreFileRange range, ReadableByteChannel data, long rangeChecksum )
+                        throws IOException
+                {
+                    fileWriter.writeRange( range, data, rangeChecksum );
+                    checksum[0] = rangeChecksum;
+                    if ( data == null )
+                    {
+                        rangesConfirmed.incrementAndGet();
+                    }
+                    else
+                    {
+                        bytesTransferred.addAndGet( range.getLength() );
+                    }
+                }
+            } );
+            response.close();
+            if ( checksum[0] != range.getChecksum() )
+            {
+                appendToJournal( journal, range.withChecksum( checksum[0] ) );
+            }
+        }
+    }
+
+    private static void appendToJournal( FileOutputStream journal, StoreFileRange range )
+    {
+        try
+        {
+            synchronized ( journal )
+            {
+                journal.write( (range.getChecksum() + " " + key( range.getPath(), range.getOffset(),
+                        range.getLength() ) + "\n").getBytes() );
+                journal.getChannel().force( false );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new ComException( "Unable to record progress of store copy", e );
+        }
+    }
+
+    private static String key( String path, long offset, int length )
+    {
+        return offset + " " + length + " " + path;
+    }
+
+    private static Map<String, Long> readJournal( File journalFile ) throws IOException
+    {
+        Map<String, Long> verified = new HashMap<String, Long>();
+        BufferedReader reader;
+        try
+        {
+            reader = new BufferedReader( new FileReader( journalFile ) );
+        }
+        catch ( FileNotFoundException e )
+        {
+            return verified;
+        }
+        try
+        {
+            for ( String line; (line = reader.readLine()) != null; )
+            {
+                int split = line.indexOf( ' ' );
+                try
+                {
+                    verified.put( line.substring( split + 1 ), Long.parseLong( line.substring( 0, split ) ) );
+                }
+                catch ( RuntimeException e )
+                {   // A torn last line from an interrupted copy, that range will be copied again
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return verified;
+    }
+}
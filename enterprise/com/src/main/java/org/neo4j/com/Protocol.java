@@ -62,6 +62,13 @@ public abstract class Protocol
             return buffer.readInt();
         }
     };
+    public static final Deserializer<Long> LONG_DESERIALIZER = new Deserializer<Long>()
+    {
+        public Long read( ChannelBuffer buffer, ByteBuffer temporaryBuffer ) throws IOException
+        {
+            return buffer.readLong();
+        }
+    };
     public static final Deserializer<Void> VOID_DESERIALIZER = new Deserializer<Void>()
     {
         public Void read( ChannelBuffer buffer, ByteBuffer temporaryBuffer ) throws IOException
@@ -75,6 +82,22 @@ public abstract class Protocol
         {
         }
     };
+    public static final ObjectSerializer<StoreCopyManifest> STORE_COPY_MANIFEST_SERIALIZER =
+            new ObjectSerializer<StoreCopyManifest>()
+    {
+        public void write( StoreCopyManifest responseObject, ChannelBuffer result ) throws IOException
+        {
+            responseObject.writeTo( result );
+        }
+    };
+    public static final Deserializer<StoreCopyManifest> STORE_COPY_MANIFEST_DESERIALIZER =
+            new Deserializer<StoreCopyManifest>()
+    {
+        public StoreCopyManifest read( ChannelBuffer buffer, ByteBuffer temporaryBuffer ) throws IOException
+        {
+            return StoreCopyManifest.readFrom( buffer );
+        }
+    };
     public static class FileStreamsDeserializer implements Deserializer<Void>
     {
         private final StoreWriter writer;
@@ -99,6 +122,27 @@ public abstract class Protocol
         }
     };
     
+    public static class StoreRangeDeserializer implements Deserializer<Void>
+    {
+        private final StoreFileRange range;
+        private final StoreRangeWriter writer;
+
+        public StoreRangeDeserializer( StoreFileRange range, StoreRangeWriter writer )
+        {
+            this.range = range;
+            this.writer = writer;
+        }
+
+        // NOTICE: this assumes a "smart" ChannelBuffer that continues to next chunk
+        public Void read( ChannelBuffer buffer, ByteBuffer temporaryBuffer ) throws IOException
+        {
+            boolean hasData = buffer.readByte() == 1;
+            long checksum = buffer.readLong();
+            writer.writeRange( range, hasData ? new BlockLogReader( buffer ) : null, checksum );
+            return null;
+        }
+    }
+
     public static void addLengthFieldPipes( ChannelPipeline pipeline, int frameLength )
     {
         pipeline.addLast( "frameDecoder",
@@ -457,12 +457,12 @@ public abstract class Server<T, R> extends Protocol implements ChannelPipelineFa
 
     protected void handleRequest( ChannelBuffer buffer, final Channel channel ) throws IOException
     {
-        Byte continuation = readContinuationHeader( buffer, channel );
-        if ( continuation == null )
+        Byte header = readContinuationHeader( buffer, channel );
+        if ( header == null )
         {
             return;
         }
-        if ( continuation == ChunkingChannelBuffer.CONTINUATION_MORE )
+        if ( (header & 0x1) == ChunkingChannelBuffer.CONTINUATION_MORE )
         {
             PartialRequest partialRequest = partialRequests.get( channel );
             if ( partialRequest == null )
@@ -505,8 +505,11 @@ public abstract class Server<T, R> extends Protocol implements ChannelPipelineFa
             }
 
             bufferToWriteTo.clear();
+            // The client tells in the header whether or not it can read compressed responses
+            byte compression = (header & ChunkingChannelBuffer.COMPRESSION_BIT) != 0 ?
+                    ChunkingChannelBuffer.COMPRESSION_BLOCK : ChunkingChannelBuffer.COMPRESSION_NONE;
             final ChunkingChannelBuffer chunkingBuffer = new ChunkingChannelBuffer( bufferToWriteTo, channel, chunkSize,
-                    getInternalProtocolVersion(), applicationProtocolVersion );
+                    getInternalProtocolVersion(), applicationProtocolVersion, compression );
             submitSilent( targetCallExecutor, targetCaller( type, channel, context, chunkingBuffer,
                     bufferToReadFrom ) );
         }
@@ -535,7 +538,7 @@ public abstract class Server<T, R> extends Protocol implements ChannelPipelineFa
             } );
             return null;
         }
-        return (byte) (header[0] & 0x1);
+        return header[0];
     }
 
     protected Runnable targetCaller( final RequestType<T> type, final Channel channel, final RequestContext context,
@@ -58,7 +58,7 @@ import org.neo4j.kernel.logging.Logging;
 
 public class ServerUtil
 {
-    private static File getBaseDir( GraphDatabaseAPI graphDb )
+    static File getBaseDir( GraphDatabaseAPI graphDb )
     {
         File file = new File( graphDb.getStoreDir() );
         try
@@ -82,7 +82,7 @@ public class ServerUtil
      *         <code>baseDir</code>
      * @throws IOException As per {@link File#getCanonicalPath()}
      */
-    private static String relativePath( File baseDir, File storeFile )
+    static String relativePath( File baseDir, File storeFile )
             throws IOException
     {
         String prefix = baseDir.getCanonicalPath();
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.com;
+
+import static org.neo4j.com.Protocol.readString;
+import static org.neo4j.com.Protocol.writeString;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.neo4j.kernel.impl.nioneo.store.ChangedPages;
+
+/**
+ * The store files, with their lengths, that a server offers in a store copy
+ * session opened by {@link StoreCopySessions#open(boolean)}. The files are then
+ * fetched in {@link StoreFileRange ranges} within that session.
+ * <p>
+ * A session opened {@link StoreCopySessions#openSinceEpoch(boolean, long) since an epoch}
+ * also says which {@link ChangedPages#PAGE_SIZE pages} of the files have changed since
+ * then, for a client that has a copy from that epoch. Files without changed pages
+ * listed have to be copied whole.
+ */
+public final class StoreCopyManifest
+{
+    private final long sessionId;
+    private final Map<String, Long> files;
+    private final long epoch;
+    private final Map<String, BitSet> changedPages;
+
+    public StoreCopyManifest( long sessionId, Map<String, Long> files )
+    {
+        this( sessionId, files, ChangedPages.NO_EPOCH, Collections.<String, BitSet>emptyMap() );
+    }
+
+    public StoreCopyManifest( long sessionId, Map<String, Long> files, long epoch, Map<String, BitSet> changedPages )
+    {
+        this.sessionId = sessionId;
+        this.files = files;
+        this.epoch = epoch;
+        this.changedPages = changedPages;
+    }
+
+    public long getSessionId()
+    {
+        return sessionId;
+    }
+
+    /**
+     * @return the length of each file, keyed by its path relative to the store directory.
+     */
+    public Map<String, Long> getFiles()
+    {
+        return Collections.unmodifiableMap( files );
+    }
+
+    /**
+     * @return the epoch that this copy is of, to ask for the pages changed since
+     * then in the next copy, or {@link ChangedPages#NO_EPOCH} if the server doesn't
+     * track changes for it.
+     */
+    public long getEpoch()
+    {
+        return epoch;
+    }
+
+    /**
+     * @return the pages changed since the requested epoch, keyed by the same paths
+     * as {@link #getFiles()}, or an empty map if they aren't known.
+     */
+    public Map<String, BitSet> getChangedPages()
+    {
+        return Collections.unmodifiableMap( changedPages );
+    }
+
+    public void writeTo( ChannelBuffer buffer )
+    {
+        buffer.writeLong( sessionId );
+        buffer.writeInt( files.size() );
+        for ( Map.Entry<String, Long> file : files.entrySet() )
+        {
+            writeString( buffer, file.getKey() );
+            buffer.writeLong( file.getValue() );
+        }
+        buffer.writeLong( epoch );
+        buffer.writeInt( changedPages.size() );
+        for ( Map.Entry<String, BitSet> file : changedPages.entrySet() )
+        {
+            writeString( buffer, file.getKey() );
+            writeBits( buffer, file.getValue() );
+        }
+    }
+
+    public static StoreCopyManifest readFrom( ChannelBuffer buffer )
+    {
+        long sessionId = buffer.readLong();
+        int count = buffer.readInt();
+        Map<String, Long> files = new LinkedHashMap<String, Long>();
+        for ( int i = 0; i < count; i++ )
+        {
+            files.put( readString( buffer ), buffer.readLong() );
+        }
+        long epoch = buffer.readLong();
+        count = buffer.readInt();
+        Map<String, BitSet> changedPages = new LinkedHashMap<String, BitSet>();
+        for ( int i = 0; i < count; i++ )
+        {
+            changedPages.put( readString( buffer ), readBits( buffer ) );
+        }
+        return new StoreCopyManifest( sessionId, files, epoch, changedPages );
+    }
+
+    private static void writeBits( ChannelBuffer buffer, BitSet bits )
+    {
+        long[] words = new long[(bits.length() + 63) / 64];
+        for ( int bit = bits.nextSetBit( 0 ); bit >= 0; bit = bits.nextSetBit( bit + 1 ) )
+        {
+            words[bit / 64] |= 1L << (bit % 64);
+        }
+        buffer.writeInt( words.length );
+        for ( long word : words )
+        {
+            buffer.writeLong( word );
+        }
+    }
+
+    private static BitSet readBits( ChannelBuffer buffer )
+    {
+        int wordCount = buffer.readInt();
+        BitSet bits = new BitSet( wordCount * 64 );
+        for ( int i = 0; i < wordCount; i++ )
+        {
+            long word = buffer.readLong();
+            for ( int bit = 0; word != 0; bit++, word >>>= 1 )
+            {
+                if ( (word & 1) != 0 )
+                {
+                    bits.set( i * 64 + bit );
+                }
+            }
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,351 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.com;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.neo4j.helpers.collection.ClosableIterable;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.kernel.impl.nioneo.store.ChangedPages;
+import org.neo4j.kernel.impl.nioneo.xa.NeoStoreXaDataSource;
+import org.neo4j.kernel.impl.transaction.xaframework.XaDataSource;
+
+/**
+ * The serving side of range based store copies, where a client fetches the store
+ * files in {@link StoreFileRange ranges}, possibly over several channels at once,
+ * instead of as one stream like {@link ServerUtil#rotateLogsAndStreamStoreFiles}.
+ * <p>
+ * {@link #open(boolean)} rotates the logs and lists the store files, like a
+ * streamed copy does, and keeps that listing open (some data sources hold on to
+ * their files only while it is) until {@link #finish(long)} is called or the
+ * session has been idle for too long. The copy is fuzzy in the same way as a
+ * streamed one, so the client must apply the transactions committed since the
+ * log rotation, which is what the context returned from {@link #finish(long)}
+ * is for.
+ * <p>
+ * A range that the client says it already has, by providing its checksum, is
+ * only confirmed and not sent again. This is what makes a copy resumable, even
+ * in a new session.
+ * <p>
+ * A session opened with {@link #openSinceEpoch(boolean, long)} also lists the
+ * {@link ChangedPages pages of the neo store} that changed since an earlier such
+ * session, so that a client having the store as of then only needs to fetch those.
+ */
+public class StoreCopySessions
+{
+    public static final int MAX_RANGE_SIZE = 64 * Protocol.MEGA;
+
+    private final GraphDatabaseAPI graphDb;
+    private final long idleTimeoutMillis;
+    private final Map<Long, Session> sessions = new HashMap<Long, Session>();
+    // Not starting from zero so that a client doesn't continue in some other session after a restart
+    private long nextSessionId = System.currentTimeMillis();
+    private long lastEpoch = ChangedPages.NO_EPOCH;
+
+    public StoreCopySessions( GraphDatabaseAPI graphDb, long idleTimeoutMillis )
+    {
+        this.graphDb = graphDb;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public StoreCopyManifest open( boolean includeLogicalLogs ) throws IOException
+    {
+        return open( includeLogicalLogs, false, ChangedPages.NO_EPOCH );
+    }
+
+    /**
+     * Opens a session like {@link #open(boolean)} does, but also starts a new epoch
+     * of changed pages and lists the pages changed since {@code sinceEpoch} in the
+     * manifest. Only the latest epoch is tracked, so if some other client has opened
+     * a session since then, or the database didn't shut down cleanly, the changes
+     * aren't known and the client has to copy the files whole.
+     */
+    public StoreCopyManifest openSinceEpoch( boolean includeLogicalLogs, long sinceEpoch ) throws IOException
+    {
+        return open( includeLogicalLogs, true, sinceEpoch );
+    }
+
+    /**
+     * @return roughly the number of bytes that a session opened since {@code sinceEpoch}
+     * would transfer, or -1 if the changes since then aren't known.
+     */
+    public long incrementalSize( long sinceEpoch ) throws IOException
+    {
+        Map<File, ChangedPages> stores = neoStoreDataSource().getNeoStore().getChangedPages();
+        if ( sinceEpoch == ChangedPages.NO_EPOCH || stores.isEmpty() )
+        {
+            return -1;
+        }
+        long size = 0;
+        for ( ChangedPages changedPages : stores.values() )
+        {
+            if ( changedPages.getEpoch() != sinceEpoch )
+            {
+                return -1;
+            }
+            size += (long) changedPages.countChangedPages() * ChangedPages.PAGE_SIZE;
+        }
+        // Files of other data sources, like the indexes, are copied whole
+        for ( XaDataSource dataSource : graphDb.getXaDataSourceManager().getAllRegisteredDataSources() )
+        {
+            if ( dataSource instanceof NeoStoreXaDataSource )
+            {
+                continue;
+            }
+            ClosableIterable<File> files = dataSource.listStoreFiles( false );
+            try
+            {
+                for ( File file : files )
+                {
+                    size += file.length();
+                }
+            }
+            finally
+            {
+                files.close();
+            }
+        }
+        return size;
+    }
+
+    private StoreCopyManifest open( boolean includeLogicalLogs, boolean startEpoch, long sinceEpoch )
+            throws IOException
+    {
+        closeIdleSessions();
+        File baseDir = ServerUtil.getBaseDir( graphDb );
+        RequestContext context = RequestContext.anonymous( ServerUtil.rotateLogs( graphDb ) );
+        // After the rotation, so that changes between the two are both copied and applied from the logs
+        long epoch = ChangedPages.NO_EPOCH;
+        Map<String, BitSet> changedPages = new LinkedHashMap<String, BitSet>();
+        if ( startEpoch )
+        {
+            epoch = startEpoch( baseDir, sinceEpoch, changedPages );
+        }
+        Session session = new Session( context );
+        try
+        {
+            for ( XaDataSource dataSource : graphDb.getXaDataSourceManager().getAllRegisteredDataSources() )
+            {
+                ClosableIterable<File> files = dataSource.listStoreFiles( includeLogicalLogs );
+                session.listings.add( files );
+                for ( File file : files )
+                {
+                    session.files.put( ServerUtil.relativePath( baseDir, file ), file );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            session.close();
+            throw e;
+        }
+
+        Map<String, Long> lengths = new LinkedHashMap<String, Long>();
+        for ( Map.Entry<String, File> file : session.files.entrySet() )
+        {
+            lengths.put( file.getKey(), file.getValue().length() );
+        }
+        long sessionId;
+        synchronized ( sessions )
+        {
+            sessionId = nextSessionId++;
+            sessions.put( sessionId, session );
+        }
+        return new StoreCopyManifest( sessionId, lengths, epoch, changedPages );
+    }
+
+    private synchronized long startEpoch( File baseDir, long sinceEpoch, Map<String, BitSet> changedSince )
+            throws IOException
+    {
+        Map<File, ChangedPages> stores = neoStoreDataSource().getNeoStore().getChangedPages();
+        if ( stores.isEmpty() )
+        {
+            return ChangedPages.NO_EPOCH;
+        }
+        long epoch = Math.max( System.currentTimeMillis(), lastEpoch + 1 );
+        lastEpoch = epoch;
+        boolean known = sinceEpoch != ChangedPages.NO_EPOCH;
+        for ( Map.Entry<File, ChangedPages> store : stores.entrySet() )
+        {
+            known &= store.getValue().getEpoch() == sinceEpoch;
+            BitSet changed = store.getValue().startEpoch( epoch );
+            known &= changed != null;
+            if ( known )
+            {
+                changedSince.put( ServerUtil.relativePath( baseDir, store.getKey() ), changed );
+            }
+        }
+        if ( !known )
+        {
+            changedSince.clear();
+        }
+        return epoch;
+    }
+
+    private NeoStoreXaDataSource neoStoreDataSource()
+    {
+        return graphDb.getXaDataSourceManager().getNeoStoreDataSource();
+    }
+
+    /**
+     * Writes the given range to {@code writer}, or just confirms it if its checksum
+     * matches the one in the range.
+     */
+    public void copyRange( long sessionId, StoreFileRange range, StoreRangeWriter writer ) throws IOException
+    {
+        Session session = session( sessionId );
+        File file = session.files.get( range.getPath() );
+        if ( file == null )
+        {
+            throw new ServerFailureException( range.getPath() + " is not part of store copy session " + sessionId );
+        }
+        if ( range.getLength() <= 0 || range.getLength() > MAX_RANGE_SIZE )
+        {
+            throw new ServerFailureException( "Invalid range size " + range.getLength() + " for " + range );
+        }
+
+        // Read it all before sending anything, since the checksum must match what
+        // is sent even if the file is being written to in the meantime.
+        byte[] data = new byte[range.getLength()];
+        RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
+        try
+        {
+            FileChannel channel = randomAccessFile.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap( data );
+            while ( buffer.hasRemaining() )
+            {
+                if ( channel.read( buffer, range.getOffset() + buffer.position() ) == -1 )
+                {
+                    throw new IOException( file + " ended before " + range );
+                }
+            }
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update( data );
+        long checksum = crc.getValue();
+        writer.writeRange( range, checksum == range.getChecksum() ? null :
+                Channels.newChannel( new ByteArrayInputStream( data ) ), checksum );
+    }
+
+    /**
+     * Ends a session and releases its files.
+     *
+     * @return the context of the log rotation that started the session, i.e. the
+     * transactions that the client has to apply after having copied all ranges.
+     */
+    public RequestContext finish( long sessionId )
+    {
+        Session session;
+        synchronized ( sessions )
+        {
+            session = sessions.remove( sessionId );
+        }
+        if ( session == null )
+        {
+            throw new ServerFailureException( "No store copy session " + sessionId + ", it may have timed out" );
+        }
+        session.close();
+        return session.context;
+    }
+
+    public void close()
+    {
+        synchronized ( sessions )
+        {
+            for ( Session session : sessions.values() )
+            {
+                session.close();
+            }
+            sessions.clear();
+        }
+    }
+
+    private Session session( long sessionId )
+    {
+        closeIdleSessions();
+        synchronized ( sessions )
+        {
+            Session session = sessions.get( sessionId );
+            if ( session == null )
+            {
+                throw new ServerFailureException( "No store copy session " + sessionId + ", it may have timed out" );
+            }
+            session.lastUsed = System.currentTimeMillis();
+            return session;
+        }
+    }
+
+    private void closeIdleSessions()
+    {
+        long now = System.currentTimeMillis();
+        synchronized ( sessions )
+        {
+            for ( Iterator<Session> iterator = sessions.values().iterator(); iterator.hasNext(); )
+            {
+                Session session = iterator.next();
+                if ( now - session.lastUsed > idleTimeoutMillis )
+                {
+                    iterator.remove();
+                    session.close();
+                }
+            }
+        }
+    }
+
+    private static class Session
+    {
+        private final RequestContext context;
+        private final List<ClosableIterable<File>> listings = new ArrayList<ClosableIterable<File>>();
+        private final Map<String, File> files = new LinkedHashMap<String, File>();
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        Session( RequestContext context )
+        {
+            this.context = context;
+        }
+
+        void close()
+        {
+            for ( ClosableIterable<File> listing : listings )
+            {
+                listing.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.com;
+
+import static org.neo4j.com.Protocol.readString;
+import static org.neo4j.com.Protocol.writeString;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+
+/**
+ * A range of bytes in a store file, the unit that store copies are transferred
+ * and verified in. The checksum is the CRC32 of the range as the receiving side
+ * has it, or {@link #NO_CHECKSUM} if it doesn't have it yet.
+ */
+public final class StoreFileRange
+{
+    public static final long NO_CHECKSUM = -1;
+
+    private final String path;
+    private final long offset;
+    private final int length;
+    private final long checksum;
+
+    public StoreFileRange( String path, long offset, int length, long checksum )
+    {
+        this.path = path;
+        this.offset = offset;
+        this.length = length;
+        this.checksum = checksum;
+    }
+
+    public String getPath()
+    {
+        return path;
+    }
+
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    public int getLength()
+    {
+        return length;
+    }
+
+    public long getChecksum()
+    {
+        return checksum;
+    }
+
+    public StoreFileRange withChecksum( long checksum )
+    {
+        return new StoreFileRange( path, offset, length, checksum );
+    }
+
+    public void writeTo( ChannelBuffer buffer )
+    {
+        writeString( buffer, path );
+        buffer.writeLong( offset );
+        buffer.writeInt( length );
+        buffer.writeLong( checksum );
+    }
+
+    public static StoreFileRange readFrom( ChannelBuffer buffer )
+    {
+        return new StoreFileRange( readString( buffer ), buffer.readLong(), buffer.readInt(), buffer.readLong() );
+    }
+
+    @Override
+    public String toString()
+    {
+        return path + "[" + offset + "+" + length + "]";
+    }
+}
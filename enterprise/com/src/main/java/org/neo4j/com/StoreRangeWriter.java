@@ -17,14 +17,22 @@
  * You should have received a copy of the GNU Affero General Public License
  * along with this program. If not, see <http://www.gnu.org/licenses/>.
  */
-package org.neo4j.consistency.store.paging;
+package org.neo4j.com;
 
 import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
 
-public class PageLoadFailureException extends Exception
+/**
+ * Receives one {@link StoreFileRange} of a store copy, the range counterpart of
+ * {@link StoreWriter}.
+ */
+public interface StoreRangeWriter
 {
-    public PageLoadFailureException( IOException e )
-    {
-        super(e);
-    }
+    /**
+     * @param range the range being written.
+     * @param data the contents of the range, or {@code null} if the range is unchanged
+     * from what the receiving side has, i.e. its checksum matched.
+     * @param checksum the CRC32 of the contents of the range.
+     */
+    void writeRange( StoreFileRange range, ReadableByteChannel data, long checksum ) throws IOException;
 }
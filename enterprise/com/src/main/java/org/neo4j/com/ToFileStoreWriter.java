@@ -25,8 +25,9 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.util.zip.CRC32;
 
-public class ToFileStoreWriter implements StoreWriter
+public class ToFileStoreWriter implements StoreWriter, StoreRangeWriter
 {
     private final File basePath;
 
@@ -73,6 +74,49 @@ public class ToFileStoreWriter implements StoreWriter
         }
     }
 
+    public void writeRange( StoreFileRange range, ReadableByteChannel data, long checksum ) throws IOException
+    {
+        if ( data == null )
+        {   // The range we have is already up to date
+            return;
+        }
+
+        File file = new File( basePath, range.getPath() );
+        file.getParentFile().mkdirs();
+        RandomAccessFile randomAccessFile = new RandomAccessFile( file, "rw" );
+        try
+        {
+            FileChannel channel = randomAccessFile.getChannel();
+            // Heap buffer since the checksum is calculated from its array
+            byte[] bytes = new byte[64 * 1024];
+            ByteBuffer buffer = ByteBuffer.wrap( bytes );
+            CRC32 crc = new CRC32();
+            long position = range.getOffset();
+            while ( data.read( buffer ) >= 0 )
+            {
+                buffer.flip();
+                crc.update( bytes, 0, buffer.limit() );
+                while ( buffer.hasRemaining() )
+                {
+                    position += channel.write( buffer, position );
+                }
+                buffer.clear();
+            }
+            if ( position - range.getOffset() != range.getLength() || crc.getValue() != checksum )
+            {
+                throw new IOException( "Received " + range + " failed verification, got " +
+                        (position - range.getOffset()) + " bytes with checksum " + crc.getValue() +
+                        ", expected " + range.getLength() + " bytes with checksum " + checksum );
+            }
+            // On disk before it's recorded as copied, so that a resumed copy can trust the record
+            channel.force( false );
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+
     public void done()
     {
         // Do nothing
@@ -25,7 +25,7 @@ import java.nio.channels.ReadableByteChannel;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 
-public class ToNetworkStoreWriter implements StoreWriter
+public class ToNetworkStoreWriter implements StoreWriter, StoreRangeWriter
 {
     private final ChannelBuffer targetBuffer;
 
@@ -50,6 +50,18 @@ public class ToNetworkStoreWriter implements StoreWriter
         }
     }
 
+    public void writeRange( StoreFileRange range, ReadableByteChannel data, long checksum ) throws IOException
+    {
+        targetBuffer.writeByte( data != null ? 1 : 0 );
+        targetBuffer.writeLong( checksum );
+        if ( data != null )
+        {
+            BlockLogBuffer buffer = new BlockLogBuffer( targetBuffer );
+            buffer.write( data );
+            buffer.done();
+        }
+    }
+
     public void done()
     {
         targetBuffer.writeShort( 0 );
@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.com;
+
+import static org.neo4j.com.MadeUpServer.FRAME_LENGTH;
+import static org.neo4j.com.TxChecksumVerifier.ALWAYS_MATCH;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Random;
+
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.neo4j.kernel.impl.nioneo.store.StoreId;
+import org.neo4j.kernel.lifecycle.LifeSupport;
+
+/**
+ * Streams record-like data from a server to a client over loopback, where each
+ * received frame is delayed to simulate a slower link than loopback, and prints
+ * the throughput with and without compressed responses.
+ */
+@Ignore( "Benchmark, run manually" )
+public class CompressedTransferBenchmark
+{
+    private static final int PORT = 1235;
+    private static final int DATA_SIZE = 64 * 1024 * 1024;
+    private static final int CHUNK_SIZE = FRAME_LENGTH / 4;
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void measureThroughput() throws Throwable
+    {
+        for ( int latencyMillis : new int[] { 0, 1, 5, 20 } )
+        {
+            for ( boolean compression : new boolean[] { false, true } )
+            {
+                measure( latencyMillis, compression );
+            }
+        }
+    }
+
+    private void measure( int latencyMillis, boolean compression ) throws Throwable
+    {
+        StoreId storeId = new StoreId();
+        LifeSupport life = new LifeSupport();
+        life.add( new MadeUpServer( new RecordProducingServer( storeId ), PORT, (byte) 0, (byte) 0,
+                ALWAYS_MATCH, CHUNK_SIZE ) );
+        MadeUpClient client = life.add( new DelayingClient( storeId, compression, latencyMillis ) );
+        life.start();
+        try
+        {
+            // Warm up
+            client.fetchDataStream( new Drainer(), DATA_SIZE ).close();
+            long time = System.currentTimeMillis();
+            for ( int i = 0; i < ROUNDS; i++ )
+            {
+                client.fetchDataStream( new Drainer(), DATA_SIZE ).close();
+            }
+            time = System.currentTimeMillis() - time;
+            System.out.println( "latency:" + latencyMillis + "ms compression:" + compression + " " +
+                    (ROUNDS * (long) DATA_SIZE / 1024 / 1024 * 1000 / Math.max( time, 1 )) + " MB/s" );
+        }
+        finally
+        {
+            life.shutdown();
+        }
+    }
+
+    private static class DelayingClient extends MadeUpClient
+    {
+        private final int latencyMillis;
+
+        DelayingClient( StoreId storeId, boolean compression, int latencyMillis )
+        {
+            super( PORT, storeId, (byte) 0, (byte) 0, CHUNK_SIZE, compression );
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public ChannelPipeline getPipeline() throws Exception
+        {
+            ChannelPipeline pipeline = super.getPipeline();
+            pipeline.addBefore( "blockingHandler", "delay", new SimpleChannelUpstreamHandler()
+            {
+                @Override
+                public void messageReceived( ChannelHandlerContext ctx, MessageEvent e ) throws Exception
+                {
+                    if ( latencyMillis > 0 )
+                    {
+                        Thread.sleep( latencyMillis );
+                    }
+                    super.messageReceived( ctx, e );
+                }
+            } );
+            return pipeline;
+        }
+    }
+
+    private static class RecordProducingServer extends MadeUpServerImplementation
+    {
+        private final StoreId storeId;
+
+        RecordProducingServer( StoreId storeId )
+        {
+            super( storeId );
+            this.storeId = storeId;
+        }
+
+        @Override
+        public Response<Void> fetchDataStream( MadeUpWriter writer, int dataSize )
+        {
+            writer.write( new RecordProducer( dataSize ) );
+            return new Response<Void>( null, storeId, TransactionStream.EMPTY, ResourceReleaser.NO_OP );
+        }
+    }
+
+    /**
+     * Produces something resembling node and relationship records in logical logs:
+     * mostly small ids and unused high bytes, with some random property values.
+     */
+    private static class RecordProducer implements ReadableByteChannel
+    {
+        private final Random random = new Random( 1234 );
+        private int left;
+
+        RecordProducer( int size )
+        {
+            this.left = size;
+        }
+
+        @Override
+        public int read( ByteBuffer dst ) throws IOException
+        {
+            if ( left == 0 )
+            {
+                return -1;
+            }
+            int count = 0;
+            while ( dst.remaining() >= 8 && left >= 8 )
+            {
+                long id = random.nextInt( 3 ) == 0 ? random.nextLong() : random.nextInt( 1000000 );
+                dst.putLong( id );
+                left -= 8;
+                count += 8;
+            }
+            while ( dst.hasRemaining() && left > 0 && count == 0 )
+            {
+                dst.put( (byte) 0 );
+                left--;
+                count++;
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+        }
+    }
+
+    private static class Drainer implements MadeUpWriter
+    {
+        @Override
+        public void write( ReadableByteChannel data )
+        {
+            ByteBuffer buffer = ByteBuffer.allocate( 64 * 1024 );
+            try
+            {
+                while ( data.read( buffer ) != -1 )
+                {
+                    buffer.clear();
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new RuntimeException( e );
+            }
+        }
+    }
+}
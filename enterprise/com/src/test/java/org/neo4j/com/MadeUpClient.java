@@ -39,15 +39,23 @@ import org.neo4j.kernel.logging.DevNullLoggingService;
 public class MadeUpClient extends Client<MadeUpCommunicationInterface> implements MadeUpCommunicationInterface
 {
     private final byte internalProtocolVersion;
+    private final boolean compression;
 
     public MadeUpClient( int port, StoreId storeIdToExpect,
             byte internalProtocolVersion, byte applicationProtocolVersion, int chunkSize )
+    {
+        this( port, storeIdToExpect, internalProtocolVersion, applicationProtocolVersion, chunkSize, false );
+    }
+
+    public MadeUpClient( int port, StoreId storeIdToExpect,
+            byte internalProtocolVersion, byte applicationProtocolVersion, int chunkSize, boolean compression )
     {
         super( localhost(), port, new DevNullLoggingService(), storeIdToExpect, FRAME_LENGTH,
                 applicationProtocolVersion, Client.DEFAULT_READ_RESPONSE_TIMEOUT_SECONDS * 1000,
                 Client.DEFAULT_MAX_NUMBER_OF_CONCURRENT_CHANNELS_PER_CLIENT,
                 Client.DEFAULT_MAX_NUMBER_OF_CONCURRENT_CHANNELS_PER_CLIENT, chunkSize );
         this.internalProtocolVersion = internalProtocolVersion;
+        this.compression = compression;
     }
 
     private static String localhost()
@@ -68,6 +76,12 @@ public class MadeUpClient extends Client<MadeUpCommunicationInterface> implement
         return internalProtocolVersion;
     }
 
+    @Override
+    protected boolean acceptsCompressedResponses()
+    {
+        return compression;
+    }
+
     @Override
     public Response<Integer> multiply( final int value1, final int value2 )
     {
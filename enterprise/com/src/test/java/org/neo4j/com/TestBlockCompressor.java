@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.com;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestBlockCompressor
+{
+    private final BlockCompressor compressor = new BlockCompressor();
+
+    @Test
+    public void shouldRoundTripEmptyAndTinyBlocks() throws Exception
+    {
+        for ( int length = 0; length < 32; length++ )
+        {
+            byte[] data = new byte[length];
+            Arrays.fill( data, (byte) 7 );
+            assertRoundTrip( data );
+        }
+    }
+
+    @Test
+    public void shouldCompressRepetitiveData() throws Exception
+    {
+        byte[] data = new byte[1024 * 1024];
+        for ( int i = 0; i < data.length; i++ )
+        {
+            data[i] = (byte) (i % 10);
+        }
+
+        int compressedLength = assertRoundTrip( data );
+
+        assertTrue( "Expected good compression, got " + compressedLength, compressedLength < data.length / 100 );
+    }
+
+    @Test
+    public void shouldRoundTripRandomDataOfAllShapes() throws Exception
+    {
+        Random random = new Random( 1234 );
+        for ( int round = 0; round < 200; round++ )
+        {
+            byte[] data = new byte[random.nextInt( 100000 )];
+            int alphabet = 1 + random.nextInt( 255 );
+            for ( int i = 0; i < data.length; i++ )
+            {
+                if ( i > 100 && random.nextInt( 10 ) == 0 )
+                {   // Copy an earlier run to get matches of varying lengths and distances
+                    int length = Math.min( random.nextInt( 300 ), data.length - i );
+                    int from = random.nextInt( i - 1 );
+                    for ( int j = 0; j < length; j++ )
+                    {
+                        data[i + j] = data[from + j];
+                    }
+                    i += length;
+                }
+                else if ( i < data.length )
+                {
+                    data[i] = (byte) random.nextInt( alphabet );
+                }
+            }
+            assertRoundTrip( data );
+        }
+    }
+
+    @Test
+    public void shouldNotGrowIncompressibleDataBeyondMaxCompressedLength() throws Exception
+    {
+        byte[] data = new byte[100000];
+        new Random( 4321 ).nextBytes( data );
+
+        int compressedLength = assertRoundTrip( data );
+
+        assertTrue( compressedLength <= BlockCompressor.maxCompressedLength( data.length ) );
+    }
+
+    @Test
+    public void shouldCompressWithinLargerArrays() throws Exception
+    {
+        byte[] data = new byte[5000];
+        for ( int i = 0; i < data.length; i++ )
+        {
+            data[i] = (byte) (i % 33);
+        }
+        byte[] compressed = new byte[BlockCompressor.maxCompressedLength( 4000 ) + 10];
+        int compressedLength = compressor.compress( data, 500, 4000, compressed, 10 );
+        byte[] decompressed = new byte[4000 + 20];
+        int length = BlockCompressor.decompress( compressed, 10, compressedLength, decompressed, 20, 4000 );
+
+        assertEquals( 4000, length );
+        assertArrayEquals( Arrays.copyOfRange( data, 500, 4500 ), Arrays.copyOfRange( decompressed, 20, 4020 ) );
+    }
+
+    @Test
+    public void shouldRejectMalformedBlocks() throws Exception
+    {
+        byte[] data = new byte[10000];
+        for ( int i = 0; i < data.length; i++ )
+        {
+            data[i] = (byte) (i % 50);
+        }
+        byte[] compressed = new byte[BlockCompressor.maxCompressedLength( data.length )];
+        int compressedLength = compressor.compress( data, 0, data.length, compressed, 0 );
+
+        try
+        {
+            BlockCompressor.decompress( compressed, 0, compressedLength, new byte[data.length], 0, data.length - 1 );
+            fail( "Should not fit" );
+        }
+        catch ( ComException e )
+        {   // Good
+        }
+        try
+        {
+            BlockCompressor.decompress( compressed, 0, compressedLength - 3, new byte[data.length], 0, data.length );
+            fail( "Should be truncated" );
+        }
+        catch ( ComException e )
+        {   // Good
+        }
+    }
+
+    private int assertRoundTrip( byte[] data )
+    {
+        byte[] compressed = new byte[BlockCompressor.maxCompressedLength( data.length )];
+        int compressedLength = compressor.compress( data, 0, data.length, compressed, 0 );
+        byte[] decompressed = new byte[data.length];
+        int length = BlockCompressor.decompress( compressed, 0, compressedLength, decompressed, 0, data.length );
+        assertEquals( data.length, length );
+        assertArrayEquals( data, decompressed );
+        return compressedLength;
+    }
+}
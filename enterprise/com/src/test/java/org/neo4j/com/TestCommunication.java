@@ -357,6 +357,63 @@ public class TestCommunication
         client.sendDataStream( new DataProducer( clientChunkSize*2 ) );
     }
     
+    @Test
+    public void clientCanStreamBigDataCompressed() throws Throwable
+    {
+        MadeUpServer server = builder.server();
+        MadeUpClient client = builder.compression( true ).client();
+        life.add( server );
+        life.add( client );
+        life.start();
+
+        client.fetchDataStream( new ToAssertionWriter(), FRAME_LENGTH*3 );
+        assertEquals( (Integer)(7*6), client.multiply( 7, 6 ).response() );
+    }
+
+    @Test
+    public void clientCanReadCompressedAndUncompressedChunksOfSameResponse() throws Throwable
+    {
+        // Small chunks, where the last one of the response is too small to be worth compressing
+        MadeUpServer server = builder.chunkSize( 2000 ).server();
+        MadeUpClient client = builder.chunkSize( 2000 ).compression( true ).client();
+        life.add( server );
+        life.add( client );
+        life.start();
+
+        client.fetchDataStream( new ToAssertionWriter(), 2000*5 + 100 );
+    }
+
+    @Test
+    public void clientThrowsServerSideErrorMidwayThroughCompressedStreaming() throws Throwable
+    {
+        final String failureMessage = "Just failing";
+        MadeUpServerImplementation serverImplementation = new MadeUpServerImplementation( storeIdToUse )
+        {
+            @Override
+            public Response<Void> fetchDataStream( MadeUpWriter writer, int dataSize )
+            {
+                writer.write( new FailingByteChannel( dataSize, failureMessage ) );
+                return new Response<Void>( null, storeIdToUse,
+                        TransactionStream.EMPTY, ResourceReleaser.NO_OP );
+            }
+        };
+        MadeUpServer server = builder.server( serverImplementation );
+        MadeUpClient client = builder.compression( true ).client();
+        life.add( server );
+        life.add( client );
+        life.start();
+
+        try
+        {
+            client.fetchDataStream( new ToAssertionWriter(), FRAME_LENGTH*2 );
+            fail( "Should have thrown " + MadeUpException.class.getSimpleName() );
+        }
+        catch ( MadeUpException e )
+        {
+            assertEquals( failureMessage, e.getMessage() );
+        }
+    }
+
     @Test
     public void impossibleToHaveBiggerChunkSizeThanFrameSize() throws Throwable
     {
@@ -388,15 +445,16 @@ public class TestCommunication
         private final byte applicationProtocolVersion;
         private final TxChecksumVerifier verifier;
         private final StoreId storeId;
+        private final boolean compression;
         
         public Builder()
         {
             this( PORT, FRAME_LENGTH, INTERNAL_PROTOCOL_VERSION, APPLICATION_PROTOCOL_VERSION,
-                    ALWAYS_MATCH, storeIdToUse );
+                    ALWAYS_MATCH, storeIdToUse, false );
         }
         
         public Builder( int port, int chunkSize, byte internalProtocolVersion, byte applicationProtocolVersion,
-                TxChecksumVerifier verifier, StoreId storeId )
+                TxChecksumVerifier verifier, StoreId storeId, boolean compression )
         {
             this.port = port;
             this.chunkSize = chunkSize;
@@ -404,36 +462,42 @@ public class TestCommunication
             this.applicationProtocolVersion = applicationProtocolVersion;
             this.verifier = verifier;
             this.storeId = storeId;
+            this.compression = compression;
         }
         
         public Builder port( int port )
         {
-            return new Builder( port, chunkSize, internalProtocolVersion, applicationProtocolVersion, verifier, storeId );
+            return new Builder( port, chunkSize, internalProtocolVersion, applicationProtocolVersion, verifier, storeId, compression );
         }
         
         public Builder chunkSize( int chunkSize )
         {
-            return new Builder( port, chunkSize, internalProtocolVersion, applicationProtocolVersion, verifier, storeId );
+            return new Builder( port, chunkSize, internalProtocolVersion, applicationProtocolVersion, verifier, storeId, compression );
         }
         
         public Builder internalProtocolVersion( byte internalProtocolVersion )
         {
-            return new Builder( port, chunkSize, internalProtocolVersion, applicationProtocolVersion, verifier, storeId );
+            return new Builder( port, chunkSize, internalProtocolVersion, applicationProtocolVersion, verifier, storeId, compression );
         }
         
         public Builder applicationProtocolVersion( byte applicationProtocolVersion )
         {
-            return new Builder( port, chunkSize, internalProtocolVersion, applicationProtocolVersion, verifier, storeId );
+            return new Builder( port, chunkSize, internalProtocolVersion, applicationProtocolVersion, verifier, storeId, compression );
         }
         
         public Builder verifier( TxChecksumVerifier verifier )
         {
-            return new Builder( port, chunkSize, internalProtocolVersion, applicationProtocolVersion, verifier, storeId );
+            return new Builder( port, chunkSize, internalProtocolVersion, applicationProtocolVersion, verifier, storeId, compression );
         }
         
         public Builder storeId( StoreId storeId )
         {
-            return new Builder( port, chunkSize, internalProtocolVersion, applicationProtocolVersion, verifier, storeId );
+            return new Builder( port, chunkSize, internalProtocolVersion, applicationProtocolVersion, verifier, storeId, compression );
+        }
+        
+        public Builder compression( boolean compression )
+        {
+            return new Builder( port, chunkSize, internalProtocolVersion, applicationProtocolVersion, verifier, storeId, compression );
         }
         
         public MadeUpServer server()
@@ -449,7 +513,8 @@ public class TestCommunication
         
         public MadeUpClient client()
         {
-            return new MadeUpClient( port, storeId, internalProtocolVersion, applicationProtocolVersion, chunkSize );
+            return new MadeUpClient( port, storeId, internalProtocolVersion, applicationProtocolVersion, chunkSize,
+                    compression );
         }
         
         public ServerInterface serverInOtherJvm()
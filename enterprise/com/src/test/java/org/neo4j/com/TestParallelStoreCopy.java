@@ -0,0 +1,307 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.com;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.kernel.impl.nioneo.store.ChangedPages;
+import org.neo4j.kernel.impl.util.StringLogger;
+import org.neo4j.test.TargetDirectory;
+
+public class TestParallelStoreCopy
+{
+    private static final int RANGE_SIZE = 4096;
+
+    private final TargetDirectory dir = TargetDirectory.forTest( getClass() );
+    private GraphDatabaseAPI db;
+    private StoreCopySessions sessions;
+    private File target;
+
+    @Before
+    public void createSourceStore()
+    {
+        db = (GraphDatabaseAPI) new GraphDatabaseFactory().newEmbeddedDatabase(
+                dir.directory( "source", true ).getAbsolutePath() );
+        createData( 2000 );
+        sessions = new StoreCopySessions( db, 60 * 1000 );
+        target = dir.directory( "target", true );
+    }
+
+    @After
+    public void shutdownSourceStore()
+    {
+        sessions.close();
+        db.shutdown();
+    }
+
+    @Test
+    public void shouldCopyAllStoreFilesInRanges() throws Exception
+    {
+        CountingSource source = new CountingSource( Integer.MAX_VALUE );
+
+        copy( source ).close();
+
+        assertSameFiles( source.manifest );
+        assertEquals( source.rangesRequested.get(), source.rangesTransferred.get() );
+        assertFalse( ParallelStoreCopy.isInProgress( target ) );
+    }
+
+    @Test
+    public void shouldResumeInterruptedCopyFromVerifiedRanges() throws Exception
+    {
+        int rangesBeforeFailure = 10;
+        try
+        {
+            copy( new CountingSource( rangesBeforeFailure ) );
+            fail( "Should have failed" );
+        }
+        catch ( ComException e )
+        {   // Good
+        }
+        assertTrue( ParallelStoreCopy.isInProgress( target ) );
+
+        CountingSource source = new CountingSource( Integer.MAX_VALUE );
+        copy( source ).close();
+
+        assertSameFiles( source.manifest );
+        assertEquals( source.rangesRequested.get() - rangesBeforeFailure, source.rangesTransferred.get() );
+        assertFalse( ParallelStoreCopy.isInProgress( target ) );
+    }
+
+    @Test
+    public void shouldCopyRangesAgainIfChangedSinceInterruption() throws Exception
+    {
+        try
+        {
+            copy( new CountingSource( 50 ) );
+            fail( "Should have failed" );
+        }
+        catch ( ComException e )
+        {   // Good
+        }
+        createData( 500 );
+
+        CountingSource source = new CountingSource( Integer.MAX_VALUE );
+        copy( source ).close();
+
+        assertSameFiles( source.manifest );
+    }
+
+    @Test
+    public void shouldOnlyCopyPagesChangedSinceEarlierCopy() throws Exception
+    {
+        CountingSource first = new CountingSource( Integer.MAX_VALUE, ChangedPages.NO_EPOCH );
+        copy( first ).close();
+        assertTrue( first.manifest.getChangedPages().isEmpty() );
+        createData( 10 );
+
+        CountingSource second = new CountingSource( Integer.MAX_VALUE, first.manifest.getEpoch() );
+        copy( second ).close();
+
+        assertFalse( second.manifest.getChangedPages().isEmpty() );
+        assertSameFiles( second.manifest );
+        assertTrue( second.rangesRequested.get() < first.rangesRequested.get() );
+    }
+
+    @Test
+    public void shouldCopyWholeFilesIfChangesSinceEpochAreUnknown() throws Exception
+    {
+        CountingSource first = new CountingSource( Integer.MAX_VALUE, ChangedPages.NO_EPOCH );
+        copy( first ).close();
+        sessions.finish( sessions.openSinceEpoch( false, ChangedPages.NO_EPOCH ).getSessionId() );
+        createData( 10 );
+
+        CountingSource second = new CountingSource( Integer.MAX_VALUE, first.manifest.getEpoch() );
+        copy( second ).close();
+
+        assertTrue( second.manifest.getChangedPages().isEmpty() );
+        assertSameFiles( second.manifest );
+    }
+
+    @Test
+    public void shouldOnlyServeFilesInSession() throws Exception
+    {
+        StoreCopyManifest manifest = sessions.open( false );
+        try
+        {
+            sessions.copyRange( manifest.getSessionId(), new StoreFileRange( "../../something", 0, 10,
+                    StoreFileRange.NO_CHECKSUM ), new ToFileStoreWriter( target ) );
+            fail( "Should not serve files outside of the session" );
+        }
+        catch ( ServerFailureException e )
+        {   // Good
+        }
+        sessions.finish( manifest.getSessionId() );
+        try
+        {
+            sessions.finish( manifest.getSessionId() );
+            fail( "Session should be gone" );
+        }
+        catch ( ServerFailureException e )
+        {   // Good
+        }
+    }
+
+    private Response<Void> copy( CountingSource source ) throws IOException
+    {
+        return new ParallelStoreCopy( target, 4, RANGE_SIZE, StringLogger.DEV_NULL ).copy( source );
+    }
+
+    private void createData( int nodes )
+    {
+        Transaction tx = db.beginTx();
+        try
+        {
+            Node previous = db.createNode();
+            for ( int i = 0; i < nodes; i++ )
+            {
+                Node node = db.createNode();
+                node.setProperty( "name", "node number " + i );
+                previous.createRelationshipTo( node, DynamicRelationshipType.withName( "NEXT" ) );
+                previous = node;
+            }
+            tx.success();
+        }
+        finally
+        {
+            tx.finish();
+        }
+    }
+
+    private void assertSameFiles( StoreCopyManifest manifest ) throws IOException
+    {
+        File sourceDir = new File( db.getStoreDir() );
+        for ( String path : manifest.getFiles().keySet() )
+        {
+            assertArrayEquals( path, contents( new File( sourceDir, path ) ), contents( new File( target, path ) ) );
+        }
+    }
+
+    private byte[] contents( File file ) throws IOException
+    {
+        RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
+        try
+        {
+            byte[] bytes = new byte[(int) randomAccessFile.length()];
+            randomAccessFile.readFully( bytes );
+            return bytes;
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+
+    private class CountingSource implements ParallelStoreCopy.Source
+    {
+        private final int rangesBeforeFailure;
+        private final Long sinceEpoch;
+        private final AtomicInteger rangesRequested = new AtomicInteger();
+        private final AtomicInteger rangesTransferred = new AtomicInteger();
+        private StoreCopyManifest manifest;
+
+        CountingSource( int rangesBeforeFailure )
+        {
+            this( rangesBeforeFailure, null );
+        }
+
+        CountingSource( int rangesBeforeFailure, Long sinceEpoch )
+        {
+            this.rangesBeforeFailure = rangesBeforeFailure;
+            this.sinceEpoch = sinceEpoch;
+        }
+
+        @Override
+        public Response<StoreCopyManifest> openStoreCopy()
+        {
+            try
+            {
+                manifest = sinceEpoch == null ? sessions.open( false ) :
+                        sessions.openSinceEpoch( false, sinceEpoch );
+            }
+            catch ( IOException e )
+            {
+                throw new ComException( e );
+            }
+            return response( manifest );
+        }
+
+        @Override
+        public Response<Void> copyStoreRange( long sessionId, StoreFileRange range, final StoreRangeWriter writer )
+        {
+            if ( rangesRequested.incrementAndGet() > rangesBeforeFailure )
+            {
+                throw new ComException( "Connection lost" );
+            }
+            try
+            {
+                sessions.copyRange( sessionId, range, new StoreRangeWriter()
+                {
+                    @Override
+                    public void writeRange( StoreFileRange range, ReadableByteChannel data, long checksum )
+                            throws IOException
+                    {
+                        if ( data != null )
+                        {
+                            rangesTransferred.incrementAndGet();
+                        }
+                        writer.writeRange( range, data, checksum );
+                    }
+                } );
+            }
+            catch ( IOException e )
+            {
+                throw new ComException( e );
+            }
+            return response( null );
+        }
+
+        @Override
+        public Response<Void> finishStoreCopy( long sessionId )
+        {
+            sessions.finish( sessionId );
+            return response( null );
+        }
+
+        private <T> Response<T> response( T value )
+        {
+            return new Response<T>( value, db.getStoreId(), TransactionStream.EMPTY, ResourceReleaser.NO_OP );
+        }
+    }
+}
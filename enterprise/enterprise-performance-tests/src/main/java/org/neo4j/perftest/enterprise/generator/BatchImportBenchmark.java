@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.perftest.enterprise.generator;
+
+import static java.util.Arrays.asList;
+import static org.neo4j.perftest.enterprise.util.Configuration.SYSTEM_PROPERTIES;
+import static org.neo4j.perftest.enterprise.util.Configuration.settingsOf;
+import static org.neo4j.perftest.enterprise.util.Predicate.integerRange;
+import static org.neo4j.perftest.enterprise.util.Setting.adaptSetting;
+import static org.neo4j.perftest.enterprise.util.Setting.integerSetting;
+import static org.neo4j.perftest.enterprise.util.Setting.listSetting;
+import static org.neo4j.perftest.enterprise.util.Setting.restrictSetting;
+import static org.neo4j.perftest.enterprise.util.Setting.stringSetting;
+import static org.neo4j.perftest.enterprise.windowpool.MemoryMappingConfiguration.addLegacyMemoryMappingConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.helpers.collection.PrefetchingIterator;
+import org.neo4j.kernel.impl.util.FileUtils;
+import org.neo4j.perftest.enterprise.util.Configuration;
+import org.neo4j.perftest.enterprise.util.Conversion;
+import org.neo4j.perftest.enterprise.util.Parameters;
+import org.neo4j.perftest.enterprise.util.Setting;
+import org.neo4j.unsafe.batchinsert.BatchImporter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+import org.neo4j.unsafe.batchinsert.ImportStage;
+import org.neo4j.unsafe.batchinsert.InputNode;
+import org.neo4j.unsafe.batchinsert.InputRelationship;
+
+/**
+ * Generates the same kind of graph as the {@link DataGenerator}, but streams
+ * it through a {@link BatchImporter} and reports the throughput of each stage
+ * of the import.
+ */
+public class BatchImportBenchmark
+{
+    static final Setting<String> store_dir = stringSetting( "neo4j.store_dir", "target/generated-data/import.db" );
+    static final Setting<Integer> node_count = adaptSetting(
+            restrictSetting( integerSetting( "node_count", 1000000 ), integerRange( 0, Integer.MAX_VALUE ) ),
+            Conversion.TO_INTEGER );
+    static final Setting<List<RelationshipSpec>> relationships = listSetting(
+            adaptSetting( stringSetting( "relationships" ), RelationshipSpec.FROM_STRING ),
+            asList( new RelationshipSpec( "RELATED_TO", 2 ) ) );
+    static final Setting<List<PropertySpec>> node_properties = listSetting(
+            adaptSetting( Setting.stringSetting( "node_properties" ), PropertySpec.PARSER ),
+            asList( new PropertySpec( PropertyGenerator.STRING, 1 ),
+                    new PropertySpec( PropertyGenerator.BYTE_ARRAY, 1 ) ) );
+    static final Setting<List<PropertySpec>> relationship_properties = listSetting(
+            adaptSetting( Setting.stringSetting( "relationship_properties" ), PropertySpec.PARSER ),
+            Collections.<PropertySpec>emptyList() );
+    private static final Setting<String> all_stores_total_mapped_memory_size =
+            stringSetting( "all_stores_total_mapped_memory_size", "2G" );
+
+    private static final Random RANDOM = new Random();
+
+    /**
+     * Sample execution:
+     * java -cp ... org.neo4j.perftest.enterprise.generator.BatchImportBenchmark
+     * -neo4j.store_dir target/generated-data/import.db
+     * -node_count 10000000
+     * -relationships FRIEND_OF:5,LIKES:2
+     */
+    public static void main( String... args ) throws Exception
+    {
+        run( Parameters.configuration( SYSTEM_PROPERTIES, settingsOf( BatchImportBenchmark.class ) )
+                .convert( args ) );
+    }
+
+    private static void run( Configuration configuration ) throws IOException
+    {
+        String storeDir = configuration.get( store_dir );
+        FileUtils.deleteRecursively( new File( storeDir ) );
+        int nodeCount = configuration.get( node_count );
+        BatchImporter importer = BatchInserters.importer( storeDir, importerConfig( configuration ) );
+        long startTime = System.currentTimeMillis();
+        try
+        {
+            importer.doImport( nodes( nodeCount, configuration.get( node_properties ) ),
+                    relationships( nodeCount, configuration.get( relationships ),
+                            configuration.get( relationship_properties ) ) );
+        }
+        finally
+        {
+            importer.shutdown();
+        }
+        System.out.printf( "Imported %d nodes in %d ms%n", nodeCount, System.currentTimeMillis() - startTime );
+        for ( ImportStage stage : importer.getStages() )
+        {
+            System.out.println( stage );
+        }
+    }
+
+    private static PrefetchingIterator<InputNode> nodes( final int nodeCount, final List<PropertySpec> properties )
+    {
+        return new PrefetchingIterator<InputNode>()
+        {
+            private int next = 1; // the reference node already exists
+
+            @Override
+            protected InputNode fetchNextOrNull()
+            {
+                return next < nodeCount ? new InputNode( next++, generate( properties ) ) : null;
+            }
+        };
+    }
+
+    private static PrefetchingIterator<InputRelationship> relationships( final int nodeCount,
+            final List<RelationshipSpec> specs, final List<PropertySpec> properties )
+    {
+        return new PrefetchingIterator<InputRelationship>()
+        {
+            private int node, spec, count;
+
+            @Override
+            protected InputRelationship fetchNextOrNull()
+            {
+                while ( node < nodeCount )
+                {
+                    if ( spec == specs.size() )
+                    {
+                        node++;
+                        spec = 0;
+                    }
+                    else if ( count == specs.get( spec ).count )
+                    {
+                        spec++;
+                        count = 0;
+                    }
+                    else
+                    {
+                        count++;
+                        return new InputRelationship( node, RANDOM.nextInt( nodeCount ), specs.get( spec ),
+                                generate( properties ) );
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    private static Map<String, Object> generate( List<PropertySpec> properties )
+    {
+        Map<String, Object> result = new HashMap<String, Object>();
+        for ( PropertySpec property : properties )
+        {
+            result.putAll( property.generate() );
+        }
+        return result;
+    }
+
+    private static Map<String, String> importerConfig( Configuration configuration )
+    {
+        Map<String, String> config = new HashMap<String, String>();
+        config.put( "use_memory_mapped_buffers", "true" );
+        config.put( GraphDatabaseSettings.all_stores_total_mapped_memory_size.name(),
+                configuration.get( all_stores_total_mapped_memory_size ) );
+        addLegacyMemoryMappingConfiguration( config, configuration.get( all_stores_total_mapped_memory_size ) );
+        return config;
+    }
+}
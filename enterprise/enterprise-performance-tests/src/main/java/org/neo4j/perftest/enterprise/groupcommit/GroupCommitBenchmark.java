@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.perftest.enterprise.groupcommit;
+
+import static org.neo4j.perftest.enterprise.util.Configuration.SYSTEM_PROPERTIES;
+import static org.neo4j.perftest.enterprise.util.Configuration.settingsOf;
+import static org.neo4j.perftest.enterprise.util.Setting.integerSetting;
+import static org.neo4j.perftest.enterprise.util.Setting.stringSetting;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.kernel.impl.transaction.TxManager;
+import org.neo4j.kernel.impl.transaction.XaDataSourceManager;
+import org.neo4j.kernel.impl.transaction.xaframework.GroupCommit;
+import org.neo4j.kernel.impl.util.FileUtils;
+import org.neo4j.perftest.enterprise.util.Configuration;
+import org.neo4j.perftest.enterprise.util.Parameters;
+import org.neo4j.perftest.enterprise.util.Setting;
+
+/**
+ * Measures commit throughput of many concurrent writers doing small
+ * transactions, with and without {@link GraphDatabaseSettings#group_commit},
+ * and reports the batch size and force latency of the logical log and the
+ * transaction log for each run.
+ */
+public class GroupCommitBenchmark
+{
+    static final Setting<String> store_dir = stringSetting( "neo4j.store_dir", "target/groupcommit_perf_graph" );
+    static final Setting<Long> threads = integerSetting( "threads", 64 );
+    static final Setting<Long> transactions_per_thread = integerSetting( "transactions_per_thread", 500 );
+    static final Setting<Long> iterations = integerSetting( "iterations", 3 );
+    static final Setting<String> group_commit_max_wait = stringSetting( "group_commit_max_wait", "1ms" );
+
+    /**
+     * Sample execution:
+     * java -cp ... org.neo4j.perftest.enterprise.groupcommit.GroupCommitBenchmark
+     * -neo4j.store_dir target/groupcommit_perf_graph
+     * -threads 200
+     * -transactions_per_thread 1000
+     */
+    public static void main( String... args ) throws Exception
+    {
+        run( Parameters.configuration( SYSTEM_PROPERTIES, settingsOf( GroupCommitBenchmark.class ) )
+                .convert( args ) );
+    }
+
+    private static void run( Configuration configuration ) throws Exception
+    {
+        int threadCount = configuration.get( threads ).intValue();
+        ExecutorService executor = Executors.newFixedThreadPool( threadCount );
+        try
+        {
+            for ( int i = 0; i < configuration.get( iterations ); i++ )
+            {
+                for ( boolean groupCommit : new boolean[]{false, true} )
+                {
+                    benchmark( configuration, executor, threadCount, groupCommit );
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private static void benchmark( Configuration configuration, ExecutorService executor, int threadCount,
+                                   boolean groupCommit ) throws Exception
+    {
+        File storeDir = new File( configuration.get( store_dir ) );
+        FileUtils.deleteRecursively( storeDir );
+        final GraphDatabaseAPI graphdb = (GraphDatabaseAPI) new GraphDatabaseFactory()
+                .newEmbeddedDatabaseBuilder( storeDir.getPath() )
+                .setConfig( GraphDatabaseSettings.group_commit, Boolean.toString( groupCommit ) )
+                .setConfig( GraphDatabaseSettings.group_commit_max_wait, configuration.get( group_commit_max_wait ) )
+                .newGraphDatabase();
+        try
+        {
+            final long transactions = configuration.get( transactions_per_thread );
+            List<Callable<Long>> writers = new ArrayList<Callable<Long>>();
+            for ( int i = 0; i < threadCount; i++ )
+            {
+                writers.add( new Callable<Long>()
+                {
+                    @Override
+                    public Long call()
+                    {
+                        for ( long i = 0; i < transactions; i++ )
+                        {
+                            Transaction tx = graphdb.beginTx();
+                            try
+                            {
+                                Node node = graphdb.createNode();
+                                node.setProperty( "value", i );
+                                tx.success();
+                            }
+                            finally
+                            {
+                                tx.finish();
+                            }
+                        }
+                        return transactions;
+                    }
+                } );
+            }
+
+            long startTime = System.nanoTime();
+            long committed = 0;
+            for ( Future<Long> result : executor.invokeAll( writers ) )
+            {
+                committed += result.get();
+            }
+            long time = System.nanoTime() - startTime;
+
+            String name = (groupCommit ? "group commit" : "no group commit") + "[" + threadCount + " threads]";
+            System.out.printf( "%s: %d transactions in %.3f ms (%.0f tx/s)%n", name, committed,
+                    time / 1000000.0, committed * 1000000000.0 / time );
+            report( name, "logical log", graphdb.getDependencyResolver().resolveDependency(
+                    XaDataSourceManager.class ).getNeoStoreDataSource().getXaContainer().getLogicalLog()
+                    .getGroupCommit() );
+            report( name, "tx log", ((TxManager) graphdb.getTxManager()).getTxLogGroupCommit() );
+        }
+        finally
+        {
+            graphdb.shutdown();
+        }
+    }
+
+    private static void report( String name, String log, GroupCommit groupCommit )
+    {
+        if ( groupCommit == null || groupCommit.getForceCount() == 0 )
+        {
+            return;
+        }
+        System.out.printf( "%s %s: %d forces, average batch %.1f, max batch %d, average force %d us, " +
+                "max force %d us%n", name, log, groupCommit.getForceCount(), groupCommit.getAverageBatchSize(),
+                groupCommit.getMaxBatchSize(), groupCommit.getAverageForceTime( TimeUnit.MICROSECONDS ),
+                groupCommit.getMaxForceTime( TimeUnit.MICROSECONDS ) );
+    }
+}
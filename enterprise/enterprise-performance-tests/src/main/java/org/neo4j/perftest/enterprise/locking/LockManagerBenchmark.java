@@ -0,0 +1,323 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.perftest.enterprise.locking;
+
+import static org.neo4j.perftest.enterprise.util.Configuration.SYSTEM_PROPERTIES;
+import static org.neo4j.perftest.enterprise.util.Configuration.settingsOf;
+import static org.neo4j.perftest.enterprise.util.Setting.integerSetting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+
+import org.neo4j.kernel.DeadlockDetectedException;
+import org.neo4j.kernel.impl.transaction.LockManager;
+import org.neo4j.kernel.impl.transaction.LockManagerImpl;
+import org.neo4j.kernel.impl.transaction.RagManager;
+import org.neo4j.perftest.enterprise.util.Configuration;
+import org.neo4j.perftest.enterprise.util.Parameters;
+import org.neo4j.perftest.enterprise.util.Setting;
+
+/**
+ * Measures lock acquire/release throughput of {@link LockManagerImpl} from a
+ * number of concurrent threads under three workloads:
+ * <ul>
+ * <li>uncontended, every thread locks resources of its own</li>
+ * <li>low contention, threads write lock random resources out of a large set</li>
+ * <li>hot node, every thread read locks one shared resource and now and then
+ * write locks it, like relationships being added to a dense node</li>
+ * </ul>
+ */
+public class LockManagerBenchmark
+{
+    static final Setting<Long> threads = integerSetting( "threads", Runtime.getRuntime().availableProcessors() );
+    static final Setting<Long> operations_per_thread = integerSetting( "operations_per_thread", 1000000 );
+    static final Setting<Long> low_contention_resources = integerSetting( "low_contention_resources", 100000 );
+    static final Setting<Long> hot_node_write_percentage = integerSetting( "hot_node_write_percentage", 5 );
+    static final Setting<Long> iterations = integerSetting( "iterations", 5 );
+
+    /**
+     * Sample execution:
+     * java -cp ... org.neo4j.perftest.enterprise.locking.LockManagerBenchmark
+     * -threads 32
+     * -operations_per_thread 1000000
+     */
+    public static void main( String... args ) throws Exception
+    {
+        run( Parameters.configuration( SYSTEM_PROPERTIES, settingsOf( LockManagerBenchmark.class ) )
+                .convert( args ) );
+    }
+
+    private static void run( Configuration configuration ) throws Exception
+    {
+        int threadCount = configuration.get( threads ).intValue();
+        long operations = configuration.get( operations_per_thread );
+        ExecutorService executor = Executors.newFixedThreadPool( threadCount );
+        try
+        {
+            for ( int i = 0; i < configuration.get( iterations ); i++ )
+            {
+                String name = "[" + threadCount + " threads]";
+                report( name, "uncontended", uncontended( executor, threadCount, operations ) );
+                report( name, "low contention", lowContention( executor, threadCount, operations,
+                        configuration.get( low_contention_resources ).intValue() ) );
+                report( name, "hot node", hotNode( executor, threadCount, operations,
+                        configuration.get( hot_node_write_percentage ).intValue() ) );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private static Measurement uncontended( ExecutorService executor, int threadCount, final long operations )
+            throws Exception
+    {
+        final LockManager lockManager = newLockManager();
+        List<Callable<Long>> workers = new ArrayList<Callable<Long>>();
+        for ( int i = 0; i < threadCount; i++ )
+        {
+            final Resource[] ownResources = resources( "T" + i + "-", 64 );
+            workers.add( new Callable<Long>()
+            {
+                @Override
+                public Long call()
+                {
+                    for ( long i = 0; i < operations; i++ )
+                    {
+                        Resource resource = ownResources[(int) (i & 63)];
+                        lockManager.getWriteLock( resource );
+                        lockManager.releaseWriteLock( resource, null );
+                    }
+                    return operations;
+                }
+            } );
+        }
+        return measure( executor, workers );
+    }
+
+    private static Measurement lowContention( ExecutorService executor, int threadCount, final long operations,
+                                              int resourceCount ) throws Exception
+    {
+        final LockManager lockManager = newLockManager();
+        final Resource[] sharedResources = resources( "R", resourceCount );
+        List<Callable<Long>> workers = new ArrayList<Callable<Long>>();
+        for ( int i = 0; i < threadCount; i++ )
+        {
+            final long seed = i;
+            workers.add( new Callable<Long>()
+            {
+                @Override
+                public Long call()
+                {
+                    Random random = new Random( seed );
+                    for ( long i = 0; i < operations; i++ )
+                    {
+                        Resource resource = sharedResources[random.nextInt( sharedResources.length )];
+                        lockManager.getWriteLock( resource );
+                        lockManager.releaseWriteLock( resource, null );
+                    }
+                    return operations;
+                }
+            } );
+        }
+        return measure( executor, workers );
+    }
+
+    private static Measurement hotNode( ExecutorService executor, int threadCount, final long operations,
+                                        final int writePercentage ) throws Exception
+    {
+        final LockManager lockManager = newLockManager();
+        final Resource hotNode = new Resource( "hot node" );
+        List<Callable<Long>> workers = new ArrayList<Callable<Long>>();
+        for ( int i = 0; i < threadCount; i++ )
+        {
+            final long seed = i;
+            final Resource[] ownResources = resources( "T" + i + "-", 64 );
+            workers.add( new Callable<Long>()
+            {
+                @Override
+                public Long call()
+                {
+                    Random random = new Random( seed );
+                    long deadlocks = 0;
+                    for ( long i = 0; i < operations; i++ )
+                    {
+                        Resource own = ownResources[(int) (i & 63)];
+                        lockManager.getWriteLock( own );
+                        try
+                        {
+                            if ( random.nextInt( 100 ) < writePercentage )
+                            {
+                                lockManager.getWriteLock( hotNode );
+                                lockManager.releaseWriteLock( hotNode, null );
+                            }
+                            else
+                            {
+                                lockManager.getReadLock( hotNode );
+                                lockManager.releaseReadLock( hotNode, null );
+                            }
+                        }
+                        catch ( DeadlockDetectedException e )
+                        {
+                            deadlocks++;
+                        }
+                        finally
+                        {
+                            lockManager.releaseWriteLock( own, null );
+                        }
+                    }
+                    return operations - deadlocks;
+                }
+            } );
+        }
+        return measure( executor, workers );
+    }
+
+    private static LockManager newLockManager()
+    {
+        return new LockManagerImpl( new RagManager( new NoTransactionManager() ) );
+    }
+
+    private static Resource[] resources( String prefix, int count )
+    {
+        Resource[] resources = new Resource[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            resources[i] = new Resource( prefix + i );
+        }
+        return resources;
+    }
+
+    private static Measurement measure( ExecutorService executor, List<Callable<Long>> workers ) throws Exception
+    {
+        long startTime = System.nanoTime();
+        long operations = 0;
+        for ( Future<Long> result : executor.invokeAll( workers ) )
+        {
+            operations += result.get();
+        }
+        return new Measurement( operations, System.nanoTime() - startTime );
+    }
+
+    private static void report( String name, String workload, Measurement measurement )
+    {
+        System.out.printf( "%s %s: %d lock/unlock pairs in %.3f ms (%.0f pairs/s)%n", name, workload,
+                measurement.operations, measurement.timeNanos / 1000000.0,
+                measurement.operations * 1000000000.0 / measurement.timeNanos );
+    }
+
+    private static class Measurement
+    {
+        final long operations;
+        final long timeNanos;
+
+        Measurement( long operations, long timeNanos )
+        {
+            this.operations = operations;
+            this.timeNanos = timeNanos;
+        }
+    }
+
+    private static class Resource
+    {
+        private final String name;
+
+        Resource( String name )
+        {
+            this.name = name;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+
+    /**
+     * Locks are taken without transactions, which makes each thread a
+     * transaction of its own as far as the lock manager is concerned.
+     */
+    private static class NoTransactionManager implements TransactionManager
+    {
+        @Override
+        public Transaction getTransaction()
+        {
+            return null;
+        }
+
+        @Override
+        public void begin()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void commit()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getStatus()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void resume( Transaction tx )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void rollback()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setRollbackOnly()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setTransactionTimeout( int seconds )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Transaction suspend()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,347 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.perftest.enterprise.windowpool;
+
+import static org.neo4j.perftest.enterprise.util.Configuration.SYSTEM_PROPERTIES;
+import static org.neo4j.perftest.enterprise.util.Configuration.settingsOf;
+import static org.neo4j.perftest.enterprise.util.DirectlyCorrelatedParameter.param;
+import static org.neo4j.perftest.enterprise.util.DirectlyCorrelatedParameter.passOn;
+import static org.neo4j.perftest.enterprise.util.Setting.booleanSetting;
+import static org.neo4j.perftest.enterprise.util.Setting.integerSetting;
+import static org.neo4j.perftest.enterprise.util.Setting.stringSetting;
+import static org.neo4j.perftest.enterprise.windowpool.MemoryMappingConfiguration.addLegacyMemoryMappingConfiguration;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings.WindowPoolTypeSetting;
+import org.neo4j.kernel.DefaultFileSystemAbstraction;
+import org.neo4j.kernel.DefaultIdGeneratorFactory;
+import org.neo4j.kernel.DefaultTxHook;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.impl.nioneo.store.DefaultWindowPoolFactory;
+import org.neo4j.kernel.impl.nioneo.store.NeoStore;
+import org.neo4j.kernel.impl.nioneo.store.RecordStore;
+import org.neo4j.kernel.impl.nioneo.store.StoreAccess;
+import org.neo4j.kernel.impl.nioneo.store.StoreFactory;
+import org.neo4j.kernel.impl.nioneo.store.WindowPoolStats;
+import org.neo4j.kernel.impl.util.StringLogger;
+import org.neo4j.perftest.enterprise.generator.DataGenerator;
+import org.neo4j.perftest.enterprise.util.Configuration;
+import org.neo4j.perftest.enterprise.util.Parameters;
+import org.neo4j.perftest.enterprise.util.Setting;
+
+/**
+ * Compares the window pool implementations selectable through
+ * {@link GraphDatabaseSettings#window_pool_type} by running store scans and
+ * random record lookups on the node and relationship stores from a number of
+ * concurrent threads, reporting records per second for each pool.
+ * <p>
+ * It also measures how well each pool keeps a hot set of relationships
+ * cached while a full scan of the relationship store runs concurrently, the
+ * way a batch export would on a live database.
+ */
+public class WindowPoolBenchmark
+{
+    static final Setting<Boolean> generate_graph = booleanSetting( "generate_graph", false );
+    static final Setting<String> window_pool_types = stringSetting( "window_pool_types",
+            WindowPoolTypeSetting.brick + "," + WindowPoolTypeSetting.striped + "," +
+            WindowPoolTypeSetting.page_cache + "," + WindowPoolTypeSetting.scan_resistant );
+    static final Setting<Long> threads = integerSetting( "threads", Runtime.getRuntime().availableProcessors() );
+    static final Setting<Long> random_lookups = integerSetting( "random_lookups", 1000000 );
+    static final Setting<Long> iterations = integerSetting( "iterations", 3 );
+    static final Setting<Long> hot_set_percentage = integerSetting( "hot_set_percentage", 5 );
+    static final Setting<String> all_stores_total_mapped_memory_size =
+            stringSetting( "all_stores_total_mapped_memory_size", "2G" );
+    static final Setting<String> mapped_memory_page_size = stringSetting( "mapped_memory_page_size", "1M" );
+
+    /**
+     * Sample execution:
+     * java -cp ... org.neo4j.perftest.enterprise.windowpool.WindowPoolBenchmark
+     * -generate_graph
+     * -neo4j.store_dir target/windowpool_perf_graph
+     * -node_count 10000000
+     * -relationships FOO:2,BAR:1
+     * -threads 32
+     */
+    public static void main( String... args ) throws Exception
+    {
+        run( Parameters.configuration( SYSTEM_PROPERTIES,
+                settingsOf( DataGenerator.class, WindowPoolBenchmark.class ) )
+                .convert( args ) );
+    }
+
+    private static void run( Configuration configuration ) throws Exception
+    {
+        if ( configuration.get( generate_graph ) )
+        {
+            DataGenerator.run( configuration );
+        }
+        // ensure that the store is recovered
+        new EmbeddedGraphDatabase( configuration.get( DataGenerator.store_dir ) ).shutdown();
+
+        int threadCount = configuration.get( threads ).intValue();
+        ExecutorService executor = Executors.newFixedThreadPool( threadCount );
+        try
+        {
+            for ( int i = 0; i < configuration.get( iterations ); i++ )
+            {
+                for ( String windowPoolType : configuration.get( window_pool_types ).split( "," ) )
+                {
+                    NeoStore neoStore = createNeoStore( configuration, windowPoolType.trim() );
+                    StoreAccess stores = new StoreAccess( neoStore );
+                    try
+                    {
+                        String name = windowPoolType.trim() + "[" + threadCount + " threads]";
+                        long lookups = configuration.get( random_lookups );
+                        report( name, "node scan", scan( executor, threadCount, stores.getNodeStore() ) );
+                        report( name, "relationship scan",
+                                scan( executor, threadCount, stores.getRelationshipStore() ) );
+                        report( name, "random node lookups",
+                                randomLookups( executor, threadCount, stores.getNodeStore(), lookups ) );
+                        report( name, "random relationship lookups",
+                                randomLookups( executor, threadCount, stores.getRelationshipStore(), lookups ) );
+                        hotSetDuringScan( name, executor, threadCount, stores.getRelationshipStore(), lookups,
+                                configuration.get( hot_set_percentage ) );
+                        System.out.println( stores.getNodeStore().getWindowPoolStats() );
+                        System.out.println( stores.getRelationshipStore().getWindowPoolStats() );
+                    }
+                    finally
+                    {
+                        neoStore.close();
+                    }
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Every thread scans the whole store, like concurrent exports would.
+     */
+    private static Measurement scan( ExecutorService executor, int threadCount, final RecordStore<?> store )
+            throws Exception
+    {
+        List<Callable<Long>> workers = new ArrayList<Callable<Long>>();
+        for ( int i = 0; i < threadCount; i++ )
+        {
+            workers.add( new Callable<Long>()
+            {
+                @Override
+                public Long call()
+                {
+                    long highId = store.getHighId();
+                    for ( long id = 0; id < highId; id++ )
+                    {
+                        store.forceGetRecord( id );
+                    }
+                    return highId;
+                }
+            } );
+        }
+        return measure( executor, workers );
+    }
+
+    private static Measurement randomLookups( ExecutorService executor, int threadCount,
+                                              final RecordStore<?> store, final long lookups ) throws Exception
+    {
+        List<Callable<Long>> workers = new ArrayList<Callable<Long>>();
+        for ( int i = 0; i < threadCount; i++ )
+        {
+            final long seed = i;
+            workers.add( new Callable<Long>()
+            {
+                @Override
+                public Long call()
+                {
+                    Random random = new Random( seed );
+                    long highId = store.getHighId();
+                    for ( long i = 0; i < lookups; i++ )
+                    {
+                        store.forceGetRecord( (long) (random.nextDouble() * highId) );
+                    }
+                    return lookups;
+                }
+            } );
+        }
+        return measure( executor, workers );
+    }
+
+    private static void hotSetDuringScan( String name, ExecutorService executor, int threadCount,
+                                          final RecordStore<?> store, long lookups, long hotSetPercentage )
+            throws Exception
+    {
+        long hotSet = Math.max( 1, store.getHighId() * hotSetPercentage / 100 );
+        // warm up the hot set before measuring
+        hotSetLookups( executor, threadCount, store, hotSet, lookups );
+
+        WindowPoolStats before = store.getWindowPoolStats();
+        Measurement alone = hotSetLookups( executor, threadCount, store, hotSet, lookups );
+        WindowPoolStats afterAlone = store.getWindowPoolStats();
+        report( name, "hot set lookups", alone );
+        reportHitRatio( name, "hot set lookups", before, afterAlone );
+
+        ScanningThread scanner = new ScanningThread( store );
+        scanner.start();
+        Measurement duringScan;
+        try
+        {
+            duringScan = hotSetLookups( executor, threadCount, store, hotSet, lookups );
+        }
+        finally
+        {
+            scanner.halt();
+        }
+        report( name, "hot set lookups during scan", duringScan );
+        reportHitRatio( name, "hot set lookups during scan", afterAlone, store.getWindowPoolStats() );
+        System.out.printf( "%s hot set lookup rate retained during scan: %.1f%% (%d records scanned)%n", name,
+                100.0 * duringScan.rate() / alone.rate(), scanner.scanned );
+    }
+
+    private static Measurement hotSetLookups( ExecutorService executor, int threadCount,
+                                              final RecordStore<?> store, final long hotSet, final long lookups )
+            throws Exception
+    {
+        List<Callable<Long>> workers = new ArrayList<Callable<Long>>();
+        for ( int i = 0; i < threadCount; i++ )
+        {
+            final long seed = i;
+            workers.add( new Callable<Long>()
+            {
+                @Override
+                public Long call()
+                {
+                    Random random = new Random( seed );
+                    for ( long i = 0; i < lookups; i++ )
+                    {
+                        store.forceGetRecord( (long) (random.nextDouble() * hotSet) );
+                    }
+                    return lookups;
+                }
+            } );
+        }
+        return measure( executor, workers );
+    }
+
+    private static class ScanningThread extends Thread
+    {
+        private final RecordStore<?> store;
+        private volatile boolean halted;
+        volatile long scanned;
+
+        ScanningThread( RecordStore<?> store )
+        {
+            super( "Full store scan" );
+            this.store = store;
+        }
+
+        @Override
+        public void run()
+        {
+            while ( !halted )
+            {
+                long highId = store.getHighId();
+                for ( long id = 0; id < highId && !halted; id++ )
+                {
+                    store.forceGetRecord( id );
+                    scanned++;
+                }
+            }
+        }
+
+        void halt() throws InterruptedException
+        {
+            halted = true;
+            join();
+        }
+    }
+
+    private static void reportHitRatio( String windowPool, String workload, WindowPoolStats before,
+                                        WindowPoolStats after )
+    {
+        long hits = after.getHitCount() - before.getHitCount();
+        long misses = after.getMissCount() - before.getMissCount();
+        System.out.printf( "%s %s: window pool hit ratio %.1f%%%n", windowPool, workload,
+                100.0 * hits / Math.max( 1, hits + misses ) );
+    }
+
+    private static Measurement measure( ExecutorService executor, List<Callable<Long>> workers ) throws Exception
+    {
+        long startTime = System.nanoTime();
+        long records = 0;
+        for ( Future<Long> result : executor.invokeAll( workers ) )
+        {
+            records += result.get();
+        }
+        return new Measurement( records, System.nanoTime() - startTime );
+    }
+
+    private static void report( String windowPool, String workload, Measurement measurement )
+    {
+        System.out.printf( "%s %s: %d records in %.3f ms (%.0f records/s)%n", windowPool, workload,
+                measurement.records, measurement.timeNanos / 1000000.0, measurement.rate() );
+    }
+
+    private static NeoStore createNeoStore( Configuration configuration, String windowPoolType )
+    {
+        Map<String, String> passedOnConfiguration = passOn( configuration,
+                param( GraphDatabaseSettings.store_dir, DataGenerator.store_dir ),
+                param( GraphDatabaseSettings.all_stores_total_mapped_memory_size, all_stores_total_mapped_memory_size ),
+                param( GraphDatabaseSettings.mapped_memory_page_size, mapped_memory_page_size ) );
+        passedOnConfiguration.put( GraphDatabaseSettings.window_pool_type.name(), windowPoolType );
+        addLegacyMemoryMappingConfiguration( passedOnConfiguration,
+                configuration.get( all_stores_total_mapped_memory_size ) );
+        Config config = new Config( passedOnConfiguration, GraphDatabaseSettings.class );
+
+        StoreFactory factory = new StoreFactory( config, new DefaultIdGeneratorFactory(),
+                new DefaultWindowPoolFactory(), new DefaultFileSystemAbstraction(), StringLogger.DEV_NULL,
+                new DefaultTxHook() );
+        return factory.newNeoStore( new File( configuration.get( DataGenerator.store_dir ), NeoStore.DEFAULT_NAME ) );
+    }
+
+    private static class Measurement
+    {
+        final long records;
+        final long timeNanos;
+
+        Measurement( long records, long timeNanos )
+        {
+            this.records = records;
+            this.timeNanos = timeNanos;
+        }
+
+        double rate()
+        {
+            return records / (timeNanos / 1000000000.0);
+        }
+    }
+}
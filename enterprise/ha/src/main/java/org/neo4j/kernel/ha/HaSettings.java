@@ -91,6 +91,15 @@ public class HaSettings
     public static final Setting<Long> com_chunk_size =
             setting( "ha.com_chunk_size", BYTES, "2M", min( 1024L ) );
 
+    @Description("Whether slaves should ask the master to compress the transactions and store files it sends " +
+            "them. Costs some CPU on both ends, but pays off when the network between instances is the bottleneck.")
+    public static final Setting<Boolean> com_compression = setting( "ha.com_compression", BOOLEAN, Settings.FALSE );
+
+    @Description("The number of store file ranges a slave fetches from the master at a time when copying the store. " +
+            "Should not be higher than ha.max_concurrent_channels_per_slave.")
+    public static final Setting<Integer> store_copy_parallelism =
+            setting( "ha.store_copy_parallelism", INTEGER, "4", min( 1 ) );
+
     @Description( "Interval of pulling updates from master" )
     public static final Setting<Long> pull_interval = setting( "ha.pull_interval", DURATION, "0s" );
 
@@ -98,6 +107,11 @@ public class HaSettings
             "The master will not throw an exception on commit if the replication failed.")
     public static final Setting<Integer> tx_push_factor = setting( "ha.tx_push_factor", INTEGER, "1", min( 0 ) );
 
+    @Description("Whether the master should, after each commit, tell every slave to pull the new transactions. " +
+            "This happens in the background, so commits don't wait for it, and each slave has at most one such " +
+            "update in flight at a time.")
+    public static final Setting<Boolean> tx_push_async = setting( "ha.tx_push_async", BOOLEAN, Settings.TRUE );
+
     @Description("Push strategy of a transaction to a slave during commit. " +
             " Round robin (\"round_robin\")  " +
             " or fixed (\"fixed\") selecting the slave with highest machine id first")
@@ -72,10 +72,12 @@ import org.neo4j.kernel.ha.com.master.Master;
 import org.neo4j.kernel.ha.com.master.Slaves;
 import org.neo4j.kernel.ha.id.HaIdGeneratorFactory;
 import org.neo4j.kernel.ha.lock.LockManagerModeSwitcher;
+import org.neo4j.kernel.ha.lock.MasterLockStatistics;
 import org.neo4j.kernel.ha.management.ClusterDatabaseInfoProvider;
 import org.neo4j.kernel.ha.management.HighlyAvailableKernelData;
 import org.neo4j.kernel.ha.switchover.Switchover;
 import org.neo4j.kernel.ha.transaction.OnDiskLastTxIdGetter;
+import org.neo4j.kernel.ha.transaction.TransactionFeed;
 import org.neo4j.kernel.ha.transaction.TxHookModeSwitcher;
 import org.neo4j.kernel.ha.transaction.TxIdGeneratorModeSwitcher;
 import org.neo4j.kernel.impl.cache.CacheProvider;
@@ -102,6 +104,8 @@ public class HighlyAvailableGraphDatabase extends InternalAbstractGraphDatabase
 {
     private RequestContextFactory requestContextFactory;
     private Slaves slaves;
+    private TransactionFeed transactionFeed;
+    private MasterLockStatistics masterLockStatistics;
     private ClusterMembers members;
     private DelegateInvocationHandler masterDelegateInvocationHandler;
     private LoggerContext loggerContext;
@@ -408,9 +412,11 @@ public class HighlyAvailableGraphDatabase extends InternalAbstractGraphDatabase
         slaves = life.add( new HighAvailabilitySlaves( members, clusterClient, new DefaultSlaveFactory(
                 xaDataSourceManager, logging, config.get( HaSettings.max_concurrent_channels_per_slave ),
                 config.get( HaSettings.com_chunk_size ).intValue() ) ) );
+        transactionFeed = life.add( new TransactionFeed( slaves, config.get( HaSettings.tx_push_async ), msgLog ) );
 
         new TxIdGeneratorModeSwitcher( memberStateMachine, txIdGeneratorDelegate,
-                (HaXaDataSourceManager) xaDataSourceManager, master, requestContextFactory, msgLog, config, slaves );
+                (HaXaDataSourceManager) xaDataSourceManager, master, requestContextFactory, msgLog, config, slaves,
+                transactionFeed );
         return txIdGenerator;
     }
 
@@ -445,8 +451,10 @@ public class HighlyAvailableGraphDatabase extends InternalAbstractGraphDatabase
         LockManager lockManager =
                 (LockManager) Proxy.newProxyInstance( LockManager.class.getClassLoader(),
                         new Class[]{LockManager.class}, lockManagerDelegate );
+        masterLockStatistics = new MasterLockStatistics();
         new LockManagerModeSwitcher( memberStateMachine, lockManagerDelegate, txManager, txHook,
-                (HaXaDataSourceManager) xaDataSourceManager, master, requestContextFactory, accessGuard, config );
+                (HaXaDataSourceManager) xaDataSourceManager, master, requestContextFactory, accessGuard, config,
+                masterLockStatistics, logging );
         return lockManager;
     }
 
@@ -599,6 +607,14 @@ public class HighlyAvailableGraphDatabase extends InternalAbstractGraphDatabase
                     {
                         result = type.cast( slaves );
                     }
+                    else if ( TransactionFeed.class.isAssignableFrom( type ) )
+                    {
+                        result = type.cast( transactionFeed );
+                    }
+                    else if ( MasterLockStatistics.class.isAssignableFrom( type ) )
+                    {
+                        result = type.cast( masterLockStatistics );
+                    }
                     else if ( ClusterClient.class.isAssignableFrom( type ) )
                     {
                         result = type.cast( clusterClient );
@@ -28,7 +28,11 @@ import java.io.IOException;
 import org.neo4j.cluster.ClusterSettings;
 import org.neo4j.com.RequestContext;
 import org.neo4j.com.Response;
+import org.neo4j.com.ParallelStoreCopy;
 import org.neo4j.com.ServerUtil;
+import org.neo4j.com.StoreCopyManifest;
+import org.neo4j.com.StoreFileRange;
+import org.neo4j.com.StoreRangeWriter;
 import org.neo4j.com.ToFileStoreWriter;
 import org.neo4j.graphdb.factory.GraphDatabaseFactory;
 import org.neo4j.graphdb.factory.GraphDatabaseSettings;
@@ -48,30 +52,49 @@ public class SlaveStoreWriter
 {
     public static final String COPY_FROM_MASTER_TEMP = "temp-copy";
     private final Config config;
+    private final StringLogger msgLog;
     
     // TODO Should be accepted as a dependency
     private final FileSystemAbstraction fileSystem = new DefaultFileSystemAbstraction();
 
-    public SlaveStoreWriter( Config config )
+    public SlaveStoreWriter( Config config, StringLogger msgLog )
     {
         this.config = config;
+        this.msgLog = msgLog;
     }
 
     public void copyStore( Master master ) throws IOException
     {
-        // Clear up the current temp directory if there
+        // Clear up the current temp directory if there, unless it has a copy to resume
         File storeDir = config.get( InternalAbstractGraphDatabase.Configuration.store_dir );
         File tempStore = new File( storeDir, COPY_FROM_MASTER_TEMP );
-        if ( !tempStore.mkdir() )
+        if ( !ParallelStoreCopy.isInProgress( tempStore ) )
         {
-            FileUtils.deleteRecursively( tempStore );
-            tempStore.mkdir();
+            clear( tempStore );
         }
 
         // Get the response, deserialise to disk
-        Response response = master.copyStore( new RequestContext( 0,
+        RequestContext context = new RequestContext( 0,
                 config.get( ClusterSettings.server_id ), 0, new RequestContext.Tx[0], 0,
-                0 ), new ToFileStoreWriter( tempStore ) );
+                0 );
+        MasterSource source = new MasterSource( master, context );
+        Response response;
+        try
+        {
+            response = new ParallelStoreCopy( tempStore, config.get( HaSettings.store_copy_parallelism ),
+                    ParallelStoreCopy.DEFAULT_RANGE_SIZE, msgLog ).copy( source );
+        }
+        catch ( RuntimeException e )
+        {
+            if ( source.opened )
+            {
+                throw e;
+            }
+            // A master of an older version, which can only stream the store
+            msgLog.logMessage( "Master doesn't support range based store copy, streaming the store instead", e );
+            clear( tempStore );
+            response = master.copyStore( context, new ToFileStoreWriter( tempStore ) );
+        }
         long highestLogVersion = XaLogicalLog.getHighestHistoryLogVersion( fileSystem,
                 tempStore, LOGICAL_LOG_DEFAULT_NAME );
         if ( highestLogVersion > -1 )
@@ -113,4 +136,46 @@ public class SlaveStoreWriter
             FileUtils.moveFileToDirectory( candidate, storeDir );
         }
     }
+
+    private void clear( File tempStore ) throws IOException
+    {
+        if ( !tempStore.mkdir() )
+        {
+            FileUtils.deleteRecursively( tempStore );
+            tempStore.mkdir();
+        }
+    }
+
+    private static class MasterSource implements ParallelStoreCopy.Source
+    {
+        private final Master master;
+        private final RequestContext context;
+        private volatile boolean opened;
+
+        MasterSource( Master master, RequestContext context )
+        {
+            this.master = master;
+            this.context = context;
+        }
+
+        @Override
+        public Response<StoreCopyManifest> openStoreCopy()
+        {
+            Response<StoreCopyManifest> response = master.openStoreCopy( context );
+            opened = true;
+            return response;
+        }
+
+        @Override
+        public Response<Void> copyStoreRange( long sessionId, StoreFileRange range, StoreRangeWriter writer )
+        {
+            return master.copyStoreRange( context, sessionId, range, writer );
+        }
+
+        @Override
+        public Response<Void> finishStoreCopy( long sessionId )
+        {
+            return master.finishStoreCopy( context, sessionId );
+        }
+    }
 }
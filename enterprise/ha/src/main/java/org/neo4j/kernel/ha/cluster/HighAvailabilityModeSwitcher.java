@@ -469,7 +469,7 @@ public class HighAvailabilityModeSwitcher implements HighAvailabilityMemberListe
 
             // This will move the copied db to the graphdb location
             msgLog.logMessage( "Copying store from master" );
-            new SlaveStoreWriter( config ).copyStore( copyMaster );
+            new SlaveStoreWriter( config, msgLog ).copyStore( copyMaster );
 
             startServicesAgain();
             msgLog.logMessage( "Finished copying store from master" );
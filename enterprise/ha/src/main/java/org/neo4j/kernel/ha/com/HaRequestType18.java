@@ -21,6 +21,7 @@ package org.neo4j.kernel.ha.com;
 
 import static org.neo4j.com.Protocol.INTEGER_SERIALIZER;
 import static org.neo4j.com.Protocol.LONG_SERIALIZER;
+import static org.neo4j.com.Protocol.STORE_COPY_MANIFEST_SERIALIZER;
 import static org.neo4j.com.Protocol.VOID_SERIALIZER;
 import static org.neo4j.com.Protocol.readBoolean;
 import static org.neo4j.com.Protocol.readString;
@@ -35,6 +36,8 @@ import org.neo4j.com.ObjectSerializer;
 import org.neo4j.com.RequestContext;
 import org.neo4j.com.RequestType;
 import org.neo4j.com.Response;
+import org.neo4j.com.StoreCopyManifest;
+import org.neo4j.com.StoreFileRange;
 import org.neo4j.com.TargetCaller;
 import org.neo4j.com.ToNetworkStoreWriter;
 import org.neo4j.com.TxExtractor;
@@ -326,6 +329,40 @@ public enum HaRequestType18 implements RequestType<Master>
         {
             return master.pushTransaction( context, readString( input ), input.readLong() );
         }
+    }, VOID_SERIALIZER, true ),
+
+    // ====
+    OPEN_STORE_COPY( new TargetCaller<Master, StoreCopyManifest>()
+    {
+        @Override
+        public Response<StoreCopyManifest> call( Master master, RequestContext context, ChannelBuffer input,
+                ChannelBuffer target )
+        {
+            return master.openStoreCopy( context );
+        }
+    }, STORE_COPY_MANIFEST_SERIALIZER, true ),
+
+    // ====
+    COPY_STORE_RANGE( new TargetCaller<Master, Void>()
+    {
+        @Override
+        public Response<Void> call( Master master, RequestContext context, ChannelBuffer input,
+                ChannelBuffer target )
+        {
+            return master.copyStoreRange( context, input.readLong(), StoreFileRange.readFrom( input ),
+                    new ToNetworkStoreWriter( target ) );
+        }
+    }, VOID_SERIALIZER, false ),
+
+    // ====
+    FINISH_STORE_COPY( new TargetCaller<Master, Void>()
+    {
+        @Override
+        public Response<Void> call( Master master, RequestContext context, ChannelBuffer input,
+                ChannelBuffer target )
+        {
+            return master.finishStoreCopy( context, input.readLong() );
+        }
     }, VOID_SERIALIZER, true );
 
     @SuppressWarnings( "rawtypes" )
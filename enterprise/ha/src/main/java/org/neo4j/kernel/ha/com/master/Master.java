@@ -21,6 +21,9 @@ package org.neo4j.kernel.ha.com.master;
 
 import org.neo4j.com.RequestContext;
 import org.neo4j.com.Response;
+import org.neo4j.com.StoreCopyManifest;
+import org.neo4j.com.StoreFileRange;
+import org.neo4j.com.StoreRangeWriter;
 import org.neo4j.com.StoreWriter;
 import org.neo4j.com.TxExtractor;
 import org.neo4j.helpers.Pair;
@@ -80,6 +83,23 @@ public interface Master
 
     Response<Void> copyStore( RequestContext context, StoreWriter writer );
 
+    /**
+     * Starts a store copy where the store files are fetched in ranges, see
+     * {@link #copyStoreRange(RequestContext, long, StoreFileRange, StoreRangeWriter)},
+     * instead of being streamed like in {@link #copyStore(RequestContext, StoreWriter)}.
+     *
+     * @return the files to copy and the id of the session to fetch them in.
+     */
+    Response<StoreCopyManifest> openStoreCopy( RequestContext context );
+
+    Response<Void> copyStoreRange( RequestContext context, long sessionId, StoreFileRange range,
+                                   StoreRangeWriter writer );
+
+    /**
+     * Ends a store copy session and returns the transactions committed since it was opened.
+     */
+    Response<Void> finishStoreCopy( RequestContext context, long sessionId );
+
     Response<Void> copyTransactions( RequestContext context, String dsName,
                                      long startTxId, long endTxId );
 }
@@ -38,7 +38,12 @@ import javax.transaction.TransactionManager;
 import org.neo4j.com.RequestContext;
 import org.neo4j.com.ResourceReleaser;
 import org.neo4j.com.Response;
+import org.neo4j.com.ServerFailureException;
 import org.neo4j.com.ServerUtil;
+import org.neo4j.com.StoreCopyManifest;
+import org.neo4j.com.StoreCopySessions;
+import org.neo4j.com.StoreFileRange;
+import org.neo4j.com.StoreRangeWriter;
 import org.neo4j.com.StoreWriter;
 import org.neo4j.com.TransactionStream;
 import org.neo4j.com.TxExtractor;
@@ -93,6 +98,7 @@ public class MasterImpl extends LifecycleAdapter implements Master
     private long unfinishedTransactionThresholdMillis;
     private GraphProperties graphProperties;
     private final TransactionManager txManager;
+    private final StoreCopySessions storeCopySessions;
 
     public MasterImpl( GraphDatabaseAPI db, Logging logging, Config config )
     {
@@ -101,6 +107,8 @@ public class MasterImpl extends LifecycleAdapter implements Master
         this.config = config;
         graphProperties = graphDb.getDependencyResolver().resolveDependency( NodeManager.class ).getGraphProperties();
         txManager = graphDb.getDependencyResolver().resolveDependency( TransactionManager.class );
+        // A slave copying ranges has always a request in flight, or has given up on it after read_timeout
+        storeCopySessions = new StoreCopySessions( graphDb, config.get( HaSettings.read_timeout ) );
     }
 
     @Override
@@ -164,6 +172,7 @@ public class MasterImpl extends LifecycleAdapter implements Master
     {
         unfinishedTransactionsExecutor.shutdown();
         transactions = null;
+        storeCopySessions.close();
     }
 
     @Override
@@ -498,6 +507,41 @@ public class MasterImpl extends LifecycleAdapter implements Master
         return packResponse( context, null );
     }
 
+    @Override
+    public Response<StoreCopyManifest> openStoreCopy( RequestContext context )
+    {
+        try
+        {
+            return ServerUtil.packResponseWithoutTransactionStream( graphDb.getStoreId(),
+                    storeCopySessions.open( true ) );
+        }
+        catch ( IOException e )
+        {
+            throw new ServerFailureException( e );
+        }
+    }
+
+    @Override
+    public Response<Void> copyStoreRange( RequestContext context, long sessionId, StoreFileRange range,
+                                          StoreRangeWriter writer )
+    {
+        try
+        {
+            storeCopySessions.copyRange( sessionId, range, writer );
+        }
+        catch ( IOException e )
+        {
+            throw new ServerFailureException( e );
+        }
+        return ServerUtil.packResponseWithoutTransactionStream( graphDb.getStoreId(), null );
+    }
+
+    @Override
+    public Response<Void> finishStoreCopy( RequestContext context, long sessionId )
+    {
+        return packResponse( storeCopySessions.finish( sessionId ), null );
+    }
+
     @Override
     public Response<Void> copyTransactions( RequestContext context,
                                             String dsName, long startTxId, long endTxId )
@@ -38,6 +38,9 @@ import org.neo4j.com.RequestType;
 import org.neo4j.com.ResourceReleaser;
 import org.neo4j.com.Response;
 import org.neo4j.com.Serializer;
+import org.neo4j.com.StoreCopyManifest;
+import org.neo4j.com.StoreFileRange;
+import org.neo4j.com.StoreRangeWriter;
 import org.neo4j.com.StoreWriter;
 import org.neo4j.com.TargetCaller;
 import org.neo4j.com.TransactionStream;
@@ -279,6 +282,25 @@ public class MasterClient153 extends Client<Master> implements Master, MasterCli
                 writer ) );
     }
 
+    @Override
+    public Response<StoreCopyManifest> openStoreCopy( RequestContext context )
+    {
+        throw new UnsupportedOperationException( "Range based store copy isn't supported by this protocol version" );
+    }
+
+    @Override
+    public Response<Void> copyStoreRange( RequestContext context, long sessionId, StoreFileRange range,
+                                          StoreRangeWriter writer )
+    {
+        throw new UnsupportedOperationException( "Range based store copy isn't supported by this protocol version" );
+    }
+
+    @Override
+    public Response<Void> finishStoreCopy( RequestContext context, long sessionId )
+    {
+        throw new UnsupportedOperationException( "Range based store copy isn't supported by this protocol version" );
+    }
+
     private RequestContext stripFromTransactions( RequestContext context )
     {
         return new RequestContext( context.getSessionId(), context.machineId(), context.getEventIdentifier(),
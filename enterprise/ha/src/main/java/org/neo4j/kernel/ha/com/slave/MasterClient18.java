@@ -20,6 +20,7 @@
 package org.neo4j.kernel.ha.com.slave;
 
 import static org.neo4j.com.Protocol.EMPTY_SERIALIZER;
+import static org.neo4j.com.Protocol.STORE_COPY_MANIFEST_DESERIALIZER;
 import static org.neo4j.com.Protocol.VOID_DESERIALIZER;
 import static org.neo4j.com.Protocol.writeString;
 
@@ -37,6 +38,9 @@ import org.neo4j.com.RequestType;
 import org.neo4j.com.ResourceReleaser;
 import org.neo4j.com.Response;
 import org.neo4j.com.Serializer;
+import org.neo4j.com.StoreCopyManifest;
+import org.neo4j.com.StoreFileRange;
+import org.neo4j.com.StoreRangeWriter;
 import org.neo4j.com.StoreWriter;
 import org.neo4j.com.TargetCaller;
 import org.neo4j.com.TransactionStream;
@@ -106,6 +110,12 @@ public class MasterClient18 extends Client<Master> implements MasterClient
         return readTimeout;
     }
 
+    @Override
+    protected boolean acceptsCompressedResponses()
+    {
+        return config != null && config.get( HaSettings.com_compression );
+    }
+
     @Override
     protected boolean shouldCheckStoreId( RequestType<Master> type )
     {
@@ -313,6 +323,41 @@ public class MasterClient18 extends Client<Master> implements MasterClient
                 new Protocol.FileStreamsDeserializer( writer ) );
     }
 
+    @Override
+    public Response<StoreCopyManifest> openStoreCopy( RequestContext context )
+    {
+        context = stripFromTransactions( context );
+        return sendRequest( HaRequestType18.OPEN_STORE_COPY, context, EMPTY_SERIALIZER,
+                STORE_COPY_MANIFEST_DESERIALIZER );
+    }
+
+    @Override
+    public Response<Void> copyStoreRange( RequestContext context, final long sessionId, final StoreFileRange range,
+                                          StoreRangeWriter writer )
+    {
+        return sendRequest( HaRequestType18.COPY_STORE_RANGE, RequestContext.EMPTY, new Serializer()
+        {
+            public void write( ChannelBuffer buffer, ByteBuffer readBuffer ) throws IOException
+            {
+                buffer.writeLong( sessionId );
+                range.writeTo( buffer );
+            }
+        }, new Protocol.StoreRangeDeserializer( range, writer ) );
+    }
+
+    @Override
+    public Response<Void> finishStoreCopy( RequestContext context, final long sessionId )
+    {
+        context = stripFromTransactions( context );
+        return sendRequest( HaRequestType18.FINISH_STORE_COPY, context, new Serializer()
+        {
+            public void write( ChannelBuffer buffer, ByteBuffer readBuffer ) throws IOException
+            {
+                buffer.writeLong( sessionId );
+            }
+        }, VOID_DESERIALIZER );
+    }
+
     private RequestContext stripFromTransactions( RequestContext context )
     {
         return new RequestContext( context.getSessionId(), context.machineId(), context.getEventIdentifier(),
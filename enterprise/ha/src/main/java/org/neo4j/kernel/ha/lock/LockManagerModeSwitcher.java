@@ -35,6 +35,7 @@ import org.neo4j.kernel.impl.transaction.LockManager;
 import org.neo4j.kernel.impl.transaction.LockManagerImpl;
 import org.neo4j.kernel.impl.transaction.RagManager;
 import org.neo4j.kernel.impl.transaction.TxHook;
+import org.neo4j.kernel.logging.Logging;
 
 public class LockManagerModeSwitcher extends AbstractModeSwitcher<LockManager>
 {
@@ -45,13 +46,15 @@ public class LockManagerModeSwitcher extends AbstractModeSwitcher<LockManager>
     private final RequestContextFactory requestContextFactory;
     private final InstanceAccessGuard switchBlock;
     private final Config config;
+    private final MasterLockStatistics statistics;
+    private final Logging logging;
 
     public LockManagerModeSwitcher( HighAvailabilityMemberStateMachine stateMachine,
                                     DelegateInvocationHandler<LockManager> delegate,
                                     AbstractTransactionManager txManager,
                                     TxHook txHook, HaXaDataSourceManager xaDsm, Master master,
                                     RequestContextFactory requestContextFactory, InstanceAccessGuard switchBlock,
-                                    Config config )
+                                    Config config, MasterLockStatistics statistics, Logging logging )
     {
         super( stateMachine, delegate );
         this.txManager = txManager;
@@ -61,6 +64,8 @@ public class LockManagerModeSwitcher extends AbstractModeSwitcher<LockManager>
         this.requestContextFactory = requestContextFactory;
         this.switchBlock = switchBlock;
         this.config = config;
+        this.statistics = statistics;
+        this.logging = logging;
     }
 
     @Override
@@ -82,6 +87,6 @@ public class LockManagerModeSwitcher extends AbstractModeSwitcher<LockManager>
         };
 
         return new SlaveLockManager(txManager, txHook, switchBlock, slaveConfig, new RagManager( txManager ),
-                requestContextFactory, master, xaDsm );
+                requestContextFactory, master, xaDsm, statistics, logging );
     }
 }
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.ha.lock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running totals of the lock requests slaves make to the master. One instance is kept per database, so that
+ * the totals survive the lock manager being replaced when the instance switches role.
+ */
+public class MasterLockStatistics
+{
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong heldLocksReused = new AtomicLong();
+
+    void requested( long waitedNanos )
+    {
+        requests.incrementAndGet();
+        waitNanos.addAndGet( waitedNanos );
+    }
+
+    void reused()
+    {
+        heldLocksReused.incrementAndGet();
+    }
+
+    /**
+     * @return the number of lock requests made to the master, by all transactions
+     */
+    public long getMasterLockRequests()
+    {
+        return requests.get();
+    }
+
+    /**
+     * @return the time spent waiting for lock requests to the master, by all transactions
+     */
+    public long getMasterLockWaitMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( waitNanos.get() );
+    }
+
+    /**
+     * @return the number of locks that didn't need a request to the master, since the transaction already held them
+     */
+    public long getHeldLocksReused()
+    {
+        return heldLocksReused.get();
+    }
+}
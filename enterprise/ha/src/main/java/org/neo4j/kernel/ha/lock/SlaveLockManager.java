@@ -19,8 +19,17 @@
  */
 package org.neo4j.kernel.ha.lock;
 
+import static java.lang.String.format;
+
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
 import javax.transaction.Transaction;
 
 import org.neo4j.com.Response;
@@ -40,9 +49,17 @@ import org.neo4j.kernel.impl.transaction.LockManagerImpl;
 import org.neo4j.kernel.impl.transaction.LockNotFoundException;
 import org.neo4j.kernel.impl.transaction.RagManager;
 import org.neo4j.kernel.impl.transaction.TxHook;
+import org.neo4j.kernel.impl.util.StringLogger;
 import org.neo4j.kernel.info.LockInfo;
 import org.neo4j.kernel.logging.Logging;
 
+/**
+ * Takes locks on the master before taking them locally. Locks on the master are held until the transaction
+ * finishes, so each transaction remembers which locks it already holds there and only asks the master for new
+ * ones. Locks asked for together, f.ex. the two nodes of a relationship being created, are requested in one go.
+ * The number of requests made to the master, and the time spent waiting for them, is logged per transaction
+ * at debug level and added to the running totals in {@link MasterLockStatistics}.
+ */
 public class SlaveLockManager implements LockManager
 {
     private final AbstractTransactionManager txManager;
@@ -53,6 +70,9 @@ public class SlaveLockManager implements LockManager
     private final LockManagerImpl local;
     private final Master master;
     private final HaXaDataSourceManager xaDsm;
+    private final StringLogger logger;
+    private final Map<Transaction, MasterLocks> masterLocks = new ConcurrentHashMap<Transaction, MasterLocks>();
+    private final MasterLockStatistics statistics;
 
     public static interface Configuration
     {
@@ -62,7 +82,7 @@ public class SlaveLockManager implements LockManager
     public SlaveLockManager( AbstractTransactionManager txManager, TxHook txHook,
                              InstanceAccessGuard switchBlock, Configuration config,
                              RagManager ragManager, RequestContextFactory requestContextFactory, Master master,
-                             HaXaDataSourceManager xaDsm )
+                             HaXaDataSourceManager xaDsm, MasterLockStatistics statistics, Logging logging )
     {
         this.txManager = txManager;
         this.txHook = txHook;
@@ -72,6 +92,8 @@ public class SlaveLockManager implements LockManager
         this.xaDsm = xaDsm;
         this.local = new LockManagerImpl( ragManager );
         this.master = master;
+        this.statistics = statistics;
+        this.logger = logging.getLogger( getClass() );
     }
 
     @Override
@@ -100,7 +122,14 @@ public class SlaveLockManager implements LockManager
 
     private boolean getReadLockOnMaster( Object resource )
     {
+        MasterLocks held = heldOnMaster();
+        if ( held != null && held.covers( resource, false ) )
+        {
+            return true;
+        }
+
         Response<LockResult> response = null;
+        long start = System.nanoTime();
         if ( resource instanceof Node )
         {
             makeSureTxHasBeenInitialized();
@@ -126,12 +155,32 @@ public class SlaveLockManager implements LockManager
         {
             return true;
         }
-        return receiveLockResponse( response );
+        receiveLockResponse( response, held, start );
+        if ( held != null )
+        {
+            held.read.add( resource );
+        }
+        return true;
     }
 
-    private boolean receiveLockResponse( Response<LockResult> response )
+    private boolean receiveLockResponse( Response<LockResult> response, MasterLocks held, long start )
     {
-        LockResult result = xaDsm.applyTransactions( response );
+        LockResult result;
+        try
+        {
+            result = xaDsm.applyTransactions( response );
+        }
+        finally
+        {
+            long waited = System.nanoTime() - start;
+            statistics.requested( waited );
+            if ( held != null )
+            {
+                held.requests++;
+                held.waitNanos += waited;
+            }
+        }
+
         switch ( result.getStatus() )
         {
         case DEAD_LOCKED:
@@ -165,9 +214,23 @@ public class SlaveLockManager implements LockManager
         }
     }
 
+    @Override
+    public void getWriteLocks( Object... resources ) throws DeadlockDetectedException, IllegalResourceException
+    {
+        getWriteLocksOnMaster( resources );
+        local.getWriteLocks( resources );
+    }
+
     private boolean getWriteLockOnMaster( Object resource )
     {
+        MasterLocks held = heldOnMaster();
+        if ( held != null && held.covers( resource, true ) )
+        {
+            return true;
+        }
+
         Response<LockResult> response = null;
+        long start = System.nanoTime();
         if ( resource instanceof Node )
         {
             makeSureTxHasBeenInitialized();
@@ -193,10 +256,120 @@ public class SlaveLockManager implements LockManager
         {
             return true;
         }
-        
-        return receiveLockResponse( response );
+
+        receiveLockResponse( response, held, start );
+        if ( held != null )
+        {
+            held.write.add( resource );
+        }
+        return true;
+    }
+
+    /**
+     * Node and relationship locks not already held are requested with one request for each kind, the rest
+     * one by one.
+     */
+    private void getWriteLocksOnMaster( Object[] resources )
+    {
+        MasterLocks held = heldOnMaster();
+        long[] nodes = new long[resources.length];
+        long[] relationships = new long[resources.length];
+        int nodeCount = 0, relationshipCount = 0;
+        for ( Object resource : resources )
+        {
+            if ( held != null && held.covers( resource, true ) )
+            {
+                continue;
+            }
+            if ( resource instanceof Node )
+            {
+                nodes[nodeCount++] = ((Node) resource).getId();
+            }
+            else if ( resource instanceof Relationship )
+            {
+                relationships[relationshipCount++] = ((Relationship) resource).getId();
+            }
+            else
+            {
+                getWriteLockOnMaster( resource );
+            }
+        }
+
+        if ( nodeCount > 0 )
+        {
+            makeSureTxHasBeenInitialized();
+            long start = System.nanoTime();
+            receiveLockResponse( master.acquireNodeWriteLock( requestContextFactory.newRequestContext(),
+                    copyOf( nodes, nodeCount ) ), held, start );
+        }
+        if ( relationshipCount > 0 )
+        {
+            makeSureTxHasBeenInitialized();
+            long start = System.nanoTime();
+            receiveLockResponse( master.acquireRelationshipWriteLock( requestContextFactory.newRequestContext(),
+                    copyOf( relationships, relationshipCount ) ), held, start );
+        }
+        if ( held != null )
+        {
+            for ( Object resource : resources )
+            {
+                if ( resource instanceof Node || resource instanceof Relationship )
+                {
+                    held.write.add( resource );
+                }
+            }
+        }
     }
-    
+
+    private static long[] copyOf( long[] ids, int length )
+    {
+        if ( ids.length == length )
+        {
+            return ids;
+        }
+        long[] result = new long[length];
+        System.arraycopy( ids, 0, result, 0, length );
+        return result;
+    }
+
+    /**
+     * @return the locks the current transaction holds on the master, or {@code null} if they can't be kept
+     * track of, in which case every lock is requested from the master.
+     */
+    private MasterLocks heldOnMaster()
+    {
+        Transaction tx;
+        try
+        {
+            tx = txManager.getTransaction();
+        }
+        catch ( SystemException e )
+        {
+            return null;
+        }
+        if ( tx == null )
+        {
+            return null;
+        }
+
+        MasterLocks held = masterLocks.get( tx );
+        if ( held == null )
+        {
+            held = new MasterLocks( tx );
+            try
+            {
+                tx.registerSynchronization( held );
+            }
+            catch ( Exception e )
+            {
+                // The transaction is completing, we'll not be around to forget the locks once it's done
+                return null;
+            }
+            masterLocks.put( tx, held );
+        }
+        return held;
+    }
+
     @Override
     public void releaseReadLock( Object resource, Transaction tx ) throws LockNotFoundException,
             IllegalResourceException
@@ -255,4 +428,51 @@ public class SlaveLockManager implements LockManager
             txHook.initializeTransaction( eventIdentifier );
         }
     }
+
+    /**
+     * The locks a transaction holds on the master. The master releases them when the transaction finishes, and so
+     * we forget about them then.
+     */
+    private class MasterLocks implements Synchronization
+    {
+        private final Transaction tx;
+        private final Set<Object> read = new HashSet<Object>();
+        private final Set<Object> write = new HashSet<Object>();
+        private int requests;
+        private int reused;
+        private long waitNanos;
+
+        MasterLocks( Transaction tx )
+        {
+            this.tx = tx;
+        }
+
+        boolean covers( Object resource, boolean forWrite )
+        {
+            boolean covered = write.contains( resource ) || (!forWrite && read.contains( resource ));
+            if ( covered )
+            {
+                reused++;
+                statistics.reused();
+            }
+            return covered;
+        }
+
+        @Override
+        public void beforeCompletion()
+        {
+        }
+
+        @Override
+        public void afterCompletion( int status )
+        {
+            masterLocks.remove( tx );
+            if ( requests > 0 && logger.isDebugEnabled() )
+            {
+                logger.debug( format( "%s made %d lock requests to the master, waiting %d ms for them, " +
+                        "and reused %d locks it already held", tx, requests,
+                        TimeUnit.NANOSECONDS.toMillis( waitNanos ), reused ) );
+            }
+        }
+    }
 }
@@ -19,6 +19,9 @@
  */
 package org.neo4j.kernel.ha.management;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.management.NotCompliantMBeanException;
 
 import org.neo4j.helpers.Format;
@@ -28,6 +31,8 @@ import org.neo4j.jmx.impl.ManagementData;
 import org.neo4j.jmx.impl.Neo4jMBean;
 import org.neo4j.kernel.ha.HighlyAvailableGraphDatabase;
 import org.neo4j.kernel.ha.UpdatePuller;
+import org.neo4j.kernel.ha.lock.MasterLockStatistics;
+import org.neo4j.kernel.ha.transaction.TransactionFeed;
 import org.neo4j.management.ClusterMemberInfo;
 import org.neo4j.management.HighAvailability;
 
@@ -93,6 +98,42 @@ public final class HighAvailabilityBean extends ManagementBeanProvider
             return kernelData.getClusterInfo();
         }
 
+        @Override
+        public String[] getSlaveLag()
+        {
+            List<String> lags = new ArrayList<String>();
+            for ( TransactionFeed.SlaveLag lag : kernelData.graphDatabase().getDependencyResolver().resolveDependency(
+                    TransactionFeed.class ).getSlaveLags() )
+            {
+                lags.add( lag.toString() );
+            }
+            return lags.toArray( new String[lags.size()] );
+        }
+
+        @Override
+        public long getMasterLockRequests()
+        {
+            return masterLockStatistics().getMasterLockRequests();
+        }
+
+        @Override
+        public long getMasterLockWaitMillis()
+        {
+            return masterLockStatistics().getMasterLockWaitMillis();
+        }
+
+        @Override
+        public long getHeldLocksReused()
+        {
+            return masterLockStatistics().getHeldLocksReused();
+        }
+
+        private MasterLockStatistics masterLockStatistics()
+        {
+            return kernelData.graphDatabase().getDependencyResolver().resolveDependency(
+                    MasterLockStatistics.class );
+        }
+
         @Override
         public String getRole()
         {
@@ -124,12 +124,19 @@ public class MasterTxIdGenerator implements TxIdGenerator, Lifecycle
     private final StringLogger log;
     private final Configuration config;
     private final Slaves slaves;
+    private final TransactionFeed feed;
 
     public MasterTxIdGenerator( Configuration config, StringLogger log, Slaves slaves )
+    {
+        this( config, log, slaves, null );
+    }
+
+    public MasterTxIdGenerator( Configuration config, StringLogger log, Slaves slaves, TransactionFeed feed )
     {
         this.config = config;
         this.log = log;
         this.slaves = slaves;
+        this.feed = feed;
     }
 
     @Override
@@ -164,6 +171,11 @@ public class MasterTxIdGenerator implements TxIdGenerator, Lifecycle
     @Override
     public void committed( XaDataSource dataSource, int identifier, long txId, Integer externalAuthorServerId )
     {
+        if ( feed != null )
+        {
+            feed.committed( dataSource.getName(), txId, externalAuthorServerId );
+        }
+
         int replicationFactor = desiredReplicationFactor;
         if ( externalAuthorServerId != null )
         {
@@ -0,0 +1,333 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.ha.transaction;
+
+import static java.lang.String.format;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.com.ComException;
+import org.neo4j.helpers.NamedThreadFactory;
+import org.neo4j.kernel.ha.com.master.Slave;
+import org.neo4j.kernel.ha.com.master.Slaves;
+import org.neo4j.kernel.impl.util.StringLogger;
+import org.neo4j.kernel.lifecycle.Lifecycle;
+
+/**
+ * Tells every slave about transactions committed on the master, in the background, so that they pull them right
+ * away instead of waiting for their next pull or lock request. The commit itself never waits for this.
+ * <p/>
+ * Each slave has at most one request in flight. Transactions committed while it's busy are covered by the next
+ * request, which pulls everything up to the latest of them, so a slow slave gets fewer and bigger updates rather
+ * than a growing queue of them. Slaves that have left the cluster are forgotten, and start over should they
+ * come back.
+ */
+public class TransactionFeed implements Lifecycle
+{
+    private final Slaves slaves;
+    private final boolean enabled;
+    private final StringLogger log;
+    private final ConcurrentMap<Integer, SlaveFeed> feeds = new ConcurrentHashMap<Integer, SlaveFeed>();
+    private final AtomicLong commits = new AtomicLong();
+    private volatile ExecutorService feeders;
+
+    public TransactionFeed( Slaves slaves, boolean enabled, StringLogger log )
+    {
+        this.slaves = slaves;
+        this.enabled = enabled;
+        this.log = log;
+    }
+
+    @Override
+    public void init() throws Throwable
+    {
+    }
+
+    @Override
+    public void start() throws Throwable
+    {
+        if ( enabled )
+        {
+            feeders = Executors.newCachedThreadPool( new NamedThreadFactory( "slave-feeder" ) );
+        }
+    }
+
+    @Override
+    public void stop() throws Throwable
+    {
+        ExecutorService executor = feeders;
+        feeders = null;
+        if ( executor != null )
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public void shutdown() throws Throwable
+    {
+        feeds.clear();
+    }
+
+    /**
+     * Called on the master after a transaction has been committed.
+     *
+     * @param externalAuthorServerId the slave the transaction came from, which already has it, or {@code null}.
+     */
+    public void committed( String resource, long txId, Integer externalAuthorServerId )
+    {
+        ExecutorService executor = feeders;
+        if ( executor == null )
+        {
+            return;
+        }
+
+        long sequence = commits.incrementAndGet();
+        long now = System.currentTimeMillis();
+        Set<Integer> current = new HashSet<Integer>();
+        for ( Slave slave : slaves.getSlaves() )
+        {
+            current.add( slave.getServerId() );
+            SlaveFeed feed = feedFor( slave, sequence );
+            if ( externalAuthorServerId != null && slave.getServerId() == externalAuthorServerId.intValue() )
+            {
+                feed.caughtUp( sequence );
+            }
+            else
+            {
+                feed.offer( resource, txId, sequence, now, executor );
+            }
+        }
+        feeds.keySet().retainAll( current );
+    }
+
+    /**
+     * @return how far behind the master each slave that has been fed transactions, and is still around, is.
+     */
+    public List<SlaveLag> getSlaveLags()
+    {
+        Set<Integer> current = new HashSet<Integer>();
+        for ( Slave slave : slaves.getSlaves() )
+        {
+            current.add( slave.getServerId() );
+        }
+        feeds.keySet().retainAll( current );
+
+        long latest = commits.get();
+        long now = System.currentTimeMillis();
+        List<SlaveLag> lags = new ArrayList<SlaveLag>();
+        for ( SlaveFeed feed : feeds.values() )
+        {
+            lags.add( feed.lag( latest, now ) );
+        }
+        return lags;
+    }
+
+    private SlaveFeed feedFor( Slave slave, long sequence )
+    {
+        SlaveFeed feed = feeds.get( slave.getServerId() );
+        if ( feed == null )
+        {
+            // Whatever was committed before we knew about the slave it got when it joined
+            SlaveFeed newFeed = new SlaveFeed( slave.getServerId(), sequence - 1 );
+            feed = feeds.putIfAbsent( slave.getServerId(), newFeed );
+            if ( feed == null )
+            {
+                feed = newFeed;
+            }
+        }
+        feed.slave = slave;
+        return feed;
+    }
+
+    public static class SlaveLag
+    {
+        private final int serverId;
+        private final long transactions;
+        private final long millis;
+        private final long lastRoundTripMillis;
+
+        SlaveLag( int serverId, long transactions, long millis, long lastRoundTripMillis )
+        {
+            this.serverId = serverId;
+            this.transactions = transactions;
+            this.millis = millis;
+            this.lastRoundTripMillis = lastRoundTripMillis;
+        }
+
+        public int getServerId()
+        {
+            return serverId;
+        }
+
+        /**
+         * @return the number of transactions committed on the master that the slave hasn't confirmed having.
+         */
+        public long getTransactions()
+        {
+            return transactions;
+        }
+
+        /**
+         * @return how long ago the oldest of those transactions was committed.
+         */
+        public long getMillis()
+        {
+            return millis;
+        }
+
+        public long getLastRoundTripMillis()
+        {
+            return lastRoundTripMillis;
+        }
+
+        @Override
+        public String toString()
+        {
+            return format( "Slave %d is %d transactions and %d ms behind, last update took %d ms", serverId,
+                    transactions, millis, lastRoundTripMillis );
+        }
+    }
+
+    private class SlaveFeed implements Runnable
+    {
+        private final int serverId;
+        private volatile Slave slave;
+
+        // Guarded by this
+        private String resource;
+        private long txId;
+        private long offeredSequence;
+        private long acknowledgedSequence;
+        private long behindSince;
+        private long lastRoundTripMillis;
+        private boolean running;
+
+        SlaveFeed( int serverId, long acknowledgedSequence )
+        {
+            this.serverId = serverId;
+            this.offeredSequence = acknowledgedSequence;
+            this.acknowledgedSequence = acknowledgedSequence;
+        }
+
+        synchronized void offer( String resource, long txId, long sequence, long now, ExecutorService executor )
+        {
+            this.resource = resource;
+            this.txId = txId;
+            offeredSequence = Math.max( offeredSequence, sequence );
+            if ( behindSince == 0 )
+            {
+                behindSince = now;
+            }
+            if ( !running )
+            {
+                running = true;
+                try
+                {
+                    executor.execute( this );
+                }
+                catch ( RejectedExecutionException e )
+                {
+                    // We're shutting down
+                    running = false;
+                }
+            }
+        }
+
+        synchronized void caughtUp( long sequence )
+        {
+            acknowledgedSequence = Math.max( acknowledgedSequence, sequence );
+            offeredSequence = Math.max( offeredSequence, sequence );
+            if ( acknowledgedSequence >= offeredSequence )
+            {
+                behindSince = 0;
+            }
+        }
+
+        synchronized SlaveLag lag( long latest, long now )
+        {
+            return new SlaveLag( serverId, latest - acknowledgedSequence, behindSince == 0 ? 0 : now - behindSince,
+                    lastRoundTripMillis );
+        }
+
+        @Override
+        public void run()
+        {
+            while ( true )
+            {
+                String resource;
+                long txId;
+                long sequence;
+                synchronized ( this )
+                {
+                    if ( acknowledgedSequence >= offeredSequence )
+                    {
+                        running = false;
+                        return;
+                    }
+                    resource = this.resource;
+                    txId = this.txId;
+                    sequence = offeredSequence;
+                }
+
+                long start = System.currentTimeMillis();
+                try
+                {
+                    // The slave pulls everything up to and including this transaction
+                    slave.pullUpdates( resource, txId ).close();
+                }
+                catch ( Throwable e )
+                {
+                    synchronized ( this )
+                    {
+                        running = false;
+                    }
+                    if ( e instanceof ComException )
+                    {
+                        log.debug( "Couldn't feed transactions to " + slave, e );
+                    }
+                    else
+                    {
+                        log.logMessage( "Couldn't feed transactions to " + slave, e );
+                    }
+                    return;
+                }
+
+                long end = System.currentTimeMillis();
+                synchronized ( this )
+                {
+                    lastRoundTripMillis = end - start;
+                    acknowledgedSequence = Math.max( acknowledgedSequence, sequence );
+                    // Anything offered since was committed after we started
+                    behindSince = acknowledgedSequence >= offeredSequence ? 0 : start;
+                }
+            }
+        }
+    }
+}
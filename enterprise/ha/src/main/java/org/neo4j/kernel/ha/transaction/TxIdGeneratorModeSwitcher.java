@@ -42,11 +42,12 @@ public class TxIdGeneratorModeSwitcher extends AbstractModeSwitcher<TxIdGenerato
     private StringLogger msgLog;
     private Config config;
     private Slaves slaves;
+    private TransactionFeed feed;
 
     public TxIdGeneratorModeSwitcher( HighAvailabilityMemberStateMachine stateMachine,
                                       DelegateInvocationHandler<TxIdGenerator> delegate, HaXaDataSourceManager xaDsm,
                                       Master master, RequestContextFactory requestContextFactory,
-                                      StringLogger msgLog, Config config, Slaves slaves
+                                      StringLogger msgLog, Config config, Slaves slaves, TransactionFeed feed
     )
     {
         super( stateMachine, delegate );
@@ -56,12 +57,13 @@ public class TxIdGeneratorModeSwitcher extends AbstractModeSwitcher<TxIdGenerato
         this.msgLog = msgLog;
         this.config = config;
         this.slaves = slaves;
+        this.feed = feed;
     }
 
     @Override
     protected TxIdGenerator getMasterImpl()
     {
-        return new MasterTxIdGenerator( MasterTxIdGenerator.from( config ), msgLog, slaves );
+        return new MasterTxIdGenerator( MasterTxIdGenerator.from( config ), msgLog, slaves, feed );
     }
 
     @Override
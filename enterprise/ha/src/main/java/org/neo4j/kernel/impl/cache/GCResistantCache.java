@@ -48,6 +48,7 @@ public class GCResistantCache<E extends EntityWithSize> implements Cache<E>, Dia
     private long totalPuts = 0;
     private long collisions = 0;
     private long purgeCount = 0;
+    private long evictionCount = 0;
 
     private final StringLogger logger;
     
@@ -182,6 +183,14 @@ public class GCResistantCache<E extends EntityWithSize> implements Cache<E>, Dia
         return obj;
     }
 
+    private void evict( int pos )
+    {
+        if ( remove( pos ) != null )
+        {
+            evictionCount++;
+        }
+    }
+
     public E get( long id )
     {
         int pos = getPosition( id );
@@ -255,14 +264,14 @@ public class GCResistantCache<E extends EntityWithSize> implements Cache<E>, Dia
                 if ( ( pos - index ) >= 0 )
                 {
                     int minusPos = pos - index;
-                    remove( minusPos );
+                    evict( minusPos );
                     if ( currentSize.get() <= purgeStopSize )
                         return;
                 }
                 if ( ( pos + index ) < cache.length() )
                 {
                     int plusPos = pos + index;
-                    remove( plusPos );
+                    evict( plusPos );
                     if ( currentSize.get() <= purgeStopSize )
                         return;
                 }
@@ -270,7 +279,7 @@ public class GCResistantCache<E extends EntityWithSize> implements Cache<E>, Dia
             }
             while ( ( pos - index ) >= 0 || ( pos + index ) < cache.length() );
             // current object larger than max size, clear it
-            remove( pos ); 
+            evict( pos );
         }
         finally
         {
@@ -418,6 +427,12 @@ public class GCResistantCache<E extends EntityWithSize> implements Cache<E>, Dia
         return missCount;
     }
 
+    @Override
+    public long evictionCount()
+    {
+        return evictionCount;
+    }
+
     @Override
     public void updateSize( E obj, int newSize )
     {
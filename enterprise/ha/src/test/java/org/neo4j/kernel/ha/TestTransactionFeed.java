@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.ha;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.junit.After;
+import org.junit.Test;
+import org.neo4j.com.ResourceReleaser;
+import org.neo4j.com.Response;
+import org.neo4j.com.TransactionStream;
+import org.neo4j.kernel.ha.com.master.Slave;
+import org.neo4j.kernel.ha.com.master.Slaves;
+import org.neo4j.kernel.ha.transaction.TransactionFeed;
+import org.neo4j.kernel.impl.nioneo.store.StoreId;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+public class TestTransactionFeed
+{
+    private TransactionFeed feed;
+    private final List<Slave> slaveList = new CopyOnWriteArrayList<Slave>();
+
+    @After
+    public void stopFeed() throws Throwable
+    {
+        feed.stop();
+        feed.shutdown();
+    }
+
+    @Test
+    public void shouldCoverCommitsMadeWhileTheSlaveIsBusyWithOneUpdate() throws Throwable
+    {
+        BlockingSlave slave = new BlockingSlave( 2 );
+        feed = newFeed( slave );
+
+        feed.committed( "nioneo", 10, null );
+        assertEquals( (Long) 10L, slave.calls.poll( 10, SECONDS ) );
+        feed.committed( "nioneo", 11, null );
+        feed.committed( "nioneo", 12, null );
+        assertEquals( 3, feed.getSlaveLags().get( 0 ).getTransactions() );
+
+        slave.release.countDown();
+        assertEquals( (Long) 12L, slave.calls.poll( 10, SECONDS ) );
+        awaitCaughtUp();
+        assertNull( slave.calls.poll() );
+    }
+
+    @Test
+    public void shouldNotFeedTheSlaveATransactionCameFrom() throws Throwable
+    {
+        BlockingSlave author = new BlockingSlave( 2 );
+        BlockingSlave other = new BlockingSlave( 3 );
+        author.release.countDown();
+        other.release.countDown();
+        feed = newFeed( author, other );
+
+        feed.committed( "nioneo", 10, 2 );
+
+        assertEquals( (Long) 10L, other.calls.poll( 10, SECONDS ) );
+        awaitCaughtUp();
+        assertNull( author.calls.poll() );
+    }
+
+    @Test
+    public void shouldForgetSlavesThatHaveLeftTheCluster() throws Throwable
+    {
+        BlockingSlave staying = new BlockingSlave( 2 );
+        BlockingSlave leaving = new BlockingSlave( 3 );
+        staying.release.countDown();
+        leaving.release.countDown();
+        feed = newFeed( staying, leaving );
+        feed.committed( "nioneo", 10, null );
+        assertEquals( 2, feed.getSlaveLags().size() );
+
+        slaveList.remove( leaving );
+
+        assertEquals( 1, feed.getSlaveLags().size() );
+        assertEquals( 2, feed.getSlaveLags().get( 0 ).getServerId() );
+        feed.committed( "nioneo", 11, null );
+        assertEquals( 1, feed.getSlaveLags().size() );
+    }
+
+    private void awaitCaughtUp() throws InterruptedException
+    {
+        long end = System.currentTimeMillis() + SECONDS.toMillis( 10 );
+        for ( TransactionFeed.SlaveLag lag : feed.getSlaveLags() )
+        {
+            while ( lag.getTransactions() > 0 && System.currentTimeMillis() < end )
+            {
+                Thread.sleep( 10 );
+                lag = lagOf( lag.getServerId() );
+            }
+            assertEquals( lag.toString(), 0, lag.getTransactions() );
+        }
+    }
+
+    private TransactionFeed.SlaveLag lagOf( int serverId )
+    {
+        for ( TransactionFeed.SlaveLag lag : feed.getSlaveLags() )
+        {
+            if ( lag.getServerId() == serverId )
+            {
+                return lag;
+            }
+        }
+        throw new IllegalArgumentException( "No slave " + serverId );
+    }
+
+    private TransactionFeed newFeed( Slave... slaves ) throws Throwable
+    {
+        slaveList.addAll( asList( slaves ) );
+        TransactionFeed result = new TransactionFeed( new Slaves()
+        {
+            @Override
+            public Iterable<Slave> getSlaves()
+            {
+                return slaveList;
+            }
+        }, true, StringLogger.DEV_NULL );
+        result.init();
+        result.start();
+        return result;
+    }
+
+    private static class BlockingSlave implements Slave
+    {
+        private final int serverId;
+        private final BlockingQueue<Long> calls = new LinkedBlockingQueue<Long>();
+        private final CountDownLatch release = new CountDownLatch( 1 );
+
+        BlockingSlave( int serverId )
+        {
+            this.serverId = serverId;
+        }
+
+        @Override
+        public Response<Void> pullUpdates( String resource, long upToAndIncludingTxId )
+        {
+            calls.add( upToAndIncludingTxId );
+            try
+            {
+                release.await();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.interrupted();
+            }
+            return new Response<Void>( null, new StoreId(), TransactionStream.EMPTY, ResourceReleaser.NO_OP );
+        }
+
+        @Override
+        public int getServerId()
+        {
+            return serverId;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2002-2013 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.ha.lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.Transaction;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.neo4j.com.RequestContext;
+import org.neo4j.com.Response;
+import org.neo4j.graphdb.Node;
+import org.neo4j.kernel.ha.HaXaDataSourceManager;
+import org.neo4j.kernel.ha.InstanceAccessGuard;
+import org.neo4j.kernel.ha.com.RequestContextFactory;
+import org.neo4j.kernel.ha.com.master.Master;
+import org.neo4j.kernel.impl.core.TransactionState;
+import org.neo4j.kernel.impl.transaction.AbstractTransactionManager;
+import org.neo4j.kernel.impl.transaction.RagManager;
+import org.neo4j.kernel.impl.transaction.TxHook;
+import org.neo4j.kernel.logging.DevNullLoggingService;
+
+public class SlaveLockManagerTest
+{
+    private final Master master = mock( Master.class );
+    private final Transaction tx = mock( Transaction.class );
+    private final RequestContext context = RequestContext.EMPTY;
+    private SlaveLockManager lockManager;
+    private final MasterLockStatistics statistics = new MasterLockStatistics();
+
+    @Before
+    @SuppressWarnings( "unchecked" )
+    public void createLockManager() throws Exception
+    {
+        AbstractTransactionManager txManager = mock( AbstractTransactionManager.class );
+        TransactionState state = mock( TransactionState.class );
+        when( state.hasLocks() ).thenReturn( true );
+        when( txManager.getTransaction() ).thenReturn( tx );
+        when( txManager.getTransactionState() ).thenReturn( state );
+
+        RequestContextFactory contextFactory = mock( RequestContextFactory.class );
+        when( contextFactory.newRequestContext() ).thenReturn( context );
+
+        HaXaDataSourceManager xaDsm = mock( HaXaDataSourceManager.class );
+        when( xaDsm.applyTransactions( any( Response.class ) ) ).thenReturn( new LockResult( LockStatus.OK_LOCKED ) );
+
+        lockManager = new SlaveLockManager( txManager, mock( TxHook.class ), mock( InstanceAccessGuard.class ),
+                mock( SlaveLockManager.Configuration.class ), new RagManager( txManager ), contextFactory, master,
+                xaDsm, statistics, new DevNullLoggingService() );
+    }
+
+    @Test
+    public void shouldOnlyAskTheMasterOnceForALockTheTransactionHolds() throws Exception
+    {
+        Node node = new LockableNode( 1 );
+
+        lockManager.getWriteLock( node );
+        lockManager.getWriteLock( node );
+        lockManager.getReadLock( node );
+
+        verify( master, times( 1 ) ).acquireNodeWriteLock( context, 1 );
+        assertEquals( 1, statistics.getMasterLockRequests() );
+        assertEquals( 2, statistics.getHeldLocksReused() );
+    }
+
+    @Test
+    public void shouldAskTheMasterForLocksAgainOnceTheTransactionHasFinished() throws Exception
+    {
+        Node node = new LockableNode( 1 );
+        lockManager.getWriteLock( node );
+
+        ArgumentCaptor<Synchronization> synchronization = ArgumentCaptor.forClass( Synchronization.class );
+        verify( tx ).registerSynchronization( synchronization.capture() );
+        synchronization.getValue().afterCompletion( Status.STATUS_COMMITTED );
+        lockManager.getWriteLock( node );
+
+        verify( master, times( 2 ) ).acquireNodeWriteLock( context, 1 );
+    }
+
+    @Test
+    public void shouldAskForSeveralNodeLocksInOneRequest() throws Exception
+    {
+        lockManager.getWriteLock( new LockableNode( 1 ) );
+        lockManager.getWriteLocks( new LockableNode( 1 ), new LockableNode( 2 ), new LockableNode( 3 ),
+                new LockableRelationship( 4 ) );
+
+        verify( master ).acquireNodeWriteLock( context, 2, 3 );
+        verify( master ).acquireRelationshipWriteLock( context, 4 );
+        assertEquals( 3, statistics.getMasterLockRequests() );
+    }
+}